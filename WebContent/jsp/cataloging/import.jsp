@@ -36,6 +36,7 @@
 
 				<div class="search_button_div">
 					<a class="button arrow_right main_button" onclick="Import.upload(this);"><i18n:text key="cataloging.import.upload_button" /></a>
+					<a class="button arrow_right" onclick="Import.bulkUpload(this);"><i18n:text key="cataloging.import.bulk_upload_button" /></a>
 				</div>
 			</div>
 		</div>
@@ -151,6 +152,7 @@
 
 			<div class="description">
 				<p class="importing"><i18n:text key="cataloging.import.import_popup.importing" /></p>
+				<p class="job_failed"><i18n:text key="cataloging.import.job.failed" /></p>
 			</div>
 
 			<div class="progress">
@@ -159,6 +161,11 @@
 					<div class="progress_bar_outer"><div class="progress_bar_inner"></div></div>
 				</div>
 			</div>
+
+			<div class="buttons job_resume">
+				<a class="button" onclick="Import.hidePopupImportProgress();"><i18n:text key="common.cancel" /></a>
+				<a class="button main_button" onclick="Import.runJob();"><i18n:text key="cataloging.import.import_popup.resume" /></a>
+			</div>
 		</fieldset>
 	</div>
 
@@ -231,7 +231,12 @@
 							<option value="private"><i18n:text key="cataloging.database.private_full" /></option>
 							<option value="trash"><i18n:text key="cataloging.database.trash_full" /></option>
 						</select>
-						<a class="button center" onclick="CatalogingSearch.exportSelectedRecords();"><i18n:text key="cataloging.bibliographic.button.export_records" /></a>
+						<select name="export" class="combo combo_hide_empty_value" onchange="CatalogingSearch.exportSelectedRecords(this.value);">
+							<option value=""><i18n:text key="cataloging.bibliographic.button.export_records" /></option>
+							<option value="iso2709">ISO2709</option>
+							<option value="marcxml">MARCXML</option>
+							<option value="json">MARC-in-JSON</option>
+						</select>
 					</div>
 				</fieldset>
 			{/#if}
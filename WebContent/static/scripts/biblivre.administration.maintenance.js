@@ -267,11 +267,13 @@ Administration.reindex.submit = function() {
 	$('.system_warning_reindex').remove();
 
 	Administration.reindex.showPopupProgress();
+	Administration.reindex.written = -1;
 	Administration.reindex.progress(1000);
 };
 
 Administration.reindex.progressTimeout = null;
 Administration.reindex.progressXHR = null;
+Administration.reindex.written = -1;
 Administration.reindex.progress = function(delay) {
 	if (!Administration.reindex.selectedType) {
 		return;
@@ -290,7 +292,8 @@ Administration.reindex.progress = function(delay) {
 			controller: 'json',
 			module: 'administration.indexing',
 			action: 'progress',
-			record_type: Administration.reindex.selectedType
+			record_type: Administration.reindex.selectedType,
+			written: Administration.reindex.written
 		},
 		success: function(response) {
 			if (!response.success) {
@@ -299,6 +302,9 @@ Administration.reindex.progress = function(delay) {
 				return;
 			}
 
+			// The server answers when this count changes, so there is no need to wait between requests
+			Administration.reindex.written = response.current;
+
 			$('#reindex_popup .progress').progressbar(response);
 
 			if (response.complete) {
@@ -306,8 +312,8 @@ Administration.reindex.progress = function(delay) {
 				Core.msg(Translations.get('administration.maintenance.reindex.success'), 'success');
 			}
 		},
-		complete: function() {
-			Administration.reindex.progress(500);
+		complete: function(xhr, status) {
+			Administration.reindex.progress(status == 'success' ? 100 : 500);
 		}
 	});
 };
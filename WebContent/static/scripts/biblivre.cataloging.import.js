@@ -26,7 +26,9 @@ var Import = {
 	resultTempHolder: $('<div></div>'),
 	uploadPopup: null,
 	importPopup: null,
-	searchResults: null
+	searchResults: null,
+	jobId: null,
+	jobRunning: false
 };
 
 Import.changeSourceSelection = function(obj) {
@@ -147,6 +149,153 @@ Import.upload = function(button) {
 	});
 };
 
+Import.bulkUpload = function(button) {
+	Core.clearFormErrors();
+
+	$('#page_submit').ajaxSubmit({
+		beforeSerialize: function($form, options) {
+			$('#controller').val('json');
+			$('#module').val('cataloging');
+			$('#action').val('import_job_prepare');
+		},
+		beforeSubmit: function() {
+			Import.jobId = null;
+			Import.showPopupProgress();
+		},
+		dataType: 'json',
+		forceSync: true,
+		complete: function() {
+			$('#controller').val('jsp');
+			Import.hidePopupProgress();
+
+			if (Import.jobId) {
+				Import.runJob();
+			}
+		},
+		success: function(response) {
+			if (response.success) {
+				Import.jobId = response.id;
+				return;
+			}
+
+			if (response.errors) {
+				Core.formErrors(response.errors);
+			} else {
+				Core.msg(response);
+			}
+		},
+		error: function() {
+			Core.msg({
+				message_level: 'warning',
+				message:Translations.get('cataloging.import.error.file_upload_error')
+			});
+		},
+		uploadProgress: function(event, current, total, percentComplete) {
+			Import.advanceUploadProgress(current, total, percentComplete);
+		}
+	});
+};
+
+// The request returns when the job stops, while pollJob follows its progress
+Import.runJob = function() {
+	Import.jobRunning = true;
+	Import.importPopup.find('.importing').show();
+	Import.importPopup.find('.job_failed, .job_resume').hide();
+
+	if (!Import.importPopup.is(':visible')) {
+		Import.showPopupImportProgress();
+	}
+
+	$.ajax({
+		url: window.location.pathname,
+		type: 'POST',
+		dataType: 'json',
+		data: {
+			controller: 'json',
+			module: 'cataloging',
+			action: 'import_job_run',
+			id: Import.jobId
+		},
+		success: function(response) {
+			Import.jobRunning = false;
+
+			if (response.complete) {
+				Import.hidePopupImportProgress();
+
+				Core.msg({
+					message_level: 'success',
+					message: Translations.get('cataloging.import.job.success', [_f(response.imported), _f(response.duplicates), _f(response.failed)])
+				});
+			} else if (response.id) {
+				Import.advanceJobProgress(response);
+				Import.showJobResume();
+			} else {
+				Import.hidePopupImportProgress();
+				Core.msg(response);
+			}
+		},
+		error: function() {
+			Import.jobRunning = false;
+			Import.showJobResume();
+		}
+	});
+
+	Import.pollJob(-1);
+};
+
+Import.pollJob = function(position) {
+	$.ajax({
+		url: window.location.pathname,
+		type: 'POST',
+		dataType: 'json',
+		data: {
+			controller: 'json',
+			module: 'cataloging',
+			action: 'import_job_progress',
+			id: Import.jobId,
+			position: position
+		},
+		success: function(response) {
+			if (!Import.jobRunning) {
+				return;
+			}
+
+			if (response.success) {
+				Import.advanceJobProgress(response);
+			}
+
+			// The server holds the request until the next chunk while the job runs
+			if (response.status == 'running') {
+				Import.pollJob(response.current);
+			} else {
+				setTimeout(function() {
+					Import.pollJob(-1);
+				}, 1000);
+			}
+		},
+		error: function() {
+			if (Import.jobRunning) {
+				setTimeout(function() {
+					Import.pollJob(-1);
+				}, 1000);
+			}
+		}
+	});
+};
+
+Import.advanceJobProgress = function(job) {
+	Import.importPopup.find('.progress').progressbar({
+		current: job.bytes_read,
+		total: job.size,
+		secondary_current: job.current
+	});
+};
+
+Import.showJobResume = function() {
+	Import.importPopup.find('.importing').hide();
+	Import.importPopup.find('.job_failed, .job_resume').show();
+};
+
 Import.search = function(button) {
 	Core.clearFormErrors();
 
@@ -437,6 +586,7 @@ Import.showPopupImportProgress = function() {
 Import.hidePopupImportProgress = function() {
 	Core.hideOverlay();
 	Import.importPopup.hide();
+	Import.importPopup.find('.job_failed, .job_resume').hide();
 };
 
 Import.advanceImportProgress = function(current, total) {
@@ -518,6 +518,7 @@ var CatalogingFormClass = {
 		}
 
 		var module = this.type;
+		var form = this;
 		root.each(function() {
 			var type = $(this).data('ac');
 			$(this).autocomplete(window.location.pathname, {
@@ -572,36 +573,55 @@ var CatalogingFormClass = {
 				var type = field.data('ac');
 
 				if (type == 'authorities' || type == 'vocabulary') {
-					var datafield = field.closest('.subfield').attr('data');
-					var marc = ((item.record || {}).json || {})[type == 'vocabulary' ? '150' : datafield];
+					$.ajax({
+						url: window.location.pathname,
+						type: 'POST',
+						dataType: 'json',
+						data: {
+							controller: 'json',
+							module: module,
+							action: 'autocomplete',
+							type: type,
+							q: item.phrase,
+							record_id: item.record_id
+						}
+					}).done(function(response) {
+						if (response.success && response.data) {
+							form.fillAutocompleteRecord(field, type, response.data);
+						}
+					});
+				}
+			});
+		});
+	},
+	fillAutocompleteRecord: function(field, type, record) {
+		var datafield = field.closest('.subfield').attr('data');
+		var marc = (record.json || {})[type == 'vocabulary' ? '150' : datafield];
 
-					if (!marc || !marc[0]) {
-						return;
-					}
+		if (!marc || !marc[0]) {
+			return;
+		}
 
-					marc = marc[0];
+		marc = marc[0];
 
-					var fieldset = field.closest('.subfields');
+		var fieldset = field.closest('.subfields');
 
-					for (var sub in marc) {
-						if (!marc.hasOwnProperty(sub)) {
-							continue;
-						}
+		for (var sub in marc) {
+			if (!marc.hasOwnProperty(sub)) {
+				continue;
+			}
 
-						var data = marc[sub];
-						if (!$.isArray(data)) {
-							fieldset.find(':input[name="' + sub + '"]').val(data);
-						} else {
-							fieldset.find(':input[name="' + sub + '"]').eq(0).val(data[0]);
-							for (var i = 1; i < data.length; i++) {
-								fieldset.find(':input[name="' + sub + '"]').eq(0).closest('.subfield').find('.marc_repeat').trigger('click');
-								fieldset.find(':input[name="' + sub + '"]').eq(1).val(data[i]);
-							}
-						}
-					}
+			var data = marc[sub];
+			if (!$.isArray(data)) {
+				fieldset.find(':input[name="' + sub + '"]').val(data);
+			} else {
+				fieldset.find(':input[name="' + sub + '"]').eq(0).val(data[0]);
+				for (var i = 1; i < data.length; i++) {
+					fieldset.find(':input[name="' + sub + '"]').eq(0).closest('.subfield').find('.marc_repeat').trigger('click');
+					fieldset.find(':input[name="' + sub + '"]').eq(1).val(data[i]);
 				}
-			});
-		});
+			}
+		}
 	},
 	_convertXHR: null,
 	convert: function(from, to, callback) {
@@ -605,7 +605,7 @@ var CatalogingSearchClass = {
 				Core.changeTab('holding_form', me);
 			});
 	},
-	exportSelectedRecords: function() {
+	exportSelectedRecords: function(format) {
 		var list = [];
 
 		for (var i = 0; i < this.selectedList.length; i++) {
@@ -630,7 +630,7 @@ var CatalogingSearchClass = {
 			context: this
 		}).done(function(response) {
 			if (response.success) {
-				window.open(window.location.pathname + '?controller=download&module=' + this.type + '&action=download_export&id=' + response.uuid);
+				window.open(window.location.pathname + '?controller=download&module=' + this.type + '&action=download_export&id=' + response.uuid + '&format=' + (format || 'iso2709'));
 				this.selectedList = [];
 				this.updateSelectList();
 				//this.search.paginate(this.search.lastPagingParameters);
@@ -19,6 +19,8 @@
  ******************************************************************************/
 package biblivre.administration.indexing;
 
+import biblivre.cataloging.ParsedRecordCache;
+import biblivre.cataloging.ParsedRecordCacheStatusDTO;
 import biblivre.cataloging.enums.RecordType;
 import biblivre.core.AbstractHandler;
 import biblivre.core.ExtendedRequest;
@@ -28,6 +30,7 @@ import java.util.Date;
 import org.json.JSONException;
 
 public class Handler extends AbstractHandler {
+    private static final long PROGRESS_WAIT = 10000;
 
     public void reindex(ExtendedRequest request, ExtendedResponse response) {
         String schema = request.getSchema();
@@ -63,9 +66,33 @@ public class Handler extends AbstractHandler {
         }
     }
 
+    public void deltaReindex(ExtendedRequest request, ExtendedResponse response) {
+        String schema = request.getSchema();
+        String strRecordType = request.getString("record_type", "biblio");
+
+        RecordType recordType = RecordType.fromString(strRecordType);
+        if (recordType == null) {
+            this.setMessage(
+                    ActionResult.WARNING,
+                    "administration.maintenance.reindex.error.invalid_record_type");
+            return;
+        }
+
+        IndexingBO bo = IndexingBO.getInstance(schema);
+
+        long start = new Date().getTime();
+        int count = bo.reindexDelta(recordType);
+        long end = new Date().getTime();
+
+        try {
+            this.json.put("success", true);
+            this.json.put("count", count);
+            this.json.put("time", (end - start) / 1000.0);
+        } catch (JSONException e) {
+        }
+    }
+
     public void progress(ExtendedRequest request, ExtendedResponse response) {
-        // Remember that this will only work if there is a sortable indexing_group for the
-        // recordType.
         String schema = request.getSchema();
         String strRecordType = request.getString("record_type", "biblio");
 
@@ -77,15 +104,51 @@ public class Handler extends AbstractHandler {
             return;
         }
 
+        // When the client sends the last count it has seen, the answer waits for the next change
+        int written = request.getInteger("written", -1);
+
         IndexingBO bo = IndexingBO.getInstance(schema);
 
-        int progress[] = bo.getReindexProgress(recordType);
+        ReindexStatisticsDTO progress =
+                bo.getReindexProgress(recordType, written, Handler.PROGRESS_WAIT);
+
+        try {
+            this.json.put("success", true);
+
+            // The reindex was requested but has not started yet
+            if (progress == null) {
+                this.json.put("current", 0);
+                this.json.put("total", 0);
+                this.json.put("complete", false);
+                return;
+            }
+
+            this.json.put("current", progress.getWritten());
+            this.json.put("total", progress.getTotal());
+            this.json.put("complete", progress.isComplete());
+            this.json.put("elapsed", progress.getElapsed());
+            this.json.put("rate", progress.getRate());
+            this.json.put("eta", progress.getEta());
+        } catch (JSONException e) {
+        }
+    }
+
+    public void queueStatus(ExtendedRequest request, ExtendedResponse response) {
+        IndexingQueueStatusDTO status = IndexingQueue.getStatus(request.getSchema());
+
+        try {
+            this.json.put("success", true);
+            this.json.put("data", status.toJSONObject());
+        } catch (JSONException e) {
+        }
+    }
+
+    public void recordCacheStatus(ExtendedRequest request, ExtendedResponse response) {
+        ParsedRecordCacheStatusDTO status = ParsedRecordCache.getStatus(request.getSchema());
 
         try {
             this.json.put("success", true);
-            this.json.put("current", progress[0]);
-            this.json.put("total", progress[1]);
-            this.json.put("complete", progress[0] == progress[1]);
+            this.json.put("data", status.toJSONObject());
         } catch (JSONException e) {
         }
     }
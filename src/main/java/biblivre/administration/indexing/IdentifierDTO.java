@@ -0,0 +1,31 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.enums.IdentifierType;
+import biblivre.core.AbstractDTO;
+
+// A normalized identifier of a record, see StandardIdentifiers
+public class IdentifierDTO extends AbstractDTO {
+    private static final long serialVersionUID = 1L;
+
+    private final int recordId;
+    private final IdentifierType type;
+    private final String identifier;
+
+    public IdentifierDTO(int recordId, IdentifierType type, String identifier) {
+        this.recordId = recordId;
+        this.type = type;
+        this.identifier = identifier;
+    }
+
+    public int getRecordId() {
+        return this.recordId;
+    }
+
+    public IdentifierType getType() {
+        return this.type;
+    }
+
+    public String getIdentifier() {
+        return this.identifier;
+    }
+}
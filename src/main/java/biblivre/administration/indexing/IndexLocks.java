@@ -0,0 +1,85 @@
+package biblivre.administration.indexing;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Locks guarding the index rows of a schema. Writers of a few records hold the shared side of a
+ * read write lock plus one lock per record, picked from a fixed set of stripes, so saves of
+ * different records run in parallel. Operations that touch every record of a record type (clearing,
+ * swapping the shadow tables, loading the inverted index) hold the exclusive side instead.
+ */
+public class IndexLocks {
+    private static final int STRIPES = 256;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock[] stripes = new Lock[IndexLocks.STRIPES];
+
+    public IndexLocks() {
+        for (int i = 0; i < IndexLocks.STRIPES; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void withRecords(Collection<Integer> recordIds, Runnable action) {
+        this.withRecords(
+                recordIds,
+                () -> {
+                    action.run();
+                    return null;
+                });
+    }
+
+    public <T> T withRecords(Collection<Integer> recordIds, Supplier<T> action) {
+        boolean[] locked = new boolean[IndexLocks.STRIPES];
+
+        for (Integer recordId : recordIds) {
+            locked[Math.floorMod(recordId, IndexLocks.STRIPES)] = true;
+        }
+
+        this.lock.readLock().lock();
+
+        try {
+            // Always taken in the same order, so writers of overlapping records can't deadlock
+            for (int i = 0; i < IndexLocks.STRIPES; i++) {
+                if (locked[i]) {
+                    this.stripes[i].lock();
+                }
+            }
+
+            try {
+                return action.get();
+            } finally {
+                for (int i = IndexLocks.STRIPES - 1; i >= 0; i--) {
+                    if (locked[i]) {
+                        this.stripes[i].unlock();
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public void withAll(Runnable action) {
+        this.withAll(
+                () -> {
+                    action.run();
+                    return null;
+                });
+    }
+
+    public <T> T withAll(Supplier<T> action) {
+        this.lock.writeLock().lock();
+
+        try {
+            return action.get();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
@@ -19,38 +19,41 @@
  ******************************************************************************/
 package biblivre.administration.indexing;
 
-import biblivre.cataloging.AutocompleteDTO;
-import biblivre.cataloging.Fields;
-import biblivre.cataloging.FormTabSubfieldDTO;
 import biblivre.cataloging.RecordBO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.authorities.AuthorityRecordBO;
 import biblivre.cataloging.bibliographic.BiblioRecordBO;
+import biblivre.cataloging.enums.IdentifierType;
 import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.AutocompleteIndexes;
+import biblivre.cataloging.search.InvertedIndex;
+import biblivre.cataloging.search.InvertedIndexes;
+import biblivre.cataloging.search.SearchResultsCache;
 import biblivre.cataloging.vocabulary.VocabularyRecordBO;
 import biblivre.core.AbstractBO;
-import biblivre.core.utils.TextUtils;
-import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
-import java.util.ArrayList;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.utils.Constants;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import org.marc4j.marc.DataField;
-import org.marc4j.marc.Record;
-import org.marc4j.marc.Subfield;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class IndexingBO extends AbstractBO {
     private IndexingDAO dao;
 
-    private String[] nonfillingCharactersInIndicator1 = new String[] {"130", "630", "730", "740"};
-    private String[] nonfillingCharactersInIndicator2 = new String[] {"240", "243", "245", "830"};
-
     private volatile boolean reindexingBiblioBase = false;
     private volatile boolean reindexingAuthoritiesBase = false;
     private volatile boolean reindexingVocabularyBase = false;
 
+    private final IndexLocks locks = new IndexLocks();
+
+    private final Map<RecordType, ReindexPipeline> pipelines = new ConcurrentHashMap<>();
+    private final Map<RecordType, ReindexStatisticsDTO> statistics = new ConcurrentHashMap<>();
+
     public static IndexingBO getInstance(String schema) {
         IndexingBO bo = AbstractBO.getInstance(IndexingBO.class, schema);
 
@@ -62,222 +65,257 @@ public class IndexingBO extends AbstractBO {
     }
 
     public void reindex(RecordType recordType, RecordDTO dto) {
-        synchronized (this) {
-            List<IndexingGroupDTO> indexingGroups =
-                    IndexingGroups.getGroups(this.getSchema(), recordType);
-            List<FormTabSubfieldDTO> autocompleteSubfields =
-                    Fields.getAutocompleteSubFields(this.getSchema(), recordType);
-
-            List<IndexingDTO> indexes = new ArrayList<>();
-            List<IndexingDTO> sortIndexes = new ArrayList<>();
-            List<AutocompleteDTO> autocompleteIndexes = new ArrayList<>();
-
-            this.populateIndexes(dto, indexingGroups, indexes, sortIndexes);
-            this.populateAutocompleteIndexes(dto, autocompleteSubfields, autocompleteIndexes);
-
-            this.deleteIndexes(recordType, dto);
-            this.dao.insertIndexes(recordType, indexes);
-            this.dao.insertSortIndexes(recordType, sortIndexes);
-            this.dao.insertAutocompleteIndexes(recordType, autocompleteIndexes);
-        }
+        IndexingBatch batch = new IndexingBatch();
+
+        new RecordAnalyzer(this.getSchema(), recordType).analyze(dto, batch);
+
+        this.replaceIndexes(recordType, batch);
     }
 
-    public void reindex(RecordType recordType) {
-        String schema = this.getSchema();
+    public void reindex(RecordType recordType, List<RecordDTO> records) {
+        IndexingBatch batch = new RecordAnalyzer(this.getSchema(), recordType).analyze(records);
 
-        if (this.getLockState(recordType)) {
-            return;
-        }
+        this.replaceIndexes(recordType, batch);
+    }
+
+    private void replaceIndexes(RecordType recordType, IndexingBatch batch) {
+        Set<Integer> recordIds = batch.getRecordIds();
+
+        this.locks.withRecords(
+                recordIds,
+                () -> {
+                    InvertedIndex index = InvertedIndexes.getIfLoaded(this.getSchema(), recordType);
+                    Set<String> oldWords =
+                            (index != null)
+                                    ? this.dao.listIndexedWords(recordType, recordIds)
+                                    : null;
+
+                    this.touch(recordType, recordIds);
+                    this.dao.replaceIndexes(recordType, batch, false);
+
+                    if (index != null) {
+                        index.update(recordIds, oldWords, batch.getIndexes());
+                    }
+
+                    AutocompleteIndexes.update(
+                            this.getSchema(),
+                            recordType,
+                            recordIds,
+                            batch.getAutocompleteIndexes());
+                });
+    }
+
+    public void reindex(RecordType recordType) {
+        ReindexStatisticsDTO statistics = new ReindexStatisticsDTO(recordType);
 
         synchronized (this) {
+            if (this.getLockState(recordType)) {
+                return;
+            }
+
             this.toggleLockState(recordType, true);
 
-            try {
-                this.clearIndexes(recordType);
+            // Progress requests read these, from now until the next reindex. Replacing the ones
+            // of the previous reindex before counting the records keeps a request made meanwhile
+            // from seeing it as complete.
+            this.statistics.put(recordType, statistics);
+        }
 
-                List<IndexingGroupDTO> indexingGroups =
-                        IndexingGroups.getGroups(schema, recordType);
-                List<FormTabSubfieldDTO> autocompleteSubfields =
-                        Fields.getAutocompleteSubFields(schema, recordType);
+        String schema = this.getSchema();
 
-                RecordBO rbo = RecordBO.getInstance(schema, recordType);
+        try {
+            boolean shadow = Configurations.getBoolean(schema, Constants.CONFIG_REINDEX_ONLINE);
 
-                int recordCount = rbo.count();
-                int limit = 30;
+            ReindexPipeline pipeline = new ReindexPipeline(this, recordType, shadow, statistics);
 
-                for (int offset = 0; offset < recordCount; offset += limit) {
-                    // if (this.logger.isDebugEnabled()) {
-                    // this.logger.debug("Reindexing offsets from " + offset + " to " + (offset +
-                    // limit));
-                    // }
+            Date watermark = this.dao.getNextWatermark();
 
-                    List<RecordDTO> records = rbo.list(offset, limit);
+            this.locks.withAll(
+                    () -> {
+                        this.pipelines.put(recordType, pipeline);
 
-                    List<IndexingDTO> indexes = new ArrayList<>();
-                    List<IndexingDTO> sortIndexes = new ArrayList<>();
-                    List<AutocompleteDTO> autocompleteIndexes = new ArrayList<>();
+                        if (shadow) {
+                            this.dao.createShadowTables(recordType);
+                        } else {
+                            this.clearIndexes(recordType);
+                            InvertedIndexes.reset(schema, recordType);
+                            AutocompleteIndexes.reset(schema, recordType);
+                        }
+                    });
 
-                    for (RecordDTO dto : records) {
-                        this.populateIndexes(dto, indexingGroups, indexes, sortIndexes);
-                        this.populateAutocompleteIndexes(
-                                dto, autocompleteSubfields, autocompleteIndexes);
-                    }
+            try {
+                pipeline.run();
+
+                if (shadow) {
+                    Map<String, String> shadowIndexes = this.dao.createShadowIndexes(recordType);
+
+                    this.locks.withAll(
+                            () -> {
+                                this.reindexTouchedRecords(recordType, pipeline);
+                                this.dao.swapShadowTables(recordType, shadowIndexes);
+                            });
+                } else {
+                    this.dao.reindexDatabase(recordType);
+                }
 
-                    this.dao.insertIndexes(recordType, indexes);
-                    this.dao.insertSortIndexes(recordType, sortIndexes);
-                    this.dao.insertAutocompleteIndexes(recordType, autocompleteIndexes);
+                this.dao.saveWatermark(recordType, watermark);
+            } catch (RuntimeException e) {
+                if (shadow) {
+                    this.dao.dropShadowTables(recordType);
                 }
 
-                this.dao.reindexDatabase(recordType);
-            } finally {
+                throw e;
+            }
+        } finally {
+            this.locks.withAll(
+                    () -> {
+                        this.pipelines.remove(recordType);
+
+                        // Reloaded from the new index tables on the next search
+                        InvertedIndexes.reset(schema, recordType);
+                        AutocompleteIndexes.reset(schema, recordType);
+                        SearchResultsCache.invalidate(schema, recordType);
+                    });
+
+            synchronized (this) {
                 this.toggleLockState(recordType, false);
             }
+
+            statistics.finish();
         }
     }
 
-    public void reindexAutocompleteFixedTable(
-            RecordType recordType, String datafield, String subfield, List<String> phrases) {
-        this.dao.reindexAutocompleteFixedTable(recordType, datafield, subfield, phrases);
-    }
+    /**
+     * Reindexes only the records modified since the last full or delta reindex of this record type
+     * and drops the index rows of records that no longer exist. Falls back to a full reindex when
+     * there is no watermark yet.
+     *
+     * @return the number of reindexed records
+     */
+    public int reindexDelta(RecordType recordType) {
+        Date since = this.dao.getWatermark(recordType);
 
-    private void populateIndexes(
-            RecordDTO dto,
-            List<IndexingGroupDTO> indexingGroups,
-            List<IndexingDTO> indexes,
-            List<IndexingDTO> sortIndexes) {
-        Record record = MarcUtils.iso2709ToRecord(dto.getIso2709());
-        MarcDataReader marcDataReader = new MarcDataReader(record);
-
-        //		System.out.println((Runtime.getRuntime().totalMemory() -
-        // Runtime.getRuntime().freeMemory()) + " free: " + Runtime.getRuntime().freeMemory());
-
-        IndexingDTO index;
-        IndexingDTO sortIndex;
-        String datafieldTag;
-        List<DataField> datafields;
-        List<Subfield> subfields;
-        String phrase;
-        boolean charsToIgnoreSet;
-
-        int datafieldId = 0;
-
-        index = new IndexingDTO();
-        index.setIndexingGroupId(0);
-        index.setRecordId(dto.getId());
-        index.addWord(String.valueOf(dto.getId()), datafieldId);
-
-        indexes.add(index);
-
-        // For each indexing group
-        for (IndexingGroupDTO ig : indexingGroups) {
-            index = new IndexingDTO();
-            index.setIndexingGroupId(ig.getId());
-            index.setRecordId(dto.getId());
-
-            if (ig.getId() != 0) {
-                sortIndex = new IndexingDTO();
-                sortIndex.setIndexingGroupId(ig.getId());
-                sortIndex.setRecordId(dto.getId());
-                charsToIgnoreSet = false;
-            } else {
-                sortIndex = null;
-                charsToIgnoreSet = true;
-            }
+        if (since == null) {
+            this.reindex(recordType);
 
-            // For each datafield in indexing group
-            for (Pair<String, List<Character>> pair : ig.getDatafieldsArray()) {
-                datafieldTag = pair.getLeft();
+            ReindexStatisticsDTO stats = this.statistics.get(recordType);
 
-                // Get all datafields from record
-                datafields = marcDataReader.getDataFields(datafieldTag);
+            return stats != null ? stats.getWritten() : 0;
+        }
 
-                // For each one of those datafields
-                for (DataField datafield : datafields) {
-                    datafieldId++;
+        synchronized (this) {
+            if (this.getLockState(recordType)) {
+                return 0;
+            }
 
-                    // For each subfield in indexing group
-                    for (Character subfieldTag : pair.getRight()) {
-                        // Get all the subfields from datafield
-                        subfields = datafield.getSubfields(subfieldTag);
+            this.toggleLockState(recordType, true);
+        }
 
-                        for (Subfield subfield : subfields) {
-                            phrase = TextUtils.preparePhrase(subfield.getData());
-                            index.addWords(TextUtils.prepareWords(phrase), datafieldId);
-                            // index.addWord(phrase);
+        int count = 0;
 
-                            if (sortIndex != null) {
-                                sortIndex.appendToPhrase(phrase);
-                            }
-                        }
-                    }
+        try {
+            Date watermark = this.dao.getNextWatermark();
 
-                    // Some datafields have nonfillings characters, based on indicator 1 or 2
-                    if (!charsToIgnoreSet && sortIndex.getPhraseLength() > 0) {
-                        char indicator = '0';
-                        if (ArrayUtils.contains(
-                                this.nonfillingCharactersInIndicator1, datafieldTag)) {
-                            indicator = datafield.getIndicator1();
-                        } else if (ArrayUtils.contains(
-                                this.nonfillingCharactersInIndicator2, datafieldTag)) {
-                            indicator = datafield.getIndicator2();
-                        }
+            RecordBO rbo = RecordBO.getInstance(this.getSchema(), recordType);
+            int pageSize =
+                    Configurations.getPositiveInt(
+                            this.getSchema(), Constants.CONFIG_REINDEX_PAGE_SIZE, 500);
+            int lastId = 0;
 
-                        if (indicator >= '1' && indicator <= '9') {
-                            sortIndex.setIgnoreCharsCount(
-                                    Integer.valueOf(Character.toString(indicator)));
-                        }
+            while (true) {
+                List<RecordDTO> page = rbo.listModifiedSince(since, lastId, pageSize);
 
-                        charsToIgnoreSet = true;
-                    }
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                this.reindex(recordType, page);
+
+                for (RecordDTO dto : page) {
+                    lastId = Math.max(lastId, dto.getId());
                 }
-            }
 
-            if (index.getCount() > 0) {
-                indexes.add(index);
+                count += page.size();
             }
 
-            if (sortIndex != null) {
-                sortIndexes.add(sortIndex);
+            int orphans =
+                    this.locks.withAll(
+                            () -> {
+                                int deleted = this.dao.deleteOrphanIndexes(recordType);
+
+                                if (deleted > 0) {
+                                    InvertedIndexes.reset(this.getSchema(), recordType);
+                                    AutocompleteIndexes.reset(this.getSchema(), recordType);
+                                }
+
+                                return deleted;
+                            });
+
+            this.dao.saveWatermark(recordType, watermark);
+
+            this.logger.info(
+                    "Delta reindex of {}: {} modified records since {}, {} orphan index rows"
+                            + " deleted",
+                    recordType,
+                    count,
+                    since,
+                    orphans);
+        } finally {
+            synchronized (this) {
+                this.toggleLockState(recordType, false);
+                SearchResultsCache.invalidate(this.getSchema(), recordType);
             }
         }
+
+        return count;
     }
 
-    private void populateAutocompleteIndexes(
-            RecordDTO dto,
-            List<FormTabSubfieldDTO> autocompleteSubfields,
-            List<AutocompleteDTO> autocompleteIndexes) {
-        Record record = MarcUtils.iso2709ToRecord(dto.getIso2709());
+    public IndexLocks getLocks() {
+        return this.locks;
+    }
 
-        MarcDataReader marcDataReader = new MarcDataReader(record);
-        AutocompleteDTO autocomplete;
-        List<DataField> datafields;
-        List<Subfield> subfields;
-        String phrase;
+    // Current or last full reindex of the record type since startup, null if there was none
+    public ReindexStatisticsDTO getReindexStatistics(RecordType recordType) {
+        return this.statistics.get(recordType);
+    }
 
-        for (FormTabSubfieldDTO autocompleteSubfield : autocompleteSubfields) {
-            datafields = marcDataReader.getDataFields(autocompleteSubfield.getDatafield());
+    int writeIndexes(RecordType recordType, ReindexPipeline pipeline, IndexingBatch batch) {
+        return this.locks.withRecords(
+                batch.getRecordIds(),
+                () -> {
+                    batch.discard(pipeline.getTouchedRecords());
 
-            for (DataField datafield : datafields) {
-                subfields = datafield.getSubfields(autocompleteSubfield.getSubfield().charAt(0));
+                    this.dao.replaceIndexes(recordType, batch, pipeline.isShadow());
 
-                for (Subfield subfield : subfields) {
-                    phrase = subfield.getData();
+                    return batch.getRecordIds().size();
+                });
+    }
 
-                    if (StringUtils.isBlank(phrase)) {
-                        continue;
-                    }
+    /*
+     * Records saved or deleted while the shadow tables were being built only had their live index
+     * rows updated, so they are indexed again into the shadow tables right before the swap.
+     */
+    private void reindexTouchedRecords(RecordType recordType, ReindexPipeline pipeline) {
+        Set<Integer> recordIds = new HashSet<>(pipeline.getTouchedRecords());
 
-                    autocomplete = new AutocompleteDTO();
+        if (recordIds.isEmpty()) {
+            return;
+        }
 
-                    autocomplete.setRecordId(dto.getId());
-                    autocomplete.setDatafield(autocompleteSubfield.getDatafield());
-                    autocomplete.setSubfield(autocompleteSubfield.getSubfield());
-                    autocomplete.setPhrase(phrase);
+        String schema = this.getSchema();
 
-                    autocompleteIndexes.add(autocomplete);
-                }
-            }
-        }
+        Map<Integer, RecordDTO> records = RecordBO.getInstance(schema, recordType).map(recordIds);
+
+        IndexingBatch batch = new RecordAnalyzer(schema, recordType).analyze(records.values());
+
+        this.dao.replaceIndexes(recordType, batch, true);
+    }
+
+    public void reindexAutocompleteFixedTable(
+            RecordType recordType, String datafield, String subfield, List<String> phrases) {
+        this.dao.reindexAutocompleteFixedTable(recordType, datafield, subfield, phrases);
+
+        AutocompleteIndexes.reset(this.getSchema(), recordType, datafield, subfield);
     }
 
     private void toggleLockState(RecordType recordType, boolean state) {
@@ -313,15 +351,25 @@ public class IndexingBO extends AbstractBO {
         return this.dao.countIndexed(recordType);
     }
 
-    public int[] getReindexProgress(RecordType recordType) {
-        int progress[] = new int[2];
+    /**
+     * Progress of the current or last full reindex of the record type, read from memory. When
+     * <code>written</code> is not negative, waits up to <code>timeout</code> milliseconds for more
+     * records than that to be written, so the caller receives each change as it happens.
+     */
+    public ReindexStatisticsDTO getReindexProgress(
+            RecordType recordType, int written, long timeout) {
 
-        RecordBO rbo = RecordBO.getInstance(this.getSchema(), recordType);
+        ReindexStatisticsDTO statistics = this.statistics.get(recordType);
 
-        progress[0] = this.countIndexed(recordType);
-        progress[1] = rbo.count();
+        if (statistics != null && written >= 0) {
+            try {
+                statistics.awaitChange(written, timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-        return progress;
+        return statistics;
     }
 
     public boolean isIndexOutdated() {
@@ -329,16 +377,19 @@ public class IndexingBO extends AbstractBO {
 
         boolean biblio =
                 !this.dao
-                        .countIndexed(RecordType.BIBLIO)
-                        .equals(BiblioRecordBO.getInstance(schema).count());
+                                .countIndexed(RecordType.BIBLIO)
+                                .equals(BiblioRecordBO.getInstance(schema).count())
+                        || this.dao.hasIndexesWithoutPositions(RecordType.BIBLIO);
         boolean authorities =
                 !this.dao
-                        .countIndexed(RecordType.AUTHORITIES)
-                        .equals(AuthorityRecordBO.getInstance(schema).count());
+                                .countIndexed(RecordType.AUTHORITIES)
+                                .equals(AuthorityRecordBO.getInstance(schema).count())
+                        || this.dao.hasIndexesWithoutPositions(RecordType.AUTHORITIES);
         boolean vocabulary =
                 !this.dao
-                        .countIndexed(RecordType.VOCABULARY)
-                        .equals(VocabularyRecordBO.getInstance(schema).count());
+                                .countIndexed(RecordType.VOCABULARY)
+                                .equals(VocabularyRecordBO.getInstance(schema).count())
+                        || this.dao.hasIndexesWithoutPositions(RecordType.VOCABULARY);
 
         return biblio || authorities || vocabulary;
     }
@@ -348,17 +399,45 @@ public class IndexingBO extends AbstractBO {
     }
 
     public boolean deleteIndexes(RecordType recordType, RecordDTO dto) {
-        return this.dao.deleteIndexes(recordType, dto);
+        return this.deleteIndexes(recordType, Collections.singleton(dto.getId()));
+    }
+
+    public boolean deleteIndexes(RecordType recordType, Set<Integer> recordIds) {
+        return this.locks.withRecords(
+                recordIds,
+                () -> {
+                    InvertedIndex index = InvertedIndexes.getIfLoaded(this.getSchema(), recordType);
+                    Set<String> oldWords =
+                            (index != null)
+                                    ? this.dao.listIndexedWords(recordType, recordIds)
+                                    : null;
+
+                    this.touch(recordType, recordIds);
+                    boolean deleted = this.dao.deleteIndexes(recordType, recordIds);
+
+                    if (index != null) {
+                        index.update(recordIds, oldWords, Collections.emptyList());
+                    }
+
+                    AutocompleteIndexes.update(
+                            this.getSchema(), recordType, recordIds, Collections.emptyList());
+
+                    return deleted;
+                });
     }
 
-    public List<String> searchExactTerm(RecordType recordType, int indexingGroupId, String term) {
-        List<String> terms = new ArrayList<>();
-        terms.add(term);
-        return this.dao.searchExactTerms(recordType, indexingGroupId, terms);
+    // Must be called holding the locks of the records, see writeIndexes
+    private void touch(RecordType recordType, Collection<Integer> recordIds) {
+        ReindexPipeline pipeline = this.pipelines.get(recordType);
+
+        if (pipeline != null) {
+            recordIds.forEach(pipeline::touch);
+        }
     }
 
-    public List<String> searchExactTerms(
-            RecordType recordType, int indexingGroupId, List<String> terms) {
-        return this.dao.searchExactTerms(recordType, indexingGroupId, terms);
+    // Identifiers among the given ones that indexed records already have
+    public Map<IdentifierType, Set<String>> findIdentifiers(
+            RecordType recordType, Map<IdentifierType, ? extends Collection<String>> identifiers) {
+        return this.dao.findIdentifiers(recordType, identifiers);
     }
 }
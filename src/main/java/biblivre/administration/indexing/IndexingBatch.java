@@ -0,0 +1,55 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.AutocompleteDTO;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class IndexingBatch {
+    private final Set<Integer> recordIds = new LinkedHashSet<>();
+    private final List<IndexingDTO> indexes = new ArrayList<>();
+    private final List<IndexingDTO> sortIndexes = new ArrayList<>();
+    private final List<AutocompleteDTO> autocompleteIndexes = new ArrayList<>();
+    private final List<IdentifierDTO> identifiers = new ArrayList<>();
+
+    public Set<Integer> getRecordIds() {
+        return this.recordIds;
+    }
+
+    public List<IndexingDTO> getIndexes() {
+        return this.indexes;
+    }
+
+    public List<IndexingDTO> getSortIndexes() {
+        return this.sortIndexes;
+    }
+
+    public List<AutocompleteDTO> getAutocompleteIndexes() {
+        return this.autocompleteIndexes;
+    }
+
+    public List<IdentifierDTO> getIdentifiers() {
+        return this.identifiers;
+    }
+
+    public boolean isEmpty() {
+        return this.recordIds.isEmpty();
+    }
+
+    public void discard(Collection<Integer> recordIds) {
+        if (recordIds.isEmpty()) {
+            return;
+        }
+
+        Predicate<Integer> discarded = recordIds::contains;
+
+        this.recordIds.removeIf(discarded);
+        this.indexes.removeIf(index -> discarded.test(index.getRecordId()));
+        this.sortIndexes.removeIf(index -> discarded.test(index.getRecordId()));
+        this.autocompleteIndexes.removeIf(index -> discarded.test(index.getRecordId()));
+        this.identifiers.removeIf(identifier -> discarded.test(identifier.getRecordId()));
+    }
+}
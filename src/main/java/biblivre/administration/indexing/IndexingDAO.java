@@ -21,21 +21,50 @@ package biblivre.administration.indexing;
 
 import biblivre.cataloging.AutocompleteDTO;
 import biblivre.cataloging.RecordDTO;
+import biblivre.cataloging.enums.IdentifierType;
 import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.AutocompleteIndex;
+import biblivre.cataloging.search.InvertedIndex;
 import biblivre.core.AbstractDAO;
+import biblivre.core.CopyWriter;
 import biblivre.core.exceptions.DAOException;
+import biblivre.core.utils.CalendarUtils;
 import biblivre.core.utils.TextUtils;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.postgresql.PGConnection;
 
 public class IndexingDAO extends AbstractDAO {
+    private static final String[] INDEX_TABLES =
+            new String[] {
+                "_idx_fields", "_idx_sort", "_idx_autocomplete", "_idx_fts", "_idx_identifiers"
+            };
+
+    private static final Pattern INDEX_DEFINITION =
+            Pattern.compile("^CREATE (UNIQUE )?INDEX .+? ON \\S+ (USING .+)$");
+
     public static IndexingDAO getInstance(String schema) {
         return (IndexingDAO) AbstractDAO.getInstance(IndexingDAO.class, schema);
     }
@@ -62,6 +91,27 @@ public class IndexingDAO extends AbstractDAO {
         return 0;
     }
 
+    // Rows indexed before word positions were stored, until the next full reindex
+    public boolean hasIndexesWithoutPositions(RecordType recordType) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            String sql =
+                    "SELECT EXISTS (SELECT 1 FROM "
+                            + recordType
+                            + "_idx_fields WHERE positions IS NULL) as outdated";
+
+            Statement st = con.createStatement();
+            ResultSet rs = st.executeQuery(sql);
+
+            return rs.next() && rs.getBoolean("outdated");
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
     public void clearIndexes(RecordType recordType) {
         Connection con = null;
         try {
@@ -71,11 +121,15 @@ public class IndexingDAO extends AbstractDAO {
             String sql2 = "TRUNCATE TABLE " + recordType + "_idx_sort";
             String sql3 =
                     "DELETE FROM " + recordType + "_idx_autocomplete WHERE record_id is not null";
+            String sql4 = "TRUNCATE TABLE " + recordType + "_idx_fts";
+            String sql5 = "TRUNCATE TABLE " + recordType + "_idx_identifiers";
 
             Statement st = con.createStatement();
             st.execute(sql);
             st.execute(sql2);
             st.execute(sql3);
+            st.execute(sql4);
+            st.execute(sql5);
         } catch (Exception e) {
             throw new DAOException(e);
         } finally {
@@ -100,7 +154,8 @@ public class IndexingDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append("INSERT INTO ").append(recordType).append("_idx_fields ");
-            sql.append("(record_id, indexing_group_id, word, datafield) VALUES (?, ?, ?, ?);");
+            sql.append("(record_id, indexing_group_id, word, datafield, positions) ");
+            sql.append("VALUES (?, ?, ?, ?, ?);");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
 
@@ -117,12 +172,38 @@ public class IndexingDAO extends AbstractDAO {
                         pst.setInt(2, groupId);
                         pst.setString(3, word);
                         pst.setInt(4, key);
+                        pst.setArray(
+                                5,
+                                con.createArrayOf(
+                                        "integer",
+                                        ArrayUtils.toObject(index.getPositions(key, word))));
                         pst.addBatch();
                     }
                 }
             }
 
             pst.executeBatch();
+
+            sql = new StringBuilder();
+            sql.append("INSERT INTO ").append(recordType).append("_idx_fts ");
+            sql.append("(record_id, indexing_group_id, document) VALUES (?, ?, ?::tsvector);");
+
+            pst = con.prepareStatement(sql.toString());
+
+            for (IndexingDTO index : indexes) {
+                String document = index.getDocument();
+
+                if (document.isEmpty()) {
+                    continue;
+                }
+
+                pst.setInt(1, index.getRecordId());
+                pst.setInt(2, index.getIndexingGroupId());
+                pst.setString(3, document);
+                pst.addBatch();
+            }
+
+            pst.executeBatch();
         } catch (Exception e) {
             throw new DAOException(e);
         } finally {
@@ -142,8 +223,8 @@ public class IndexingDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append("INSERT INTO ").append(recordType).append("_idx_sort ");
-            sql.append(
-                    "(record_id, indexing_group_id, phrase, ignore_chars_count) VALUES (?, ?, ?, ?);");
+            sql.append("(record_id, indexing_group_id, phrase, ignore_chars_count, sort_key, ");
+            sql.append("sort_letter) VALUES (?, ?, ?, ?, ?, ?);");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
 
@@ -152,6 +233,8 @@ public class IndexingDAO extends AbstractDAO {
                 pst.setInt(2, sortIndex.getIndexingGroupId());
                 pst.setString(3, sortIndex.getPhrase());
                 pst.setInt(4, sortIndex.getIgnoreCharsCount());
+                pst.setString(5, sortIndex.getSortKey());
+                pst.setString(6, sortIndex.getSortLetter());
                 pst.addBatch();
             }
 
@@ -212,6 +295,157 @@ public class IndexingDAO extends AbstractDAO {
         }
     }
 
+    public void copyIndexes(RecordType recordType, IndexingBatch batch) {
+        this.copyIndexes(recordType, batch, false);
+    }
+
+    public void copyIndexes(RecordType recordType, IndexingBatch batch, boolean shadow) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            this.copyIndexes(con, recordType, batch, shadow);
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /*
+     * Replaces the index rows of every record in the batch in a single transaction, so searches
+     * never see a record with only part of its index rows.
+     */
+    public void replaceIndexes(RecordType recordType, IndexingBatch batch, boolean shadow) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            this.deleteIndexes(con, recordType, batch.getRecordIds(), shadow);
+            this.copyIndexes(con, recordType, batch, shadow);
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    private void copyIndexes(
+            Connection con, RecordType recordType, IndexingBatch batch, boolean shadow)
+            throws SQLException {
+
+        PGConnection pgcon = this.getPGConnection(con);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("COPY ").append(this.getTable(recordType, "_idx_fields", shadow));
+        sql.append(" (record_id, indexing_group_id, word, datafield, positions) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (IndexingDTO index : batch.getIndexes()) {
+                for (Map.Entry<Integer, Set<String>> entry : index.getWords().entrySet()) {
+                    for (String word : entry.getValue()) {
+                        writer.column(index.getRecordId());
+                        writer.column(index.getIndexingGroupId());
+                        writer.column(word);
+                        writer.column(entry.getKey());
+                        writer.column(index.getPositions(entry.getKey(), word));
+                        writer.endRow();
+                    }
+                }
+            }
+
+            writer.finish();
+        }
+
+        sql = new StringBuilder();
+        sql.append("COPY ").append(this.getTable(recordType, "_idx_fts", shadow));
+        sql.append(" (record_id, indexing_group_id, document) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (IndexingDTO index : batch.getIndexes()) {
+                String document = index.getDocument();
+
+                if (document.isEmpty()) {
+                    continue;
+                }
+
+                writer.column(index.getRecordId());
+                writer.column(index.getIndexingGroupId());
+                writer.column(document);
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+
+        sql = new StringBuilder();
+        sql.append("COPY ").append(this.getTable(recordType, "_idx_sort", shadow));
+        sql.append(" (record_id, indexing_group_id, phrase, ignore_chars_count, sort_key, ");
+        sql.append("sort_letter) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (IndexingDTO sortIndex : batch.getSortIndexes()) {
+                writer.column(sortIndex.getRecordId());
+                writer.column(sortIndex.getIndexingGroupId());
+                writer.column(sortIndex.getPhrase());
+                writer.column(sortIndex.getIgnoreCharsCount());
+                writer.column(sortIndex.getSortKey());
+                writer.column(sortIndex.getSortLetter());
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+
+        sql = new StringBuilder();
+        sql.append("COPY ").append(this.getTable(recordType, "_idx_autocomplete", shadow));
+        sql.append(" (datafield, subfield, word, phrase, record_id) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (AutocompleteDTO index : batch.getAutocompleteIndexes()) {
+                final String phrase = index.getPhrase();
+
+                for (String word : TextUtils.prepareAutocomplete(phrase)) {
+                    if (StringUtils.isBlank(word) || word.length() < 2) {
+                        continue;
+                    }
+
+                    writer.column(index.getDatafield());
+                    writer.column(index.getSubfield());
+                    writer.column(word);
+                    writer.column(phrase);
+                    writer.column(index.getRecordId());
+                    writer.endRow();
+                }
+            }
+
+            writer.finish();
+        }
+
+        sql = new StringBuilder();
+        sql.append("COPY ").append(this.getTable(recordType, "_idx_identifiers", shadow));
+        sql.append(" (record_id, identifier_type, identifier) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (IdentifierDTO identifier : batch.getIdentifiers()) {
+                writer.column(identifier.getRecordId());
+                writer.column(identifier.getType().toString());
+                writer.column(identifier.getIdentifier());
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+    }
+
     public void reindexAutocompleteFixedTable(
             RecordType recordType, String datafield, String subfield, List<String> phrases) {
         boolean batched = false;
@@ -297,6 +531,22 @@ public class IndexingDAO extends AbstractDAO {
             pst.setInt(1, dto.getId());
             pst.executeUpdate();
 
+            sql = new StringBuilder();
+            sql.append("DELETE FROM ").append(recordType).append("_idx_fts ");
+            sql.append("WHERE record_id = ?;");
+
+            pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, dto.getId());
+            pst.executeUpdate();
+
+            sql = new StringBuilder();
+            sql.append("DELETE FROM ").append(recordType).append("_idx_identifiers ");
+            sql.append("WHERE record_id = ?;");
+
+            pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, dto.getId());
+            pst.executeUpdate();
+
             this.commit(con);
             return true;
         } catch (Exception e) {
@@ -307,6 +557,644 @@ public class IndexingDAO extends AbstractDAO {
         }
     }
 
+    public boolean deleteIndexes(RecordType recordType, Collection<Integer> recordIds) {
+        return this.deleteIndexes(recordType, recordIds, false);
+    }
+
+    public boolean deleteIndexes(
+            RecordType recordType, Collection<Integer> recordIds, boolean shadow) {
+        if (recordIds.isEmpty()) {
+            return true;
+        }
+
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            this.deleteIndexes(con, recordType, recordIds, shadow);
+
+            this.commit(con);
+            return true;
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    private void deleteIndexes(
+            Connection con, RecordType recordType, Collection<Integer> recordIds, boolean shadow)
+            throws SQLException {
+
+        if (recordIds.isEmpty()) {
+            return;
+        }
+
+        Array ids = con.createArrayOf("integer", recordIds.toArray());
+
+        for (String table : IndexingDAO.INDEX_TABLES) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("DELETE FROM ").append(this.getTable(recordType, table, shadow));
+            sql.append(" WHERE record_id = ANY(?);");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setArray(1, ids);
+            pst.executeUpdate();
+        }
+    }
+
+    public Set<String> listIndexedWords(RecordType recordType, Collection<Integer> recordIds) {
+        Set<String> words = new HashSet<>();
+
+        if (recordIds.isEmpty()) {
+            return words;
+        }
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT DISTINCT word FROM ").append(recordType).append("_idx_fields ");
+            sql.append("WHERE record_id = ANY(?);");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            this.setIdArray(pst, 1, recordIds);
+
+            ResultSet rs = pst.executeQuery();
+
+            while (rs.next()) {
+                words.add(rs.getString("word"));
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return words;
+    }
+
+    public InvertedIndex loadInvertedIndex(RecordType recordType) {
+        InvertedIndex.Builder builder = new InvertedIndex.Builder();
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            // A cursor is only used inside a transaction
+            con.setAutoCommit(false);
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT word, indexing_group_id, record_id, datafield FROM ");
+            sql.append(recordType).append("_idx_fields;");
+
+            Statement st = con.createStatement();
+            st.setFetchSize(10000);
+
+            ResultSet rs = st.executeQuery(sql.toString());
+
+            while (rs.next()) {
+                builder.add(
+                        rs.getString("word"),
+                        rs.getInt("indexing_group_id"),
+                        rs.getInt("record_id"),
+                        rs.getInt("datafield"));
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return builder.build();
+    }
+
+    /** Returns null as soon as the field is found to have more than maxEntries phrases. */
+    public AutocompleteIndex loadAutocompleteIndex(
+            RecordType recordType, String datafield, String subfield, int maxEntries) {
+
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            // A cursor is only used inside a transaction
+            con.setAutoCommit(false);
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT record_id, phrase, word FROM ");
+            sql.append(recordType).append("_idx_autocomplete ");
+            sql.append("WHERE datafield = ? and subfield = ?;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setString(1, datafield);
+            pst.setString(2, subfield);
+            pst.setFetchSize(10000);
+
+            ResultSet rs = pst.executeQuery();
+
+            while (rs.next()) {
+                Integer recordId = rs.getInt("record_id");
+
+                if (rs.wasNull()) {
+                    recordId = null;
+                }
+
+                builder.add(recordId, rs.getString("phrase"), rs.getString("word"));
+
+                if (builder.getEntryCount() > maxEntries) {
+                    this.rollback(con);
+                    return null;
+                }
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return builder.build();
+    }
+
+    public void createShadowTables(RecordType recordType) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            Statement st = con.createStatement();
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                String live = this.getTable(recordType, table, false);
+                String shadow = this.getTable(recordType, table, true);
+
+                st.execute("DROP TABLE IF EXISTS " + shadow + ";");
+
+                // Indexes are only created after the rows are loaded, see createShadowIndexes
+                st.execute(
+                        "CREATE TABLE "
+                                + shadow
+                                + " (LIKE "
+                                + live
+                                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS);");
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /**
+     * Recreates every index of the live tables on their shadow copies, under temporary names.
+     *
+     * @return the temporary index names, mapped to the names they must get after the swap
+     */
+    public Map<String, String> createShadowIndexes(RecordType recordType) {
+        Map<String, String> names = new LinkedHashMap<>();
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT C.relname, I.indisprimary, pg_get_indexdef(I.indexrelid) as def ");
+            sql.append("FROM pg_index I INNER JOIN pg_class C ON C.oid = I.indexrelid ");
+            sql.append("WHERE I.indrelid = ?::regclass ORDER BY C.relname;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            Statement st = con.createStatement();
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                String live = this.getTable(recordType, table, false);
+                String shadow = this.getTable(recordType, table, true);
+
+                pst.setString(1, live);
+                ResultSet rs = pst.executeQuery();
+
+                while (rs.next()) {
+                    Matcher matcher = IndexingDAO.INDEX_DEFINITION.matcher(rs.getString("def"));
+
+                    if (!matcher.matches()) {
+                        throw new SQLException(
+                                "Unexpected index definition: " + rs.getString("def"));
+                    }
+
+                    String name = shadow + "_" + names.size();
+
+                    st.execute(
+                            "CREATE "
+                                    + StringUtils.defaultString(matcher.group(1))
+                                    + "INDEX \""
+                                    + name
+                                    + "\" ON "
+                                    + shadow
+                                    + " "
+                                    + matcher.group(2)
+                                    + ";");
+
+                    if (rs.getBoolean("indisprimary")) {
+                        st.execute(
+                                "ALTER TABLE "
+                                        + shadow
+                                        + " ADD PRIMARY KEY USING INDEX \""
+                                        + name
+                                        + "\";");
+                    }
+
+                    names.put(name, rs.getString("relname"));
+                }
+
+                st.execute("ANALYZE " + shadow + ";");
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return names;
+    }
+
+    /*
+     * Replaces the live index tables with their shadow copies in a single short transaction.
+     * Searches running meanwhile simply wait for the renames to commit.
+     */
+    public void swapShadowTables(RecordType recordType, Map<String, String> shadowIndexes) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            Statement st = con.createStatement();
+
+            String liveAutocomplete = this.getTable(recordType, "_idx_autocomplete", false);
+            String shadowAutocomplete = this.getTable(recordType, "_idx_autocomplete", true);
+
+            // Rows from fixed autocomplete tables are not tied to a record, so they are kept
+            st.execute(
+                    "INSERT INTO "
+                            + shadowAutocomplete
+                            + " SELECT * FROM "
+                            + liveAutocomplete
+                            + " WHERE record_id is null;");
+
+            ResultSet rs =
+                    st.executeQuery(
+                            "SELECT pg_get_serial_sequence('" + liveAutocomplete + "', 'id');");
+            String sequence = rs.next() ? rs.getString(1) : null;
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                String live = this.getTable(recordType, table, false);
+                String shadow = this.getTable(recordType, table, true);
+
+                st.execute("ALTER TABLE " + live + " RENAME TO " + live + "_old;");
+                st.execute("ALTER TABLE " + shadow + " RENAME TO " + live + ";");
+            }
+
+            if (sequence != null) {
+                st.execute("ALTER SEQUENCE " + sequence + " OWNED BY " + liveAutocomplete + ".id;");
+            }
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                st.execute("DROP TABLE " + this.getTable(recordType, table, false) + "_old;");
+            }
+
+            for (Map.Entry<String, String> entry : shadowIndexes.entrySet()) {
+                st.execute(
+                        "ALTER INDEX \""
+                                + entry.getKey()
+                                + "\" RENAME TO \""
+                                + entry.getValue()
+                                + "\";");
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    public void dropShadowTables(RecordType recordType) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            Statement st = con.createStatement();
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                st.execute("DROP TABLE IF EXISTS " + this.getTable(recordType, table, true) + ";");
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /*
+     * Deletes index rows left behind by records that no longer exist. The delete trigger on the
+     * records tables does not cover autocomplete rows, and an interrupted indexing may leave any
+     * of them behind.
+     */
+    public int deleteOrphanIndexes(RecordType recordType) {
+        int deleted = 0;
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            Statement st = con.createStatement();
+
+            for (String table : IndexingDAO.INDEX_TABLES) {
+                StringBuilder sql = new StringBuilder();
+                sql.append("DELETE FROM ").append(recordType).append(table).append(" I ");
+                sql.append("WHERE I.record_id is not null AND NOT EXISTS (SELECT 1 FROM ");
+                sql.append(recordType).append("_records R WHERE R.id = I.record_id);");
+
+                deleted += st.executeUpdate(sql.toString());
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return deleted;
+    }
+
+    public Date getWatermark(RecordType recordType) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            String sql = "SELECT watermark FROM indexing_watermarks WHERE record_type = ?;";
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            pst.setString(1, recordType.toString());
+
+            ResultSet rs = pst.executeQuery();
+
+            if (rs.next()) {
+                return rs.getTimestamp("watermark");
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return null;
+    }
+
+    /*
+     * Records are stamped with the start time of the transaction that saved them, so a transaction
+     * still running may commit records older than now(). The start of the oldest open transaction
+     * is a safe point to resume from.
+     */
+    public Date getNextWatermark() {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT least(now(), min(xact_start))::timestamp without time zone ");
+            sql.append("FROM pg_stat_activity WHERE datname = current_database();");
+
+            Statement st = con.createStatement();
+            ResultSet rs = st.executeQuery(sql.toString());
+
+            if (rs.next()) {
+                return rs.getTimestamp(1);
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return null;
+    }
+
+    public void saveWatermark(RecordType recordType, Date watermark) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            String update =
+                    "UPDATE indexing_watermarks SET watermark = ?, modified = now() "
+                            + "WHERE record_type = ?;";
+
+            PreparedStatement pst = con.prepareStatement(update);
+            pst.setTimestamp(1, CalendarUtils.toSqlTimestamp(watermark));
+            pst.setString(2, recordType.toString());
+
+            if (pst.executeUpdate() == 0) {
+                String insert =
+                        "INSERT INTO indexing_watermarks (record_type, watermark) VALUES (?, ?);";
+
+                PreparedStatement pstInsert = con.prepareStatement(insert);
+                pstInsert.setString(1, recordType.toString());
+                pstInsert.setTimestamp(2, CalendarUtils.toSqlTimestamp(watermark));
+                pstInsert.executeUpdate();
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /*
+     * Claims up to limit rows of the indexing queue partition of a worker (by record id, so each
+     * record is always indexed by the same worker) and hands their record ids to the indexer, which
+     * returns the ones it couldn't index. The other rows are deleted in the same transaction, after
+     * the indexer returns, so records are still queued if the server stops halfway. Failed rows
+     * count an attempt and, after maxAttempts, are moved to indexing_queue_failed, so a record that
+     * can't be indexed doesn't keep the rest of the partition from being drained.
+     *
+     * @return the number of claimed rows
+     */
+    public int processQueue(
+            int worker,
+            int workers,
+            int limit,
+            int maxAttempts,
+            Function<Map<RecordType, Set<Integer>>, Map<RecordType, Set<Integer>>> indexer) {
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT id, record_type, record_id FROM indexing_queue ");
+            sql.append("WHERE mod(record_id, ?) = ? ORDER BY id LIMIT ? ");
+            sql.append("FOR UPDATE SKIP LOCKED;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, workers);
+            pst.setInt(2, worker);
+            pst.setInt(3, limit);
+
+            ResultSet rs = pst.executeQuery();
+
+            Map<Pair<RecordType, Integer>, List<Integer>> rows = new HashMap<>();
+            Map<RecordType, Set<Integer>> records = new EnumMap<>(RecordType.class);
+
+            while (rs.next()) {
+                RecordType recordType = RecordType.fromString(rs.getString("record_type"));
+                int recordId = rs.getInt("record_id");
+
+                rows.computeIfAbsent(Pair.of(recordType, recordId), k -> new ArrayList<>())
+                        .add(rs.getInt("id"));
+                records.computeIfAbsent(recordType, k -> new LinkedHashSet<>()).add(recordId);
+            }
+
+            if (rows.isEmpty()) {
+                this.commit(con);
+                return 0;
+            }
+
+            Map<RecordType, Set<Integer>> failed = indexer.apply(records);
+
+            List<Integer> indexedIds = new ArrayList<>();
+            List<Integer> failedIds = new ArrayList<>();
+
+            for (Map.Entry<Pair<RecordType, Integer>, List<Integer>> entry : rows.entrySet()) {
+                RecordType recordType = entry.getKey().getLeft();
+                int recordId = entry.getKey().getRight();
+
+                if (failed.getOrDefault(recordType, Collections.emptySet()).contains(recordId)) {
+                    failedIds.addAll(entry.getValue());
+                } else {
+                    indexedIds.addAll(entry.getValue());
+                }
+            }
+
+            if (!indexedIds.isEmpty()) {
+                pst = con.prepareStatement("DELETE FROM indexing_queue WHERE id = ANY(?);");
+                this.setIdArray(pst, 1, indexedIds);
+                pst.executeUpdate();
+            }
+
+            if (!failedIds.isEmpty()) {
+                this.failQueueRows(con, failedIds, maxAttempts);
+            }
+
+            this.commit(con);
+
+            return indexedIds.size() + failedIds.size();
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    private void failQueueRows(Connection con, List<Integer> ids, int maxAttempts)
+            throws SQLException {
+
+        String update = "UPDATE indexing_queue SET attempts = attempts + 1 WHERE id = ANY(?);";
+
+        PreparedStatement pst = con.prepareStatement(update);
+        this.setIdArray(pst, 1, ids);
+        pst.executeUpdate();
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("WITH moved AS (DELETE FROM indexing_queue ");
+        sql.append("WHERE id = ANY(?) AND attempts >= ? ");
+        sql.append("RETURNING record_type, record_id, attempts, created) ");
+        sql.append("INSERT INTO indexing_queue_failed ");
+        sql.append("(record_type, record_id, attempts, created) ");
+        sql.append("SELECT record_type, record_id, attempts, created FROM moved ");
+        sql.append("RETURNING record_type, record_id;");
+
+        pst = con.prepareStatement(sql.toString());
+        this.setIdArray(pst, 1, ids);
+        pst.setInt(2, maxAttempts);
+
+        ResultSet rs = pst.executeQuery();
+
+        while (rs.next()) {
+            this.logger.error(
+                    "Giving up indexing {} record {} after {} attempts, a full reindex or saving"
+                            + " it again will index it",
+                    rs.getString("record_type"),
+                    rs.getInt("record_id"),
+                    maxAttempts);
+        }
+    }
+
+    public boolean isQueued(RecordType recordType, int recordId) {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            String sql =
+                    "SELECT 1 FROM indexing_queue WHERE record_type = ? AND record_id = ? LIMIT 1;";
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            pst.setString(1, recordType.toString());
+            pst.setInt(2, recordId);
+
+            return pst.executeQuery().next();
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    // Number of queued rows, age in seconds of the oldest one and number of records given up on
+    public long[] getQueueStatus() {
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT count(*), ");
+            sql.append("coalesce(extract(epoch FROM now() - min(created)), 0)::bigint, ");
+            sql.append("(SELECT count(*) FROM indexing_queue_failed) ");
+            sql.append("FROM indexing_queue;");
+
+            ResultSet rs = con.createStatement().executeQuery(sql.toString());
+            rs.next();
+
+            return new long[] {rs.getLong(1), rs.getLong(2), rs.getLong(3)};
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
     public void reindexDatabase(RecordType recordType) {
         Connection con = null;
         try {
@@ -316,8 +1204,12 @@ public class IndexingDAO extends AbstractDAO {
 
             st.execute("REINDEX TABLE " + recordType + "_idx_fields");
             st.execute("REINDEX TABLE " + recordType + "_idx_sort");
+            st.execute("REINDEX TABLE " + recordType + "_idx_fts");
+            st.execute("REINDEX TABLE " + recordType + "_idx_identifiers");
             st.execute("ANALYZE " + recordType + "_idx_fields");
             st.execute("ANALYZE " + recordType + "_idx_sort");
+            st.execute("ANALYZE " + recordType + "_idx_fts");
+            st.execute("ANALYZE " + recordType + "_idx_identifiers");
         } catch (Exception e) {
             throw new DAOException(e);
         } finally {
@@ -325,34 +1217,43 @@ public class IndexingDAO extends AbstractDAO {
         }
     }
 
-    public List<String> searchExactTerms(
-            RecordType recordType, int indexingGroupId, List<String> terms) {
-        List<String> list = new ArrayList<>();
+    /*
+     * Identifiers among the given ones that indexed records already have. Identifiers of every
+     * type are looked up in a single query, through the hash index on the identifier column.
+     */
+    public Map<IdentifierType, Set<String>> findIdentifiers(
+            RecordType recordType, Map<IdentifierType, ? extends Collection<String>> identifiers) {
+
+        Map<IdentifierType, Set<String>> found = new EnumMap<>(IdentifierType.class);
+        Set<String> values = new HashSet<>();
+
+        identifiers.values().forEach(values::addAll);
+
+        if (values.isEmpty()) {
+            return found;
+        }
 
         Connection con = null;
         try {
             con = this.getConnection();
-            StringBuilder sql = new StringBuilder();
 
-            sql.append("SELECT phrase FROM ")
-                    .append(recordType)
-                    .append("_idx_sort WHERE indexing_group_id = ? AND phrase in (");
-            sql.append(StringUtils.repeat("?", ", ", terms.size()));
-            sql.append(");");
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT DISTINCT identifier_type, identifier FROM ");
+            sql.append(recordType).append("_idx_identifiers WHERE identifier = ANY(?);");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
-
-            int index = 1;
-            pst.setInt(index++, indexingGroupId);
-
-            for (String term : terms) {
-                pst.setString(index++, term.toLowerCase());
-            }
+            pst.setArray(1, con.createArrayOf("varchar", values.toArray()));
 
             ResultSet rs = pst.executeQuery();
 
             while (rs.next()) {
-                list.add(rs.getString("phrase"));
+                IdentifierType type = IdentifierType.fromString(rs.getString("identifier_type"));
+                String identifier = rs.getString("identifier");
+                Collection<String> wanted = identifiers.get(type);
+
+                if (wanted != null && wanted.contains(identifier)) {
+                    found.computeIfAbsent(type, k -> new HashSet<>()).add(identifier);
+                }
             }
         } catch (Exception e) {
             throw new DAOException(e);
@@ -360,6 +1261,10 @@ public class IndexingDAO extends AbstractDAO {
             this.closeConnection(con);
         }
 
-        return list;
+        return found;
+    }
+
+    private String getTable(RecordType recordType, String table, boolean shadow) {
+        return recordType + table + (shadow ? "_shadow" : "");
     }
 }
@@ -20,20 +20,31 @@
 package biblivre.administration.indexing;
 
 import biblivre.core.AbstractDTO;
-import java.util.Collections;
+import biblivre.core.utils.TextUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public class IndexingDTO extends AbstractDTO {
     private static final long serialVersionUID = 1L;
 
+    // Limits of the tsvector type
+    private static final int MAX_LEXEME_BYTES = 2046;
+    private static final int MAX_POSITION = 16383;
+
+    public static final int SORT_KEY_LENGTH = 256;
+
     private Integer recordId;
     private Integer indexingGroupId;
     private StringBuilder phrase;
-    private Map<Integer, Set<String>> words;
+    // Positions (starting at 1) of each word in its datafield, by datafield
+    private Map<Integer, Map<String, List<Integer>>> words;
     private int ignoreCharsCount;
 
     public IndexingDTO() {
@@ -76,6 +87,51 @@ public class IndexingDTO extends AbstractDTO {
         return phrase.trim();
     }
 
+    public String getSortKey() {
+        return IndexingDTO.toSortKey(this.getPhrase(), this.ignoreCharsCount);
+    }
+
+    public String getSortLetter() {
+        String sortKey = this.getSortKey();
+
+        if (StringUtils.isEmpty(sortKey)) {
+            return null;
+        }
+
+        return IndexingDTO.toSortLetter(sortKey.charAt(0));
+    }
+
+    /*
+     * Same as left(trim(substr(phrase, ignore_chars_count + 1)), 256) in PostgreSQL. Keys are
+     * truncated so they always fit in a B-tree index entry.
+     */
+    public static String toSortKey(String phrase, int ignoreCharsCount) {
+        if (phrase == null) {
+            return null;
+        }
+
+        int length = phrase.codePointCount(0, phrase.length());
+        int start = phrase.offsetByCodePoints(0, Math.min(Math.max(ignoreCharsCount, 0), length));
+        String sortKey = StringUtils.strip(phrase.substring(start), " ");
+
+        if (sortKey.codePointCount(0, sortKey.length()) > IndexingDTO.SORT_KEY_LENGTH) {
+            sortKey =
+                    sortKey.substring(
+                            0, sortKey.offsetByCodePoints(0, IndexingDTO.SORT_KEY_LENGTH));
+        }
+
+        return sortKey;
+    }
+
+    // Letter a record is listed under when browsing by letter, # for anything but a-z
+    public static String toSortLetter(char c) {
+        if (CharUtils.isAsciiAlpha(c)) {
+            return String.valueOf(Character.toLowerCase(c));
+        }
+
+        return "#";
+    }
+
     public int getPhraseLength() {
         return this.phrase.length();
     }
@@ -90,27 +146,71 @@ public class IndexingDTO extends AbstractDTO {
 
     public void addWord(String word, Integer datafieldId) {
         if (StringUtils.isNotBlank(word)) {
-            if (!this.words.containsKey(datafieldId)) {
-                this.words.put(datafieldId, new HashSet<>());
-            }
-
-            this.words.get(datafieldId).add(word);
+            this.addWords(new String[] {word}, datafieldId);
         }
     }
 
+    // Words are positioned after the ones already added to the same datafield
     public void addWords(String[] words, Integer datafieldId) {
-        if (!this.words.containsKey(datafieldId)) {
-            this.words.put(datafieldId, new HashSet<>());
+        Map<String, List<Integer>> datafield =
+                this.words.computeIfAbsent(datafieldId, k -> new LinkedHashMap<>());
+
+        int position = 0;
+
+        for (List<Integer> positions : datafield.values()) {
+            position += positions.size();
         }
 
-        Collections.addAll(this.words.get(datafieldId), words);
+        for (String word : words) {
+            datafield.computeIfAbsent(word, k -> new ArrayList<>(1)).add(++position);
+        }
     }
 
     public Map<Integer, Set<String>> getWords() {
-        return this.words;
+        Map<Integer, Set<String>> words = new HashMap<>();
+
+        for (Map.Entry<Integer, Map<String, List<Integer>>> entry : this.words.entrySet()) {
+            words.put(entry.getKey(), entry.getValue().keySet());
+        }
+
+        return words;
+    }
+
+    public int[] getPositions(Integer datafieldId, String word) {
+        Map<String, List<Integer>> datafield = this.words.get(datafieldId);
+        List<Integer> positions = (datafield != null) ? datafield.get(word) : null;
+
+        if (positions == null) {
+            return new int[0];
+        }
+
+        return positions.stream().mapToInt(Integer::intValue).toArray();
     }
 
     public int getCount() {
         return this.words.size();
     }
+
+    /*
+     * The words as tsvector input, each one positioned at its datafield (positions start at 1), so
+     * words from the same datafield can be matched with the <0> tsquery operator.
+     */
+    public String getDocument() {
+        StringBuilder document = new StringBuilder();
+
+        for (Map.Entry<Integer, Map<String, List<Integer>>> entry : this.words.entrySet()) {
+            int position = Math.min(entry.getKey() + 1, IndexingDTO.MAX_POSITION);
+
+            for (String word : entry.getValue().keySet()) {
+                if (word.getBytes(StandardCharsets.UTF_8).length > IndexingDTO.MAX_LEXEME_BYTES) {
+                    continue;
+                }
+
+                document.append(TextUtils.prepareLexeme(word)).append(':').append(position);
+                document.append(' ');
+            }
+        }
+
+        return document.toString().trim();
+    }
 }
@@ -0,0 +1,289 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.RecordBO;
+import biblivre.cataloging.RecordDTO;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.SearchResultsCache;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.schemas.Schemas;
+import biblivre.core.utils.Constants;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background indexing of saved records, enabled by the <code>cataloging.indexing_queue.enabled
+ * </code> configuration. Record writes add a row to <code>indexing_queue</code> in their own
+ * transaction, and a pool of workers per schema drains it in batches, so records are indexed even
+ * if the server stops before doing it.
+ */
+public class IndexingQueue {
+    private static final Logger logger = LoggerFactory.getLogger(IndexingQueue.class);
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long IDLE_WAIT = 1000;
+
+    private static final Map<String, IndexingQueue> queues = new ConcurrentHashMap<>();
+
+    private final String schema;
+    private final int workers;
+    private final ExecutorService executor;
+
+    private final Object signal = new Object();
+    private volatile boolean running = true;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private IndexingQueue(String schema) {
+        this.schema = schema;
+        this.workers =
+                Configurations.getPositiveInt(schema, Constants.CONFIG_INDEXING_QUEUE_WORKERS, 2);
+
+        AtomicInteger count = new AtomicInteger();
+
+        this.executor =
+                Executors.newFixedThreadPool(
+                        this.workers,
+                        runnable -> {
+                            Thread thread = new Thread(runnable);
+
+                            thread.setName(
+                                    "indexing-queue-" + schema + "-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+
+                            return thread;
+                        });
+
+        for (int i = 0; i < this.workers; i++) {
+            int worker = i;
+
+            this.executor.execute(() -> this.work(worker));
+        }
+    }
+
+    public static boolean isEnabled(String schema) {
+        return Configurations.getBoolean(schema, Constants.CONFIG_INDEXING_QUEUE);
+    }
+
+    // Starts the workers of the schema on first use
+    public static IndexingQueue getInstance(String schema) {
+        return IndexingQueue.queues.computeIfAbsent(schema, IndexingQueue::new);
+    }
+
+    // Drains what was left queued by a previous run
+    public static void start() {
+        for (String schema : Schemas.getEnabledSchemasList()) {
+            try {
+                if (IndexingQueue.isEnabled(schema)) {
+                    IndexingQueue.getInstance(schema);
+                }
+            } catch (Exception e) {
+                IndexingQueue.logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void shutdown() {
+        for (IndexingQueue queue : IndexingQueue.queues.values()) {
+            queue.running = false;
+            queue.executor.shutdownNow();
+        }
+
+        IndexingQueue.queues.clear();
+    }
+
+    public static IndexingQueueStatusDTO getStatus(String schema) {
+        long[] status = IndexingDAO.getInstance(schema).getQueueStatus();
+        IndexingQueue queue = IndexingQueue.queues.get(schema);
+
+        if (queue == null) {
+            return new IndexingQueueStatusDTO(status[0], status[1], status[2], 0, 0, 0);
+        }
+
+        return new IndexingQueueStatusDTO(
+                status[0],
+                status[1],
+                status[2],
+                queue.processed.get(),
+                queue.failed.get(),
+                queue.workers);
+    }
+
+    public void wakeUp() {
+        synchronized (this.signal) {
+            this.signal.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for a queued record to be indexed, up to cataloging.indexing_queue.wait milliseconds,
+     * so the cataloging screen finds the record it has just saved.
+     *
+     * @return whether the record is indexed
+     */
+    public boolean await(RecordType recordType, int recordId) {
+        IndexingDAO dao = IndexingDAO.getInstance(this.schema);
+
+        long timeout =
+                Configurations.getInt(this.schema, Constants.CONFIG_INDEXING_QUEUE_WAIT, 5000);
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (dao.isQueued(recordType, recordId)) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                return false;
+            }
+
+            try {
+                synchronized (this.signal) {
+                    this.signal.wait(Math.min(remaining, 100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void work(int worker) {
+        IndexingDAO dao = IndexingDAO.getInstance(this.schema);
+
+        while (this.running) {
+            try {
+                int count =
+                        dao.processQueue(
+                                worker,
+                                this.workers,
+                                IndexingQueue.BATCH_SIZE,
+                                IndexingQueue.MAX_ATTEMPTS,
+                                queued -> IndexingQueue.index(this.schema, queued));
+
+                if (count > 0) {
+                    this.processed.addAndGet(count);
+                    this.wakeUp();
+
+                    continue;
+                }
+            } catch (Exception e) {
+                this.failed.incrementAndGet();
+                IndexingQueue.logger.error(e.getMessage(), e);
+            }
+
+            try {
+                synchronized (this.signal) {
+                    this.signal.wait(IndexingQueue.IDLE_WAIT);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Indexes everything queued in the calling thread, in batches of up to <code>limit</code>
+     * records, for writers that queue records while the workers are disabled.
+     *
+     * @return the number of queue rows handled
+     */
+    public static int drain(String schema, int limit) {
+        IndexingDAO dao = IndexingDAO.getInstance(schema);
+        int total = 0;
+        int count;
+
+        // Records that keep failing leave the queue after MAX_ATTEMPTS, so this always ends
+        do {
+            count =
+                    dao.processQueue(
+                            0,
+                            1,
+                            limit,
+                            IndexingQueue.MAX_ATTEMPTS,
+                            queued -> IndexingQueue.index(schema, queued));
+
+            total += count;
+        } while (count > 0);
+
+        return total;
+    }
+
+    /*
+     * Indexes the queued records as a batch or, if that fails, one at a time, so a record that
+     * can't be indexed doesn't hold back the others of its batch.
+     *
+     * @return the records that couldn't be indexed
+     */
+    private static Map<RecordType, Set<Integer>> index(
+            String schema, Map<RecordType, Set<Integer>> queued) {
+
+        try {
+            IndexingQueue.indexBatch(schema, queued);
+
+            return Collections.emptyMap();
+        } catch (Exception e) {
+            IndexingQueue.logger.warn(
+                    "Error indexing a batch of queued records, retrying one at a time", e);
+        }
+
+        Map<RecordType, Set<Integer>> failed = new EnumMap<>(RecordType.class);
+
+        for (Map.Entry<RecordType, Set<Integer>> entry : queued.entrySet()) {
+            RecordType recordType = entry.getKey();
+
+            for (Integer recordId : entry.getValue()) {
+                try {
+                    IndexingQueue.indexBatch(
+                            schema,
+                            Collections.singletonMap(recordType, Collections.singleton(recordId)));
+                } catch (Exception e) {
+                    IndexingQueue.logger.error(
+                            "Error indexing queued " + recordType + " record " + recordId, e);
+
+                    failed.computeIfAbsent(recordType, k -> new HashSet<>()).add(recordId);
+                }
+            }
+        }
+
+        return failed;
+    }
+
+    private static void indexBatch(String schema, Map<RecordType, Set<Integer>> queued) {
+        IndexingBO ibo = IndexingBO.getInstance(schema);
+
+        for (Map.Entry<RecordType, Set<Integer>> entry : queued.entrySet()) {
+            RecordType recordType = entry.getKey();
+            Set<Integer> recordIds = entry.getValue();
+
+            RecordBO rbo = RecordBO.getInstance(schema, recordType);
+            Map<Integer, RecordDTO> records = rbo.map(recordIds, 0);
+
+            if (!records.isEmpty()) {
+                ibo.reindex(recordType, new ArrayList<>(records.values()));
+            }
+
+            // Records deleted since they were queued
+            Set<Integer> deleted = new HashSet<>(recordIds);
+            deleted.removeAll(records.keySet());
+
+            if (!deleted.isEmpty()) {
+                ibo.deleteIndexes(recordType, deleted);
+            }
+
+            SearchResultsCache.invalidate(schema, recordType);
+        }
+    }
+}
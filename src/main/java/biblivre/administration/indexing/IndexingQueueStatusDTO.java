@@ -0,0 +1,53 @@
+package biblivre.administration.indexing;
+
+import biblivre.core.AbstractDTO;
+
+public class IndexingQueueStatusDTO extends AbstractDTO {
+    private static final long serialVersionUID = 1L;
+
+    private final long queued;
+    private final long lag;
+    private final long failedRecords;
+    private final long processed;
+    private final long failed;
+    private final int workers;
+
+    public IndexingQueueStatusDTO(
+            long queued, long lag, long failedRecords, long processed, long failed, int workers) {
+        this.queued = queued;
+        this.lag = lag;
+        this.failedRecords = failedRecords;
+        this.processed = processed;
+        this.failed = failed;
+        this.workers = workers;
+    }
+
+    // Records waiting to be indexed
+    public long getQueued() {
+        return this.queued;
+    }
+
+    // Seconds since the oldest queued record was saved
+    public long getLag() {
+        return this.lag;
+    }
+
+    // Records that kept failing and were moved to indexing_queue_failed
+    public long getFailedRecords() {
+        return this.failedRecords;
+    }
+
+    // Queue rows handled since the workers started
+    public long getProcessed() {
+        return this.processed;
+    }
+
+    // Batches that couldn't be claimed or written and were left queued
+    public long getFailed() {
+        return this.failed;
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+}
@@ -0,0 +1,215 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.AutocompleteDTO;
+import biblivre.cataloging.BriefTabFieldFormatDTO;
+import biblivre.cataloging.Fields;
+import biblivre.cataloging.FormTabSubfieldDTO;
+import biblivre.cataloging.RecordDTO;
+import biblivre.cataloging.enums.IdentifierType;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.utils.TextUtils;
+import biblivre.marc.MarcDataReader;
+import biblivre.marc.MarcUtils;
+import biblivre.marc.StandardIdentifiers;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.Record;
+import org.marc4j.marc.Subfield;
+
+/**
+ * Builds everything derived from the MARC data of a record (word indexes, sort phrases,
+ * autocomplete rows and standard identifiers) from a single decoded copy of it. Instances only hold
+ * the schema settings read when they were created, so a single one can be shared by the workers of
+ * a {@link ReindexPipeline}.
+ */
+public class RecordAnalyzer {
+    private static final String[] NONFILLING_CHARACTERS_IN_INDICATOR_1 = {
+        "130", "630", "730", "740"
+    };
+    private static final String[] NONFILLING_CHARACTERS_IN_INDICATOR_2 = {
+        "240", "243", "245", "830"
+    };
+
+    private final String schema;
+    private final RecordType recordType;
+
+    private final List<IndexingGroupDTO> indexingGroups;
+    private final List<FormTabSubfieldDTO> autocompleteSubfields;
+
+    public RecordAnalyzer(String schema, RecordType recordType) {
+        this.schema = schema;
+        this.recordType = recordType;
+        this.indexingGroups = IndexingGroups.getGroups(schema, recordType);
+        this.autocompleteSubfields = Fields.getAutocompleteSubFields(schema, recordType);
+    }
+
+    public IndexingBatch analyze(Collection<RecordDTO> records) {
+        IndexingBatch batch = new IndexingBatch();
+
+        for (RecordDTO dto : records) {
+            this.populate(dto, batch);
+        }
+
+        return batch;
+    }
+
+    /*
+     * A single saved record is shown by the cataloging screens right after it is indexed, so its
+     * brief display fields are built from the same decoded copy.
+     */
+    public void analyze(RecordDTO dto, IndexingBatch batch) {
+        MarcDataReader marcDataReader = this.populate(dto, batch);
+
+        List<BriefTabFieldFormatDTO> briefFormats =
+                Fields.getBriefFormats(this.schema, this.recordType);
+
+        dto.setFields(marcDataReader.getFieldList(briefFormats));
+    }
+
+    private MarcDataReader populate(RecordDTO dto, IndexingBatch batch) {
+        Record record = dto.getRecord();
+
+        if (record == null) {
+            record = MarcUtils.iso2709ToRecord(dto.getIso2709());
+        }
+
+        MarcDataReader marcDataReader = new MarcDataReader(record);
+
+        batch.getRecordIds().add(dto.getId());
+
+        this.populateIndexes(dto.getId(), marcDataReader, batch);
+        this.populateAutocompleteIndexes(dto.getId(), marcDataReader, batch);
+        this.populateIdentifiers(dto.getId(), marcDataReader, batch);
+
+        return marcDataReader;
+    }
+
+    private void populateIdentifiers(
+            int recordId, MarcDataReader marcDataReader, IndexingBatch batch) {
+
+        for (Map.Entry<IdentifierType, Set<String>> entry :
+                StandardIdentifiers.read(marcDataReader).entrySet()) {
+
+            for (String identifier : entry.getValue()) {
+                batch.getIdentifiers().add(new IdentifierDTO(recordId, entry.getKey(), identifier));
+            }
+        }
+    }
+
+    private void populateIndexes(int recordId, MarcDataReader marcDataReader, IndexingBatch batch) {
+        int datafieldId = 0;
+
+        IndexingDTO index = new IndexingDTO();
+        index.setIndexingGroupId(0);
+        index.setRecordId(recordId);
+        index.addWord(String.valueOf(recordId), datafieldId);
+
+        batch.getIndexes().add(index);
+
+        // For each indexing group
+        for (IndexingGroupDTO ig : this.indexingGroups) {
+            IndexingDTO sortIndex;
+            boolean charsToIgnoreSet;
+
+            index = new IndexingDTO();
+            index.setIndexingGroupId(ig.getId());
+            index.setRecordId(recordId);
+
+            if (ig.getId() != 0) {
+                sortIndex = new IndexingDTO();
+                sortIndex.setIndexingGroupId(ig.getId());
+                sortIndex.setRecordId(recordId);
+                charsToIgnoreSet = false;
+            } else {
+                sortIndex = null;
+                charsToIgnoreSet = true;
+            }
+
+            // For each datafield in indexing group
+            for (Pair<String, List<Character>> pair : ig.getDatafieldsArray()) {
+                String datafieldTag = pair.getLeft();
+
+                // For each one of the record datafields with that tag
+                for (DataField datafield : marcDataReader.getDataFields(datafieldTag)) {
+                    datafieldId++;
+
+                    // For each subfield in indexing group
+                    for (Character subfieldTag : pair.getRight()) {
+                        for (Subfield subfield : datafield.getSubfields(subfieldTag)) {
+                            String phrase = TextUtils.preparePhrase(subfield.getData());
+                            index.addWords(TextUtils.prepareWords(phrase), datafieldId);
+
+                            if (sortIndex != null) {
+                                sortIndex.appendToPhrase(phrase);
+                            }
+                        }
+                    }
+
+                    // Some datafields have nonfillings characters, based on indicator 1 or 2
+                    if (!charsToIgnoreSet && sortIndex.getPhraseLength() > 0) {
+                        char indicator = '0';
+
+                        if (ArrayUtils.contains(
+                                RecordAnalyzer.NONFILLING_CHARACTERS_IN_INDICATOR_1,
+                                datafieldTag)) {
+                            indicator = datafield.getIndicator1();
+                        } else if (ArrayUtils.contains(
+                                RecordAnalyzer.NONFILLING_CHARACTERS_IN_INDICATOR_2,
+                                datafieldTag)) {
+                            indicator = datafield.getIndicator2();
+                        }
+
+                        if (indicator >= '1' && indicator <= '9') {
+                            sortIndex.setIgnoreCharsCount(
+                                    Integer.valueOf(Character.toString(indicator)));
+                        }
+
+                        charsToIgnoreSet = true;
+                    }
+                }
+            }
+
+            if (index.getCount() > 0) {
+                batch.getIndexes().add(index);
+            }
+
+            if (sortIndex != null) {
+                batch.getSortIndexes().add(sortIndex);
+            }
+        }
+    }
+
+    private void populateAutocompleteIndexes(
+            int recordId, MarcDataReader marcDataReader, IndexingBatch batch) {
+
+        for (FormTabSubfieldDTO autocompleteSubfield : this.autocompleteSubfields) {
+            String datafieldTag = autocompleteSubfield.getDatafield();
+            char subfieldTag = autocompleteSubfield.getSubfield().charAt(0);
+
+            for (DataField datafield : marcDataReader.getDataFields(datafieldTag)) {
+                for (Subfield subfield : datafield.getSubfields(subfieldTag)) {
+                    String phrase = subfield.getData();
+
+                    if (StringUtils.isBlank(phrase)) {
+                        continue;
+                    }
+
+                    AutocompleteDTO autocomplete = new AutocompleteDTO();
+
+                    autocomplete.setRecordId(recordId);
+                    autocomplete.setDatafield(datafieldTag);
+                    autocomplete.setSubfield(autocompleteSubfield.getSubfield());
+                    autocomplete.setPhrase(phrase);
+
+                    batch.getAutocompleteIndexes().add(autocomplete);
+                }
+            }
+        }
+    }
+}
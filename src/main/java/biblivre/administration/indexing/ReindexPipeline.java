@@ -0,0 +1,220 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.RecordBO;
+import biblivre.cataloging.RecordDTO;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.utils.Constants;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Full reindex of a record type, split in three stages connected by bounded queues: a single reader
+ * walks the records table by primary key, a pool of workers builds the index rows and the calling
+ * thread writes them in batches.
+ */
+public class ReindexPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(ReindexPipeline.class);
+
+    private static final List<RecordDTO> END_OF_RECORDS = Collections.emptyList();
+    private static final IndexingBatch END_OF_BATCHES = new IndexingBatch();
+
+    private final IndexingBO bo;
+    private final RecordType recordType;
+    private final RecordBO rbo;
+    private final boolean shadow;
+    private final int workers;
+    private final int pageSize;
+
+    private final RecordAnalyzer analyzer;
+
+    private final BlockingQueue<List<RecordDTO>> pages;
+    private final BlockingQueue<IndexingBatch> batches;
+
+    private final Set<Integer> touchedRecords = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final ReindexStatisticsDTO statistics;
+
+    public ReindexPipeline(
+            IndexingBO bo, RecordType recordType, boolean shadow, ReindexStatisticsDTO statistics) {
+        String schema = bo.getSchema();
+
+        this.bo = bo;
+        this.recordType = recordType;
+        this.shadow = shadow;
+        this.rbo = RecordBO.getInstance(schema, recordType);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        this.workers =
+                Configurations.getPositiveInt(
+                        schema, Constants.CONFIG_REINDEX_WORKERS, Math.max(1, processors - 1));
+        this.pageSize =
+                Configurations.getPositiveInt(schema, Constants.CONFIG_REINDEX_PAGE_SIZE, 500);
+
+        this.analyzer = new RecordAnalyzer(schema, recordType);
+
+        this.pages = new ArrayBlockingQueue<>(this.workers * 2);
+        this.batches = new ArrayBlockingQueue<>(this.workers * 2);
+
+        this.statistics = statistics;
+        this.statistics.setWorkers(this.workers);
+        this.statistics.setTotal(this.rbo.count());
+    }
+
+    public ReindexStatisticsDTO getStatistics() {
+        return this.statistics;
+    }
+
+    /*
+     * When building into shadow tables, the live index stays untouched (and searchable) until the
+     * pipeline finishes and the shadow tables are swapped in.
+     */
+    public boolean isShadow() {
+        return this.shadow;
+    }
+
+    /*
+     * Records indexed or deleted by someone else while the pipeline runs already have up to date
+     * index rows, which must not be overwritten by the (possibly older) copy read by the pipeline.
+     */
+    public void touch(int recordId) {
+        this.touchedRecords.add(recordId);
+    }
+
+    public Set<Integer> getTouchedRecords() {
+        return this.touchedRecords;
+    }
+
+    public void run() {
+        ExecutorService executor = Executors.newFixedThreadPool(this.workers + 1);
+
+        try {
+            executor.execute(this::read);
+
+            for (int i = 0; i < this.workers; i++) {
+                executor.execute(this::analyze);
+            }
+
+            this.write();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ReindexPipeline.logger.info("Reindex of {}", this.statistics);
+    }
+
+    private void read() {
+        try {
+            int lastId = 0;
+
+            while (this.failure.get() == null) {
+                long start = System.nanoTime();
+                List<RecordDTO> page = this.rbo.listAfter(lastId, this.pageSize);
+                this.statistics.addRead(page.size(), System.nanoTime() - start);
+
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                for (RecordDTO dto : page) {
+                    lastId = Math.max(lastId, dto.getId());
+                }
+
+                this.pages.put(page);
+            }
+
+            for (int i = 0; i < this.workers; i++) {
+                this.pages.put(ReindexPipeline.END_OF_RECORDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            this.fail(t);
+        }
+    }
+
+    private void analyze() {
+        try {
+            while (true) {
+                List<RecordDTO> page = this.pages.take();
+
+                if (page == ReindexPipeline.END_OF_RECORDS) {
+                    this.batches.put(ReindexPipeline.END_OF_BATCHES);
+                    return;
+                }
+
+                long start = System.nanoTime();
+                IndexingBatch batch = this.analyzer.analyze(page);
+
+                this.statistics.addAnalyzed(page.size(), System.nanoTime() - start);
+
+                this.batches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            this.fail(t);
+        }
+    }
+
+    private void write() {
+        int finishedWorkers = 0;
+
+        try {
+            while (finishedWorkers < this.workers) {
+                this.checkFailure();
+
+                IndexingBatch batch = this.batches.poll(1, TimeUnit.SECONDS);
+
+                if (batch == null) {
+                    continue;
+                }
+
+                if (batch == ReindexPipeline.END_OF_BATCHES) {
+                    finishedWorkers++;
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                int written = this.bo.writeIndexes(this.recordType, this, batch);
+                this.statistics.addWritten(written, System.nanoTime() - start);
+
+                if (ReindexPipeline.logger.isDebugEnabled()) {
+                    ReindexPipeline.logger.debug("Reindex of {}", this.statistics);
+                }
+            }
+
+            this.checkFailure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void fail(Throwable t) {
+        ReindexPipeline.logger.error(t.getMessage(), t);
+        this.failure.compareAndSet(null, t);
+    }
+
+    private void checkFailure() {
+        Throwable t = this.failure.get();
+
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+}
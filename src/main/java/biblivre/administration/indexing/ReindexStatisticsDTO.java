@@ -0,0 +1,203 @@
+package biblivre.administration.indexing;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.AbstractDTO;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReindexStatisticsDTO extends AbstractDTO {
+    private static final long serialVersionUID = 1L;
+
+    private final RecordType recordType;
+    private volatile int total;
+    private volatile int workers;
+    private final long startTime;
+    private volatile long endTime;
+
+    private final AtomicInteger read = new AtomicInteger();
+    private final AtomicInteger analyzed = new AtomicInteger();
+    private final AtomicInteger written = new AtomicInteger();
+
+    private final AtomicLong readTime = new AtomicLong();
+    private final AtomicLong analyzeTime = new AtomicLong();
+    private final AtomicLong writeTime = new AtomicLong();
+
+    private final transient Object monitor = new Object();
+
+    // Registered as soon as the reindex is requested, the total is only known once counted
+    public ReindexStatisticsDTO(RecordType recordType) {
+        this.recordType = recordType;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void addRead(int records, long nanos) {
+        this.read.addAndGet(records);
+        this.readTime.addAndGet(nanos);
+    }
+
+    public void addAnalyzed(int records, long nanos) {
+        this.analyzed.addAndGet(records);
+        this.analyzeTime.addAndGet(nanos);
+    }
+
+    public void addWritten(int records, long nanos) {
+        this.written.addAndGet(records);
+        this.writeTime.addAndGet(nanos);
+
+        this.signal();
+    }
+
+    // Called once the new index is in place (or the reindex failed), not when the last row is
+    // written
+    public void finish() {
+        this.endTime = System.currentTimeMillis();
+
+        this.signal();
+    }
+
+    /**
+     * Blocks until more than <code>written</code> records are written or the reindex finishes, so a
+     * progress request can wait for the next change instead of polling.
+     *
+     * @return whether there was a change before the timeout
+     */
+    public boolean awaitChange(int written, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (this.monitor) {
+            while (!this.isComplete() && this.getWritten() <= written) {
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                this.monitor.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    public RecordType getRecordType() {
+        return this.recordType;
+    }
+
+    public int getTotal() {
+        return this.total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public boolean isComplete() {
+        return this.endTime != 0;
+    }
+
+    public long getElapsed() {
+        long end = this.isComplete() ? this.endTime : System.currentTimeMillis();
+
+        return end - this.startTime;
+    }
+
+    public int getRead() {
+        return this.read.get();
+    }
+
+    public int getAnalyzed() {
+        return this.analyzed.get();
+    }
+
+    public int getWritten() {
+        return this.written.get();
+    }
+
+    public int getRemaining() {
+        return Math.max(0, this.total - this.getWritten());
+    }
+
+    public long getReadTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.readTime.get());
+    }
+
+    public long getAnalyzeTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.analyzeTime.get());
+    }
+
+    public long getWriteTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.writeTime.get());
+    }
+
+    // Records per second, considering the time each stage was actually busy
+    public double getReadRate() {
+        return ReindexStatisticsDTO.rate(this.getRead(), this.getReadTime());
+    }
+
+    public double getAnalyzeRate() {
+        // Analysis runs on several workers at once, so its busy time is summed across them
+        return ReindexStatisticsDTO.rate(this.getAnalyzed() * this.workers, this.getAnalyzeTime());
+    }
+
+    public double getWriteRate() {
+        return ReindexStatisticsDTO.rate(this.getWritten(), this.getWriteTime());
+    }
+
+    public double getRate() {
+        return ReindexStatisticsDTO.rate(this.getWritten(), this.getElapsed());
+    }
+
+    // Estimated milliseconds until every record is written, or -1 before the first batch
+    public long getEta() {
+        if (this.isComplete() || this.getRemaining() == 0) {
+            return 0;
+        }
+
+        double rate = this.getRate();
+
+        if (rate <= 0) {
+            return -1;
+        }
+
+        return Math.round(this.getRemaining() * 1000.0 / rate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d/%d records in %d ms (%.1f rec/s); read %.1f rec/s, analyze %.1f rec/s"
+                        + " (%d workers), write %.1f rec/s",
+                this.recordType,
+                this.getWritten(),
+                this.total,
+                this.getElapsed(),
+                this.getRate(),
+                this.getReadRate(),
+                this.getAnalyzeRate(),
+                this.workers,
+                this.getWriteRate());
+    }
+
+    private void signal() {
+        synchronized (this.monitor) {
+            this.monitor.notifyAll();
+        }
+    }
+
+    private static double rate(int records, long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+
+        return records * 1000.0 / millis;
+    }
+}
@@ -12,7 +12,6 @@ import biblivre.core.AbstractBO;
 import biblivre.core.file.DiskFile;
 import biblivre.core.translations.TranslationsMap;
 import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -21,7 +20,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import org.marc4j.marc.DataField;
-import org.marc4j.marc.Record;
 import org.marc4j.marc.Subfield;
 
 public class ReportsBO extends AbstractBO {
@@ -126,8 +124,7 @@ public class ReportsBO extends AbstractBO {
             String subfield) {
 
         for (RecordDTO biblio : records) {
-            Record record = MarcUtils.iso2709ToRecord(biblio.getIso2709());
-            MarcDataReader reader = new MarcDataReader(record);
+            MarcDataReader reader = new MarcDataReader(biblio.getRecord());
             List<DataField> datafields = reader.getDataFields(field);
 
             for (DataField df : datafields) {
@@ -31,23 +31,25 @@ import biblivre.administration.reports.dto.RequestsByDateReportDto;
 import biblivre.administration.reports.dto.ReservationReportDto;
 import biblivre.administration.reports.dto.SearchesByDateReportDto;
 import biblivre.administration.reports.dto.SummaryReportDto;
+import biblivre.cataloging.ParsedRecordCache;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.bibliographic.BiblioRecordBO;
 import biblivre.cataloging.enums.RecordDatabase;
+import biblivre.cataloging.enums.RecordType;
 import biblivre.circulation.user.UserStatus;
 import biblivre.core.AbstractDAO;
 import biblivre.core.exceptions.DAOException;
-import biblivre.core.utils.Constants;
 import biblivre.core.utils.TextUtils;
 import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,7 +58,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import org.apache.commons.lang3.StringUtils;
-import org.marc4j.marc.Record;
 
 public class ReportsDAO extends AbstractDAO {
 
@@ -71,7 +72,7 @@ public class ReportsDAO extends AbstractDAO {
         Connection con = null;
         try {
             con = this.getConnection();
-            String sql = "SELECT iso2709, id FROM biblio_records WHERE database = ?;";
+            String sql = "SELECT iso2709, id, modified FROM biblio_records WHERE database = ?;";
             String countSql = "SELECT count(id) FROM biblio_holdings WHERE record_id = ?;";
 
             final PreparedStatement pst = con.prepareStatement(sql);
@@ -84,8 +85,7 @@ public class ReportsDAO extends AbstractDAO {
             final ResultSet rs = pst.executeQuery();
             List<String[]> dataList = new ArrayList<String[]>();
             while (rs.next()) {
-                Record record = MarcUtils.iso2709ToRecord(rs.getBytes("iso2709"));
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = this.getReader(rs, "id", "modified", "iso2709");
                 String[] data = new String[8];
                 String title = dataReader.getTitle(false);
                 data[0] = StringUtils.isNotBlank(title) ? title : "";
@@ -136,11 +136,9 @@ public class ReportsDAO extends AbstractDAO {
             Map<String, Integer[]> acc = new HashMap<String, Integer[]>();
 
             while (rs.next()) {
-                Record record = MarcUtils.iso2709ToRecord(rs.getString("iso2709"));
-
                 String dewey = "";
 
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = new MarcDataReader(rs.getBytes("iso2709"));
                 if (datafield.equals("082")) {
                     dewey = dataReader.getDDCN();
                 } else if (datafield.equals("090")) {
@@ -186,7 +184,7 @@ public class ReportsDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append(
-                    " SELECT H.accession_number, R.iso2709 FROM biblio_holdings H INNER JOIN biblio_records R ");
+                    " SELECT H.accession_number, R.id, R.modified, R.iso2709 FROM biblio_holdings H INNER JOIN biblio_records R ");
             sql.append(" ON R.id = H.record_id WHERE H.database = 'main' ");
             sql.append(" ORDER BY H.accession_number ");
 
@@ -196,8 +194,7 @@ public class ReportsDAO extends AbstractDAO {
             final ResultSet rs = pst.executeQuery();
             List<String[]> dataList = new ArrayList<String[]>();
             while (rs.next()) {
-                Record record = MarcUtils.iso2709ToRecord(rs.getBytes("iso2709"));
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = this.getReader(rs, "id", "modified", "iso2709");
                 String assetHolding = rs.getString("accession_number");
                 String[] data = new String[5];
                 data[0] = assetHolding;
@@ -223,7 +220,7 @@ public class ReportsDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append(
-                    " SELECT H.id, H.accession_number, R.iso2709 FROM biblio_holdings H INNER JOIN biblio_records R ");
+                    " SELECT H.id, H.accession_number, R.id as record_id, R.modified, R.iso2709 FROM biblio_holdings H INNER JOIN biblio_records R ");
             sql.append(" ON R.id = H.record_id WHERE H.database = 'main' ");
             sql.append(" ORDER BY H.accession_number ");
 
@@ -233,8 +230,7 @@ public class ReportsDAO extends AbstractDAO {
             final ResultSet rs = pst.executeQuery();
             List<String[]> dataList = new ArrayList<String[]>();
             while (rs.next()) {
-                Record record = MarcUtils.iso2709ToRecord(rs.getBytes("iso2709"));
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = this.getReader(rs, "record_id", "modified", "iso2709");
                 String assetHolding = rs.getString("accession_number");
                 String serial = rs.getString("id");
                 String[] data = new String[7];
@@ -265,7 +261,8 @@ public class ReportsDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append(
-                    " SELECT H.accession_number, to_char(H.created, 'DD/MM/YYYY'), R.iso2709, H.iso2709 ");
+                    " SELECT H.accession_number, to_char(H.created, 'DD/MM/YYYY'), R.iso2709, H.iso2709, ");
+            sql.append(" R.id as record_id, R.modified as record_modified ");
             sql.append(" FROM biblio_holdings H INNER JOIN biblio_records R ");
             sql.append(" ON R.id = H.record_id WHERE H.database = 'main' ");
             sql.append(" AND H.created >= to_date(?, 'DD-MM-YYYY') ");
@@ -280,20 +277,23 @@ public class ReportsDAO extends AbstractDAO {
             final ResultSet rs = pst.executeQuery();
             List<String[]> dataList = new ArrayList<String[]>();
             while (rs.next()) {
-                Record record = MarcUtils.iso2709ToRecord(rs.getBytes(3));
-
                 String assetHolding = rs.getString("accession_number");
                 String creationDate = rs.getString(2);
                 String[] data = new String[6];
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader =
+                        ParsedRecordCache.getReader(
+                                this.getSchema(),
+                                RecordType.BIBLIO,
+                                rs.getInt("record_id"),
+                                rs.getTimestamp("record_modified"),
+                                rs.getBytes(3));
                 data[0] = creationDate;
                 data[1] = assetHolding;
                 data[2] = dataReader.getTitle(false);
                 data[3] = dataReader.getAuthorName(false);
                 data[4] = dataReader.getPublicationYear();
 
-                Record holding = MarcUtils.iso2709ToRecord(rs.getBytes(4));
-                MarcDataReader holdingReader = new MarcDataReader(holding);
+                MarcDataReader holdingReader = new MarcDataReader(rs.getBytes(4));
                 data[5] = holdingReader.getSourceAcquisitionDate();
                 dataList.add(data);
             }
@@ -484,8 +484,7 @@ public class ReportsDAO extends AbstractDAO {
                 Integer biblioId = rs.getInt(1);
                 Integer count = rs.getInt(2);
                 RecordDTO recordDto = biblioBO.get(biblioId);
-                Record record = MarcUtils.iso2709ToRecord(recordDto.getIso2709());
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = new MarcDataReader(recordDto.getRecord());
                 String[] arrayData = new String[3];
                 arrayData[0] = String.valueOf(count); // count
                 arrayData[1] = dataReader.getTitle(false); // title
@@ -508,7 +507,8 @@ public class ReportsDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append(
-                    "SELECT u.id as userid, u.name as username, l.expected_return_date, b.iso2709 ");
+                    "SELECT u.id as userid, u.name as username, l.expected_return_date, b.iso2709, ");
+            sql.append("b.id, b.modified, b.title ");
             sql.append("FROM lendings l, users u, biblio_records b, biblio_holdings h ");
             sql.append("WHERE l.expected_return_date < to_date(?, 'DD-MM-YYYY') ");
             sql.append("AND l.user_id = u.id ");
@@ -525,11 +525,12 @@ public class ReportsDAO extends AbstractDAO {
                 String[] lending = new String[4];
                 lending[0] = String.valueOf(rs.getInt("userid")); // matricula
                 lending[1] = rs.getString("username"); // nome do usuario
-                Record record =
-                        MarcUtils.iso2709ToRecord(
-                                new String(rs.getBytes("iso2709"), Constants.DEFAULT_CHARSET));
-                MarcDataReader dataReader = new MarcDataReader(record);
-                lending[2] = dataReader.getTitle(false); // titulo
+                String title = rs.getString("title");
+                lending[2] =
+                        (title != null)
+                                ? StringUtils.defaultIfEmpty(title, null)
+                                : this.getReader(rs, "id", "modified", "iso2709")
+                                        .getTitle(false); // titulo
                 lending[3] = dd_MM_yyyy.format(rs.getDate("expected_return_date"));
                 data.add(lending);
             }
@@ -684,7 +685,7 @@ public class ReportsDAO extends AbstractDAO {
         try {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
-            sql.append("SELECT DISTINCT B.id, B.iso2709 FROM biblio_records B ");
+            sql.append("SELECT DISTINCT B.id, B.modified, B.iso2709 FROM biblio_records B ");
             sql.append("INNER JOIN biblio_idx_fields I ON I.record_id = B.id ");
             sql.append("WHERE B.database = ? ");
             sql.append("AND I.indexing_group_id = 1 ");
@@ -710,9 +711,7 @@ public class ReportsDAO extends AbstractDAO {
             if (rs != null) {
                 while (rs.next()) {
                     Integer id = rs.getInt("id");
-                    String iso2709 = new String(rs.getBytes("iso2709"), Constants.DEFAULT_CHARSET);
-                    Record record = MarcUtils.iso2709ToRecord(iso2709);
-                    String name = new MarcDataReader(record).getAuthor(false);
+                    String name = this.getReader(rs, "id", "modified", "iso2709").getAuthor(false);
                     if (results.containsKey(name)) {
                         Set<Integer> ids = results.get(name);
                         ids.add(id);
@@ -741,21 +740,16 @@ public class ReportsDAO extends AbstractDAO {
             con = this.getConnection();
 
             StringBuilder sql = new StringBuilder();
-            sql.append(" SELECT iso2709 FROM biblio_records WHERE id IN (");
-            sql.append(StringUtils.repeat("?", ", ", recordIdArray.length));
-            sql.append(") ORDER BY id ASC; ");
+            sql.append(" SELECT id, modified, iso2709 FROM biblio_records WHERE id = ANY(?) ");
+            sql.append(" ORDER BY id ASC; ");
 
             PreparedStatement st = con.prepareStatement(sql.toString());
-            for (int i = 0; i < recordIdArray.length; i++) {
-                st.setInt(i + 1, recordIdArray[i]);
-            }
+            this.setIdArray(st, 1, Arrays.asList(recordIdArray));
 
             ResultSet rs = st.executeQuery();
             List<String[]> data = new ArrayList<String[]>();
             while (rs.next()) {
-                String iso2709 = new String(rs.getBytes("iso2709"), Constants.DEFAULT_CHARSET);
-                Record record = MarcUtils.iso2709ToRecord(iso2709);
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = this.getReader(rs, "id", "modified", "iso2709");
                 String[] lending = new String[5];
                 lending[0] = dataReader.getTitle(false);
                 lending[1] = dataReader.getEdition();
@@ -781,7 +775,7 @@ public class ReportsDAO extends AbstractDAO {
             Statement st = con.createStatement();
 
             StringBuilder sql = new StringBuilder();
-            sql.append(" SELECT u.name, u.id, b.iso2709, ");
+            sql.append(" SELECT u.name, u.id, b.id as record_id, b.modified, b.iso2709, ");
             sql.append(" to_char(r.created, 'DD/MM/YYYY') AS created ");
             sql.append(" FROM reservations r, users u, biblio_records b ");
             sql.append(" WHERE r.user_id = u.id ");
@@ -796,9 +790,7 @@ public class ReportsDAO extends AbstractDAO {
                 String[] reservation = new String[5];
                 reservation[0] = rs.getString("name");
                 reservation[1] = String.valueOf(rs.getInt("id"));
-                String iso2709 = new String(rs.getBytes("iso2709"), Constants.DEFAULT_CHARSET);
-                Record record = MarcUtils.iso2709ToRecord(iso2709);
-                MarcDataReader dataReader = new MarcDataReader(record);
+                MarcDataReader dataReader = this.getReader(rs, "record_id", "modified", "iso2709");
                 reservation[2] = dataReader.getTitle(false);
                 reservation[3] = dataReader.getAuthorName(false);
                 reservation[4] = rs.getString("created");
@@ -813,4 +805,17 @@ public class ReportsDAO extends AbstractDAO {
         }
         return dto;
     }
+
+    // Bibliographic records repeat across rows of most reports, such as once per holding
+    private MarcDataReader getReader(
+            ResultSet rs, String idColumn, String modifiedColumn, String iso2709Column)
+            throws SQLException {
+
+        return ParsedRecordCache.getReader(
+                this.getSchema(),
+                RecordType.BIBLIO,
+                rs.getInt(idColumn),
+                rs.getTimestamp(modifiedColumn),
+                rs.getBytes(iso2709Column));
+    }
 }
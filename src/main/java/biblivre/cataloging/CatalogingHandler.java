@@ -22,6 +22,7 @@ package biblivre.cataloging;
 import biblivre.administration.indexing.IndexingGroupDTO;
 import biblivre.administration.indexing.IndexingGroups;
 import biblivre.cataloging.enums.AutocompleteType;
+import biblivre.cataloging.enums.ExportFormat;
 import biblivre.cataloging.enums.RecordDatabase;
 import biblivre.cataloging.enums.RecordType;
 import biblivre.cataloging.search.SearchDTO;
@@ -176,6 +177,8 @@ public abstract class CatalogingHandler extends AbstractHandler {
             return;
         }
 
+        recordBO.awaitIndexing(recordDTO);
+
         _setSuccessMessage(isNew);
 
         this.json.put("data", recordDTO.toJSONObject());
@@ -252,6 +255,8 @@ public abstract class CatalogingHandler extends AbstractHandler {
         boolean success = recordBO.delete(dto, loggedUserId, request.getAuthorizationPoints());
 
         if (success) {
+            recordBO.awaitIndexing(dto);
+
             this.setMessage(ActionResult.SUCCESS, "cataloging.record.success.delete");
         } else {
             this.setMessage(ActionResult.WARNING, "cataloging.record.error.delete");
@@ -375,7 +380,9 @@ public abstract class CatalogingHandler extends AbstractHandler {
 
         AuthorizationPoints authorizationPoints = request.getAuthorizationPoints();
 
-        final DiskFile exportFile = bo.createExportFile(ids, authorizationPoints);
+        ExportFormat format = request.getEnum(ExportFormat.class, "format", ExportFormat.ISO2709);
+
+        final DiskFile exportFile = bo.createExportFile(ids, format, authorizationPoints);
 
         this.setFile(exportFile);
 
@@ -419,6 +426,19 @@ public abstract class CatalogingHandler extends AbstractHandler {
             case BIBLIO:
             case AUTHORITIES:
             case VOCABULARY:
+                Integer recordId = request.getInteger("record_id", null);
+
+                // The matches only bring their phrases, the picked record is sent on its own
+                if (recordId != null) {
+                    RecordDTO dto = type.getAutocompletionRecord(schema, recordId);
+
+                    if (dto != null) {
+                        this.json.putOpt("data", dto.toJSONObject());
+                    }
+
+                    break;
+                }
+
                 DTOCollection<AutocompleteDTO> autocompletion =
                         type.getAutocompletion(schema, query);
 
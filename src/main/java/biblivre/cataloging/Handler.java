@@ -19,11 +19,12 @@
  ******************************************************************************/
 package biblivre.cataloging;
 
-import biblivre.administration.indexing.IndexingBO;
 import biblivre.cataloging.authorities.AuthorityRecordDTO;
 import biblivre.cataloging.bibliographic.BiblioRecordDTO;
+import biblivre.cataloging.enums.IdentifierType;
 import biblivre.cataloging.enums.ImportEncoding;
 import biblivre.cataloging.enums.ImportFormat;
+import biblivre.cataloging.enums.ImportJobStatus;
 import biblivre.cataloging.enums.RecordDatabase;
 import biblivre.cataloging.enums.RecordType;
 import biblivre.cataloging.vocabulary.VocabularyRecordDTO;
@@ -41,15 +42,20 @@ import biblivre.z3950.Z3950AddressDTO;
 import biblivre.z3950.Z3950BO;
 import biblivre.z3950.Z3950RecordDTO;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.json.JSONException;
 import org.marc4j.marc.Record;
 
 public class Handler extends AbstractHandler {
+    // Longest a progress request waits for the next chunk of an import job
+    private static final long PROGRESS_WAIT = 10000;
 
     public void importUpload(ExtendedRequest request, ExtendedResponse response) {
         String schema = request.getSchema();
@@ -61,43 +67,12 @@ public class Handler extends AbstractHandler {
         ImportEncoding encoding =
                 request.getEnum(ImportEncoding.class, "encoding", ImportEncoding.AUTO_DETECT);
 
-        ImportBO bo = ImportBO.getInstance(schema);
+        ImportBO importBo = ImportBO.getInstance(schema);
 
-        ImportDTO list = bo.loadFromFile(file, format, encoding);
+        ImportDTO list = importBo.loadFromFile(file, format, encoding);
 
         if (list != null) {
-            List<String> isbnList = new ArrayList<>();
-            List<String> issnList = new ArrayList<>();
-            List<String> isrcList = new ArrayList<>();
-
-            for (RecordDTO dto : list.getRecordList()) {
-                if (dto instanceof BiblioRecordDTO) {
-                    BiblioRecordDTO rdto = (BiblioRecordDTO) dto;
-
-                    if (StringUtils.isNotBlank(rdto.getIsbn())) {
-                        isbnList.add(rdto.getIsbn());
-                    } else if (StringUtils.isNotBlank(rdto.getIssn())) {
-                        issnList.add(rdto.getIssn());
-                    } else if (StringUtils.isNotBlank(rdto.getIsrc())) {
-                        isrcList.add(rdto.getIsrc());
-                    }
-                }
-                // TODO: Completar para autoridades e vocabulário
-            }
-
-            IndexingBO ibo = IndexingBO.getInstance(schema);
-
-            if (isbnList.size() > 0) {
-                list.setFoundISBN(ibo.searchExactTerms(RecordType.BIBLIO, 5, isbnList));
-            }
-
-            if (issnList.size() > 0) {
-                list.setFoundISSN(ibo.searchExactTerms(RecordType.BIBLIO, 6, issnList));
-            }
-
-            if (isrcList.size() > 0) {
-                list.setFoundISRC(ibo.searchExactTerms(RecordType.BIBLIO, 7, isrcList));
-            }
+            importBo.markDuplicates(list);
         }
 
         try {
@@ -112,6 +87,78 @@ public class Handler extends AbstractHandler {
         }
     }
 
+    public void importJobPrepare(ExtendedRequest request, ExtendedResponse response) {
+        String schema = request.getSchema();
+
+        MemoryFile file = request.getFile("file");
+
+        ImportFormat format =
+                request.getEnum(ImportFormat.class, "format", ImportFormat.AUTO_DETECT);
+        ImportEncoding encoding =
+                request.getEnum(ImportEncoding.class, "encoding", ImportEncoding.AUTO_DETECT);
+
+        ImportBO bo = ImportBO.getInstance(schema);
+
+        ImportJobDTO job = bo.prepareJob(file, format, encoding, request.getLoggedUserId());
+
+        this.putImportJob(job);
+    }
+
+    // Returns when the job stops, progress is read through importJobProgress meanwhile
+    public void importJobRun(ExtendedRequest request, ExtendedResponse response) {
+        String schema = request.getSchema();
+        int id = request.getInteger("id", 0);
+
+        ImportBO bo = ImportBO.getInstance(schema);
+        ImportJobDTO job = bo.runJob(id);
+
+        if (job == null) {
+            this.setMessage(ActionResult.WARNING, "error.invalid_parameters");
+            return;
+        }
+
+        if (job.getStatus() == ImportJobStatus.FAILED) {
+            this.setMessage(ActionResult.WARNING, "cataloging.import.job.failed");
+        }
+
+        this.putImportJob(job);
+    }
+
+    public void importJobProgress(ExtendedRequest request, ExtendedResponse response) {
+        String schema = request.getSchema();
+        int id = request.getInteger("id", 0);
+        int position = request.getInteger("position", -1);
+
+        ImportBO bo = ImportBO.getInstance(schema);
+        ImportJobDTO job = bo.getJobProgress(id, position, Handler.PROGRESS_WAIT);
+
+        if (job == null) {
+            this.setMessage(ActionResult.WARNING, "error.invalid_parameters");
+            return;
+        }
+
+        this.putImportJob(job);
+    }
+
+    private void putImportJob(ImportJobDTO job) {
+        try {
+            this.json.put("id", job.getId());
+            this.json.put("format", job.getFormat().toString());
+            this.json.put("status", job.getStatus().toString());
+            this.json.put("complete", job.isComplete());
+            this.json.put("current", job.getPosition());
+            this.json.put("imported", job.getImported());
+            this.json.put("duplicates", job.getDuplicates());
+            this.json.put("failed", job.getFailed());
+            this.json.put("bytes_read", job.getBytesRead());
+            this.json.put("size", job.getSize());
+            this.json.put("rate", Math.round(job.getRate()));
+            this.json.put("eta", job.getEta());
+        } catch (JSONException e) {
+            this.setMessage(ActionResult.WARNING, "error.invalid_json");
+        }
+    }
+
     public void importSearch(ExtendedRequest request, ExtendedResponse response) {
         String schema = request.getSchema();
         Integer id = request.getInteger("search_server");
@@ -131,37 +178,7 @@ public class Handler extends AbstractHandler {
         ImportDTO list = importBo.readFromZ3950Results(recordList);
 
         if (list != null) {
-            List<String> isbnList = new ArrayList<>();
-            List<String> issnList = new ArrayList<>();
-            List<String> isrcList = new ArrayList<>();
-
-            for (RecordDTO dto : list.getRecordList()) {
-                if (dto instanceof BiblioRecordDTO) {
-                    BiblioRecordDTO rdto = (BiblioRecordDTO) dto;
-
-                    if (StringUtils.isNotBlank(rdto.getIsbn())) {
-                        isbnList.add(rdto.getIsbn());
-                    } else if (StringUtils.isNotBlank(rdto.getIssn())) {
-                        issnList.add(rdto.getIssn());
-                    } else if (StringUtils.isNotBlank(rdto.getIsrc())) {
-                        isrcList.add(rdto.getIsrc());
-                    }
-                }
-            }
-
-            IndexingBO ibo = IndexingBO.getInstance(schema);
-
-            if (isbnList.size() > 0) {
-                list.setFoundISBN(ibo.searchExactTerms(RecordType.BIBLIO, 5, isbnList));
-            }
-
-            if (issnList.size() > 0) {
-                list.setFoundISSN(ibo.searchExactTerms(RecordType.BIBLIO, 6, issnList));
-            }
-
-            if (isrcList.size() > 0) {
-                list.setFoundISRC(ibo.searchExactTerms(RecordType.BIBLIO, 7, isrcList));
-            }
+            importBo.markDuplicates(list);
         }
 
         try {
@@ -181,7 +198,6 @@ public class Handler extends AbstractHandler {
         String marc = request.getString("marc");
 
         ImportBO bo = ImportBO.getInstance(schema);
-        IndexingBO ibo = IndexingBO.getInstance(schema);
         RecordDTO dto = null;
         try {
             HumanReadableMarcReader humanReadableMarcReader =
@@ -190,19 +206,15 @@ public class Handler extends AbstractHandler {
             Record record = humanReadableMarcReader.next();
 
             dto = bo.dtoFromRecord(record);
-            BiblioRecordDTO rdto = ((BiblioRecordDTO) dto);
-
-            if (StringUtils.isNotBlank(rdto.getIsbn())) {
-                List<String> search = ibo.searchExactTerm(RecordType.BIBLIO, 5, rdto.getIsbn());
-                this.json.putOpt("isbn", !search.isEmpty());
-            } else if (StringUtils.isNotBlank(rdto.getIssn())) {
-                List<String> search = ibo.searchExactTerm(RecordType.BIBLIO, 6, rdto.getIssn());
-                this.json.putOpt("issn", !search.isEmpty());
-            } else if (StringUtils.isNotBlank(rdto.getIsrc())) {
-                List<String> search = ibo.searchExactTerm(RecordType.BIBLIO, 7, rdto.getIsrc());
-                this.json.putOpt("isrc", !search.isEmpty());
-            }
 
+            Set<IdentifierType> duplicates =
+                    bo.findDuplicates(Collections.singletonList(dto)).get(dto);
+
+            if (duplicates != null) {
+                for (IdentifierType type : duplicates) {
+                    this.json.put(type.toString(), true);
+                }
+            }
         } catch (Exception e) {
         }
 
@@ -227,6 +239,9 @@ public class Handler extends AbstractHandler {
         Set<Integer> successIds = new HashSet<>();
         Set<Integer> failedIds = new HashSet<>();
 
+        Map<RecordType, List<RecordDTO>> records = new EnumMap<>(RecordType.class);
+        Map<RecordDTO, Integer> positions = new IdentityHashMap<>();
+
         for (int i = start; i <= end; i++) {
             String marc = request.getString("marc_" + i);
             RecordType recordType = request.getEnum(RecordType.class, "record_type_" + i);
@@ -235,8 +250,6 @@ public class Handler extends AbstractHandler {
                 continue;
             }
 
-            RecordBO bo = RecordBO.getInstance(schema, recordType);
-
             RecordDTO dto = null;
 
             switch (recordType) {
@@ -274,10 +287,23 @@ public class Handler extends AbstractHandler {
             dto.setRecordDatabase(RecordDatabase.WORK);
             dto.setCreatedBy(request.getLoggedUserId());
 
-            if (bo.save(dto)) {
-                successIds.add(i);
-            } else {
-                failedIds.add(i);
+            records.computeIfAbsent(recordType, k -> new ArrayList<>()).add(dto);
+            positions.put(dto, i);
+        }
+
+        for (Map.Entry<RecordType, List<RecordDTO>> entry : records.entrySet()) {
+            RecordBO bo = RecordBO.getInstance(schema, entry.getKey());
+
+            for (RecordDTO dto : bo.saveAll(entry.getValue())) {
+                successIds.add(positions.remove(dto));
+            }
+
+            for (RecordDTO dto : entry.getValue()) {
+                Integer position = positions.remove(dto);
+
+                if (position != null) {
+                    failedIds.add(position);
+                }
             }
         }
 
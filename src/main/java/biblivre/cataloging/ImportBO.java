@@ -19,12 +19,16 @@
  ******************************************************************************/
 package biblivre.cataloging;
 
+import biblivre.administration.indexing.IndexingBO;
 import biblivre.cataloging.authorities.AuthorityRecordBO;
 import biblivre.cataloging.authorities.AuthorityRecordDTO;
 import biblivre.cataloging.bibliographic.BiblioRecordBO;
 import biblivre.cataloging.bibliographic.BiblioRecordDTO;
+import biblivre.cataloging.enums.IdentifierType;
 import biblivre.cataloging.enums.ImportEncoding;
 import biblivre.cataloging.enums.ImportFormat;
+import biblivre.cataloging.enums.ImportJobStatus;
+import biblivre.cataloging.enums.RecordType;
 import biblivre.cataloging.vocabulary.VocabularyRecordBO;
 import biblivre.cataloging.vocabulary.VocabularyRecordDTO;
 import biblivre.core.AbstractBO;
@@ -32,14 +36,31 @@ import biblivre.core.exceptions.ValidationException;
 import biblivre.core.file.MemoryFile;
 import biblivre.core.utils.Constants;
 import biblivre.core.utils.TextUtils;
+import biblivre.marc.MarcDataReader;
 import biblivre.marc.MarcFileReader;
+import biblivre.marc.MarcFormatDetector;
 import biblivre.marc.MaterialType;
+import biblivre.marc.StandardIdentifiers;
 import biblivre.z3950.Z3950RecordDTO;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.marc4j.MarcPermissiveStreamReader;
 import org.marc4j.MarcReader;
 import org.marc4j.MarcXmlReader;
@@ -49,6 +70,8 @@ public class ImportBO extends AbstractBO {
 
     protected ImportDAO dao;
 
+    private final Map<Integer, ImportJobDTO> runningJobs = new ConcurrentHashMap<>();
+
     public static ImportBO getInstance(String schema) {
         ImportBO bo = AbstractBO.getInstance(ImportBO.class, schema);
 
@@ -61,107 +84,164 @@ public class ImportBO extends AbstractBO {
 
     public ImportDTO loadFromFile(MemoryFile file, ImportFormat format, ImportEncoding enc) {
         ImportDTO dto = null;
-        String encoding = null;
 
-        switch (enc) {
-            case AUTO_DETECT:
-                try (InputStream is = file.getNewInputStream()) {
-                    encoding = TextUtils.detectCharset(is);
-                } catch (IOException e) {
-                }
-                break;
+        try (BufferedInputStream is = new BufferedInputStream(file.getNewInputStream())) {
+            byte[] prefix = MarcFormatDetector.readPrefix(is);
 
-            case UTF8:
-                encoding = Constants.DEFAULT_CHARSET.name();
-                break;
+            if (format == ImportFormat.AUTO_DETECT) {
+                format = ImportBO.detectFormat(prefix);
+            }
 
-            case MARC8:
-                encoding = "ISO-8859-1";
-                break;
-        }
+            MarcReader reader = ImportBO.createReader(is, format, enc, prefix);
 
-        if (encoding == null) {
-            encoding = Constants.DEFAULT_CHARSET.name();
+            dto = this.readFromMarcReader(reader);
+            dto.setFormat(format);
+        } catch (Exception e) {
+            this.logger.debug("Error reading file", e);
+            throw new ValidationException(e.getMessage());
         }
 
-        String streamEncoding = (enc == ImportEncoding.AUTO_DETECT) ? "BESTGUESS" : encoding;
+        dto.setEncoding(enc);
 
-        try (InputStream is = file.getNewInputStream()) {
-            switch (format) {
-                case AUTO_DETECT:
-                    MarcReader reader = null;
-                    List<ImportDTO> list = new ArrayList<>();
+        return dto;
+    }
 
-                    reader = new MarcPermissiveStreamReader(is, true, true, streamEncoding);
-                    dto = this.readFromMarcReader(reader);
-                    dto.setFormat(ImportFormat.ISO2709);
+    /**
+     * Saves an uploaded file for a job that imports it straight into the work database, see {@link
+     * ImportJob}.
+     */
+    public ImportJobDTO prepareJob(
+            MemoryFile file, ImportFormat format, ImportEncoding enc, int createdBy) {
 
-                    if (dto.isPerfect()) {
-                        break;
-                    } else {
-                        list.add(dto);
-                    }
+        ImportJobDTO dto = new ImportJobDTO();
 
-                    reader = new MarcXmlReader(is);
-                    dto = this.readFromMarcReader(reader);
-                    dto.setFormat(ImportFormat.XML);
+        try {
+            File copy = File.createTempFile("biblivre_import_", ".tmp");
 
-                    if (dto.isPerfect()) {
-                        break;
-                    } else {
-                        list.add(dto);
-                    }
+            try (InputStream is = file.getNewInputStream()) {
+                FileUtils.copyInputStreamToFile(is, copy);
+            }
 
-                    reader = new MarcFileReader(is, encoding);
-                    dto = this.readFromMarcReader(reader);
-                    dto.setFormat(ImportFormat.MARC);
+            if (format == ImportFormat.AUTO_DETECT) {
+                try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(copy))) {
+                    format = ImportBO.detectFormat(MarcFormatDetector.readPrefix(is));
+                }
+            }
 
-                    if (dto.isPerfect()) {
-                        break;
-                    } else {
-                        list.add(dto);
-                    }
+            dto.setFileName(file.getName());
+            dto.setFile(copy);
+            dto.setSize(copy.length());
+        } catch (IOException e) {
+            throw new ValidationException("cataloging.import.error.file_upload_error");
+        }
 
-                    Collections.sort(list);
-                    dto = list.get(0);
+        dto.setFormat(format);
+        dto.setEncoding(enc);
+        dto.setStatus(ImportJobStatus.PENDING);
+        dto.setCreatedBy(createdBy);
 
-                    break;
+        this.dao.save(dto);
 
-                case ISO2709:
-                    MarcReader isoReader =
-                            new MarcPermissiveStreamReader(is, true, true, streamEncoding);
-                    dto = this.readFromMarcReader(isoReader);
-                    dto.setFormat(ImportFormat.ISO2709);
+        return dto;
+    }
 
-                    break;
+    /**
+     * Runs an import job in the calling thread, from the start or from where a previous run
+     * stopped. A job already running or complete is returned as it is.
+     *
+     * @return the job, or null if it doesn't exist
+     */
+    public ImportJobDTO runJob(int id) {
+        ImportJobDTO dto = this.dao.get(id);
 
-                case XML:
-                    MarcReader xmlReader = new MarcXmlReader(is);
-                    dto = this.readFromMarcReader(xmlReader);
-                    dto.setFormat(ImportFormat.XML);
-                    break;
+        if (dto == null || dto.isComplete()) {
+            return dto;
+        }
 
-                case MARC:
-                    MarcReader marcReader = new MarcFileReader(is, encoding);
-                    dto = this.readFromMarcReader(marcReader);
-                    dto.setFormat(ImportFormat.MARC);
-                    break;
+        ImportJobDTO running = this.runningJobs.putIfAbsent(id, dto);
 
-                default:
-                    break;
-            }
-        } catch (Exception e) {
-            this.logger.debug("Error reading file", e);
-            throw new ValidationException(e.getMessage());
+        if (running != null) {
+            return running;
         }
 
-        if (dto != null) {
-            dto.setEncoding(enc);
+        try {
+            new ImportJob(this.getSchema(), dto).run();
+        } finally {
+            this.runningJobs.remove(id);
         }
 
         return dto;
     }
 
+    /**
+     * Progress of an import job. If it is running and hasn't read more than <code>position</code>
+     * records yet, waits up to <code>timeout</code> milliseconds for the next chunk.
+     */
+    public ImportJobDTO getJobProgress(int id, int position, long timeout) {
+        ImportJobDTO running = this.runningJobs.get(id);
+
+        if (running == null) {
+            return this.dao.get(id);
+        }
+
+        try {
+            running.awaitChange(position, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return running;
+    }
+
+    // Files that don't look like any format are read as ISO2709, the most common one
+    public static ImportFormat detectFormat(byte[] prefix) {
+        ImportFormat format = MarcFormatDetector.detect(prefix);
+
+        return (format != null) ? format : ImportFormat.ISO2709;
+    }
+
+    /**
+     * Reader of the records of a file in the given format (not AUTO_DETECT). With AUTO_DETECT
+     * encoding, the charset is guessed from the prefix of the file.
+     */
+    public static MarcReader createReader(
+            InputStream is, ImportFormat format, ImportEncoding enc, byte[] prefix) {
+
+        String encoding = null;
+
+        switch (enc) {
+            case AUTO_DETECT:
+                encoding = TextUtils.detectCharset(new ByteArrayInputStream(prefix));
+                break;
+
+            case UTF8:
+                encoding = Constants.DEFAULT_CHARSET.name();
+                break;
+
+            case MARC8:
+                encoding = "ISO-8859-1";
+                break;
+        }
+
+        if (encoding == null) {
+            encoding = Constants.DEFAULT_CHARSET.name();
+        }
+
+        switch (format) {
+            case XML:
+                return new MarcXmlReader(is);
+
+            case MARC:
+                return new MarcFileReader(is, encoding);
+
+            default:
+                String streamEncoding =
+                        (enc == ImportEncoding.AUTO_DETECT) ? "BESTGUESS" : encoding;
+
+                return new MarcPermissiveStreamReader(is, true, true, streamEncoding);
+        }
+    }
+
     /**
      * @param reader
      * @return
@@ -212,6 +292,94 @@ public class ImportBO extends AbstractBO {
         return dto;
     }
 
+    /**
+     * Records with an identifier (ISBN, ISSN or ISRC) that a bibliographic record in the catalog
+     * already has. The identifiers of all records are looked up in a single query.
+     *
+     * @return the duplicated records, mapped to the types of the identifiers found
+     */
+    public Map<RecordDTO, Set<IdentifierType>> findDuplicates(
+            Collection<? extends RecordDTO> records) {
+
+        Map<RecordDTO, Map<IdentifierType, Set<String>>> identifiers = new IdentityHashMap<>();
+        Map<IdentifierType, Set<String>> all = new EnumMap<>(IdentifierType.class);
+
+        for (RecordDTO dto : records) {
+            if (!(dto instanceof BiblioRecordDTO) || dto.getRecord() == null) {
+                continue;
+            }
+
+            Map<IdentifierType, Set<String>> recordIdentifiers =
+                    StandardIdentifiers.read(new MarcDataReader(dto.getRecord()));
+
+            for (Map.Entry<IdentifierType, Set<String>> entry : recordIdentifiers.entrySet()) {
+                all.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+            }
+
+            identifiers.put(dto, recordIdentifiers);
+        }
+
+        Map<RecordDTO, Set<IdentifierType>> duplicates = new IdentityHashMap<>();
+
+        if (all.isEmpty()) {
+            return duplicates;
+        }
+
+        Map<IdentifierType, Set<String>> found =
+                IndexingBO.getInstance(this.getSchema()).findIdentifiers(RecordType.BIBLIO, all);
+
+        for (Map.Entry<RecordDTO, Map<IdentifierType, Set<String>>> entry :
+                identifiers.entrySet()) {
+
+            for (Map.Entry<IdentifierType, Set<String>> recordIdentifiers :
+                    entry.getValue().entrySet()) {
+
+                Set<String> foundIdentifiers =
+                        found.getOrDefault(recordIdentifiers.getKey(), Collections.emptySet());
+
+                if (!Collections.disjoint(foundIdentifiers, recordIdentifiers.getValue())) {
+                    duplicates
+                            .computeIfAbsent(
+                                    entry.getKey(), k -> EnumSet.noneOf(IdentifierType.class))
+                            .add(recordIdentifiers.getKey());
+                }
+            }
+        }
+
+        return duplicates;
+    }
+
+    // Lists the identifiers of the duplicated records as shown, so the page can flag them
+    public void markDuplicates(ImportDTO list) {
+        List<String> isbnList = new ArrayList<>();
+        List<String> issnList = new ArrayList<>();
+        List<String> isrcList = new ArrayList<>();
+
+        for (Map.Entry<RecordDTO, Set<IdentifierType>> entry :
+                this.findDuplicates(list.getRecordList()).entrySet()) {
+
+            BiblioRecordDTO dto = (BiblioRecordDTO) entry.getKey();
+
+            for (IdentifierType type : entry.getValue()) {
+                switch (type) {
+                    case ISBN:
+                        isbnList.add(StringUtils.lowerCase(dto.getIsbn()));
+                        break;
+                    case ISSN:
+                        issnList.add(StringUtils.lowerCase(dto.getIssn()));
+                        break;
+                    case ISRC:
+                        isrcList.add(StringUtils.lowerCase(dto.getIsrc()));
+                        break;
+                }
+            }
+        }
+
+        list.setFoundISBN(isbnList);
+        list.setFoundISSN(issnList);
+        list.setFoundISRC(isrcList);
+    }
+
     public RecordDTO dtoFromRecord(Record record) {
         String schema = this.getSchema();
         RecordDTO rdto = null;
@@ -19,11 +19,289 @@
  ******************************************************************************/
 package biblivre.cataloging;
 
+import biblivre.administration.indexing.IdentifierDTO;
+import biblivre.cataloging.bibliographic.BiblioRecordDAO;
+import biblivre.cataloging.enums.ImportEncoding;
+import biblivre.cataloging.enums.ImportFormat;
+import biblivre.cataloging.enums.ImportJobStatus;
+import biblivre.cataloging.enums.RecordType;
 import biblivre.core.AbstractDAO;
+import biblivre.core.CopyWriter;
+import biblivre.core.exceptions.DAOException;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.postgresql.PGConnection;
 
 public class ImportDAO extends AbstractDAO {
 
     public static ImportDAO getInstance(String schema) {
         return (ImportDAO) AbstractDAO.getInstance(ImportDAO.class, schema);
     }
+
+    public boolean save(ImportJobDTO dto) {
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            dto.setId(this.getNextSerial("import_jobs_id_seq"));
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("INSERT INTO import_jobs ");
+            sql.append("(id, file_name, path, format, encoding, status, size, created_by) ");
+            sql.append("VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, dto.getId());
+            pst.setString(2, dto.getFileName());
+            pst.setString(3, dto.getFile().getAbsolutePath());
+            pst.setString(4, dto.getFormat().toString());
+            pst.setString(5, dto.getEncoding().toString());
+            pst.setString(6, dto.getStatus().toString());
+            pst.setLong(7, dto.getSize());
+            pst.setInt(8, dto.getCreatedBy());
+
+            return pst.executeUpdate() > 0;
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    public ImportJobDTO get(int id) {
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            PreparedStatement pst = con.prepareStatement("SELECT * FROM import_jobs WHERE id = ?;");
+            pst.setInt(1, id);
+
+            ResultSet rs = pst.executeQuery();
+
+            if (rs.next()) {
+                return this.populateDTO(rs);
+            }
+
+            return null;
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    public boolean updateStatus(ImportJobDTO dto) {
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            String sql = "UPDATE import_jobs SET status = ?, modified = now() WHERE id = ?;";
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            pst.setString(1, dto.getStatus().toString());
+            pst.setInt(2, dto.getId());
+
+            return pst.executeUpdate() > 0;
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    public List<Integer> getNextSerials(String sequence, int count) {
+        List<Integer> serials = new ArrayList<>(count);
+
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            String sql = "SELECT nextval(?::regclass) FROM generate_series(1, ?);";
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            pst.setString(1, sequence);
+            pst.setInt(2, count);
+
+            ResultSet rs = pst.executeQuery();
+
+            while (rs.next()) {
+                serials.add(rs.getInt(1));
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+
+        return serials;
+    }
+
+    /**
+     * Writes a chunk of records, which already have their ids, through COPY and queues them for
+     * indexing. The progress of the job is saved in the same transaction, so a stopped job
+     * continues right after the last chunk written.
+     *
+     * @param records records read from the file, by record type
+     * @param identifiers standard identifiers of the bibliographic records, written right away so
+     *     the duplicate check of the following chunks finds them before the records are indexed
+     * @param read records of the file in the chunk, including the ones that couldn't be read
+     * @param duplicates records of the file in the chunk skipped as already in the catalog
+     * @param failed records of the file in the chunk that couldn't be read
+     * @param bytesRead bytes of the file read up to the end of the chunk
+     */
+    public void saveChunk(
+            ImportJobDTO job,
+            Map<RecordType, List<RecordDTO>> records,
+            List<IdentifierDTO> identifiers,
+            int read,
+            int duplicates,
+            int failed,
+            long bytesRead) {
+
+        Connection con = null;
+        int imported = 0;
+
+        try {
+            con = this.getConnection();
+            con.setAutoCommit(false);
+
+            PGConnection pgcon = this.getPGConnection(con);
+
+            for (Map.Entry<RecordType, List<RecordDTO>> entry : records.entrySet()) {
+                this.copyRecords(pgcon, entry.getKey(), entry.getValue(), job.getCreatedBy());
+                this.copyIndexingQueue(pgcon, entry.getKey(), entry.getValue());
+
+                imported += entry.getValue().size();
+            }
+
+            this.copyIdentifiers(pgcon, identifiers);
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("UPDATE import_jobs SET position = position + ?, ");
+            sql.append("imported = imported + ?, duplicates = duplicates + ?, ");
+            sql.append("failed = failed + ?, bytes_read = ?, modified = now() WHERE id = ?;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, read);
+            pst.setInt(2, imported);
+            pst.setInt(3, duplicates);
+            pst.setInt(4, failed);
+            pst.setLong(5, bytesRead);
+            pst.setInt(6, job.getId());
+            pst.executeUpdate();
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    private void copyRecords(
+            PGConnection pgcon, RecordType recordType, List<RecordDTO> dtos, int createdBy)
+            throws SQLException {
+
+        boolean brief = recordType == RecordType.BIBLIO;
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("COPY ").append(recordType).append("_records ");
+        sql.append("(id, iso2709, material, database, created_by");
+
+        if (brief) {
+            for (String column : BiblioRecordDAO.BRIEF_COLUMNS) {
+                sql.append(", ").append(column);
+            }
+        }
+
+        sql.append(") FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (RecordDTO dto : dtos) {
+                writer.column(dto.getId());
+                writer.column(dto.getUTF8Iso2709());
+                writer.column(dto.getMaterialType().toString());
+                writer.column(dto.getRecordDatabase().toString());
+                writer.column(createdBy);
+
+                if (brief) {
+                    for (String value : BiblioRecordDAO.getBriefValues(dto)) {
+                        writer.column(value);
+                    }
+                }
+
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+    }
+
+    private void copyIndexingQueue(PGConnection pgcon, RecordType recordType, List<RecordDTO> dtos)
+            throws SQLException {
+
+        String sql = "COPY indexing_queue (record_type, record_id) FROM STDIN;";
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql)) {
+            for (RecordDTO dto : dtos) {
+                writer.column(recordType.toString());
+                writer.column(dto.getId());
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+    }
+
+    private void copyIdentifiers(PGConnection pgcon, List<IdentifierDTO> identifiers)
+            throws SQLException {
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("COPY ").append(RecordType.BIBLIO).append("_idx_identifiers ");
+        sql.append("(record_id, identifier_type, identifier) FROM STDIN;");
+
+        try (CopyWriter writer = new CopyWriter(pgcon, sql.toString())) {
+            for (IdentifierDTO identifier : identifiers) {
+                writer.column(identifier.getRecordId());
+                writer.column(identifier.getType().toString());
+                writer.column(identifier.getIdentifier());
+                writer.endRow();
+            }
+
+            writer.finish();
+        }
+    }
+
+    private ImportJobDTO populateDTO(ResultSet rs) throws SQLException {
+        ImportJobDTO dto = new ImportJobDTO();
+
+        dto.setId(rs.getInt("id"));
+        dto.setFileName(rs.getString("file_name"));
+        dto.setFile(new File(rs.getString("path")));
+        dto.setFormat(ImportFormat.fromString(rs.getString("format")));
+        dto.setEncoding(ImportEncoding.fromString(rs.getString("encoding")));
+        dto.setStatus(ImportJobStatus.fromString(rs.getString("status")));
+        dto.setSize(rs.getLong("size"));
+        dto.setPosition(rs.getInt("position"));
+        dto.setBytesRead(rs.getLong("bytes_read"));
+        dto.setImported(rs.getInt("imported"));
+        dto.setDuplicates(rs.getInt("duplicates"));
+        dto.setFailed(rs.getInt("failed"));
+        dto.setCreated(rs.getTimestamp("created"));
+        dto.setCreatedBy(rs.getInt("created_by"));
+        dto.setModified(rs.getTimestamp("modified"));
+
+        return dto;
+    }
 }
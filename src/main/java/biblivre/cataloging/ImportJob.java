@@ -0,0 +1,292 @@
+package biblivre.cataloging;
+
+import biblivre.administration.indexing.IdentifierDTO;
+import biblivre.administration.indexing.IndexingQueue;
+import biblivre.cataloging.authorities.AuthorityRecordDTO;
+import biblivre.cataloging.bibliographic.BiblioRecordDTO;
+import biblivre.cataloging.enums.IdentifierType;
+import biblivre.cataloging.enums.ImportJobStatus;
+import biblivre.cataloging.enums.RecordDatabase;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.SearchResultsCache;
+import biblivre.cataloging.vocabulary.VocabularyRecordDTO;
+import biblivre.marc.MarcDataReader;
+import biblivre.marc.MarcFormatDetector;
+import biblivre.marc.MaterialType;
+import biblivre.marc.StandardIdentifiers;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.input.CountingInputStream;
+import org.marc4j.MarcReader;
+import org.marc4j.marc.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports a file straight into the work database. Records are parsed as the file is read, checked
+ * for duplicates and written in chunks through COPY, each chunk queued for indexing in the same
+ * transaction as the progress of the job, so memory use doesn't grow with the file and a stopped
+ * job continues after the last chunk written.
+ */
+public class ImportJob {
+    private static final Logger logger = LoggerFactory.getLogger(ImportJob.class);
+
+    public static final int CHUNK_SIZE = 1000;
+
+    private final String schema;
+    private final ImportJobDTO job;
+    private final ImportBO bo;
+    private final ImportDAO dao;
+
+    public ImportJob(String schema, ImportJobDTO job) {
+        this.schema = schema;
+        this.job = job;
+        this.bo = ImportBO.getInstance(schema);
+        this.dao = ImportDAO.getInstance(schema);
+    }
+
+    public void run() {
+        this.job.start();
+        this.dao.updateStatus(this.job);
+
+        try (CountingInputStream counter =
+                new CountingInputStream(new FileInputStream(this.job.getFile()))) {
+
+            BufferedInputStream is = new BufferedInputStream(counter);
+            byte[] prefix = MarcFormatDetector.readPrefix(is);
+
+            MarcReader reader =
+                    ImportBO.createReader(is, this.job.getFormat(), this.job.getEncoding(), prefix);
+
+            // Records of a previous run were already saved
+            this.skip(reader, this.job.getPosition());
+
+            // Chunks a previous run saved but didn't index
+            this.index();
+
+            Chunk chunk;
+
+            while ((chunk = this.readChunk(reader)) != null) {
+                int duplicates = this.filterDuplicates(chunk);
+
+                this.assignIds(chunk.records);
+
+                int imported = chunk.countRecords();
+                int failed = chunk.read - imported - duplicates;
+                long bytesRead = counter.getByteCount();
+
+                this.dao.saveChunk(
+                        this.job,
+                        chunk.records,
+                        chunk.listIdentifiers(),
+                        chunk.read,
+                        duplicates,
+                        failed,
+                        bytesRead);
+                this.job.addChunk(chunk.read, imported, duplicates, failed, bytesRead);
+
+                this.index();
+
+                for (RecordType recordType : chunk.records.keySet()) {
+                    SearchResultsCache.invalidate(this.schema, recordType);
+                }
+            }
+
+            this.job.setStatus(ImportJobStatus.COMPLETE);
+        } catch (Exception e) {
+            ImportJob.logger.error("Import job " + this.job.getId() + " failed", e);
+
+            this.job.setStatus(ImportJobStatus.FAILED);
+        }
+
+        this.dao.updateStatus(this.job);
+
+        if (this.job.isComplete()) {
+            this.job.getFile().delete();
+        }
+    }
+
+    // Reads up to CHUNK_SIZE records of the file, or returns null at its end
+    private Chunk readChunk(MarcReader reader) {
+        Chunk chunk = new Chunk();
+
+        while (chunk.read < ImportJob.CHUNK_SIZE && reader.hasNext()) {
+            chunk.read++;
+
+            try {
+                RecordDTO dto = this.createRecord(reader.next());
+
+                if (dto != null) {
+                    chunk.records
+                            .computeIfAbsent(
+                                    dto.getMaterialType().getRecordType(), k -> new ArrayList<>())
+                            .add(dto);
+                }
+            } catch (Exception e) {
+                ImportJob.logger.debug("Error reading record", e);
+            }
+        }
+
+        return (chunk.read > 0) ? chunk : null;
+    }
+
+    private RecordDTO createRecord(Record record) {
+        if (record == null) {
+            return null;
+        }
+
+        MaterialType materialType = MaterialType.fromRecord(record);
+        RecordDTO dto = null;
+
+        switch (materialType.getRecordType()) {
+            case BIBLIO:
+                dto = new BiblioRecordDTO();
+                break;
+            case AUTHORITIES:
+                dto = new AuthorityRecordDTO();
+                break;
+            case VOCABULARY:
+                dto = new VocabularyRecordDTO();
+                break;
+            default:
+                // Holdings can't be imported without their bibliographic record
+                return null;
+        }
+
+        dto.setRecord(record);
+        dto.setMaterialType(materialType);
+        dto.setRecordDatabase(RecordDatabase.WORK);
+        dto.setCreatedBy(this.job.getCreatedBy());
+
+        return dto;
+    }
+
+    /*
+     * Removes the bibliographic records that are already in the catalog, found with a single
+     * query for the whole chunk, or whose identifiers an earlier record of the chunk has. Earlier
+     * chunks are in the catalog already, as their identifiers are saved with them instead of
+     * waiting for the records to be indexed.
+     */
+    private int filterDuplicates(Chunk chunk) {
+        List<RecordDTO> records = chunk.records.get(RecordType.BIBLIO);
+
+        if (records == null) {
+            return 0;
+        }
+
+        Set<RecordDTO> duplicates = this.bo.findDuplicates(records).keySet();
+        Set<String> seen = new HashSet<>();
+        int count = 0;
+
+        for (Iterator<RecordDTO> iterator = records.iterator(); iterator.hasNext(); ) {
+            RecordDTO dto = iterator.next();
+            boolean duplicate = duplicates.contains(dto);
+
+            Map<IdentifierType, Set<String>> identifiers =
+                    StandardIdentifiers.read(new MarcDataReader(dto.getRecord()));
+
+            for (Map.Entry<IdentifierType, Set<String>> entry : identifiers.entrySet()) {
+                for (String identifier : entry.getValue()) {
+                    duplicate |= !seen.add(entry.getKey() + ":" + identifier);
+                }
+            }
+
+            if (duplicate) {
+                iterator.remove();
+                count++;
+            } else if (!identifiers.isEmpty()) {
+                chunk.identifiers.put(dto, identifiers);
+            }
+        }
+
+        if (records.isEmpty()) {
+            chunk.records.remove(RecordType.BIBLIO);
+        }
+
+        return count;
+    }
+
+    private void assignIds(Map<RecordType, List<RecordDTO>> records) {
+        for (Map.Entry<RecordType, List<RecordDTO>> entry : records.entrySet()) {
+            List<RecordDTO> dtos = entry.getValue();
+            Iterator<Integer> ids =
+                    this.dao
+                            .getNextSerials(entry.getKey() + "_records_id_seq", dtos.size())
+                            .iterator();
+
+            for (RecordDTO dto : dtos) {
+                dto.setId(ids.next());
+                dto.setDateOfLastTransaction();
+                dto.setFixedLengthDataElements();
+            }
+        }
+    }
+
+    private void skip(MarcReader reader, int position) {
+        for (int i = 0; i < position && reader.hasNext(); i++) {
+            try {
+                reader.next();
+            } catch (Exception e) {
+                // Counted as failed by the run that read it
+            }
+        }
+    }
+
+    // Queued chunks are indexed by the workers when enabled, or in bulk right here otherwise
+    private void index() {
+        if (IndexingQueue.isEnabled(this.schema)) {
+            IndexingQueue.getInstance(this.schema).wakeUp();
+        } else {
+            IndexingQueue.drain(this.schema, ImportJob.CHUNK_SIZE);
+        }
+    }
+
+    private static class Chunk {
+        // Records of the file in the chunk, including the ones that couldn't be read
+        private int read;
+        private final Map<RecordType, List<RecordDTO>> records = new EnumMap<>(RecordType.class);
+
+        // Standard identifiers of the bibliographic records kept
+        private final Map<RecordDTO, Map<IdentifierType, Set<String>>> identifiers =
+                new IdentityHashMap<>();
+
+        private int countRecords() {
+            int count = 0;
+
+            for (List<RecordDTO> dtos : this.records.values()) {
+                count += dtos.size();
+            }
+
+            return count;
+        }
+
+        // Must be called after the records get their ids
+        private List<IdentifierDTO> listIdentifiers() {
+            List<IdentifierDTO> list = new ArrayList<>();
+
+            for (Map.Entry<RecordDTO, Map<IdentifierType, Set<String>>> entry :
+                    this.identifiers.entrySet()) {
+
+                int recordId = entry.getKey().getId();
+
+                for (Map.Entry<IdentifierType, Set<String>> identifiers :
+                        entry.getValue().entrySet()) {
+
+                    for (String identifier : identifiers.getValue()) {
+                        list.add(new IdentifierDTO(recordId, identifiers.getKey(), identifier));
+                    }
+                }
+            }
+
+            return list;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package biblivre.cataloging;
+
+import biblivre.cataloging.enums.ImportEncoding;
+import biblivre.cataloging.enums.ImportFormat;
+import biblivre.cataloging.enums.ImportJobStatus;
+import biblivre.core.AbstractDTO;
+import java.io.File;
+
+/**
+ * A file being imported straight into the work database. <code>position</code> counts the records
+ * of the file already read and saved (or that failed to be read), so a stopped job continues after
+ * them. While the job runs, the instance held by {@link ImportBO} is updated after every chunk.
+ */
+public class ImportJobDTO extends AbstractDTO {
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private String fileName;
+    private File file;
+    private ImportFormat format;
+    private ImportEncoding encoding;
+    private volatile ImportJobStatus status;
+
+    private long size;
+    private volatile int position;
+    private volatile long bytesRead;
+    private volatile int imported;
+    private volatile int duplicates;
+    private volatile int failed;
+
+    // Where the current run started, for its rate
+    private transient long startTime;
+    private transient long startBytes;
+
+    private final transient Object monitor = new Object();
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    public ImportFormat getFormat() {
+        return this.format;
+    }
+
+    public void setFormat(ImportFormat format) {
+        this.format = format;
+    }
+
+    public ImportEncoding getEncoding() {
+        return this.encoding;
+    }
+
+    public void setEncoding(ImportEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    public ImportJobStatus getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(ImportJobStatus status) {
+        this.status = status;
+
+        this.signal();
+    }
+
+    public boolean isComplete() {
+        return this.status == ImportJobStatus.COMPLETE;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public int getPosition() {
+        return this.position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    public int getImported() {
+        return this.imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getDuplicates() {
+        return this.duplicates;
+    }
+
+    public void setDuplicates(int duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public int getFailed() {
+        return this.failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public void start() {
+        this.startTime = System.currentTimeMillis();
+        this.startBytes = this.bytesRead;
+
+        this.setStatus(ImportJobStatus.RUNNING);
+    }
+
+    // Called once the records of a chunk are committed
+    public void addChunk(int records, int imported, int duplicates, int failed, long bytesRead) {
+        this.position += records;
+        this.imported += imported;
+        this.duplicates += duplicates;
+        this.failed += failed;
+        this.bytesRead = bytesRead;
+
+        this.signal();
+    }
+
+    /**
+     * Blocks until more than <code>position</code> records are read or the job stops, so a progress
+     * request can wait for the next change instead of polling.
+     */
+    public boolean awaitChange(int position, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (this.monitor) {
+            while (this.status == ImportJobStatus.RUNNING && this.position <= position) {
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                this.monitor.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    // Bytes per second in the current run
+    public double getRate() {
+        long elapsed = System.currentTimeMillis() - this.startTime;
+
+        if (this.startTime == 0 || elapsed <= 0) {
+            return 0;
+        }
+
+        return (this.bytesRead - this.startBytes) * 1000.0 / elapsed;
+    }
+
+    // Estimated milliseconds until the end of the file, or -1 before the first chunk
+    public long getEta() {
+        if (this.status != ImportJobStatus.RUNNING) {
+            return 0;
+        }
+
+        double rate = this.getRate();
+
+        if (rate <= 0) {
+            return -1;
+        }
+
+        return Math.round(Math.max(0, this.size - this.bytesRead) * 1000.0 / rate);
+    }
+
+    private void signal() {
+        synchronized (this.monitor) {
+            this.monitor.notifyAll();
+        }
+    }
+}
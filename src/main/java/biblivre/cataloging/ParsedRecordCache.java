@@ -0,0 +1,236 @@
+package biblivre.cataloging;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.StaticBO;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.utils.Constants;
+import biblivre.marc.MarcDataReader;
+import biblivre.marc.MarcUtils;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.tuple.Pair;
+import org.marc4j.marc.ControlField;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.MarcFactory;
+import org.marc4j.marc.Record;
+import org.marc4j.marc.Subfield;
+
+/**
+ * Least recently used cache of parsed ISO2709 records, per schema, keyed by record type and id and
+ * checked against the modification time of the record. Its size is set by the <code>
+ * cataloging.record_cache_size</code> configuration (0 disables it).
+ *
+ * <p>marc4j records are mutable, so {@link #getRecord} always returns a copy of the cached one,
+ * which is much cheaper than parsing it again, and never the cached instance itself. {@link
+ * #getReader} shares the cached record and must only be used for reading; records missing from the
+ * cache are read lazily from their ISO2709 bytes instead of being parsed.
+ */
+public class ParsedRecordCache extends StaticBO {
+    private static Map<String, SchemaCache> caches;
+
+    private ParsedRecordCache() {}
+
+    static {
+        ParsedRecordCache.reset();
+    }
+
+    public static void reset() {
+        ParsedRecordCache.caches = new ConcurrentHashMap<>();
+    }
+
+    public static Record getRecord(
+            String schema, RecordType recordType, int id, Date modified, byte[] iso2709) {
+
+        return ParsedRecordCache.getRecord(schema, recordType, id, modified, iso2709, true);
+    }
+
+    /**
+     * Returns a parsed copy of the record. With <code>store</code> false, records missing from the
+     * cache are parsed without being added to it, so that scans over the whole catalog don't evict
+     * the records in use.
+     */
+    public static Record getRecord(
+            String schema,
+            RecordType recordType,
+            int id,
+            Date modified,
+            byte[] iso2709,
+            boolean store) {
+
+        return ParsedRecordCache.getRecord(
+                schema,
+                recordType,
+                id,
+                modified,
+                iso2709,
+                store,
+                ParsedRecordCache.getMaxSize(schema));
+    }
+
+    static Record getRecord(
+            String schema,
+            RecordType recordType,
+            int id,
+            Date modified,
+            byte[] iso2709,
+            boolean store,
+            int maxSize) {
+
+        Entry entry = ParsedRecordCache.getEntry(schema, recordType, id, modified, maxSize);
+
+        if (entry != null) {
+            return ParsedRecordCache.copy(entry.record);
+        }
+
+        Record record = MarcUtils.iso2709ToRecord(iso2709);
+
+        if (!store || record == null || modified == null || maxSize <= 0) {
+            return record;
+        }
+
+        // The caller may edit its record, which must not change the cached one
+        ParsedRecordCache.getCache(schema)
+                .put(Pair.of(recordType, id), new Entry(modified.getTime(), record), maxSize);
+
+        return ParsedRecordCache.copy(record);
+    }
+
+    public static MarcDataReader getReader(
+            String schema, RecordType recordType, int id, Date modified, byte[] iso2709) {
+
+        Entry entry =
+                ParsedRecordCache.getEntry(
+                        schema, recordType, id, modified, ParsedRecordCache.getMaxSize(schema));
+
+        if (entry == null) {
+            return new MarcDataReader(iso2709);
+        }
+
+        return entry.getReader();
+    }
+
+    public static ParsedRecordCacheStatusDTO getStatus(String schema) {
+        SchemaCache cache = ParsedRecordCache.getCache(schema);
+
+        return new ParsedRecordCacheStatusDTO(
+                cache.size(),
+                ParsedRecordCache.getMaxSize(schema),
+                cache.hits.get(),
+                cache.misses.get(),
+                cache.evictions.get());
+    }
+
+    // Null when the record isn't cached or was modified since
+    private static Entry getEntry(
+            String schema, RecordType recordType, int id, Date modified, int maxSize) {
+
+        if (modified == null || maxSize <= 0) {
+            return null;
+        }
+
+        SchemaCache cache = ParsedRecordCache.getCache(schema);
+        Entry entry = cache.get(Pair.of(recordType, id));
+
+        if (entry != null && entry.modified == modified.getTime()) {
+            cache.hits.incrementAndGet();
+            return entry;
+        }
+
+        cache.misses.incrementAndGet();
+
+        return null;
+    }
+
+    private static Record copy(Record record) {
+        MarcFactory factory = MarcFactory.newInstance();
+        Record copy = factory.newRecord(record.getLeader().marshal());
+
+        for (ControlField field : record.getControlFields()) {
+            copy.addVariableField(factory.newControlField(field.getTag(), field.getData()));
+        }
+
+        for (DataField field : record.getDataFields()) {
+            DataField datafield =
+                    factory.newDataField(
+                            field.getTag(), field.getIndicator1(), field.getIndicator2());
+
+            for (Subfield subfield : field.getSubfields()) {
+                datafield.addSubfield(factory.newSubfield(subfield.getCode(), subfield.getData()));
+            }
+
+            copy.addVariableField(datafield);
+        }
+
+        return copy;
+    }
+
+    private static int getMaxSize(String schema) {
+        return Configurations.getInt(schema, Constants.CONFIG_RECORD_CACHE_SIZE, 10000);
+    }
+
+    private static SchemaCache getCache(String schema) {
+        return ParsedRecordCache.caches.computeIfAbsent(schema, k -> new SchemaCache());
+    }
+
+    private static final class Entry {
+        private final long modified;
+        private final Record record;
+        private volatile MarcDataReader reader;
+
+        private Entry(long modified, Record record) {
+            this.modified = modified;
+            this.record = record;
+        }
+
+        private MarcDataReader getReader() {
+            MarcDataReader reader = this.reader;
+
+            if (reader == null) {
+                reader = new MarcDataReader(this.record);
+                this.reader = reader;
+            }
+
+            return reader;
+        }
+    }
+
+    private static final class SchemaCache {
+        private final LinkedHashMap<Pair<RecordType, Integer>, Entry> entries =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private synchronized Entry get(Pair<RecordType, Integer> key) {
+            return this.entries.get(key);
+        }
+
+        private synchronized int size() {
+            return this.entries.size();
+        }
+
+        private synchronized void put(Pair<RecordType, Integer> key, Entry entry, int maxSize) {
+            Entry current = this.entries.get(key);
+
+            // A slower reader may come with an older version of the record
+            if (current != null && current.modified > entry.modified) {
+                return;
+            }
+
+            this.entries.put(key, entry);
+
+            Iterator<Entry> iterator = this.entries.values().iterator();
+
+            while (this.entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+}
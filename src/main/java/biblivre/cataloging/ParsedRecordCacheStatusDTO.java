@@ -0,0 +1,45 @@
+package biblivre.cataloging;
+
+import biblivre.core.AbstractDTO;
+
+public class ParsedRecordCacheStatusDTO extends AbstractDTO {
+    private static final long serialVersionUID = 1L;
+
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public ParsedRecordCacheStatusDTO(
+            int size, int maxSize, long hits, long misses, long evictions) {
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    // Parsed records held
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    // Records served without parsing since the server started
+    public long getHits() {
+        return this.hits;
+    }
+
+    // Records not found in the cache since the server started
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+}
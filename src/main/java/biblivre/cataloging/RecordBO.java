@@ -19,16 +19,28 @@
  ******************************************************************************/
 package biblivre.cataloging;
 
+import biblivre.administration.indexing.IndexingBO;
 import biblivre.administration.indexing.IndexingGroups;
+import biblivre.administration.indexing.IndexingQueue;
 import biblivre.cataloging.authorities.AuthorityRecordBO;
 import biblivre.cataloging.bibliographic.BiblioRecordBO;
+import biblivre.cataloging.enums.ExportFormat;
 import biblivre.cataloging.enums.RecordDatabase;
 import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.enums.SearchBackend;
 import biblivre.cataloging.holding.HoldingBO;
 import biblivre.cataloging.holding.HoldingDTO;
+import biblivre.cataloging.search.AutocompleteIndex;
+import biblivre.cataloging.search.AutocompleteIndexes;
+import biblivre.cataloging.search.InvertedIndex;
+import biblivre.cataloging.search.InvertedIndexes;
+import biblivre.cataloging.search.SearchCursors;
 import biblivre.cataloging.search.SearchDAO;
 import biblivre.cataloging.search.SearchDTO;
 import biblivre.cataloging.search.SearchQueryDTO;
+import biblivre.cataloging.search.SearchResults;
+import biblivre.cataloging.search.SearchResultsCache;
+import biblivre.cataloging.search.SearchTermDTO;
 import biblivre.cataloging.vocabulary.VocabularyRecordBO;
 import biblivre.core.AbstractBO;
 import biblivre.core.AbstractDTO;
@@ -42,18 +54,20 @@ import biblivre.core.file.DiskFile;
 import biblivre.core.utils.Constants;
 import biblivre.core.utils.TextUtils;
 import biblivre.digitalmedia.DigitalMediaBO;
+import biblivre.marc.MarcExportWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.marc4j.MarcStreamWriter;
 
 public abstract class RecordBO extends AbstractBO {
     protected RecordDAO rdao;
@@ -111,9 +125,7 @@ public abstract class RecordBO extends AbstractBO {
     public Map<Integer, RecordDTO> map(Set<Integer> ids, int mask) {
         Map<Integer, RecordDTO> map = this.rdao.map(ids);
 
-        for (RecordDTO dto : map.values()) {
-            this.populateDetails(dto, mask);
-        }
+        this.populateDetails(new ArrayList<>(map.values()), mask);
 
         return map;
     }
@@ -122,16 +134,62 @@ public abstract class RecordBO extends AbstractBO {
         return this.rdao.list(offset, limit);
     }
 
+    public List<RecordDTO> listAfter(int lastId, int limit) {
+        return this.rdao.listAfter(lastId, limit);
+    }
+
+    public List<RecordDTO> listModifiedSince(Date since, int lastId, int limit) {
+        return this.rdao.listModifiedSince(since, lastId, limit);
+    }
+
     public List<RecordDTO> listByLetter(char letter, int order) {
         return this.populateDetails(this.rdao.listByLetter(letter, order), RecordBO.MARC_INFO);
     }
 
     public boolean save(RecordDTO dto) {
-        return this.rdao.save(dto);
+        boolean success = this.rdao.save(dto);
+
+        this.invalidateSearchResults();
+
+        return success;
     }
 
     public boolean update(RecordDTO dto) {
-        return this.rdao.update(dto);
+        boolean success = this.rdao.update(dto);
+
+        this.invalidateSearchResults();
+
+        return success;
+    }
+
+    public List<RecordDTO> saveAll(List<RecordDTO> dtos) {
+        RecordType recordType = this.rdao.recordType;
+        List<RecordDTO> saved = new ArrayList<>();
+        boolean queued = this.isIndexingQueued();
+
+        for (RecordDTO dto : dtos) {
+            dto.setId(this.rdao.getNextSerial(recordType + "_records_id_seq"));
+            dto.setDateOfLastTransaction();
+            dto.setFixedLengthDataElements();
+
+            if (this.rdao.save(dto, queued)) {
+                saved.add(dto);
+            }
+        }
+
+        if (saved.isEmpty()) {
+            return saved;
+        }
+
+        if (queued) {
+            IndexingQueue.getInstance(this.getSchema()).wakeUp();
+        } else {
+            IndexingBO.getInstance(this.getSchema()).reindex(recordType, saved);
+        }
+
+        this.invalidateSearchResults();
+
+        return saved;
     }
 
     public boolean moveRecords(
@@ -143,7 +201,11 @@ public abstract class RecordBO extends AbstractBO {
             authorize("cataloging.bibliographic", "private_database_access", authorizationPoints);
         }
 
-        return this.rdao.moveRecords(ids, modifiedBy, recordDatabase);
+        boolean success = this.rdao.moveRecords(ids, modifiedBy, recordDatabase);
+
+        this.invalidateSearchResults();
+
+        return success;
     }
 
     public boolean listContainsPrivateRecord(Set<Integer> ids) {
@@ -151,39 +213,40 @@ public abstract class RecordBO extends AbstractBO {
     }
 
     public DiskFile createExportFile(Set<Integer> ids, AuthorizationPoints authorizationPoints) {
+        return this.createExportFile(ids, ExportFormat.ISO2709, authorizationPoints);
+    }
+
+    public DiskFile createExportFile(
+            Set<Integer> ids, ExportFormat format, AuthorizationPoints authorizationPoints) {
+
         if (listContainsPrivateRecord(ids)) {
             authorize("cataloging.bibliographic", "private_database_access", authorizationPoints);
         }
 
-        Map<Integer, RecordDTO> records = this.map(ids);
-
-        FileOutputStream out = null;
-
         try {
-            File file = File.createTempFile("biblivre", ".mrc");
-
-            out = new FileOutputStream(file);
+            File file = File.createTempFile("biblivre", "." + format.getExtension());
 
-            MarcStreamWriter writer = new MarcStreamWriter(out);
+            try (MarcExportWriter writer =
+                    MarcExportWriter.create(
+                            format, new BufferedOutputStream(new FileOutputStream(file)))) {
 
-            for (RecordDTO dto : records.values()) {
-                writer.write(dto.getRecord());
+                this.rdao.export(ids, writer);
             }
 
-            writer.close();
-
             return new DiskFile(file, "x-download");
         } catch (Exception e) {
             this.logger.error(e.getMessage(), e);
-        } finally {
-            IOUtils.closeQuietly(out);
         }
 
         return null;
     }
 
     public boolean delete(RecordDTO dto) {
-        return this.rdao.delete(dto);
+        boolean success = this.rdao.delete(dto);
+
+        this.invalidateSearchResults();
+
+        return success;
     }
 
     public Integer count() {
@@ -199,22 +262,57 @@ public abstract class RecordBO extends AbstractBO {
 
         boolean isNewSearch = (search.getId() == null);
 
+        if (this.isCacheable(search)) {
+            if (isNewSearch) {
+                SearchResults cached =
+                        SearchResultsCache.get(
+                                this.getSchema(),
+                                this.rdao.recordType,
+                                search.getQuery().getCacheKey());
+
+                // Equivalent searches share the search id, and with it the cached results
+                if (cached != null) {
+                    search.setId(cached.getSearchId());
+                } else if (!this.sdao.createSearch(search)) {
+                    return false;
+                }
+            }
+
+            return this.paginateSearch(search);
+        }
+
         if (isNewSearch) {
             if (!this.sdao.createSearch(search)) {
                 return false;
             }
+        } else {
+            SearchCursors.invalidate(this.getSchema(), this.rdao.recordType, search.getId());
         }
 
+        SearchBackend backend = this.getSearchBackend();
+
         switch (searchMode) {
             case SIMPLE:
-                if (!this.sdao.populateSimpleSearch(search, !isNewSearch)) {
+                boolean simpleFound =
+                        (backend == SearchBackend.FULLTEXT)
+                                ? this.sdao.populateFullTextSimpleSearch(search, !isNewSearch)
+                                : this.sdao.populateSimpleSearch(
+                                        search, this.getInvertedIndex(backend), !isNewSearch);
+
+                if (!simpleFound) {
                     return false;
                 }
 
                 break;
 
             case ADVANCED:
-                if (!this.sdao.populateAdvancedSearch(search, !isNewSearch)) {
+                boolean advancedFound =
+                        (backend == SearchBackend.FULLTEXT)
+                                ? this.sdao.populateFullTextAdvancedSearch(search, !isNewSearch)
+                                : this.sdao.populateAdvancedSearch(
+                                        search, this.getInvertedIndex(backend), !isNewSearch);
+
+                if (!advancedFound) {
                     return false;
                 }
 
@@ -227,6 +325,106 @@ public abstract class RecordBO extends AbstractBO {
         return this.paginateSearch(search);
     }
 
+    private SearchBackend getSearchBackend() {
+        return SearchBackend.fromString(
+                Configurations.getString(this.getSchema(), Constants.CONFIG_SEARCH_BACKEND));
+    }
+
+    // Null unless the in memory search backend is enabled
+    private InvertedIndex getInvertedIndex(SearchBackend backend) {
+        if (backend != SearchBackend.MEMORY) {
+            return null;
+        }
+
+        return InvertedIndexes.get(this.getSchema(), this.rdao.recordType);
+    }
+
+    /*
+     * Results of holding searches and of searches restricted by holdings or reservations change
+     * without their records changing, so they are always written to <type>_search_results.
+     */
+    private boolean isCacheable(SearchDTO search) {
+        SearchMode searchMode = search.getSearchMode();
+        SearchQueryDTO query = search.getQuery();
+
+        if (searchMode != SearchMode.SIMPLE && searchMode != SearchMode.ADVANCED) {
+            return false;
+        }
+
+        if (query.isHoldingSearch() || query.isReservedOnly()) {
+            return false;
+        }
+
+        for (SearchTermDTO term : query.getTerms()) {
+            if (StringUtils.startsWith(term.getField(), "holding_")) {
+                return false;
+            }
+        }
+
+        return SearchResultsCache.isEnabled(this.getSchema());
+    }
+
+    private SearchResults getSearchResults(SearchDTO search) {
+        String schema = this.getSchema();
+        RecordType recordType = this.rdao.recordType;
+        String key = search.getQuery().getCacheKey();
+
+        SearchResults results = SearchResultsCache.get(schema, recordType, key);
+
+        if (results != null) {
+            return results;
+        }
+
+        long generation = SearchResultsCache.getGeneration(schema, recordType);
+        SearchBackend backend = this.getSearchBackend();
+        InvertedIndex index = this.getInvertedIndex(backend);
+
+        results =
+                (search.getSearchMode() == SearchMode.SIMPLE)
+                        ? this.sdao.listSimpleSearchResults(search, backend, index)
+                        : this.sdao.listAdvancedSearchResults(search, backend, index);
+
+        SearchResultsCache.put(schema, recordType, key, results, generation);
+
+        return results;
+    }
+
+    // With the indexing queue enabled, saved records are indexed in the background
+    protected boolean isIndexingQueued() {
+        return IndexingQueue.isEnabled(this.getSchema());
+    }
+
+    protected void reindex(RecordDTO dto, boolean queued) {
+        if (queued) {
+            IndexingQueue.getInstance(this.getSchema()).wakeUp();
+        } else {
+            IndexingBO.getInstance(this.getSchema()).reindex(this.rdao.recordType, dto);
+        }
+    }
+
+    protected void deleteIndexes(RecordDTO dto, boolean queued) {
+        if (queued) {
+            IndexingQueue.getInstance(this.getSchema()).wakeUp();
+        } else {
+            IndexingBO.getInstance(this.getSchema()).deleteIndexes(this.rdao.recordType, dto);
+        }
+    }
+
+    /*
+     * Read your writes for the cataloging screens: waits a little for a record saved or deleted
+     * through the indexing queue to be indexed, so searches run right after find it.
+     */
+    public void awaitIndexing(RecordDTO dto) {
+        if (this.isIndexingQueued()) {
+            IndexingQueue.getInstance(this.getSchema()).await(this.rdao.recordType, dto.getId());
+        }
+    }
+
+    // Must be called after the records are reindexed, so no search can cache the old results
+    protected void invalidateSearchResults() {
+        SearchResultsCache.invalidate(this.getSchema(), this.rdao.recordType);
+    }
+
     public boolean paginateSearch(SearchDTO search, AuthorizationPoints authorizationPoints) {
         if (search.getQuery().getDatabase() == RecordDatabase.PRIVATE) {
             this.authorize(
@@ -242,20 +440,36 @@ public abstract class RecordBO extends AbstractBO {
             return hbo.paginateHoldingSearch(search);
         }
 
-        Map<Integer, Integer> groupCount = this.rdao.countSearchResults(search);
+        boolean cacheable = this.isCacheable(search);
+        SearchResults results = cacheable ? this.getSearchResults(search) : null;
+
+        Map<Integer, Integer> groupCount =
+                cacheable ? results.getIndexingGroupCount() : this.rdao.countSearchResults(search);
         Integer count = groupCount.get(search.getIndexingGroup());
 
         if (count == null || count == 0) {
             return false;
         }
 
-        List<RecordDTO> list = this.rdao.getSearchResults(search);
+        search.setCursor(SearchCursors.get(this.getSchema(), search));
+
+        List<RecordDTO> list =
+                cacheable
+                        ? this.rdao.getSearchResults(
+                                search,
+                                results.getRecordIds(
+                                        search.getIndexingGroup(),
+                                        search.getPaging().getRecordLimit()))
+                        : this.rdao.getSearchResults(search);
+
+        SearchCursors.put(this.getSchema(), search);
 
         search.getPaging().setRecordCount(count);
         search.setIndexingGroupCount(groupCount);
 
+        this.populateDetails(list, RecordBO.MARC_INFO | RecordBO.HOLDING_INFO);
+
         for (RecordDTO rdto : list) {
-            this.populateDetails(rdto, RecordBO.MARC_INFO | RecordBO.HOLDING_INFO);
             search.add(rdto);
         }
 
@@ -293,28 +507,31 @@ public abstract class RecordBO extends AbstractBO {
     public List<String> phraseAutocomplete(String datafield, String subfield, String query) {
         String[] searchTerms = TextUtils.prepareAutocomplete(query);
 
-        List<String> listA =
-                this.rdao.phraseAutocomplete(datafield, subfield, searchTerms, 10, true);
-        List<String> listB =
-                this.rdao.phraseAutocomplete(datafield, subfield, searchTerms, 5, false);
+        AutocompleteIndex index =
+                AutocompleteIndexes.get(
+                        this.getSchema(), this.rdao.recordType, datafield, subfield);
 
-        listA.addAll(listB);
+        if (index != null) {
+            return index.phrases(searchTerms, 10, 5);
+        }
 
-        return listA;
+        return this.rdao.phraseAutocomplete(datafield, subfield, searchTerms, 10, 5);
     }
 
+    // Only the phrase and record id of each match, the record itself is opened once it is picked
     public DTOCollection<AutocompleteDTO> recordAutocomplete(
             String datafield, String subfield, String query) {
         String[] searchTerms = TextUtils.prepareAutocomplete(query);
 
-        DTOCollection<AutocompleteDTO> listA =
-                this.rdao.recordAutocomplete(datafield, subfield, searchTerms, 10, true);
-        DTOCollection<AutocompleteDTO> listB =
-                this.rdao.recordAutocomplete(datafield, subfield, searchTerms, 5, false);
+        AutocompleteIndex index =
+                AutocompleteIndexes.get(
+                        this.getSchema(), this.rdao.recordType, datafield, subfield);
 
-        listA.addAll(listB);
+        if (index != null) {
+            return index.records(searchTerms, 10, 5);
+        }
 
-        return listA;
+        return this.rdao.recordAutocomplete(datafield, subfield, searchTerms, 10, 5);
     }
 
     public void addAttachment(int recordId, String uri, String description, Integer userId) {
@@ -362,7 +579,11 @@ public abstract class RecordBO extends AbstractBO {
     }
 
     public boolean saveFromBiblivre3(List<? extends AbstractDTO> dtoList) {
-        return this.rdao.saveFromBiblivre3(dtoList);
+        boolean success = this.rdao.saveFromBiblivre3(dtoList);
+
+        this.invalidateSearchResults();
+
+        return success;
     }
 
     public abstract void populateDetails(RecordDTO record, int mask);
@@ -456,6 +677,9 @@ public abstract class RecordBO extends AbstractBO {
 
             success = this.rdao.moveRecords(ids, loggedUserId, RecordDatabase.TRASH);
         }
+
+        this.invalidateSearchResults();
+
         return success;
     }
 
@@ -19,8 +19,11 @@
  ******************************************************************************/
 package biblivre.cataloging;
 
+import biblivre.administration.indexing.IndexingDTO;
 import biblivre.cataloging.enums.RecordDatabase;
 import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.AutocompleteIndex;
+import biblivre.cataloging.search.SearchCursor;
 import biblivre.cataloging.search.SearchDTO;
 import biblivre.core.AbstractDAO;
 import biblivre.core.AbstractDTO;
@@ -28,6 +31,8 @@ import biblivre.core.DTOCollection;
 import biblivre.core.PagingDTO;
 import biblivre.core.enums.SearchMode;
 import biblivre.core.exceptions.DAOException;
+import biblivre.core.utils.CalendarUtils;
+import biblivre.marc.MarcExportWriter;
 import biblivre.marc.MaterialType;
 import java.io.UnsupportedEncodingException;
 import java.sql.Connection;
@@ -36,26 +41,43 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public abstract class RecordDAO extends AbstractDAO {
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     protected RecordType recordType;
 
     public boolean save(RecordDTO dto) {
+        return this.save(dto, false);
+    }
+
+    // When queueIndexing is set, the record is also added to the indexing queue, atomically
+    public boolean save(RecordDTO dto, boolean queueIndexing) {
         Connection con = null;
 
         try {
             con = this.getConnection();
+            con.setAutoCommit(false);
+
+            String[] briefColumns = this.getBriefColumns();
 
             StringBuilder sql = new StringBuilder();
             sql.append("INSERT INTO ").append(this.recordType).append("_records ");
-            sql.append("(id, iso2709, material, database, created_by) ");
-            sql.append("VALUES (?, ?, ?, ?, ?); ");
+            sql.append("(id, iso2709, material, database, created_by");
+
+            for (String column : briefColumns) {
+                sql.append(", ").append(column);
+            }
+
+            sql.append(") VALUES (?, ?, ?, ?, ?");
+            sql.append(StringUtils.repeat(", ?", briefColumns.length));
+            sql.append("); ");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
             pst.setInt(1, dto.getId());
@@ -64,9 +86,19 @@ public abstract class RecordDAO extends AbstractDAO {
             pst.setString(4, dto.getRecordDatabase().toString());
             pst.setInt(5, dto.getCreatedBy());
 
-            return pst.executeUpdate() > 0;
+            this.setBriefValues(pst, 6, dto);
+
+            boolean success = pst.executeUpdate() > 0;
+
+            if (success && queueIndexing) {
+                this.queueIndexing(con, dto.getId());
+            }
+
+            this.commit(con);
 
+            return success;
         } catch (Exception e) {
+            this.rollback(con);
             throw new DAOException(e);
         } finally {
             this.closeConnection(con);
@@ -79,10 +111,19 @@ public abstract class RecordDAO extends AbstractDAO {
         try {
             con = this.getConnection();
 
+            String[] briefColumns = this.getBriefColumns();
+
             StringBuilder sql = new StringBuilder();
             sql.append("INSERT INTO ").append(this.recordType).append("_records ");
-            sql.append("(id, iso2709, material, database, created_by, created, modified) ");
-            sql.append("VALUES (?, ?, ?, ?, ?, ?, ?); ");
+            sql.append("(id, iso2709, material, database, created_by, created, modified");
+
+            for (String column : briefColumns) {
+                sql.append(", ").append(column);
+            }
+
+            sql.append(") VALUES (?, ?, ?, ?, ?, ?, ?");
+            sql.append(StringUtils.repeat(", ?", briefColumns.length));
+            sql.append("); ");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
             for (AbstractDTO abstractDto : dtoList) {
@@ -102,11 +143,13 @@ public abstract class RecordDAO extends AbstractDAO {
                 } else {
                     pst.setNull(7, Types.NULL);
                 }
+                this.setBriefValues(pst, 8, dto);
                 pst.addBatch();
             }
 
-            return pst.executeBatch()[0] > 0;
+            boolean success = pst.executeBatch()[0] > 0;
 
+            return success;
         } catch (Exception e) {
             throw new DAOException(e);
         } finally {
@@ -115,25 +158,48 @@ public abstract class RecordDAO extends AbstractDAO {
     }
 
     public boolean update(RecordDTO dto) {
+        return this.update(dto, false);
+    }
+
+    public boolean update(RecordDTO dto, boolean queueIndexing) {
         Connection con = null;
 
         try {
             con = this.getConnection();
+            con.setAutoCommit(false);
+
+            String[] briefColumns = this.getBriefColumns();
 
             StringBuilder sql = new StringBuilder();
             sql.append("UPDATE ").append(this.recordType).append("_records ");
-            sql.append("SET iso2709 = ?, material = ?, modified = now(), modified_by = ? ");
-            sql.append("WHERE id = ?;");
+            sql.append("SET iso2709 = ?, material = ?, modified = now(), modified_by = ?");
+
+            for (String column : briefColumns) {
+                sql.append(", ").append(column).append(" = ?");
+            }
+
+            sql.append(" WHERE id = ?;");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
             pst.setString(1, dto.getUTF8Iso2709());
             pst.setString(2, dto.getMaterialType().toString());
             pst.setInt(3, dto.getModifiedBy());
-            pst.setInt(4, dto.getId());
 
-            return pst.executeUpdate() > 0;
+            int index = this.setBriefValues(pst, 4, dto);
+
+            pst.setInt(index, dto.getId());
+
+            boolean success = pst.executeUpdate() > 0;
+
+            if (success && queueIndexing) {
+                this.queueIndexing(con, dto.getId());
+            }
+
+            this.commit(con);
 
+            return success;
         } catch (Exception e) {
+            this.rollback(con);
             throw new DAOException(e);
         } finally {
             this.closeConnection(con);
@@ -151,17 +217,11 @@ public abstract class RecordDAO extends AbstractDAO {
             sql.append("SELECT count(*) as total FROM ")
                     .append(this.recordType)
                     .append("_records ");
-            sql.append("WHERE database = ? AND id IN (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
+            sql.append("WHERE database = ? AND id = ANY(?);");
 
-            int i = 1;
             PreparedStatement pst = con.prepareStatement(sql.toString());
-            pst.setString(i++, RecordDatabase.PRIVATE.toString());
-
-            for (Integer id : ids) {
-                pst.setInt(i++, id);
-            }
+            pst.setString(1, RecordDatabase.PRIVATE.toString());
+            this.setIdArray(pst, 2, ids);
 
             ResultSet rs = pst.executeQuery();
             if (rs.next()) {
@@ -176,6 +236,39 @@ public abstract class RecordDAO extends AbstractDAO {
         }
     }
 
+    // Reads the records through a cursor, a chunk at a time, straight into the writer
+    public void export(Set<Integer> ids, MarcExportWriter writer) {
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            // A cursor is only used inside a transaction
+            con.setAutoCommit(false);
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT iso2709 FROM ").append(this.recordType).append("_records ");
+            sql.append("WHERE id = ANY(?) ORDER BY id;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            this.setIdArray(pst, 1, ids);
+            pst.setFetchSize(RecordDAO.EXPORT_FETCH_SIZE);
+
+            ResultSet rs = pst.executeQuery();
+
+            while (rs.next()) {
+                writer.write(rs.getBytes("iso2709"));
+            }
+
+            this.commit(con);
+        } catch (Exception e) {
+            this.rollback(con);
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
     public boolean moveRecords(Set<Integer> ids, int modifiedBy, RecordDatabase database) {
         Connection con = null;
 
@@ -186,18 +279,12 @@ public abstract class RecordDAO extends AbstractDAO {
             StringBuilder sql = new StringBuilder();
             sql.append("UPDATE ").append(this.recordType).append("_records ");
             sql.append("SET database = ?, modified = now(), modified_by = ? ");
-            sql.append("WHERE id IN (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
+            sql.append("WHERE id = ANY(?);");
 
-            int i = 1;
             PreparedStatement pst = con.prepareStatement(sql.toString());
-            pst.setString(i++, database.toString());
-            pst.setInt(i++, modifiedBy);
-
-            for (Integer id : ids) {
-                pst.setInt(i++, id);
-            }
+            pst.setString(1, database.toString());
+            pst.setInt(2, modifiedBy);
+            this.setIdArray(pst, 3, ids);
 
             pst.executeUpdate();
 
@@ -238,10 +325,15 @@ public abstract class RecordDAO extends AbstractDAO {
     }
 
     public boolean delete(RecordDTO dto) {
+        return this.delete(dto, false);
+    }
+
+    public boolean delete(RecordDTO dto, boolean queueIndexing) {
         Connection con = null;
 
         try {
             con = this.getConnection();
+            con.setAutoCommit(false);
 
             StringBuilder sql = new StringBuilder();
             sql.append("DELETE FROM ").append(this.recordType).append("_records ");
@@ -250,15 +342,53 @@ public abstract class RecordDAO extends AbstractDAO {
             PreparedStatement pst = con.prepareStatement(sql.toString());
             pst.setInt(1, dto.getId());
 
-            return pst.executeUpdate() > 0;
+            boolean success = pst.executeUpdate() > 0;
+
+            if (success && queueIndexing) {
+                this.queueIndexing(con, dto.getId());
+            }
+
+            this.commit(con);
 
+            return success;
         } catch (Exception e) {
+            this.rollback(con);
             throw new DAOException(e);
         } finally {
             this.closeConnection(con);
         }
     }
 
+    // Columns derived from the record and stored next to it, written by the same statements
+    protected String[] getBriefColumns() {
+        return new String[0];
+    }
+
+    // Values of getBriefColumns() for the record, in the same order
+    protected String[] getBriefColumnValues(RecordDTO dto) {
+        return new String[0];
+    }
+
+    // Returns the index of the next parameter
+    private int setBriefValues(PreparedStatement pst, int index, RecordDTO dto)
+            throws SQLException {
+
+        for (String value : this.getBriefColumnValues(dto)) {
+            pst.setString(index++, value);
+        }
+
+        return index;
+    }
+
+    private void queueIndexing(Connection con, int recordId) throws SQLException {
+        String sql = "INSERT INTO indexing_queue (record_type, record_id) VALUES (?, ?);";
+
+        PreparedStatement pst = con.prepareStatement(sql);
+        pst.setString(1, this.recordType.toString());
+        pst.setInt(2, recordId);
+        pst.executeUpdate();
+    }
+
     public Integer count(SearchDTO search) {
         Connection con = null;
 
@@ -320,27 +450,52 @@ public abstract class RecordDAO extends AbstractDAO {
     }
 
     public Map<Integer, RecordDTO> map(Set<Integer> ids) {
-        Map<Integer, RecordDTO> map = new HashMap<>();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
+        sql.append("WHERE id = ANY(?);");
+
+        return this.mapByIds(sql.toString(), ids, "id", this::populateDTO);
+    }
+
+    public List<RecordDTO> list(int offset, int limit) {
+        return this.list(offset, limit, null);
+    }
+
+    public List<RecordDTO> list(int offset, int limit, RecordDatabase database) {
+        List<RecordDTO> list = new ArrayList<>();
 
         Connection con = null;
         try {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
-            sql.append("WHERE id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
+
+            if (database != null) {
+                sql.append("WHERE database = ? ");
+            }
+
+            sql.append("ORDER BY id ");
+            sql.append("OFFSET ? LIMIT ?; ");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
+
             int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
+
+            if (database != null) {
+                pst.setString(index++, database.toString());
             }
 
+            pst.setInt(index++, offset);
+            pst.setInt(index++, limit);
+
             ResultSet rs = pst.executeQuery();
+
             while (rs.next()) {
-                RecordDTO dto = this.populateDTO(rs);
-                map.put(dto.getId(), dto);
+                try {
+                    list.add(this.populateDTO(rs, false));
+                } catch (Exception e) {
+                    this.logger.error(e.getMessage(), e);
+                }
             }
         } catch (Exception e) {
             throw new DAOException(e);
@@ -348,14 +503,10 @@ public abstract class RecordDAO extends AbstractDAO {
             this.closeConnection(con);
         }
 
-        return map;
-    }
-
-    public List<RecordDTO> list(int offset, int limit) {
-        return this.list(offset, limit, null);
+        return list;
     }
 
-    public List<RecordDTO> list(int offset, int limit, RecordDatabase database) {
+    public List<RecordDTO> listAfter(int lastId, int limit) {
         List<RecordDTO> list = new ArrayList<>();
 
         Connection con = null;
@@ -363,30 +514,50 @@ public abstract class RecordDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
-
-            if (database != null) {
-                sql.append("WHERE database = ? ");
-            }
-
-            sql.append("ORDER BY id ");
-            sql.append("OFFSET ? LIMIT ?; ");
+            sql.append("WHERE id > ? ORDER BY id LIMIT ?;");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setInt(1, lastId);
+            pst.setInt(2, limit);
 
-            int index = 1;
+            ResultSet rs = pst.executeQuery();
 
-            if (database != null) {
-                pst.setString(index++, database.toString());
+            while (rs.next()) {
+                try {
+                    list.add(this.populateDTO(rs, false));
+                } catch (Exception e) {
+                    this.logger.error(e.getMessage(), e);
+                }
             }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
 
-            pst.setInt(index++, offset);
-            pst.setInt(index++, limit);
+        return list;
+    }
+
+    public List<RecordDTO> listModifiedSince(Date since, int lastId, int limit) {
+        List<RecordDTO> list = new ArrayList<>();
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
+            sql.append("WHERE modified >= ? AND id > ? ORDER BY id LIMIT ?;");
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            pst.setTimestamp(1, CalendarUtils.toSqlTimestamp(since));
+            pst.setInt(2, lastId);
+            pst.setInt(3, limit);
 
             ResultSet rs = pst.executeQuery();
 
             while (rs.next()) {
                 try {
-                    list.add(this.populateDTO(rs));
+                    list.add(this.populateDTO(rs, false));
                 } catch (Exception e) {
                     this.logger.error(e.getMessage(), e);
                 }
@@ -408,18 +579,14 @@ public abstract class RecordDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
             sql.append("SELECT * FROM ").append(this.recordType).append("_records R ");
-            sql.append("LEFT JOIN ").append(this.recordType).append("_idx_sort S ");
+            sql.append("INNER JOIN ").append(this.recordType).append("_idx_sort S ");
             sql.append("ON S.record_id = R.id AND S.indexing_group_id = ? ");
-            sql.append("WHERE S.phrase ~ ? ORDER BY S.phrase NULLS LAST, R.id ASC;");
+            sql.append("WHERE S.sort_letter = ? ORDER BY S.sort_key, R.id ASC;");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
 
             pst.setInt(1, order);
-            if (CharUtils.isAsciiAlpha(letter)) {
-                pst.setString(2, "^" + Character.toLowerCase(letter));
-            } else {
-                pst.setString(2, "^[^a-zA-Z]");
-            }
+            pst.setString(2, IndexingDTO.toSortLetter(letter));
 
             ResultSet rs = pst.executeQuery();
 
@@ -494,146 +661,244 @@ public abstract class RecordDAO extends AbstractDAO {
             return list;
         }
 
-        boolean useSearchResult = (search.getSearchMode() != SearchMode.LIST_ALL);
-        boolean useIndexingGroup = (search.getIndexingGroup() != 0);
-        boolean useMaterialType = (search.getQuery().getMaterialType() != MaterialType.ALL);
-        boolean useLimit = (paging.getRecordLimit() > 0);
-        boolean reservedOnly = search.getQuery().isReservedOnly();
+        return this.getSearchResults(search, paging, null);
+    }
+
+    // Same page as getSearchResults(search), for results already held in memory
+    public List<RecordDTO> getSearchResults(SearchDTO search, int[] recordIds) {
+        List<RecordDTO> list = new ArrayList<>();
+
+        if (search == null || recordIds.length == 0) {
+            return list;
+        }
+
+        PagingDTO paging = search.getPaging();
+
+        if (paging == null) {
+            return list;
+        }
+
+        return this.getSearchResults(search, paging, recordIds);
+    }
+
+    /*
+     * Pages are in "sort_key NULLS LAST, id" order. When the last record of the previous page is
+     * known, the records having a sort key are read from it onwards through the
+     * (indexing_group_id, sort_key, record_id) index of <type>_idx_sort, and once they run out,
+     * the ones without a sort key by a second query in id order. Other pages use OFFSET.
+     */
+    private List<RecordDTO> getSearchResults(SearchDTO search, PagingDTO paging, int[] recordIds) {
+
+        List<RecordDTO> list = new ArrayList<>();
+        SearchCursor cursor = search.getCursor();
+        SearchCursor last = null;
 
         Connection con = null;
         try {
             con = this.getConnection();
-            StringBuilder sql = new StringBuilder();
-
-            sql.append("SELECT R.*, trim(substr(S.phrase, ignore_chars_count + 1)) as sort FROM ");
 
-            if (useSearchResult) {
-                sql.append(this.recordType).append("_records R ");
-                sql.append("INNER JOIN ( ");
-                sql.append("SELECT DISTINCT record_id FROM ")
-                        .append(this.recordType)
-                        .append("_search_results ");
-                sql.append("WHERE search_id = ? ");
+            if (cursor == null) {
+                StringBuilder sql = new StringBuilder();
 
-                if (useIndexingGroup) {
-                    sql.append("AND indexing_group_id = ? ");
-                }
+                sql.append("SELECT R.*, S.sort_key as sort FROM ");
+                this.appendSearchSource(sql, search, recordIds);
+                sql.append("LEFT JOIN ").append(this.recordType).append("_idx_sort S ");
+                sql.append("ON S.record_id = R.id AND S.indexing_group_id = ? ");
+                sql.append("ORDER BY sort NULLS LAST, R.id ASC OFFSET ? LIMIT ?;");
 
-                sql.append("ORDER BY record_id DESC ");
+                PreparedStatement pst = con.prepareStatement(sql.toString());
 
-                if (useLimit) {
-                    sql.append("LIMIT ? ");
-                }
+                int index = this.setSearchSourceParameters(pst, 1, search, recordIds);
+                pst.setInt(index++, search.getSort());
+                pst.setInt(index++, paging.getRecordOffset());
+                pst.setInt(index++, paging.getRecordsPerPage());
 
-                sql.append(") SR ON SR.record_id = R.id ");
-            } else {
-                sql.append("(");
-                sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
-                sql.append("WHERE database = ? ");
+                last = this.populateSearchResults(pst.executeQuery(), list);
+            }
 
-                if (useMaterialType) {
-                    sql.append("AND material = ? ");
-                }
+            if (cursor != null && cursor.getSortKey() != null) {
+                StringBuilder sql = new StringBuilder();
 
-                if (reservedOnly) {
-                    sql.append(
-                            "AND id in (SELECT DISTINCT record_id FROM reservations WHERE expires > localtimestamp) ");
-                }
+                sql.append("SELECT R.*, S.sort_key as sort FROM ");
+                this.appendSearchSource(sql, search, recordIds);
+                sql.append("INNER JOIN ").append(this.recordType).append("_idx_sort S ");
+                sql.append("ON S.record_id = R.id AND S.indexing_group_id = ? ");
+                sql.append("WHERE (S.sort_key, S.record_id) > (?, ?) ");
+                sql.append("ORDER BY S.sort_key ASC, S.record_id ASC LIMIT ?;");
 
-                sql.append("ORDER BY id DESC ");
+                PreparedStatement pst = con.prepareStatement(sql.toString());
 
-                if (useLimit) {
-                    sql.append("LIMIT ? ");
-                }
+                int index = this.setSearchSourceParameters(pst, 1, search, recordIds);
+                pst.setInt(index++, search.getSort());
+                pst.setString(index++, cursor.getSortKey());
+                pst.setInt(index++, cursor.getRecordId());
+                pst.setInt(index++, paging.getRecordsPerPage());
 
-                sql.append(") R ");
+                last = this.populateSearchResults(pst.executeQuery(), list);
             }
 
-            sql.append("LEFT JOIN ").append(this.recordType).append("_idx_sort S ");
-            sql.append("ON S.record_id = R.id AND S.indexing_group_id = ? ");
+            if (cursor != null && list.size() < paging.getRecordsPerPage()) {
+                StringBuilder sql = new StringBuilder();
 
-            sql.append("ORDER BY sort NULLS LAST, R.id ASC OFFSET ? LIMIT ?;");
+                sql.append("SELECT R.*, S.sort_key as sort FROM ");
+                this.appendSearchSource(sql, search, recordIds);
+                sql.append("LEFT JOIN ").append(this.recordType).append("_idx_sort S ");
+                sql.append("ON S.record_id = R.id AND S.indexing_group_id = ? ");
+                sql.append("WHERE S.sort_key IS NULL AND R.id > ? ");
+                sql.append("ORDER BY R.id ASC LIMIT ?;");
 
-            int index = 1;
+                PreparedStatement pst = con.prepareStatement(sql.toString());
 
-            PreparedStatement pst = con.prepareStatement(sql.toString());
+                int index = this.setSearchSourceParameters(pst, 1, search, recordIds);
+                pst.setInt(index++, search.getSort());
+                pst.setInt(index++, (cursor.getSortKey() == null) ? cursor.getRecordId() : 0);
+                pst.setInt(index++, paging.getRecordsPerPage() - list.size());
 
-            if (useSearchResult) {
-                pst.setInt(index++, search.getId());
+                SearchCursor tailLast = this.populateSearchResults(pst.executeQuery(), list);
 
-                if (useIndexingGroup) {
-                    pst.setInt(index++, search.getIndexingGroup());
+                if (tailLast != null) {
+                    last = tailLast;
                 }
-            } else {
-                pst.setString(index++, search.getQuery().getDatabase().toString());
+            }
 
-                if (useMaterialType) {
-                    pst.setString(index++, search.getQuery().getMaterialType().toString());
-                }
+            search.setNextCursor(last);
+
+            return list;
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    // The records of the search, as R, or the given ones when recordIds isn't null
+    private void appendSearchSource(StringBuilder sql, SearchDTO search, int[] recordIds) {
+        if (recordIds != null) {
+            sql.append("(SELECT * FROM ").append(this.recordType).append("_records ");
+            sql.append("WHERE id = ANY(?)) R ");
+
+            return;
+        }
+
+        PagingDTO paging = search.getPaging();
+
+        boolean useSearchResult = (search.getSearchMode() != SearchMode.LIST_ALL);
+        boolean useIndexingGroup = (search.getIndexingGroup() != 0);
+        boolean useMaterialType = (search.getQuery().getMaterialType() != MaterialType.ALL);
+        boolean useLimit = (paging.getRecordLimit() > 0);
+        boolean reservedOnly = search.getQuery().isReservedOnly();
+
+        if (useSearchResult) {
+            sql.append(this.recordType).append("_records R ");
+            sql.append("INNER JOIN ( ");
+            sql.append("SELECT DISTINCT record_id FROM ")
+                    .append(this.recordType)
+                    .append("_search_results ");
+            sql.append("WHERE search_id = ? ");
+
+            if (useIndexingGroup) {
+                sql.append("AND indexing_group_id = ? ");
             }
 
+            sql.append("ORDER BY record_id DESC ");
+
             if (useLimit) {
-                pst.setInt(index++, search.getRecordLimit());
+                sql.append("LIMIT ? ");
             }
 
-            pst.setInt(index++, search.getSort());
+            sql.append(") SR ON SR.record_id = R.id ");
+        } else {
+            sql.append("(");
+            sql.append("SELECT * FROM ").append(this.recordType).append("_records ");
+            sql.append("WHERE database = ? ");
 
-            pst.setInt(index++, paging.getRecordOffset());
-            pst.setInt(index++, paging.getRecordsPerPage());
+            if (useMaterialType) {
+                sql.append("AND material = ? ");
+            }
 
-            ResultSet rs = pst.executeQuery();
+            if (reservedOnly) {
+                sql.append(
+                        "AND id in (SELECT DISTINCT record_id FROM reservations WHERE expires > localtimestamp) ");
+            }
 
-            while (rs.next()) {
-                list.add(this.populateDTO(rs));
+            sql.append("ORDER BY id DESC ");
+
+            if (useLimit) {
+                sql.append("LIMIT ? ");
             }
 
-            return list;
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
+            sql.append(") R ");
         }
     }
 
-    public List<String> phraseAutocomplete(
-            String datafield, String subfield, String[] terms, int limit, boolean startsWith) {
-        List<String> list = new ArrayList<>();
+    // Returns the index of the next parameter
+    private int setSearchSourceParameters(
+            PreparedStatement pst, int index, SearchDTO search, int[] recordIds)
+            throws SQLException {
 
-        if (terms == null || terms.length == 0) {
-            return list;
+        if (recordIds != null) {
+            this.setIdArray(pst, index++, recordIds);
+
+            return index;
         }
 
-        Connection con = null;
-        try {
-            con = this.getConnection();
-            StringBuilder sql = new StringBuilder();
+        boolean useSearchResult = (search.getSearchMode() != SearchMode.LIST_ALL);
+        boolean useIndexingGroup = (search.getIndexingGroup() != 0);
+        boolean useMaterialType = (search.getQuery().getMaterialType() != MaterialType.ALL);
+        boolean useLimit = (search.getPaging().getRecordLimit() > 0);
 
-            sql.append("SELECT phrase FROM ").append(this.recordType).append("_idx_autocomplete ");
-            sql.append("WHERE datafield = ? and subfield = ? and word like ? ");
+        if (useSearchResult) {
+            pst.setInt(index++, search.getId());
 
-            if (startsWith) {
-                sql.append(" and phrase ilike ?");
-            } else {
-                sql.append(" and phrase not ilike ?");
+            if (useIndexingGroup) {
+                pst.setInt(index++, search.getIndexingGroup());
             }
+        } else {
+            pst.setString(index++, search.getQuery().getDatabase().toString());
 
-            StringBuilder completeSQL = new StringBuilder();
-            completeSQL.append("SELECT DISTINCT phrase FROM ( ");
-            completeSQL.append(StringUtils.repeat(sql.toString(), " INTERSECT ", terms.length));
-            completeSQL.append(" ) A ORDER BY A.phrase ASC LIMIT ?");
+            if (useMaterialType) {
+                pst.setString(index++, search.getQuery().getMaterialType().toString());
+            }
+        }
 
-            PreparedStatement pst = con.prepareStatement(completeSQL.toString());
+        if (useLimit) {
+            pst.setInt(index++, search.getRecordLimit());
+        }
 
-            int index = 1;
+        return index;
+    }
 
-            for (String term : terms) {
-                pst.setString(index++, datafield);
-                pst.setString(index++, subfield);
-                pst.setString(index++, term + "%");
-                pst.setString(index++, terms[0] + "%");
-            }
+    // Returns the position of the last record read, or null if there were none
+    private SearchCursor populateSearchResults(ResultSet rs, List<RecordDTO> list)
+            throws SQLException, UnsupportedEncodingException {
 
-            pst.setInt(index++, limit);
+        SearchCursor last = null;
+
+        while (rs.next()) {
+            RecordDTO dto = this.populateDTO(rs);
+
+            last = new SearchCursor(rs.getString("sort"), dto.getId());
+            list.add(dto);
+        }
+
+        return last;
+    }
+
+    public List<String> phraseAutocomplete(
+            String datafield, String subfield, String[] terms, int startsWithLimit, int limit) {
+        List<String> list = new ArrayList<>();
+
+        if (terms == null || terms.length == 0) {
+            return list;
+        }
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            PreparedStatement pst =
+                    this.prepareAutocomplete(
+                            con, "phrase", datafield, subfield, terms, startsWithLimit, limit);
 
             ResultSet rs = pst.executeQuery();
 
@@ -650,7 +915,7 @@ public abstract class RecordDAO extends AbstractDAO {
     }
 
     public DTOCollection<AutocompleteDTO> recordAutocomplete(
-            String datafield, String subfield, String[] terms, int limit, boolean startsWith) {
+            String datafield, String subfield, String[] terms, int startsWithLimit, int limit) {
         DTOCollection<AutocompleteDTO> list = new DTOCollection<>();
 
         if (terms == null || terms.length == 0) {
@@ -660,33 +925,88 @@ public abstract class RecordDAO extends AbstractDAO {
         Connection con = null;
         try {
             con = this.getConnection();
-            StringBuilder sql = new StringBuilder();
 
-            sql.append("SELECT record_id, phrase FROM ")
-                    .append(this.recordType)
-                    .append("_idx_autocomplete ");
-            sql.append("WHERE datafield = ? and subfield = ? and word like ? ");
+            PreparedStatement pst =
+                    this.prepareAutocomplete(
+                            con,
+                            "record_id, phrase",
+                            datafield,
+                            subfield,
+                            terms,
+                            startsWithLimit,
+                            limit);
+
+            ResultSet rs = pst.executeQuery();
 
-            if (startsWith) {
-                sql.append(" and phrase ilike ?");
-            } else {
-                sql.append(" and phrase not ilike ?");
+            while (rs.next()) {
+                list.add(this.populateAutocompleteDTO(rs));
             }
 
-            StringBuilder completeSQL = new StringBuilder();
-            completeSQL.append("SELECT DISTINCT A.record_id, A.phrase, R.iso2709 FROM ( ");
-            completeSQL.append(StringUtils.repeat(sql.toString(), " INTERSECT ", terms.length));
-            completeSQL.append(" ) A ");
-            completeSQL
-                    .append("INNER JOIN ")
-                    .append(this.recordType)
-                    .append("_records R ON A.record_id = R.id ");
-            completeSQL.append("ORDER BY A.phrase ASC LIMIT ?");
+            return list;
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
 
-            PreparedStatement pst = con.prepareStatement(completeSQL.toString());
+    /*
+     * Phrases having a word starting with each one of the terms. Up to startsWithLimit phrases that
+     * start with the first term come first, followed by up to limit phrases that don't, each part in
+     * the order of AutocompleteIndex#comparePhrases, which doesn't depend on the collation of the
+     * database.
+     */
+    private PreparedStatement prepareAutocomplete(
+            Connection con,
+            String columns,
+            String datafield,
+            String subfield,
+            String[] terms,
+            int startsWithLimit,
+            int limit)
+            throws SQLException {
+
+        StringBuilder sql = new StringBuilder();
+
+        sql.append("SELECT ").append(columns).append(" FROM ");
+        sql.append(this.recordType).append("_idx_autocomplete ");
+        sql.append("WHERE datafield = ? and subfield = ? and word like ? and phrase %s ilike ?");
+
+        // Rows of fixed autocomplete tables don't belong to any record
+        if (columns.contains("record_id")) {
+            sql.append(" and record_id is not null");
+        }
 
-            int index = 1;
+        String termSQL = sql.toString();
 
+        sql = new StringBuilder();
+
+        for (String condition : new String[] {"", "not"}) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+
+            sql.append("(SELECT ").append(columns).append(" FROM (");
+            sql.append(
+                    StringUtils.repeat(
+                            String.format(termSQL, condition), " INTERSECT ", terms.length));
+            sql.append(") A GROUP BY ").append(columns);
+            sql.append(" ORDER BY translate(phrase, '").append(AutocompleteIndex.FOLD_FROM);
+            sql.append("', '").append(AutocompleteIndex.FOLD_TO).append("') COLLATE \"C\" ASC, ");
+            sql.append("phrase COLLATE \"C\" ASC");
+
+            if (columns.contains("record_id")) {
+                sql.append(", record_id ASC");
+            }
+
+            sql.append(" LIMIT ?)");
+        }
+
+        PreparedStatement pst = con.prepareStatement(sql.toString());
+
+        int index = 1;
+
+        for (int part = 0; part < 2; part++) {
             for (String term : terms) {
                 pst.setString(index++, datafield);
                 pst.setString(index++, subfield);
@@ -694,31 +1014,42 @@ public abstract class RecordDAO extends AbstractDAO {
                 pst.setString(index++, terms[0] + "%");
             }
 
-            pst.setInt(index++, limit);
-
-            ResultSet rs = pst.executeQuery();
+            pst.setInt(index++, (part == 0) ? startsWithLimit : limit);
+        }
 
-            while (rs.next()) {
-                list.add(this.populateAutocompleteDTO(rs));
-            }
+        return pst;
+    }
 
-            return list;
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
+    protected final RecordDTO populateDTO(ResultSet rs)
+            throws SQLException, UnsupportedEncodingException {
+        return this.populateDTO(rs, true);
     }
 
-    protected RecordDTO populateDTO(ResultSet rs)
+    /*
+     * With cache false, records missing from ParsedRecordCache are parsed without being added to
+     * it. Used by reads over the whole table, which would evict the records in use.
+     */
+    protected RecordDTO populateDTO(ResultSet rs, boolean cache)
             throws SQLException, UnsupportedEncodingException {
         RecordDTO dto = this.createRecord();
 
-        dto.setSchema(getSchema());
-        dto.setIso2709(rs.getBytes("iso2709"));
+        int id = rs.getInt("id");
+        byte[] iso2709 = rs.getBytes("iso2709");
+        Date modified = rs.getTimestamp("modified");
+
+        String schema = this.getSchema();
+        RecordType recordType = this.recordType;
+
+        dto.setSchema(schema);
+        dto.setIso2709(
+                id,
+                iso2709,
+                () ->
+                        ParsedRecordCache.getRecord(
+                                schema, recordType, id, modified, iso2709, cache));
         dto.setCreated(rs.getTimestamp("created"));
         dto.setCreatedBy(rs.getInt("created_by"));
-        dto.setModified(rs.getTimestamp("modified"));
+        dto.setModified(modified);
         dto.setModifiedBy(rs.getInt("modified_by"));
         dto.setMaterialType(rs.getString("material"));
         dto.setRecordDatabase(rs.getString("database"));
@@ -726,18 +1057,11 @@ public abstract class RecordDAO extends AbstractDAO {
         return dto;
     }
 
-    protected AutocompleteDTO populateAutocompleteDTO(ResultSet rs)
-            throws SQLException, UnsupportedEncodingException {
+    protected AutocompleteDTO populateAutocompleteDTO(ResultSet rs) throws SQLException {
         AutocompleteDTO dto = new AutocompleteDTO();
 
-        RecordDTO rdto = this.createRecord();
-
-        rdto.setSchema(getSchema());
-        rdto.setIso2709(rs.getBytes("iso2709"));
-
         dto.setPhrase(rs.getString("phrase"));
-        dto.setRecord(rdto);
-        dto.setRecordId(rdto.getId());
+        dto.setRecordId(rs.getInt("record_id"));
 
         return dto;
     }
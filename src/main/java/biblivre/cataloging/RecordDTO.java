@@ -33,6 +33,7 @@ import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONObject;
 import org.marc4j.MarcStreamWriter;
@@ -58,6 +59,7 @@ public class RecordDTO extends AbstractDTO {
     private static String CF001_FORMAT = "0000000";
 
     private Record record;
+    private transient Supplier<Record> recordParser;
     private int id;
     private byte[] iso2709;
     private MaterialType materialType;
@@ -72,7 +74,7 @@ public class RecordDTO extends AbstractDTO {
 
     public MaterialType getMaterialType() {
         if (this.materialType == null) {
-            return MaterialType.fromRecord(this.record);
+            return MaterialType.fromRecord(this.getRecord());
         }
 
         return this.materialType;
@@ -100,7 +102,7 @@ public class RecordDTO extends AbstractDTO {
 
     public int getId() {
         if (this.id == INVALID_ID) {
-            this.id = Integer.parseInt(this.record.getControlNumber());
+            this.id = Integer.parseInt(this.getRecord().getControlNumber());
         }
 
         return this.id;
@@ -119,7 +121,7 @@ public class RecordDTO extends AbstractDTO {
 
         field.setData(formatter.format(id));
 
-        record.addVariableField(field);
+        this.getRecord().addVariableField(field);
 
         nullifyDerivedFields();
     }
@@ -141,7 +143,7 @@ public class RecordDTO extends AbstractDTO {
 
         MarcWriter writer = new MarcStreamWriter(os, Constants.DEFAULT_CHARSET_NAME);
 
-        writer.write(record);
+        writer.write(this.getRecord());
 
         writer.close();
 
@@ -149,14 +151,37 @@ public class RecordDTO extends AbstractDTO {
     }
 
     public void setIso2709(byte[] iso2709) {
+        this.setIso2709(iso2709, MarcUtils.iso2709ToRecord(iso2709));
+    }
+
+    // For callers that already have the parsed record, such as from ParsedRecordCache
+    public void setIso2709(byte[] iso2709, Record record) {
+        nullifyDerivedFields();
+
+        this.record = record;
+        this.recordParser = null;
+
+        this.iso2709 = iso2709;
+    }
+
+    /**
+     * Defers parsing the record until it is first needed, as list views often only show columns
+     * read along with it. The id must match the control number of the record.
+     */
+    public void setIso2709(int id, byte[] iso2709, Supplier<Record> recordParser) {
         nullifyDerivedFields();
 
-        this.record = MarcUtils.iso2709ToRecord(iso2709);
+        this.record = null;
+        this.recordParser = recordParser;
 
         this.iso2709 = iso2709;
+        this.id = id;
     }
 
     protected void nullifyDerivedFields() {
+        // Changes are made to the parsed record, so it must outlive the ISO2709 bytes
+        this.getRecord();
+
         this.isNew = null;
         this.id = INVALID_ID;
         this.iso2709 = null;
@@ -168,7 +193,7 @@ public class RecordDTO extends AbstractDTO {
 
     public List<RecordAttachmentDTO> getAttachments() {
         if (this.attachments == null) {
-            MarcDataReader marcDataReader = new MarcDataReader(this.record);
+            MarcDataReader marcDataReader = new MarcDataReader(this.getRecord());
 
             this.attachments = marcDataReader.getAttachments();
         }
@@ -199,7 +224,7 @@ public class RecordDTO extends AbstractDTO {
 
         field.addSubfield(linkTextSubfield);
 
-        this.record.addVariableField(field);
+        this.getRecord().addVariableField(field);
     }
 
     public RecordAttachmentDTO removeAttachment(String uri, String name) {
@@ -220,7 +245,7 @@ public class RecordDTO extends AbstractDTO {
 
     private void _removeEletronicResourceField(String uri, String name) {
         for (VariableField variablefield :
-                this.record.getVariableFields(MarcConstants.ELECTRONIC_LOCATION)) {
+                this.getRecord().getVariableFields(MarcConstants.ELECTRONIC_LOCATION)) {
             DataField datafield = (DataField) variablefield;
 
             for (Subfield subfield : datafield.getSubfields('y')) {
@@ -236,7 +261,7 @@ public class RecordDTO extends AbstractDTO {
                     String itURI = subfield2.getData();
 
                     if (itURI.equals(uri) && itLinkText.equals(name)) {
-                        record.removeVariableField(datafield);
+                        this.getRecord().removeVariableField(datafield);
 
                         found = true;
 
@@ -267,7 +292,7 @@ public class RecordDTO extends AbstractDTO {
 
     public List<BriefTabFieldDTO> getFields() {
         if (this.fields == null) {
-            MarcDataReader marcDataReader = new MarcDataReader(record);
+            MarcDataReader marcDataReader = new MarcDataReader(this.getRecord());
 
             List<BriefTabFieldFormatDTO> formats = Fields.getBriefFormats(schema, getRecordType());
 
@@ -296,13 +321,13 @@ public class RecordDTO extends AbstractDTO {
     private void _initJSON() {
         json = new JSONObject();
 
-        json.putOpt("000", record.getLeader().marshal());
+        json.putOpt("000", this.getRecord().getLeader().marshal());
 
-        for (ControlField controlfield : record.getControlFields()) {
+        for (ControlField controlfield : this.getRecord().getControlFields()) {
             json.putOpt(controlfield.getTag(), controlfield.getData());
         }
 
-        for (DataField datafield : record.getDataFields()) {
+        for (DataField datafield : this.getRecord().getDataFields()) {
             JSONObject datafieldJson = new JSONObject();
 
             datafieldJson.putOpt("ind1", datafield.getIndicator1());
@@ -328,15 +353,15 @@ public class RecordDTO extends AbstractDTO {
         StringBuilder sb = new StringBuilder();
 
         sb.append("000 ");
-        sb.append(record.getLeader().marshal());
+        sb.append(this.getRecord().getLeader().marshal());
         sb.append('\n');
 
-        for (ControlField field : record.getControlFields()) {
+        for (ControlField field : this.getRecord().getControlFields()) {
             sb.append(field.toString());
             sb.append('\n');
         }
 
-        for (DataField field : record.getDataFields()) {
+        for (DataField field : this.getRecord().getDataFields()) {
             sb.append(field.getTag());
             sb.append(' ');
 
@@ -359,6 +384,15 @@ public class RecordDTO extends AbstractDTO {
     }
 
     public Record getRecord() {
+        if (this.record == null && this.iso2709 != null) {
+            // The parser is transient, so deserialized records parse their own bytes
+            this.record =
+                    (this.recordParser != null)
+                            ? this.recordParser.get()
+                            : MarcUtils.iso2709ToRecord(this.iso2709);
+            this.recordParser = null;
+        }
+
         return this.record;
     }
 
@@ -366,6 +400,7 @@ public class RecordDTO extends AbstractDTO {
         nullifyDerivedFields();
 
         this.record = record;
+        this.recordParser = null;
     }
 
     @Override
@@ -398,7 +433,7 @@ public class RecordDTO extends AbstractDTO {
 
     public boolean isNew() {
         if (isNew == null) {
-            this.isNew = this.record.getLeader().getRecordStatus() == 'n';
+            this.isNew = this.getRecord().getLeader().getRecordStatus() == 'n';
         }
 
         return isNew;
@@ -409,7 +444,7 @@ public class RecordDTO extends AbstractDTO {
 
         this.isNew = isNew;
 
-        this.record.getLeader().setRecordStatus(getRecordStatusCode());
+        this.getRecord().getLeader().setRecordStatus(getRecordStatusCode());
     }
 
     public char getRecordStatusCode() {
@@ -419,12 +454,13 @@ public class RecordDTO extends AbstractDTO {
     public void setDateOfLastTransaction() {
         MarcFactory factory = MarcFactory.newInstance();
 
-        ControlField field = (ControlField) record.getVariableField(DATE_OF_LAST_TRANSACTION_TAG);
+        ControlField field =
+                (ControlField) this.getRecord().getVariableField(DATE_OF_LAST_TRANSACTION_TAG);
 
         if (field == null) {
             field = factory.newControlField(DATE_OF_LAST_TRANSACTION_TAG);
 
-            record.addVariableField(field);
+            this.getRecord().addVariableField(field);
         }
 
         Format compactISO = new SimpleDateFormat(_COMPACT_ISO_FORMAT);
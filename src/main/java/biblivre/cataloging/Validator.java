@@ -46,6 +46,12 @@ public class Validator extends AbstractValidator {
         }
     }
 
+    public void validateImportJobPrepare(
+            AbstractHandler handler, ExtendedRequest request, ExtendedResponse response) {
+
+        this.validateImportUpload(handler, request, response);
+    }
+
     public void validateImportSearch(
             AbstractHandler handler, ExtendedRequest request, ExtendedResponse response) {
         Integer id = request.getInteger("search_server", 0);
@@ -19,7 +19,6 @@
  ******************************************************************************/
 package biblivre.cataloging.authorities;
 
-import biblivre.administration.indexing.IndexingBO;
 import biblivre.cataloging.RecordBO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.enums.RecordType;
@@ -53,9 +52,11 @@ public class AuthorityRecordBO extends RecordBO {
         dto.setDateOfLastTransaction();
         dto.setFixedLengthDataElements();
 
-        if (this.rdao.save(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.AUTHORITIES, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.save(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -66,9 +67,11 @@ public class AuthorityRecordBO extends RecordBO {
     public boolean update(RecordDTO dto) {
         dto.setDateOfLastTransaction();
 
-        if (this.rdao.update(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.AUTHORITIES, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.update(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -87,9 +90,11 @@ public class AuthorityRecordBO extends RecordBO {
         //			}
         //		}
 
-        if (this.rdao.delete(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.deleteIndexes(RecordType.AUTHORITIES, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.delete(dto, queued)) {
+            this.deleteIndexes(dto, queued);
+            this.invalidateSearchResults();
             //			HoldingBO hbo = new HoldingBO();
             //			hbo.delete(dto);
         }
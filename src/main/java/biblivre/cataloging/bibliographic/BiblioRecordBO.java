@@ -19,26 +19,22 @@
  ******************************************************************************/
 package biblivre.cataloging.bibliographic;
 
-import biblivre.administration.indexing.IndexingBO;
 import biblivre.cataloging.RecordBO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.enums.RecordType;
 import biblivre.cataloging.holding.HoldingBO;
 import biblivre.cataloging.holding.HoldingDTO;
 import biblivre.circulation.lending.LendingBO;
-import biblivre.circulation.lending.LendingDTO;
 import biblivre.circulation.reservation.ReservationBO;
 import biblivre.core.AbstractBO;
 import biblivre.core.exceptions.ValidationException;
 import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
-import org.marc4j.marc.Record;
 
 public class BiblioRecordBO extends RecordBO {
 
@@ -62,22 +58,24 @@ public class BiblioRecordBO extends RecordBO {
         BiblioRecordDTO dto = (BiblioRecordDTO) rdto;
 
         if ((mask & RecordBO.MARC_INFO) != 0) {
-            Record record = rdto.getRecord();
+            MarcDataReader marcDataReader = null;
 
-            if (record == null && rdto.getIso2709() != null) {
-                record = MarcUtils.iso2709ToRecord(rdto.getIso2709());
-            }
-
-            if (record != null) {
-                MarcDataReader marcDataReader = new MarcDataReader(record);
+            if (dto.isBriefColumnsRead()) {
+                // The remaining fields are read from the ISO2709 bytes without parsing the record
+                marcDataReader = new MarcDataReader(dto.getIso2709());
+            } else if (dto.getRecord() != null) {
+                marcDataReader = new MarcDataReader(dto.getRecord());
 
                 dto.setAuthor(marcDataReader.getAuthor(true));
                 dto.setTitle(marcDataReader.getTitle(false));
+                dto.setPublicationYear(marcDataReader.getPublicationYear());
+                dto.setShelfLocation(marcDataReader.getShelfLocation());
+            }
+
+            if (marcDataReader != null) {
                 dto.setIsbn(marcDataReader.getIsbn());
                 dto.setIssn(marcDataReader.getIssn());
                 dto.setIsrc(marcDataReader.getIsrc());
-                dto.setPublicationYear(marcDataReader.getPublicationYear());
-                dto.setShelfLocation(marcDataReader.getShelfLocation());
                 dto.setSubject(marcDataReader.getSubject(true));
             }
         }
@@ -88,28 +86,12 @@ public class BiblioRecordBO extends RecordBO {
             return;
         }
 
-        HoldingBO hbo = HoldingBO.getInstance(this.getSchema());
-        LendingBO lbo = LendingBO.getInstance(this.getSchema());
-        ReservationBO rbo = ReservationBO.getInstance(this.getSchema());
-
         if ((mask & RecordBO.HOLDING_INFO) != 0) {
-            int totalHoldings = hbo.count(recordId);
-            int availableHoldings = hbo.countAvailableHoldings(recordId);
-            int lentCount = 0;
-            int reservedCount = 0;
-
-            if (availableHoldings > 0) {
-                lentCount = lbo.countLentHoldings(recordId);
-                reservedCount = rbo.countReserved(dto);
-            }
-
-            dto.setHoldingsCount(totalHoldings);
-            dto.setHoldingsAvailable(availableHoldings - lentCount);
-            dto.setHoldingsLent(lentCount);
-            dto.setHoldingsReserved(reservedCount);
+            this.populateHoldingInfo(Collections.singletonList(dto));
         }
 
         if ((mask & RecordBO.HOLDING_LIST) != 0) {
+            HoldingBO hbo = HoldingBO.getInstance(this.getSchema());
             List<HoldingDTO> holdingsList = hbo.list(recordId);
 
             Collections.sort(holdingsList);
@@ -126,19 +108,62 @@ public class BiblioRecordBO extends RecordBO {
 
             dto.setHoldings(holdingsList);
         }
+    }
+
+    // Holding counts of the whole list in four grouped queries instead of four per record
+    @Override
+    public List<RecordDTO> populateDetails(List<RecordDTO> list, int mask) {
+        for (RecordDTO rdto : list) {
+            this.populateDetails(rdto, mask & ~RecordBO.HOLDING_INFO);
+        }
+
+        if ((mask & RecordBO.HOLDING_INFO) != 0) {
+            this.populateHoldingInfo(list);
+        }
+
+        return list;
+    }
 
-        if ((mask & RecordBO.LENDING_INFO) != 0) {
-            List<HoldingDTO> holdingsList = dto.getHoldings();
+    private void populateHoldingInfo(List<? extends RecordDTO> list) {
+        Set<Integer> recordIds = new HashSet<>();
 
-            if (holdingsList == null) {
-                holdingsList = hbo.list(recordId);
-                Collections.sort(holdingsList);
+        for (RecordDTO rdto : list) {
+            if (rdto != null && rdto.getId() > 0) {
+                recordIds.add(rdto.getId());
             }
+        }
 
-            List<LendingDTO> lendings = new ArrayList<>();
-            for (HoldingDTO holding : holdingsList) {
-                lendings.add(lbo.getCurrentLending(holding));
+        if (recordIds.isEmpty()) {
+            return;
+        }
+
+        HoldingBO hbo = HoldingBO.getInstance(this.getSchema());
+        LendingBO lbo = LendingBO.getInstance(this.getSchema());
+        ReservationBO rbo = ReservationBO.getInstance(this.getSchema());
+
+        Map<Integer, Integer> totalHoldings = hbo.count(recordIds);
+        Map<Integer, Integer> availableHoldings = hbo.countAvailableHoldings(recordIds);
+
+        // Lendings and reservations only matter for records with available holdings
+        Set<Integer> availableIds = availableHoldings.keySet();
+        Map<Integer, Integer> lentCounts = lbo.countLentHoldings(availableIds);
+        Map<Integer, Integer> reservedCounts = rbo.countReserved(availableIds);
+
+        for (RecordDTO rdto : list) {
+            if (rdto == null || !recordIds.contains(rdto.getId())) {
+                continue;
             }
+
+            BiblioRecordDTO dto = (BiblioRecordDTO) rdto;
+            Integer recordId = dto.getId();
+
+            int available = availableHoldings.getOrDefault(recordId, 0);
+            int lentCount = lentCounts.getOrDefault(recordId, 0);
+
+            dto.setHoldingsCount(totalHoldings.getOrDefault(recordId, 0));
+            dto.setHoldingsAvailable(available - lentCount);
+            dto.setHoldingsLent(lentCount);
+            dto.setHoldingsReserved(reservedCounts.getOrDefault(recordId, 0));
         }
     }
 
@@ -150,9 +175,11 @@ public class BiblioRecordBO extends RecordBO {
         dto.setDateOfLastTransaction();
         dto.setFixedLengthDataElements();
 
-        if (this.rdao.save(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.BIBLIO, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.save(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -163,9 +190,11 @@ public class BiblioRecordBO extends RecordBO {
     public boolean update(RecordDTO dto) {
         dto.setDateOfLastTransaction();
 
-        if (this.rdao.update(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.BIBLIO, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.update(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -184,9 +213,11 @@ public class BiblioRecordBO extends RecordBO {
         //			}
         //		}
 
-        if (this.rdao.delete(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.deleteIndexes(RecordType.BIBLIO, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.delete(dto, queued)) {
+            this.deleteIndexes(dto, queued);
+            this.invalidateSearchResults();
             //			HoldingBO hbo = new HoldingBO();
             //			hbo.delete(dto);
         }
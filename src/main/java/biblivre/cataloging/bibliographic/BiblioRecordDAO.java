@@ -23,6 +23,11 @@ import biblivre.cataloging.RecordDAO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.enums.RecordType;
 import biblivre.core.AbstractDAO;
+import biblivre.marc.MarcDataReader;
+import java.io.UnsupportedEncodingException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.apache.commons.lang3.StringUtils;
 
 public class BiblioRecordDAO extends RecordDAO {
 
@@ -37,6 +42,63 @@ public class BiblioRecordDAO extends RecordDAO {
         return dao;
     }
 
+    public static final String[] BRIEF_COLUMNS = {
+        "title", "author", "publication_year", "shelf_location"
+    };
+
+    // Brief columns are empty strings when the record has no such field, and null until the
+    // record is saved or backfilled by the v6_0_0$1_13_0$alpha update
+    @Override
+    protected String[] getBriefColumns() {
+        return BiblioRecordDAO.BRIEF_COLUMNS;
+    }
+
+    @Override
+    protected String[] getBriefColumnValues(RecordDTO dto) {
+        return BiblioRecordDAO.getBriefValues(dto);
+    }
+
+    // Values of BRIEF_COLUMNS, in the same order
+    public static String[] getBriefValues(RecordDTO dto) {
+        MarcDataReader marcDataReader = new MarcDataReader(dto.getRecord());
+
+        return new String[] {
+            StringUtils.defaultString(marcDataReader.getTitle(false)),
+            StringUtils.defaultString(marcDataReader.getAuthor(true)),
+            StringUtils.defaultString(marcDataReader.getPublicationYear()),
+            StringUtils.defaultString(marcDataReader.getShelfLocation())
+        };
+    }
+
+    @Override
+    protected RecordDTO populateDTO(ResultSet rs, boolean cache)
+            throws SQLException, UnsupportedEncodingException {
+        BiblioRecordDTO dto = (BiblioRecordDTO) super.populateDTO(rs, cache);
+
+        BiblioRecordDAO.populateBriefColumns(dto, rs, "");
+
+        return dto;
+    }
+
+    // Also used by queries joining biblio_records, with prefixed column names
+    public static void populateBriefColumns(BiblioRecordDTO dto, ResultSet rs, String prefix)
+            throws SQLException {
+
+        String title = rs.getString(prefix + "title");
+
+        if (title == null) {
+            return;
+        }
+
+        dto.setTitle(StringUtils.defaultIfEmpty(title, null));
+        dto.setAuthor(StringUtils.defaultIfEmpty(rs.getString(prefix + "author"), null));
+        dto.setPublicationYear(
+                StringUtils.defaultIfEmpty(rs.getString(prefix + "publication_year"), null));
+        dto.setShelfLocation(
+                StringUtils.defaultIfEmpty(rs.getString(prefix + "shelf_location"), null));
+        dto.setBriefColumnsRead(true);
+    }
+
     @Override
     protected RecordDTO createRecord() {
         return new BiblioRecordDTO();
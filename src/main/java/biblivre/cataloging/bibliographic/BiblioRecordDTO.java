@@ -40,6 +40,9 @@ public class BiblioRecordDTO extends RecordDTO {
     private String shelfLocation;
     private String subject;
 
+    // Set when title, author, publication year and shelf location came from the brief columns
+    private transient boolean briefColumnsRead;
+
     private Integer holdingsCount;
     private Integer holdingsAvailable;
     private Integer holdingsLent;
@@ -112,6 +115,21 @@ public class BiblioRecordDTO extends RecordDTO {
         this.subject = subject;
     }
 
+    public boolean isBriefColumnsRead() {
+        return this.briefColumnsRead;
+    }
+
+    public void setBriefColumnsRead(boolean briefColumnsRead) {
+        this.briefColumnsRead = briefColumnsRead;
+    }
+
+    @Override
+    protected void nullifyDerivedFields() {
+        super.nullifyDerivedFields();
+
+        this.briefColumnsRead = false;
+    }
+
     public Integer getHoldingsCount() {
         return this.holdingsCount;
     }
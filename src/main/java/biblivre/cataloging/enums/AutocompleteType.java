@@ -23,6 +23,7 @@ import biblivre.cataloging.AutocompleteDTO;
 import biblivre.cataloging.Fields;
 import biblivre.cataloging.FormTabSubfieldDTO;
 import biblivre.cataloging.RecordBO;
+import biblivre.cataloging.RecordDTO;
 import biblivre.core.DTOCollection;
 import biblivre.core.utils.BiblivreEnum;
 import java.util.HashSet;
@@ -107,6 +108,14 @@ public enum AutocompleteType implements BiblivreEnum {
         return collection;
     }
 
+    public RecordDTO getAutocompletionRecord(String schema, int recordId) {
+        RecordType recordType = RecordType.fromString(this.toString());
+
+        RecordBO bo = RecordBO.getInstance(schema, recordType);
+
+        return bo.get(recordId);
+    }
+
     public static class GetSuggestionsParameters {
         private String schema;
         private String query;
@@ -0,0 +1,45 @@
+package biblivre.cataloging.enums;
+
+import biblivre.core.utils.BiblivreEnum;
+import org.apache.commons.lang3.StringUtils;
+
+public enum ExportFormat implements BiblivreEnum {
+    ISO2709("mrc"),
+    MARCXML("xml"),
+    JSON("json");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public static ExportFormat fromString(String str) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+
+        str = str.toLowerCase();
+
+        for (ExportFormat exportFormat : ExportFormat.values()) {
+            if (str.equals(exportFormat.name().toLowerCase())) {
+                return exportFormat;
+            }
+        }
+
+        return null;
+    }
+
+    public String getExtension() {
+        return this.extension;
+    }
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+
+    public String getString() {
+        return this.toString();
+    }
+}
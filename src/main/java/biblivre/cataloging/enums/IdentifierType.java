@@ -0,0 +1,47 @@
+package biblivre.cataloging.enums;
+
+import biblivre.core.utils.BiblivreEnum;
+import biblivre.marc.MarcConstants;
+import org.apache.commons.lang3.StringUtils;
+
+public enum IdentifierType implements BiblivreEnum {
+    ISBN(MarcConstants.ISBN),
+    ISSN(MarcConstants.ISSN),
+    ISRC(MarcConstants.ISRC);
+
+    private final String datafield;
+
+    private IdentifierType(String datafield) {
+        this.datafield = datafield;
+    }
+
+    public static IdentifierType fromString(String str) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+
+        str = str.toLowerCase();
+
+        for (IdentifierType type : IdentifierType.values()) {
+            if (str.equals(type.name().toLowerCase())) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    // Identifiers are read from subfield a of every field with this tag
+    public String getDatafield() {
+        return this.datafield;
+    }
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+
+    public String getString() {
+        return this.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package biblivre.cataloging.enums;
+
+import biblivre.core.utils.BiblivreEnum;
+import org.apache.commons.lang3.StringUtils;
+
+public enum ImportJobStatus implements BiblivreEnum {
+    PENDING,
+    RUNNING,
+    COMPLETE,
+    FAILED;
+
+    public static ImportJobStatus fromString(String str) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+
+        str = str.toLowerCase();
+
+        for (ImportJobStatus status : ImportJobStatus.values()) {
+            if (str.equals(status.name().toLowerCase())) {
+                return status;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+
+    public String getString() {
+        return this.toString();
+    }
+}
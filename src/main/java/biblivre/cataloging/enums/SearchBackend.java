@@ -0,0 +1,35 @@
+package biblivre.cataloging.enums;
+
+import biblivre.core.utils.BiblivreEnum;
+import org.apache.commons.lang3.StringUtils;
+
+public enum SearchBackend implements BiblivreEnum {
+    DATABASE,
+    MEMORY,
+    FULLTEXT;
+
+    public static SearchBackend fromString(String str) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+
+        str = str.toLowerCase();
+
+        for (SearchBackend backend : SearchBackend.values()) {
+            if (str.equals(backend.name().toLowerCase())) {
+                return backend;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+
+    public String getString() {
+        return this.toString();
+    }
+}
@@ -30,7 +30,6 @@ import biblivre.core.ExtendedRequest;
 import biblivre.core.ExtendedResponse;
 import biblivre.core.enums.ActionResult;
 import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
 import biblivre.marc.MaterialType;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
@@ -105,7 +104,7 @@ public class Handler extends CatalogingHandler {
             RecordBO parentBO = RecordBO.getInstance(schema, RecordType.BIBLIO);
             RecordDTO parent = parentBO.get(((HoldingDTO) dto).getRecordId());
 
-            marcDataReader = new MarcDataReader(MarcUtils.iso2709ToRecord(parent.getIso2709()));
+            marcDataReader = new MarcDataReader(parent.getRecord());
             holdingLocation = marcDataReader.getShelfLocation();
         }
 
@@ -119,6 +119,14 @@ public class HoldingBO extends RecordBO {
         return this.dao.count(recordId, true);
     }
 
+    public Map<Integer, Integer> count(Set<Integer> recordIds) {
+        return this.dao.count(recordIds, false);
+    }
+
+    public Map<Integer, Integer> countAvailableHoldings(Set<Integer> recordIds) {
+        return this.dao.count(recordIds, true);
+    }
+
     public void markAsPrinted(Set<Integer> ids) {
         this.dao.markAsPrinted(ids);
     }
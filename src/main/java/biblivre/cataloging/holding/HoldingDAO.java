@@ -19,12 +19,15 @@
  ******************************************************************************/
 package biblivre.cataloging.holding;
 
+import biblivre.cataloging.ParsedRecordCache;
 import biblivre.cataloging.RecordBO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.bibliographic.BiblioRecordBO;
+import biblivre.cataloging.bibliographic.BiblioRecordDAO;
 import biblivre.cataloging.bibliographic.BiblioRecordDTO;
 import biblivre.cataloging.enums.HoldingAvailability;
 import biblivre.cataloging.enums.RecordDatabase;
+import biblivre.cataloging.enums.RecordType;
 import biblivre.cataloging.search.SearchDTO;
 import biblivre.cataloging.search.SearchTermDTO;
 import biblivre.circulation.user.UserDTO;
@@ -99,6 +102,21 @@ public class HoldingDAO extends AbstractDAO {
         return 0;
     }
 
+    // Holding count of each of the given records, missing when zero
+    public Map<Integer, Integer> count(Set<Integer> recordIds, boolean availableOnly) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT record_id, count(*) as total FROM biblio_holdings ");
+        sql.append("WHERE record_id = ANY(?) ");
+
+        if (availableOnly) {
+            sql.append("and availability = '" + HoldingAvailability.AVAILABLE.toString() + "' ");
+        }
+
+        sql.append("GROUP BY record_id;");
+
+        return this.mapByIds(sql.toString(), recordIds, "record_id", rs -> rs.getInt("total"));
+    }
+
     public HoldingDTO getByAccessionNumber(String accessionNumber) {
         HoldingDTO dto = null;
         Connection con = null;
@@ -123,35 +141,9 @@ public class HoldingDAO extends AbstractDAO {
     }
 
     public Map<Integer, RecordDTO> map(Set<Integer> ids) {
-        Map<Integer, RecordDTO> map = new HashMap<>();
-
-        Connection con = null;
-        try {
-            con = this.getConnection();
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT * FROM biblio_holdings ");
-            sql.append("WHERE id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
+        String sql = "SELECT * FROM biblio_holdings WHERE id = ANY(?);";
 
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
-            }
-
-            ResultSet rs = pst.executeQuery();
-            while (rs.next()) {
-                RecordDTO dto = this.populateDTO(rs);
-                map.put(dto.getId(), dto);
-            }
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
-
-        return map;
+        return this.mapByIds(sql, ids, "id", this::populateDTO);
     }
 
     public List<RecordDTO> list(int offset, int limit) {
@@ -322,29 +314,7 @@ public class HoldingDAO extends AbstractDAO {
     }
 
     public void markAsPrinted(Set<Integer> ids) {
-        Connection con = null;
-
-        try {
-            con = this.getConnection();
-
-            StringBuilder sql = new StringBuilder();
-            sql.append("UPDATE biblio_holdings SET label_printed = true ");
-            sql.append("WHERE id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
-
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
-            }
-
-            pst.executeUpdate();
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
+        this.updateByIds("UPDATE biblio_holdings SET label_printed = true WHERE id = ANY(?);", ids);
     }
 
     public boolean delete(RecordDTO dto) {
@@ -810,8 +780,11 @@ public class HoldingDAO extends AbstractDAO {
             con = this.getConnection();
             StringBuilder sql = new StringBuilder();
 
-            sql.append(
-                    "SELECT H.*, R.iso2709 as biblio, trim(substr(S.phrase, ignore_chars_count + 1)) as sort FROM ");
+            sql.append("SELECT H.*, R.iso2709 as biblio, R.modified as biblio_modified, ");
+            sql.append("R.title as biblio_title, R.author as biblio_author, ");
+            sql.append("R.publication_year as biblio_publication_year, ");
+            sql.append("R.shelf_location as biblio_shelf_location, ");
+            sql.append("S.sort_key as sort FROM ");
 
             if (useSearchResult) {
                 sql.append("biblio_holdings H INNER JOIN biblio_records R ON H.record_id = R.id ");
@@ -904,14 +877,34 @@ public class HoldingDAO extends AbstractDAO {
             throws SQLException, UnsupportedEncodingException {
         HoldingDTO dto = new HoldingDTO();
 
-        dto.setIso2709(rs.getBytes("iso2709"));
+        byte[] iso2709 = rs.getBytes("iso2709");
+
+        dto.setIso2709(
+                iso2709,
+                ParsedRecordCache.getRecord(
+                        this.getSchema(),
+                        RecordType.HOLDING,
+                        rs.getInt("id"),
+                        rs.getTimestamp("modified"),
+                        iso2709));
 
         if (this.hasColumn(rs, "biblio")) {
             BiblioRecordBO bbo = BiblioRecordBO.getInstance(this.getSchema());
             BiblioRecordDTO bdto = new BiblioRecordDTO();
 
-            bdto.setId(rs.getInt("record_id"));
-            bdto.setIso2709(rs.getBytes("biblio"));
+            String schema = this.getSchema();
+            int recordId = rs.getInt("record_id");
+            byte[] biblio = rs.getBytes("biblio");
+            Date modified = rs.getTimestamp("biblio_modified");
+
+            bdto.setIso2709(
+                    recordId,
+                    biblio,
+                    () ->
+                            ParsedRecordCache.getRecord(
+                                    schema, RecordType.BIBLIO, recordId, modified, biblio));
+
+            BiblioRecordDAO.populateBriefColumns(bdto, rs, "biblio_");
 
             bbo.populateDetails(bdto, RecordBO.MARC_INFO);
 
@@ -32,7 +32,6 @@ import biblivre.core.LabelPrintDTO;
 import biblivre.core.enums.ActionResult;
 import biblivre.core.file.DiskFile;
 import biblivre.marc.MarcDataReader;
-import biblivre.marc.MarcUtils;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -41,7 +40,6 @@ import java.util.Set;
 import java.util.UUID;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
-import org.marc4j.marc.Record;
 
 public class Handler extends AbstractHandler {
 
@@ -99,14 +97,12 @@ public class Handler extends AbstractHandler {
             label.setAccessionNumber(holding.getAccessionNumber());
 
             BiblioRecordDTO biblio = (BiblioRecordDTO) biblioBo.get(holding.getRecordId());
-            Record biblioRecord = MarcUtils.iso2709ToRecord(biblio.getIso2709());
-            MarcDataReader dataReader = new MarcDataReader(biblioRecord);
+            MarcDataReader dataReader = new MarcDataReader(biblio.getRecord());
 
             label.setAuthor(StringUtils.defaultString(dataReader.getAuthorName(false)));
             label.setTitle(StringUtils.defaultString(dataReader.getTitle(false)));
 
-            Record holdingRecord = MarcUtils.iso2709ToRecord(holding.getIso2709());
-            dataReader = new MarcDataReader(holdingRecord);
+            dataReader = new MarcDataReader(holding.getRecord());
             label.setLocationA(StringUtils.defaultString(dataReader.getLocation()));
             label.setLocationB(StringUtils.defaultString(dataReader.getLocationB()));
             label.setLocationC(StringUtils.defaultString(dataReader.getLocationC()));
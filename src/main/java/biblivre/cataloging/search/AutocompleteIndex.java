@@ -0,0 +1,434 @@
+package biblivre.cataloging.search;
+
+import biblivre.cataloging.AutocompleteDTO;
+import biblivre.core.DTOCollection;
+import biblivre.core.utils.TextUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * In memory copy of the <code>&lt;type&gt;_idx_autocomplete</code> rows of a single datafield and
+ * subfield. Words are kept in sorted order, so all words starting with a typed prefix are a single
+ * range of the map, each pointing to the sorted ids of the phrases containing it. Lookups are lock
+ * free; updates replace the id arrays of the affected words.
+ */
+public class AutocompleteIndex {
+    // Key of the rows of fixed autocomplete tables, which don't belong to any record
+    private static final int NO_RECORD = 0;
+
+    /*
+     * Phrases are ordered on a folded copy, without case and without the accents of Latin letters,
+     * compared by code point, and then on the phrases themselves. RecordDAO orders its queries the
+     * same way, through translate() and the "C" collation, so both give the same results whatever
+     * the collation of the database.
+     */
+    public static final String FOLD_FROM =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZÀÁÂÃÄÅàáâãäåÇçÈÉÊËèéêëÌÍÎÏìíîïÑñÒÓÔÕÖòóôõöÙÚÛÜùúûüÝýÿ";
+
+    public static final String FOLD_TO =
+            "abcdefghijklmnopqrstuvwxyzaaaaaaaaaaaacceeeeeeeeiiiiiiiinnoooooooooouuuuuuuuyyy";
+
+    private static final char[] FOLD = new char[256];
+
+    static {
+        for (char c = 0; c < AutocompleteIndex.FOLD.length; c++) {
+            AutocompleteIndex.FOLD[c] = c;
+        }
+
+        for (int i = 0; i < AutocompleteIndex.FOLD_FROM.length(); i++) {
+            AutocompleteIndex.FOLD[AutocompleteIndex.FOLD_FROM.charAt(i)] =
+                    AutocompleteIndex.FOLD_TO.charAt(i);
+        }
+    }
+
+    private static final Comparator<Entry> BY_PHRASE =
+            (a, b) -> AutocompleteIndex.comparePhrases(a.phrase, b.phrase);
+
+    private static final Comparator<Entry> BY_PHRASE_AND_RECORD =
+            BY_PHRASE.thenComparingInt(e -> e.recordId);
+
+    private final ConcurrentNavigableMap<String, int[]> words = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<Integer, int[]> recordEntries = new HashMap<>();
+    private int nextEntryId = 1;
+
+    public int getWordCount() {
+        return this.words.size();
+    }
+
+    public int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /** Same results as {@link biblivre.cataloging.RecordDAO#phraseAutocomplete}. */
+    public List<String> phrases(String[] terms, int startsWithLimit, int limit) {
+        List<String> list = new ArrayList<>();
+
+        for (Entry entry : this.complete(terms, startsWithLimit, limit, false)) {
+            list.add(entry.phrase);
+        }
+
+        return list;
+    }
+
+    /** Same results as {@link biblivre.cataloging.RecordDAO#recordAutocomplete}. */
+    public DTOCollection<AutocompleteDTO> records(String[] terms, int startsWithLimit, int limit) {
+        DTOCollection<AutocompleteDTO> list = new DTOCollection<>();
+
+        for (Entry entry : this.complete(terms, startsWithLimit, limit, true)) {
+            AutocompleteDTO dto = new AutocompleteDTO();
+
+            dto.setPhrase(entry.phrase);
+            dto.setRecordId(entry.recordId);
+
+            list.add(dto);
+        }
+
+        return list;
+    }
+
+    /**
+     * Replaces the phrases of the given records. <code>autocompletes</code> must only hold rows of
+     * this datafield and subfield.
+     */
+    public synchronized void update(
+            Collection<Integer> recordIds, Collection<AutocompleteDTO> autocompletes) {
+
+        for (Integer recordId : recordIds) {
+            this.remove(recordId);
+        }
+
+        Map<Integer, Set<String>> phrases = new HashMap<>();
+
+        for (AutocompleteDTO autocomplete : autocompletes) {
+            Integer recordId = autocomplete.getRecordId();
+
+            if (StringUtils.isNotBlank(autocomplete.getPhrase())) {
+                phrases.computeIfAbsent(
+                                (recordId == null) ? AutocompleteIndex.NO_RECORD : recordId,
+                                k -> new LinkedHashSet<>())
+                        .add(autocomplete.getPhrase());
+            }
+        }
+
+        for (Map.Entry<Integer, Set<String>> record : phrases.entrySet()) {
+            for (String phrase : record.getValue()) {
+                this.add(record.getKey(), phrase, AutocompleteIndex.prepareWords(phrase));
+            }
+        }
+    }
+
+    // Same words IndexingDAO writes for each autocomplete phrase
+    private static Set<String> prepareWords(String phrase) {
+        Set<String> words = new LinkedHashSet<>();
+
+        for (String word : TextUtils.prepareAutocomplete(phrase)) {
+            if (StringUtils.isNotBlank(word) && word.length() >= 2) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    /** Orders phrases as the autocomplete queries of RecordDAO do. */
+    public static int comparePhrases(String a, String b) {
+        int result = AutocompleteIndex.compare(a, b, true);
+
+        return (result != 0) ? result : AutocompleteIndex.compare(a, b, false);
+    }
+
+    private static int compare(String a, String b, boolean fold) {
+        int i = 0;
+        int j = 0;
+
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+
+            if (fold) {
+                x = AutocompleteIndex.fold(x);
+                y = AutocompleteIndex.fold(y);
+            }
+
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+        }
+
+        // At most one of them has code points left, which makes it the greater one
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int fold(int codePoint) {
+        return (codePoint < AutocompleteIndex.FOLD.length)
+                ? AutocompleteIndex.FOLD[codePoint]
+                : codePoint;
+    }
+
+    /*
+     * With records true, the rows of fixed autocomplete tables are left out before the limits are
+     * applied, as they don't belong to any record, and the same phrase of different records is
+     * kept.
+     */
+    private List<Entry> complete(String[] terms, int startsWithLimit, int limit, boolean records) {
+
+        if (terms == null || terms.length == 0) {
+            return new ArrayList<>();
+        }
+
+        int[] entryIds = null;
+
+        for (String term : terms) {
+            int[] termEntryIds = this.find(term);
+
+            entryIds =
+                    (entryIds == null)
+                            ? termEntryIds
+                            : InvertedIndex.intersect(entryIds, termEntryIds);
+
+            if (entryIds.length == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        Comparator<Entry> order =
+                records ? AutocompleteIndex.BY_PHRASE_AND_RECORD : AutocompleteIndex.BY_PHRASE;
+
+        // The first ones in phrase order, using the comparator to also drop repeated phrases
+        TreeSet<Entry> startsWith = new TreeSet<>(order);
+        TreeSet<Entry> others = new TreeSet<>(order);
+
+        String first = terms[0];
+
+        for (int entryId : entryIds) {
+            Entry entry = this.entries.get(entryId);
+
+            if (entry == null || (records && entry.recordId == AutocompleteIndex.NO_RECORD)) {
+                continue;
+            }
+
+            boolean starts = entry.phrase.regionMatches(true, 0, first, 0, first.length());
+
+            AutocompleteIndex.offer(
+                    starts ? startsWith : others, entry, starts ? startsWithLimit : limit);
+        }
+
+        List<Entry> list = new ArrayList<>(startsWith);
+        list.addAll(others);
+
+        return list;
+    }
+
+    private static void offer(TreeSet<Entry> set, Entry entry, int limit) {
+        if (set.size() < limit) {
+            set.add(entry);
+        } else if (limit > 0 && set.comparator().compare(entry, set.last()) < 0) {
+            if (set.add(entry)) {
+                set.pollLast();
+            }
+        }
+    }
+
+    private int[] find(String prefix) {
+        List<int[]> range =
+                new ArrayList<>(
+                        this.words
+                                .subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                                .values());
+
+        if (range.size() == 1) {
+            return range.get(0);
+        }
+
+        int length = 0;
+        for (int[] entryIds : range) {
+            length += entryIds.length;
+        }
+
+        int[] all = new int[length];
+        int position = 0;
+
+        for (int[] entryIds : range) {
+            System.arraycopy(entryIds, 0, all, position, entryIds.length);
+            position += entryIds.length;
+        }
+
+        Arrays.sort(all);
+
+        int count = 0;
+
+        for (int i = 0; i < all.length; i++) {
+            if (count == 0 || all[count - 1] != all[i]) {
+                all[count++] = all[i];
+            }
+        }
+
+        return Arrays.copyOf(all, count);
+    }
+
+    // Must be called holding the lock of this index
+    private void add(int recordId, String phrase, Set<String> words) {
+        int entryId = this.nextEntryId++;
+
+        // Entries are reachable only after they are complete
+        this.entries.put(entryId, new Entry(phrase, recordId));
+
+        int[] current = this.recordEntries.getOrDefault(recordId, new int[0]);
+        int[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = entryId;
+        this.recordEntries.put(recordId, updated);
+
+        for (String word : words) {
+            this.words.merge(
+                    word,
+                    new int[] {entryId},
+                    (a, b) -> {
+                        // New entry ids are always the highest, so the array stays sorted
+                        int[] merged = Arrays.copyOf(a, a.length + 1);
+                        merged[a.length] = b[0];
+                        return merged;
+                    });
+        }
+    }
+
+    // Must be called holding the lock of this index
+    private void remove(int recordId) {
+        int[] entryIds = this.recordEntries.remove(recordId);
+
+        if (entryIds == null) {
+            return;
+        }
+
+        for (int entryId : entryIds) {
+            Entry entry = this.entries.get(entryId);
+
+            if (entry == null) {
+                continue;
+            }
+
+            for (String word : AutocompleteIndex.prepareWords(entry.phrase)) {
+                this.words.computeIfPresent(
+                        word,
+                        (key, current) -> {
+                            int[] updated = new int[current.length];
+                            int count = 0;
+
+                            for (int id : current) {
+                                if (id != entryId) {
+                                    updated[count++] = id;
+                                }
+                            }
+
+                            return (count == 0) ? null : Arrays.copyOf(updated, count);
+                        });
+            }
+
+            this.entries.remove(entryId);
+        }
+    }
+
+    private static final class Entry {
+        private final String phrase;
+        private final int recordId;
+
+        private Entry(String phrase, int recordId) {
+            this.phrase = phrase;
+            this.recordId = recordId;
+        }
+    }
+
+    public static class Builder {
+        private final AutocompleteIndex index = new AutocompleteIndex();
+        private final Map<Integer, Map<String, Set<String>>> records = new HashMap<>();
+
+        private int entryCount;
+
+        public void add(Integer recordId, String phrase, String word) {
+            int key = (recordId == null) ? AutocompleteIndex.NO_RECORD : recordId;
+
+            Map<String, Set<String>> phrases =
+                    this.records.computeIfAbsent(key, k -> new HashMap<>());
+
+            Set<String> words = phrases.get(phrase);
+
+            if (words == null) {
+                words = new LinkedHashSet<>();
+                phrases.put(phrase, words);
+                this.entryCount++;
+            }
+
+            words.add(word);
+        }
+
+        public int getEntryCount() {
+            return this.entryCount;
+        }
+
+        public AutocompleteIndex build() {
+            AutocompleteIndex index = this.index;
+            Map<String, IdBuffer> words = new HashMap<>();
+
+            synchronized (index) {
+                for (Map.Entry<Integer, Map<String, Set<String>>> record :
+                        this.records.entrySet()) {
+
+                    int recordId = record.getKey();
+                    int[] entryIds = new int[record.getValue().size()];
+                    int count = 0;
+
+                    for (Map.Entry<String, Set<String>> phrase : record.getValue().entrySet()) {
+                        int entryId = index.nextEntryId++;
+
+                        index.entries.put(entryId, new Entry(phrase.getKey(), recordId));
+                        entryIds[count++] = entryId;
+
+                        for (String word : phrase.getValue()) {
+                            words.computeIfAbsent(word, k -> new IdBuffer()).add(entryId);
+                        }
+                    }
+
+                    index.recordEntries.put(recordId, entryIds);
+                }
+
+                for (Map.Entry<String, IdBuffer> word : words.entrySet()) {
+                    IdBuffer buffer = word.getValue();
+
+                    index.words.put(word.getKey(), Arrays.copyOf(buffer.ids, buffer.length));
+                }
+            }
+
+            return index;
+        }
+    }
+
+    private static final class IdBuffer {
+        private int[] ids = new int[4];
+        private int length;
+
+        private void add(int id) {
+            if (this.length == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.length * 2);
+            }
+
+            this.ids[this.length++] = id;
+        }
+    }
+}
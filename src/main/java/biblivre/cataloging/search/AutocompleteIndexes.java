@@ -0,0 +1,263 @@
+package biblivre.cataloging.search;
+
+import biblivre.administration.indexing.IndexingBO;
+import biblivre.administration.indexing.IndexingDAO;
+import biblivre.cataloging.AutocompleteDTO;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.StaticBO;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.utils.Constants;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loaded autocomplete indexes of every schema. Together they hold at most the number of phrases of
+ * the global <code>cataloging.autocomplete_index_size</code> configuration: whole fields are
+ * dropped, least recently used first, when a load or an update goes past it, and fields that alone
+ * hold more than that keep being answered by the database.
+ */
+public class AutocompleteIndexes extends StaticBO {
+    private static Logger logger = LoggerFactory.getLogger(AutocompleteIndexes.class);
+
+    private static Map<Triple<String, RecordType, String>, Loaded> indexes;
+    private static Set<Triple<String, RecordType, String>> tooLarge;
+
+    private AutocompleteIndexes() {}
+
+    static {
+        AutocompleteIndexes.reset();
+    }
+
+    public static void reset() {
+        AutocompleteIndexes.indexes = new ConcurrentHashMap<>();
+        AutocompleteIndexes.tooLarge = ConcurrentHashMap.newKeySet();
+    }
+
+    public static void reset(String schema, RecordType recordType) {
+        AutocompleteIndexes.indexes
+                .keySet()
+                .removeIf(key -> key.getLeft().equals(schema) && key.getMiddle() == recordType);
+        AutocompleteIndexes.tooLarge.removeIf(
+                key -> key.getLeft().equals(schema) && key.getMiddle() == recordType);
+    }
+
+    public static void reset(
+            String schema, RecordType recordType, String datafield, String subfield) {
+        Triple<String, RecordType, String> key =
+                AutocompleteIndexes.key(schema, recordType, datafield, subfield);
+
+        AutocompleteIndexes.indexes.remove(key);
+        AutocompleteIndexes.tooLarge.remove(key);
+    }
+
+    /**
+     * Replaces the phrases of the given records in every loaded index of the record type, dropping
+     * fields if the indexes get past their size. Must be called holding the indexing locks of the
+     * records.
+     */
+    public static void update(
+            String schema,
+            RecordType recordType,
+            Collection<Integer> recordIds,
+            Collection<AutocompleteDTO> autocompletes) {
+
+        boolean updated = false;
+
+        for (Map.Entry<Triple<String, RecordType, String>, Loaded> entry :
+                AutocompleteIndexes.indexes.entrySet()) {
+
+            Triple<String, RecordType, String> key = entry.getKey();
+
+            if (!key.getLeft().equals(schema) || key.getMiddle() != recordType) {
+                continue;
+            }
+
+            List<AutocompleteDTO> fieldAutocompletes = new ArrayList<>();
+
+            for (AutocompleteDTO autocomplete : autocompletes) {
+                String field = autocomplete.getDatafield() + autocomplete.getSubfield();
+
+                if (field.equals(key.getRight())) {
+                    fieldAutocompletes.add(autocomplete);
+                }
+            }
+
+            entry.getValue().index.update(recordIds, fieldAutocompletes);
+            updated = true;
+        }
+
+        if (updated) {
+            AutocompleteIndexes.evict();
+        }
+    }
+
+    /** Returns null when the field has too many phrases to be kept in memory. */
+    public static AutocompleteIndex get(
+            String schema, RecordType recordType, String datafield, String subfield) {
+
+        Triple<String, RecordType, String> key =
+                AutocompleteIndexes.key(schema, recordType, datafield, subfield);
+
+        Loaded loaded = AutocompleteIndexes.indexes.get(key);
+
+        if (loaded != null) {
+            loaded.lastUsed = System.nanoTime();
+
+            return loaded.index;
+        }
+
+        if (AutocompleteIndexes.tooLarge.contains(key)) {
+            return null;
+        }
+
+        return AutocompleteIndexes.loadIndex(key, datafield, subfield);
+    }
+
+    private static AutocompleteIndex loadIndex(
+            Triple<String, RecordType, String> key, String datafield, String subfield) {
+
+        String schema = key.getLeft();
+        RecordType recordType = key.getMiddle();
+
+        // Holding the indexing lock keeps records from being indexed while the table is read,
+        // which would leave the loaded copy behind.
+        return IndexingBO.getInstance(schema)
+                .getLocks()
+                .withAll(
+                        () -> {
+                            Loaded loaded = AutocompleteIndexes.indexes.get(key);
+
+                            // Checking again for thread safety.
+                            if (loaded != null) {
+                                return loaded.index;
+                            }
+
+                            if (AutocompleteIndexes.tooLarge.contains(key)) {
+                                return null;
+                            }
+
+                            long start = System.currentTimeMillis();
+                            int maxEntries = AutocompleteIndexes.getMaxEntries();
+
+                            AutocompleteIndex index =
+                                    IndexingDAO.getInstance(schema)
+                                            .loadAutocompleteIndex(
+                                                    recordType, datafield, subfield, maxEntries);
+
+                            if (index == null) {
+                                AutocompleteIndexes.logger.info(
+                                        "Autocomplete of {}.{} {}${} has more than {} phrases, not kept in memory",
+                                        schema,
+                                        recordType,
+                                        datafield,
+                                        subfield,
+                                        maxEntries);
+
+                                AutocompleteIndexes.tooLarge.add(key);
+
+                                return null;
+                            }
+
+                            AutocompleteIndexes.logger.info(
+                                    "Loaded autocomplete of {}.{} {}${}: {} words, {} phrases in {} ms",
+                                    schema,
+                                    recordType,
+                                    datafield,
+                                    subfield,
+                                    index.getWordCount(),
+                                    index.getEntryCount(),
+                                    System.currentTimeMillis() - start);
+
+                            AutocompleteIndexes.indexes.put(key, new Loaded(index));
+                            AutocompleteIndexes.evict();
+
+                            return index;
+                        });
+    }
+
+    /*
+     * Drops the fields that alone hold more phrases than the configured size, and then whole
+     * fields, least recently used first, until the loaded ones fit in it.
+     */
+    private static synchronized void evict() {
+        int maxEntries = AutocompleteIndexes.getMaxEntries();
+
+        List<Triple<String, RecordType, String>> keys = new ArrayList<>();
+        Map<Triple<String, RecordType, String>, Long> lastUsed = new HashMap<>();
+        long total = 0;
+
+        for (Map.Entry<Triple<String, RecordType, String>, Loaded> entry :
+                AutocompleteIndexes.indexes.entrySet()) {
+
+            Triple<String, RecordType, String> key = entry.getKey();
+            int entryCount = entry.getValue().index.getEntryCount();
+
+            if (entryCount > maxEntries) {
+                AutocompleteIndexes.logger.info(
+                        "Autocomplete of {}.{} {} grew to {} phrases, not kept in memory",
+                        key.getLeft(),
+                        key.getMiddle(),
+                        key.getRight(),
+                        entryCount);
+
+                AutocompleteIndexes.tooLarge.add(key);
+                AutocompleteIndexes.indexes.remove(key);
+
+                continue;
+            }
+
+            keys.add(key);
+            lastUsed.put(key, entry.getValue().lastUsed);
+            total += entryCount;
+        }
+
+        keys.sort(Comparator.comparing(lastUsed::get));
+
+        for (Triple<String, RecordType, String> key : keys) {
+            if (total <= maxEntries) {
+                break;
+            }
+
+            Loaded loaded = AutocompleteIndexes.indexes.remove(key);
+
+            if (loaded != null) {
+                total -= loaded.index.getEntryCount();
+
+                AutocompleteIndexes.logger.info(
+                        "Dropped autocomplete of {}.{} {} from memory, least recently used",
+                        key.getLeft(),
+                        key.getMiddle(),
+                        key.getRight());
+            }
+        }
+    }
+
+    private static int getMaxEntries() {
+        return Configurations.getInt(
+                Constants.GLOBAL_SCHEMA, Constants.CONFIG_AUTOCOMPLETE_INDEX_SIZE, 500000);
+    }
+
+    private static Triple<String, RecordType, String> key(
+            String schema, RecordType recordType, String datafield, String subfield) {
+
+        return Triple.of(schema, recordType, datafield + subfield);
+    }
+
+    private static final class Loaded {
+        private final AutocompleteIndex index;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Loaded(AutocompleteIndex index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package biblivre.cataloging.search;
+
+import biblivre.administration.indexing.IndexingDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In memory copy of a <code>&lt;type&gt;_idx_fields</code> table: for every word, one compressed
+ * {@link PostingList} per indexing group. Lookups are lock free; the posting lists of a word are
+ * replaced as a whole whenever a record containing it is indexed again.
+ */
+public class InvertedIndex {
+    private final ConcurrentNavigableMap<String, Map<Integer, PostingList>> words =
+            new ConcurrentSkipListMap<>();
+
+    public int getWordCount() {
+        return this.words.size();
+    }
+
+    public long getEntryCount() {
+        long count = 0;
+
+        for (Map<Integer, PostingList> groups : this.words.values()) {
+            for (PostingList list : groups.values()) {
+                count += list.size();
+            }
+        }
+
+        return count;
+    }
+
+    public long getCompressedSize() {
+        long size = 0;
+
+        for (Map<Integer, PostingList> groups : this.words.values()) {
+            for (PostingList list : groups.values()) {
+                size += list.getCompressedSize();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Same semantics as the simple search SQL: every term must match the record in some indexing
+     * group, and the record is listed under each group where any of the terms matched. Terms ending
+     * with <code>*</code> are prefixes.
+     */
+    public Hits search(Collection<String> terms) {
+        List<Map<Integer, int[]>> matches = new ArrayList<>(terms.size());
+        int[] recordIds = null;
+
+        for (String term : terms) {
+            Map<Integer, int[]> groups = this.find(term);
+
+            int[] termRecordIds = new int[0];
+            for (int[] groupRecordIds : groups.values()) {
+                termRecordIds = InvertedIndex.union(termRecordIds, groupRecordIds);
+            }
+
+            recordIds =
+                    (recordIds == null)
+                            ? termRecordIds
+                            : InvertedIndex.intersect(recordIds, termRecordIds);
+
+            if (recordIds.length == 0) {
+                return Hits.EMPTY;
+            }
+
+            matches.add(groups);
+        }
+
+        if (recordIds == null) {
+            return Hits.EMPTY;
+        }
+
+        Map<Integer, int[]> hits = new TreeMap<>();
+
+        for (Map<Integer, int[]> groups : matches) {
+            for (Map.Entry<Integer, int[]> entry : groups.entrySet()) {
+                int[] found = InvertedIndex.intersect(entry.getValue(), recordIds);
+                int[] current = hits.get(entry.getKey());
+
+                hits.put(
+                        entry.getKey(),
+                        (current == null) ? found : InvertedIndex.union(current, found));
+            }
+        }
+
+        return new Hits(hits);
+    }
+
+    /**
+     * Same semantics as the advanced search SQL: records where all words occur in the same
+     * datafield, within the given indexing group or within any of them when it is 0.
+     */
+    public int[] searchSameDatafield(Collection<String> words, int indexingGroupId) {
+        long[] entries = null;
+
+        for (String word : words) {
+            Map<Integer, PostingList> groups =
+                    this.words.getOrDefault(word, Collections.emptyMap());
+
+            long[] wordEntries = new long[0];
+
+            for (Map.Entry<Integer, PostingList> group : groups.entrySet()) {
+                if (indexingGroupId == 0 || group.getKey() == indexingGroupId) {
+                    wordEntries = InvertedIndex.union(wordEntries, group.getValue().getEntries());
+                }
+            }
+
+            entries =
+                    (entries == null) ? wordEntries : InvertedIndex.intersect(entries, wordEntries);
+
+            if (entries.length == 0) {
+                return new int[0];
+            }
+        }
+
+        if (entries == null) {
+            return new int[0];
+        }
+
+        int[] recordIds = new int[entries.length];
+        int count = 0;
+
+        for (long entry : entries) {
+            int recordId = PostingList.recordId(entry);
+
+            if (count == 0 || recordIds[count - 1] != recordId) {
+                recordIds[count++] = recordId;
+            }
+        }
+
+        return Arrays.copyOf(recordIds, count);
+    }
+
+    /**
+     * Replaces every entry of the given records. <code>oldWords</code> must contain all words
+     * currently indexed for those records, as the posting lists are only reachable by word.
+     */
+    public synchronized void update(
+            Set<Integer> recordIds, Set<String> oldWords, Collection<IndexingDTO> indexes) {
+
+        Builder added = new Builder();
+
+        for (IndexingDTO index : indexes) {
+            for (Map.Entry<Integer, Set<String>> entry : index.getWords().entrySet()) {
+                for (String word : entry.getValue()) {
+                    added.add(
+                            word, index.getIndexingGroupId(), index.getRecordId(), entry.getKey());
+                }
+            }
+        }
+
+        Set<String> affected = new HashSet<>(oldWords);
+        affected.addAll(added.words.keySet());
+
+        for (String word : affected) {
+            Map<Integer, PostingList> current =
+                    this.words.getOrDefault(word, Collections.emptyMap());
+            Map<Integer, EntryBuffer> wordAdded =
+                    added.words.getOrDefault(word, Collections.emptyMap());
+
+            Set<Integer> groups = new HashSet<>(current.keySet());
+            groups.addAll(wordAdded.keySet());
+
+            Map<Integer, PostingList> updated = new HashMap<>();
+
+            for (Integer groupId : groups) {
+                PostingList list = current.getOrDefault(groupId, PostingList.EMPTY);
+                EntryBuffer buffer = wordAdded.getOrDefault(groupId, EntryBuffer.EMPTY);
+
+                list = list.update(recordIds, buffer.entries, buffer.length);
+
+                if (!list.isEmpty()) {
+                    updated.put(groupId, list);
+                }
+            }
+
+            if (updated.isEmpty()) {
+                this.words.remove(word);
+            } else {
+                this.words.put(word, Collections.unmodifiableMap(updated));
+            }
+        }
+    }
+
+    private Map<Integer, int[]> find(String term) {
+        NavigableMap<String, Map<Integer, PostingList>> found;
+
+        if (term.endsWith("*")) {
+            String prefix = term.substring(0, term.length() - 1);
+            found = this.words.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        } else {
+            Map<Integer, PostingList> groups = this.words.get(term);
+
+            if (groups == null) {
+                return Collections.emptyMap();
+            }
+
+            found = new TreeMap<>();
+            found.put(term, groups);
+        }
+
+        Map<Integer, int[]> result = new HashMap<>();
+
+        for (Map<Integer, PostingList> groups : found.values()) {
+            for (Map.Entry<Integer, PostingList> entry : groups.entrySet()) {
+                int[] recordIds = entry.getValue().getRecordIds();
+                int[] current = result.get(entry.getKey());
+
+                result.put(
+                        entry.getKey(),
+                        (current == null) ? recordIds : InvertedIndex.union(current, recordIds));
+            }
+        }
+
+        return result;
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+
+        if (b.length == 0) {
+            return a;
+        }
+
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    static long[] union(long[] a, long[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+
+        if (b.length == 0) {
+            return a;
+        }
+
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Collects the rows of an index table before they are compressed into posting lists. */
+    public static class Builder {
+        private final Map<String, Map<Integer, EntryBuffer>> words = new HashMap<>();
+
+        public void add(String word, int indexingGroupId, int recordId, int datafield) {
+            this.words
+                    .computeIfAbsent(word, k -> new HashMap<>())
+                    .computeIfAbsent(indexingGroupId, k -> new EntryBuffer())
+                    .add(PostingList.entry(recordId, datafield));
+        }
+
+        public InvertedIndex build() {
+            InvertedIndex index = new InvertedIndex();
+
+            for (Map.Entry<String, Map<Integer, EntryBuffer>> word : this.words.entrySet()) {
+                Map<Integer, PostingList> groups = new HashMap<>();
+
+                for (Map.Entry<Integer, EntryBuffer> group : word.getValue().entrySet()) {
+                    EntryBuffer buffer = group.getValue();
+                    groups.put(group.getKey(), PostingList.of(buffer.entries, buffer.length));
+                }
+
+                index.words.put(word.getKey(), Collections.unmodifiableMap(groups));
+            }
+
+            return index;
+        }
+    }
+
+    /** (indexing group, record id) pairs found by {@link InvertedIndex#search(Collection)}. */
+    public static class Hits {
+        private static final Hits EMPTY = new Hits(Collections.emptyMap());
+
+        private final int[] indexingGroupIds;
+        private final int[] recordIds;
+
+        private Hits(Map<Integer, int[]> hits) {
+            int size = 0;
+
+            for (int[] recordIds : hits.values()) {
+                size += recordIds.length;
+            }
+
+            this.indexingGroupIds = new int[size];
+            this.recordIds = new int[size];
+
+            int i = 0;
+
+            for (Map.Entry<Integer, int[]> entry : hits.entrySet()) {
+                for (int recordId : entry.getValue()) {
+                    this.indexingGroupIds[i] = entry.getKey();
+                    this.recordIds[i] = recordId;
+                    i++;
+                }
+            }
+        }
+
+        public int size() {
+            return this.recordIds.length;
+        }
+
+        public int[] getIndexingGroupIds() {
+            return this.indexingGroupIds;
+        }
+
+        public int[] getRecordIds() {
+            return this.recordIds;
+        }
+    }
+
+    private static final class EntryBuffer {
+        private static final EntryBuffer EMPTY = new EntryBuffer();
+
+        private long[] entries = new long[4];
+        private int length;
+
+        private void add(long entry) {
+            if (this.length == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, this.length * 2);
+            }
+
+            this.entries[this.length++] = entry;
+        }
+    }
+}
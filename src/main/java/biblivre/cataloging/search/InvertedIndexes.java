@@ -0,0 +1,81 @@
+package biblivre.cataloging.search;
+
+import biblivre.administration.indexing.IndexingBO;
+import biblivre.administration.indexing.IndexingDAO;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.StaticBO;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class InvertedIndexes extends StaticBO {
+    private static Logger logger = LoggerFactory.getLogger(InvertedIndexes.class);
+
+    private static Map<Pair<String, RecordType>, InvertedIndex> indexes;
+
+    private InvertedIndexes() {}
+
+    static {
+        InvertedIndexes.reset();
+    }
+
+    public static void reset() {
+        InvertedIndexes.indexes = new ConcurrentHashMap<>();
+    }
+
+    public static void reset(String schema, RecordType recordType) {
+        InvertedIndexes.indexes.remove(Pair.of(schema, recordType));
+    }
+
+    /** Returns the index if it was already loaded, so it can be kept up to date. */
+    public static InvertedIndex getIfLoaded(String schema, RecordType recordType) {
+        return InvertedIndexes.indexes.get(Pair.of(schema, recordType));
+    }
+
+    public static InvertedIndex get(String schema, RecordType recordType) {
+        InvertedIndex index = InvertedIndexes.getIfLoaded(schema, recordType);
+
+        if (index == null) {
+            index = InvertedIndexes.loadIndex(schema, recordType);
+        }
+
+        return index;
+    }
+
+    private static InvertedIndex loadIndex(String schema, RecordType recordType) {
+        Pair<String, RecordType> pair = Pair.of(schema, recordType);
+
+        // Holding the indexing lock keeps records from being indexed while the table is read,
+        // which would leave the loaded copy behind.
+        return IndexingBO.getInstance(schema)
+                .getLocks()
+                .withAll(
+                        () -> {
+                            InvertedIndex index = InvertedIndexes.indexes.get(pair);
+
+                            // Checking again for thread safety.
+                            if (index != null) {
+                                return index;
+                            }
+
+                            long start = System.currentTimeMillis();
+
+                            index = IndexingDAO.getInstance(schema).loadInvertedIndex(recordType);
+
+                            InvertedIndexes.logger.info(
+                                    "Loaded inverted index of {}.{}: {} words, {} entries, {} KB in {} ms",
+                                    schema,
+                                    recordType,
+                                    index.getWordCount(),
+                                    index.getEntryCount(),
+                                    index.getCompressedSize() / 1024,
+                                    System.currentTimeMillis() - start);
+
+                            InvertedIndexes.indexes.put(pair, index);
+
+                            return index;
+                        });
+    }
+}
@@ -0,0 +1,168 @@
+package biblivre.cataloging.search;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable, sorted list of (record id, datafield) entries of one word in one indexing group.
+ * Entries are stored as variable byte encoded deltas of the record id followed by the datafield,
+ * which usually takes two or three bytes per entry instead of the sixteen of a boxed pair.
+ */
+public final class PostingList {
+    public static final PostingList EMPTY = new PostingList(new byte[0], 0);
+
+    private final byte[] data;
+    private final int size;
+
+    private PostingList(byte[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Builds a list from entries created with {@link #entry(int, int)}, in any order and possibly
+     * repeated. The array is sorted in place.
+     */
+    public static PostingList of(long[] entries, int length) {
+        if (length == 0) {
+            return PostingList.EMPTY;
+        }
+
+        Arrays.sort(entries, 0, length);
+
+        byte[] buffer = new byte[length * 10];
+        int position = 0;
+        int size = 0;
+        int lastRecordId = 0;
+        long lastEntry = -1;
+
+        for (int i = 0; i < length; i++) {
+            long entry = entries[i];
+
+            if (entry == lastEntry) {
+                continue;
+            }
+
+            int recordId = PostingList.recordId(entry);
+
+            position = PostingList.write(buffer, position, recordId - lastRecordId);
+            position = PostingList.write(buffer, position, PostingList.datafield(entry));
+
+            lastRecordId = recordId;
+            lastEntry = entry;
+            size++;
+        }
+
+        return new PostingList(Arrays.copyOf(buffer, position), size);
+    }
+
+    public static long entry(int recordId, int datafield) {
+        return ((long) recordId << 32) | (datafield & 0xFFFFFFFFL);
+    }
+
+    public static int recordId(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    public static int datafield(long entry) {
+        return (int) entry;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getCompressedSize() {
+        return this.data.length;
+    }
+
+    public long[] getEntries() {
+        long[] entries = new long[this.size];
+
+        Reader reader = new Reader(this.data);
+        int recordId = 0;
+
+        for (int i = 0; i < this.size; i++) {
+            recordId += reader.next();
+            entries[i] = PostingList.entry(recordId, reader.next());
+        }
+
+        return entries;
+    }
+
+    // Sorted and without repetitions
+    public int[] getRecordIds() {
+        int[] recordIds = new int[this.size];
+        int count = 0;
+
+        Reader reader = new Reader(this.data);
+        int recordId = 0;
+
+        for (int i = 0; i < this.size; i++) {
+            int delta = reader.next();
+            reader.next();
+
+            if (delta != 0 || count == 0) {
+                recordId += delta;
+                recordIds[count++] = recordId;
+            }
+        }
+
+        return Arrays.copyOf(recordIds, count);
+    }
+
+    /** Returns a copy of this list without the given records, plus the added entries. */
+    public PostingList update(Set<Integer> removedRecords, long[] added, int addedLength) {
+        long[] entries = this.getEntries();
+        long[] merged = new long[entries.length + addedLength];
+        int length = 0;
+
+        for (long entry : entries) {
+            if (!removedRecords.contains(PostingList.recordId(entry))) {
+                merged[length++] = entry;
+            }
+        }
+
+        System.arraycopy(added, 0, merged, length, addedLength);
+
+        return PostingList.of(merged, length + addedLength);
+    }
+
+    private static int write(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+
+        return position;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int next() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+
+            do {
+                b = this.data[this.position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return value;
+        }
+    }
+}
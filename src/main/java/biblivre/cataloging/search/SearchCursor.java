@@ -0,0 +1,23 @@
+package biblivre.cataloging.search;
+
+/**
+ * Position of a record in a sorted page of search results: its sort key, null when the record has
+ * none for the sort group, and its id.
+ */
+public class SearchCursor {
+    private final String sortKey;
+    private final int recordId;
+
+    public SearchCursor(String sortKey, int recordId) {
+        this.sortKey = sortKey;
+        this.recordId = recordId;
+    }
+
+    public String getSortKey() {
+        return this.sortKey;
+    }
+
+    public int getRecordId() {
+        return this.recordId;
+    }
+}
@@ -0,0 +1,111 @@
+package biblivre.cataloging.search;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.PagingDTO;
+import biblivre.core.StaticBO;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last record of each page of search results served, so the following page can be read with a seek
+ * on the sort index instead of an offset. Pages reached without going through the previous one
+ * still use an offset.
+ */
+public class SearchCursors extends StaticBO {
+    private static final int MAX_SIZE = 10000;
+
+    private static Map<String, SchemaCursors> cursors;
+
+    private SearchCursors() {}
+
+    static {
+        SearchCursors.reset();
+    }
+
+    public static void reset() {
+        SearchCursors.cursors = new ConcurrentHashMap<>();
+    }
+
+    // Cursor to seek to the current page of the search, if the previous page was served
+    public static SearchCursor get(String schema, SearchDTO search) {
+        PagingDTO paging = search.getPaging();
+
+        if (search.getId() == null || paging == null || paging.getRecordOffset() == 0) {
+            return null;
+        }
+
+        return SearchCursors.getCursors(schema)
+                .get(SearchCursors.getKey(search, paging.getRecordOffset()));
+    }
+
+    // Stores the last record of the current page, to seek to the next one
+    public static void put(String schema, SearchDTO search) {
+        PagingDTO paging = search.getPaging();
+        SearchCursor cursor = search.getNextCursor();
+
+        if (search.getId() == null || paging == null || cursor == null) {
+            return;
+        }
+
+        int offset = paging.getRecordOffset() + paging.getRecordsPerPage();
+
+        SearchCursors.getCursors(schema).put(SearchCursors.getKey(search, offset), cursor);
+    }
+
+    public static void invalidate(String schema, RecordType recordType) {
+        SearchCursors.getCursors(schema).invalidate(recordType + ":");
+    }
+
+    // The search was run again, and its results may differ
+    public static void invalidate(String schema, RecordType recordType, int searchId) {
+        SearchCursors.getCursors(schema).invalidate(recordType + ":" + searchId + ":");
+    }
+
+    private static String getKey(SearchDTO search, int offset) {
+        return search.getRecordType()
+                + ":"
+                + search.getId()
+                + ":"
+                + search.getIndexingGroup()
+                + ":"
+                + search.getSort()
+                + ":"
+                + offset;
+    }
+
+    private static SchemaCursors getCursors(String schema) {
+        return SearchCursors.cursors.computeIfAbsent(schema, k -> new SchemaCursors());
+    }
+
+    private static final class SchemaCursors {
+        private final LinkedHashMap<String, SearchCursor> entries =
+                new LinkedHashMap<String, SearchCursor>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, SearchCursor> eldest) {
+                        return this.size() > SearchCursors.MAX_SIZE;
+                    }
+                };
+
+        private synchronized SearchCursor get(String key) {
+            return this.entries.get(key);
+        }
+
+        private synchronized void put(String key, SearchCursor cursor) {
+            this.entries.put(key, cursor);
+        }
+
+        private synchronized void invalidate(String prefix) {
+            Iterator<String> iterator = this.entries.keySet().iterator();
+
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package biblivre.cataloging.search;
 
 import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.enums.SearchBackend;
 import biblivre.cataloging.enums.SearchOperator;
 import biblivre.core.AbstractDAO;
 import biblivre.core.exceptions.DAOException;
@@ -29,7 +30,9 @@ import biblivre.marc.MaterialType;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -37,6 +40,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
 
 public abstract class SearchDAO extends AbstractDAO {
+    // Stands for a quoted phrase among the SQL operators of a simple search
+    private static final String PHRASE_OPERATOR = "phrase";
+
     protected RecordType recordType;
 
     public SearchDTO getSearch(Integer searchId) {
@@ -108,23 +114,80 @@ public abstract class SearchDAO extends AbstractDAO {
     }
 
     public boolean populateSimpleSearch(SearchDTO search, boolean deleteOldResults) {
+        return this.populateSimpleSearch(search, null, deleteOldResults);
+    }
+
+    /*
+     * When an inverted index is given, the search runs against it instead of the index tables,
+     * except for quoted phrases, which need the word positions kept only in the database.
+     */
+    public boolean populateSimpleSearch(
+            SearchDTO search, InvertedIndex invertedIndex, boolean deleteOldResults) {
+        return this.populateSimpleSearch(search, invertedIndex, deleteOldResults, null);
+    }
+
+    /*
+     * Same searches as the populate methods, returning the results instead of storing them in
+     * <type>_search_results.
+     */
+    public SearchResults listSimpleSearchResults(
+            SearchDTO search, SearchBackend backend, InvertedIndex invertedIndex) {
+        SearchResults.Builder results = new SearchResults.Builder();
+
+        if (backend == SearchBackend.FULLTEXT) {
+            this.populateFullTextSimpleSearch(search, false, results);
+        } else {
+            this.populateSimpleSearch(search, invertedIndex, false, results);
+        }
+
+        return results.build(search.getId());
+    }
+
+    public SearchResults listAdvancedSearchResults(
+            SearchDTO search, SearchBackend backend, InvertedIndex invertedIndex) {
+        SearchResults.Builder results = new SearchResults.Builder();
+
+        if (backend == SearchBackend.MEMORY && invertedIndex == null) {
+            backend = SearchBackend.DATABASE;
+        }
+
+        this.populateAdvancedSearch(search, backend, invertedIndex, false, results);
+
+        return results.build(search.getId());
+    }
+
+    private boolean populateSimpleSearch(
+            SearchDTO search,
+            InvertedIndex invertedIndex,
+            boolean deleteOldResults,
+            SearchResults.Builder results) {
         SearchQueryDTO query = search.getQuery();
 
         Set<String> terms = search.getQuery().getSimpleTerms();
+
+        if (invertedIndex != null
+                && !terms.isEmpty()
+                && terms.stream().noneMatch(term -> term.charAt(0) == '"')) {
+            return this.populateSearchResults(
+                    search, invertedIndex.search(terms), deleteOldResults, results);
+        }
         List<String> sqlTerms = new ArrayList<>(terms.size());
         List<String> sqlOperators = new ArrayList<>(terms.size());
-        List<String[]> exactTerms = new ArrayList<String[]>();
+        List<String[]> phrases = new ArrayList<String[]>();
 
         for (String term : terms) {
             String operator = "=";
 
             if (term.charAt(0) == '"') {
-                String rTerm = term.substring(1, term.length() - 1);
+                String[] words = TextUtils.prepareWords(term.substring(1, term.length() - 1));
 
-                term = "\\m" + rTerm + "\\M";
-                operator = "~";
+                if (words.length == 0) {
+                    continue;
+                }
 
-                exactTerms.add(TextUtils.prepareExactTerms(rTerm));
+                operator = SearchDAO.PHRASE_OPERATOR;
+
+                phrases.add(words);
             } else if (term.endsWith("*")) {
                 term = term.substring(0, term.length() - 1) + "%";
                 operator = "LIKE";
@@ -134,7 +197,7 @@ public abstract class SearchDAO extends AbstractDAO {
             sqlOperators.add(operator);
         }
 
-        String sql = this.createSimpleSelectClause(search, sqlOperators, exactTerms);
+        String sql = this.createSimpleSelectClause(search, sqlOperators, phrases, results == null);
 
         if (sql == null) {
             return false;
@@ -165,14 +228,12 @@ public abstract class SearchDAO extends AbstractDAO {
                 String term = sqlTerms.get(i);
                 String operator = sqlOperators.get(i);
 
-                pst.setString(index++, term);
-
-                if (operator.equals("~")) {
-                    String[] eTerms = exactTerms.get(j++);
-
-                    for (String eTerm : eTerms) {
-                        pst.setString(index++, eTerm);
+                if (operator.equals(SearchDAO.PHRASE_OPERATOR)) {
+                    for (String word : phrases.get(j++)) {
+                        pst.setString(index++, word);
                     }
+                } else {
+                    pst.setString(index++, term);
                 }
             }
 
@@ -182,13 +243,114 @@ public abstract class SearchDAO extends AbstractDAO {
                 pst.setString(index++, query.getMaterialType().toString());
             }
 
-            int records = pst.executeUpdate();
+            boolean found = this.executeSearch(pst, results);
+
+            if (deleteOldResults) {
+                this.commit(con);
+            }
+
+            return found;
+        } catch (Exception e) {
+            if (deleteOldResults) {
+                this.rollback(con);
+            }
+
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /*
+     * Runs the search against the tsvector documents of <type>_idx_fts, in a single scan of its
+     * GIN index. Quoted phrases need the word positions, so they are still searched through SQL.
+     */
+    public boolean populateFullTextSimpleSearch(SearchDTO search, boolean deleteOldResults) {
+        return this.populateFullTextSimpleSearch(search, deleteOldResults, null);
+    }
+
+    private boolean populateFullTextSimpleSearch(
+            SearchDTO search, boolean deleteOldResults, SearchResults.Builder results) {
+        SearchQueryDTO query = search.getQuery();
+
+        Set<String> terms = query.getSimpleTerms();
+
+        if (terms.isEmpty()
+                || terms.stream().anyMatch(term -> term.charAt(0) == '"' || term.equals("*"))) {
+            return this.populateSimpleSearch(search, null, deleteOldResults, results);
+        }
+
+        List<String> termQueries = new ArrayList<>(terms.size());
+
+        for (String term : terms) {
+            termQueries.add(SearchDAO.createTermQuery(term));
+        }
+
+        StringBuilder sql = new StringBuilder();
+
+        if (results == null) {
+            sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
+            sql.append("(search_id, indexing_group_id, record_id) ");
+        }
+
+        // Groups where any of the terms matched, of records matching every term
+        sql.append("WITH M AS (SELECT record_id, indexing_group_id, document FROM ");
+        sql.append(this.recordType).append("_idx_fts WHERE document @@ ?::tsquery) ");
+        sql.append("SELECT ?, M.indexing_group_id, M.record_id FROM M ");
+        sql.append("INNER JOIN ").append(this.recordType).append("_records R ");
+        sql.append("ON R.id = M.record_id ");
+        sql.append("WHERE M.record_id IN (SELECT record_id FROM M GROUP BY record_id HAVING ");
+        sql.append(StringUtils.repeat("bool_or(document @@ ?::tsquery)", " AND ", terms.size()));
+        sql.append(") AND R.database = ? ");
+
+        if (query.getMaterialType() != MaterialType.ALL) {
+            sql.append("AND R.material = ? ");
+        }
+
+        if (query.isReservedOnly()) {
+            sql.append(
+                    "AND R.id in (SELECT DISTINCT record_id FROM reservations WHERE expires > localtimestamp) ");
+        }
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            if (deleteOldResults) {
+                con.setAutoCommit(false);
+
+                StringBuilder deleteSql = new StringBuilder();
+                deleteSql.append("DELETE FROM ").append(this.recordType).append("_search_results ");
+                deleteSql.append("WHERE search_id = ?;");
+
+                PreparedStatement deletePst = con.prepareStatement(deleteSql.toString());
+                deletePst.setInt(1, search.getId());
+                deletePst.executeUpdate();
+            }
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            int index = 1;
+
+            pst.setString(index++, StringUtils.join(termQueries, " | "));
+            pst.setInt(index++, search.getId());
+
+            for (String termQuery : termQueries) {
+                pst.setString(index++, termQuery);
+            }
+
+            pst.setString(index++, query.getDatabase().toString());
+
+            if (query.getMaterialType() != MaterialType.ALL) {
+                pst.setString(index++, query.getMaterialType().toString());
+            }
+
+            boolean found = this.executeSearch(pst, results);
 
             if (deleteOldResults) {
                 this.commit(con);
             }
 
-            return records > 0;
+            return found;
         } catch (Exception e) {
             if (deleteOldResults) {
                 this.rollback(con);
@@ -201,8 +363,29 @@ public abstract class SearchDAO extends AbstractDAO {
     }
 
     public boolean populateAdvancedSearch(SearchDTO search, boolean deleteOld) {
+        return this.populateAdvancedSearch(search, null, deleteOld);
+    }
+
+    public boolean populateAdvancedSearch(
+            SearchDTO search, InvertedIndex invertedIndex, boolean deleteOld) {
+        SearchBackend backend =
+                (invertedIndex != null) ? SearchBackend.MEMORY : SearchBackend.DATABASE;
+
+        return this.populateAdvancedSearch(search, backend, invertedIndex, deleteOld, null);
+    }
+
+    public boolean populateFullTextAdvancedSearch(SearchDTO search, boolean deleteOld) {
+        return this.populateAdvancedSearch(search, SearchBackend.FULLTEXT, null, deleteOld, null);
+    }
+
+    private boolean populateAdvancedSearch(
+            SearchDTO search,
+            SearchBackend backend,
+            InvertedIndex invertedIndex,
+            boolean deleteOld,
+            SearchResults.Builder results) {
         SearchQueryDTO query = search.getQuery();
-        String sql = this.createAdvancedSelectClause(search);
+        String sql = this.createAdvancedSelectClause(search, backend, results == null);
 
         if (sql == null) {
             return false;
@@ -237,6 +420,27 @@ public abstract class SearchDAO extends AbstractDAO {
             for (SearchTermDTO searchTerm : searchTerms) {
                 String field = searchTerm.getField();
 
+                if (backend == SearchBackend.FULLTEXT && StringUtils.isNumeric(field)) {
+                    pst.setString(
+                            index++, SearchDAO.createSameDatafieldQuery(searchTerm.getTerms()));
+
+                    if (!field.equals("0")) {
+                        pst.setInt(index++, TextUtils.defaultInt(field));
+                    }
+
+                    continue;
+                }
+
+                if (backend == SearchBackend.MEMORY && StringUtils.isNumeric(field)) {
+                    int[] recordIds =
+                            invertedIndex.searchSameDatafield(
+                                    searchTerm.getTerms(), TextUtils.defaultInt(field));
+
+                    this.setIdArray(pst, index++, recordIds);
+
+                    continue;
+                }
+
                 for (String term : searchTerm.getTerms()) {
                     // See: createAdvancedFilterClause();
 
@@ -289,13 +493,13 @@ public abstract class SearchDAO extends AbstractDAO {
                 }
             }
 
-            int records = pst.executeUpdate();
+            boolean found = this.executeSearch(pst, results);
 
             if (deleteOld) {
                 this.commit(con);
             }
 
-            return records > 0;
+            return found;
         } catch (Exception e) {
             if (deleteOld) {
                 this.rollback(con);
@@ -307,8 +511,99 @@ public abstract class SearchDAO extends AbstractDAO {
         }
     }
 
+    private boolean populateSearchResults(
+            SearchDTO search,
+            InvertedIndex.Hits hits,
+            boolean deleteOldResults,
+            SearchResults.Builder results) {
+        SearchQueryDTO query = search.getQuery();
+
+        Connection con = null;
+        try {
+            con = this.getConnection();
+
+            if (deleteOldResults) {
+                con.setAutoCommit(false);
+
+                StringBuilder deleteSql = new StringBuilder();
+                deleteSql.append("DELETE FROM ").append(this.recordType).append("_search_results ");
+                deleteSql.append("WHERE search_id = ?;");
+
+                PreparedStatement deletePst = con.prepareStatement(deleteSql.toString());
+                deletePst.setInt(1, search.getId());
+                deletePst.executeUpdate();
+            }
+
+            StringBuilder sql = new StringBuilder();
+
+            if (results == null) {
+                sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
+                sql.append("(search_id, indexing_group_id, record_id) ");
+            }
+
+            sql.append("SELECT ?, A.indexing_group_id, A.record_id ");
+            sql.append("FROM unnest(?::integer[], ?::integer[]) A (indexing_group_id, record_id) ");
+            sql.append("INNER JOIN ").append(this.recordType).append("_records R ");
+            sql.append("ON R.id = A.record_id ");
+            sql.append("WHERE R.database = ? ");
+
+            if (query.getMaterialType() != MaterialType.ALL) {
+                sql.append("AND R.material = ? ");
+            }
+
+            if (query.isReservedOnly()) {
+                sql.append(
+                        "AND R.id in (SELECT DISTINCT record_id FROM reservations WHERE expires > localtimestamp) ");
+            }
+
+            PreparedStatement pst = con.prepareStatement(sql.toString());
+            int index = 1;
+
+            pst.setInt(index++, search.getId());
+            this.setIdArray(pst, index++, hits.getIndexingGroupIds());
+            this.setIdArray(pst, index++, hits.getRecordIds());
+            pst.setString(index++, query.getDatabase().toString());
+
+            if (query.getMaterialType() != MaterialType.ALL) {
+                pst.setString(index++, query.getMaterialType().toString());
+            }
+
+            boolean found = this.executeSearch(pst, results);
+
+            if (deleteOldResults) {
+                this.commit(con);
+            }
+
+            return found;
+        } catch (Exception e) {
+            if (deleteOldResults) {
+                this.rollback(con);
+            }
+
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    // Rows are selected as (search_id, indexing_group_id, record_id)
+    private boolean executeSearch(PreparedStatement pst, SearchResults.Builder results)
+            throws SQLException {
+        if (results == null) {
+            return pst.executeUpdate() > 0;
+        }
+
+        ResultSet rs = pst.executeQuery();
+
+        while (rs.next()) {
+            results.add(rs.getInt(2), rs.getInt(3));
+        }
+
+        return !results.isEmpty();
+    }
+
     private String createSimpleSelectClause(
-            SearchDTO search, List<String> operators, List<String[]> exactTerms) {
+            SearchDTO search, List<String> operators, List<String[]> phrases, boolean insert) {
         SearchQueryDTO query = search.getQuery();
 
         if (operators == null || operators.size() == 0) {
@@ -318,8 +613,10 @@ public abstract class SearchDAO extends AbstractDAO {
         StringBuilder sql = new StringBuilder();
         int cteCount = 0;
 
-        sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
-        sql.append("(search_id, indexing_group_id, record_id) ");
+        if (insert) {
+            sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
+            sql.append("(search_id, indexing_group_id, record_id) ");
+        }
 
         sql.append("WITH ");
 
@@ -328,23 +625,8 @@ public abstract class SearchDAO extends AbstractDAO {
             cteCount++;
 
             sql.append("Query_").append(cteCount).append(" AS ( ");
-            if (operator.equals("~")) {
-                sql.append("SELECT indexing_group_id, record_id FROM ")
-                        .append(this.recordType)
-                        .append("_idx_sort WHERE phrase ")
-                        .append(operator)
-                        .append(" ? ");
-
-                String[] eTerms = exactTerms.get(j++);
-                sql.append("AND record_id IN ( ");
-                sql.append(
-                        StringUtils.repeat(
-                                "SELECT record_id FROM "
-                                        + this.recordType
-                                        + "_idx_fields WHERE word = ? ",
-                                " INTERSECT ",
-                                eTerms.length));
-                sql.append(") ");
+            if (operator.equals(SearchDAO.PHRASE_OPERATOR)) {
+                sql.append(this.createPhraseClause(phrases.get(j++).length));
             } else {
                 sql.append("SELECT indexing_group_id, record_id FROM ")
                         .append(this.recordType)
@@ -400,7 +682,54 @@ public abstract class SearchDAO extends AbstractDAO {
         return sql.toString();
     }
 
-    private String createAdvancedSelectClause(SearchDTO search) {
+    /*
+     * Records with the words of a quoted phrase one after the other in the same datafield. Words
+     * indexed before their positions were stored only need to share the datafield.
+     */
+    private String createPhraseClause(int length) {
+        StringBuilder sql = new StringBuilder();
+
+        sql.append("SELECT F1.indexing_group_id, F1.record_id FROM ");
+        sql.append(this.recordType).append("_idx_fields F1 ");
+
+        for (int i = 2; i <= length; i++) {
+            sql.append("INNER JOIN ").append(this.recordType).append("_idx_fields F").append(i);
+            sql.append(" ON F").append(i).append(".record_id = F1.record_id ");
+            sql.append("AND F").append(i).append(".indexing_group_id = F1.indexing_group_id ");
+            sql.append("AND F").append(i).append(".datafield = F1.datafield ");
+        }
+
+        sql.append("WHERE F1.word = ? ");
+
+        for (int i = 2; i <= length; i++) {
+            sql.append("AND F").append(i).append(".word = ? ");
+        }
+
+        if (length > 1) {
+            sql.append(
+                    "AND (F1.positions IS NULL OR EXISTS (SELECT 1 FROM unnest(F1.positions) P ");
+            sql.append("WHERE ");
+
+            for (int i = 2; i <= length; i++) {
+                if (i > 2) {
+                    sql.append("AND ");
+                }
+
+                sql.append("P + ")
+                        .append(i - 1)
+                        .append(" = ANY(F")
+                        .append(i)
+                        .append(".positions) ");
+            }
+
+            sql.append(")) ");
+        }
+
+        return sql.toString();
+    }
+
+    private String createAdvancedSelectClause(
+            SearchDTO search, SearchBackend backend, boolean insert) {
         SearchQueryDTO query = search.getQuery();
         List<SearchTermDTO> searchTerms = query.getTerms();
 
@@ -410,8 +739,10 @@ public abstract class SearchDAO extends AbstractDAO {
 
         StringBuilder sql = new StringBuilder();
 
-        sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
-        sql.append("(search_id, indexing_group_id, record_id) ");
+        if (insert) {
+            sql.append("INSERT INTO ").append(this.recordType).append("_search_results ");
+            sql.append("(search_id, indexing_group_id, record_id) ");
+        }
 
         sql.append("SELECT DISTINCT ")
                 .append(search.getId())
@@ -433,7 +764,7 @@ public abstract class SearchDAO extends AbstractDAO {
             }
 
             sql.append("(");
-            sql.append(this.createAdvancedFilterClause(searchTerm));
+            sql.append(this.createAdvancedFilterClause(searchTerm, backend));
             sql.append(")");
         }
 
@@ -442,13 +773,25 @@ public abstract class SearchDAO extends AbstractDAO {
         return sql.toString();
     }
 
-    private String createAdvancedFilterClause(SearchTermDTO searchTerm) {
+    private String createAdvancedFilterClause(SearchTermDTO searchTerm, SearchBackend backend) {
         StringBuilder clause = new StringBuilder();
         String field = searchTerm.getField();
         Set<String> terms = searchTerm.getTerms();
 
         // See: populateAdvancedSearch();
-        if (StringUtils.isNumeric(field)) {
+        if (backend == SearchBackend.MEMORY && StringUtils.isNumeric(field)) {
+            // Record ids already found in the inverted index
+            clause.append("R.id = ANY(?) ");
+        } else if (backend == SearchBackend.FULLTEXT && StringUtils.isNumeric(field)) {
+            clause.append("R.id IN (SELECT record_id FROM ");
+            clause.append(this.recordType).append("_idx_fts WHERE document @@ ?::tsquery ");
+
+            if (!field.equals("0")) {
+                clause.append("AND indexing_group_id = ? ");
+            }
+
+            clause.append(") ");
+        } else if (StringUtils.isNumeric(field)) {
             clause.append("R.id IN (SELECT record_id FROM (");
 
             if (field.equals("0")) {
@@ -531,4 +874,24 @@ public abstract class SearchDAO extends AbstractDAO {
 
         return clause.toString();
     }
+
+    // Terms ending with * are prefixes
+    private static String createTermQuery(String term) {
+        if (term.endsWith("*")) {
+            return TextUtils.prepareLexeme(term.substring(0, term.length() - 1)) + ":*";
+        }
+
+        return TextUtils.prepareLexeme(term);
+    }
+
+    // Words of a document share the position of their datafield, see IndexingDTO.getDocument()
+    private static String createSameDatafieldQuery(Collection<String> terms) {
+        List<String> termQueries = new ArrayList<>(terms.size());
+
+        for (String term : terms) {
+            termQueries.add(SearchDAO.createTermQuery(term));
+        }
+
+        return StringUtils.join(termQueries, " <0> ");
+    }
 }
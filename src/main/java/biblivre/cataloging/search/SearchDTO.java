@@ -38,6 +38,8 @@ public class SearchDTO extends DTOCollection<RecordDTO> {
     private transient Integer sort;
     private transient Integer indexingGroup;
     private transient Map<Integer, Integer> indexingGroupCount;
+    private transient SearchCursor cursor;
+    private transient SearchCursor nextCursor;
 
     public SearchDTO(RecordType recordType) {
         super();
@@ -107,6 +109,24 @@ public class SearchDTO extends DTOCollection<RecordDTO> {
         this.indexingGroupCount = indexingGroupCount;
     }
 
+    // Last record of the previous page, when known
+    public SearchCursor getCursor() {
+        return this.cursor;
+    }
+
+    public void setCursor(SearchCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    // Last record of the current page
+    public SearchCursor getNextCursor() {
+        return this.nextCursor;
+    }
+
+    public void setNextCursor(SearchCursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject json = super.toJSONObject();
@@ -228,6 +228,26 @@ public class SearchQueryDTO extends AbstractDTO {
         return this.terms.get(0).getTerms();
     }
 
+    /*
+     * Same value for queries finding the same records, regardless of the order of the terms inside
+     * each search term and of the formatting of the original parameters.
+     */
+    public String getCacheKey() {
+        StringBuilder key = new StringBuilder();
+
+        key.append(this.getSearchMode()).append('|');
+        key.append(this.getDatabase()).append('|');
+        key.append(this.getMaterialType()).append('|');
+        key.append(this.isHoldingSearch()).append('|');
+        key.append(this.isReservedOnly());
+
+        for (SearchTermDTO term : this.getTerms()) {
+            key.append('|').append(term.getCacheKey());
+        }
+
+        return key.toString();
+    }
+
     public void addTerm(SearchTermDTO dto) {
         if (dto == null) {
             return;
@@ -0,0 +1,127 @@
+package biblivre.cataloging.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Record ids found by a simple or advanced search, per indexing group, in the same order as the
+ * rows of <code>&lt;type&gt;_search_results</code> are paged (highest id first). Group 0 holds
+ * every record found.
+ */
+public class SearchResults {
+    private final int searchId;
+    private final Map<Integer, int[]> groups;
+    private final int size;
+
+    private SearchResults(int searchId, Map<Integer, int[]> groups) {
+        this.searchId = searchId;
+        this.groups = groups;
+
+        int size = 0;
+
+        for (int[] recordIds : groups.values()) {
+            size += recordIds.length;
+        }
+
+        this.size = size;
+    }
+
+    // The search these results were first found for, reused by equivalent searches
+    public int getSearchId() {
+        return this.searchId;
+    }
+
+    public boolean isEmpty() {
+        return this.getRecordIds(0).length == 0;
+    }
+
+    // Number of ids held, for the size bound of the cache
+    public int size() {
+        return this.size;
+    }
+
+    public int[] getRecordIds(int indexingGroupId) {
+        return this.groups.getOrDefault(indexingGroupId, new int[0]);
+    }
+
+    public int[] getRecordIds(int indexingGroupId, int limit) {
+        int[] recordIds = this.getRecordIds(indexingGroupId);
+
+        if (limit > 0 && recordIds.length > limit) {
+            return Arrays.copyOf(recordIds, limit);
+        }
+
+        return recordIds;
+    }
+
+    public Map<Integer, Integer> getIndexingGroupCount() {
+        Map<Integer, Integer> count = new HashMap<>();
+
+        for (Map.Entry<Integer, int[]> entry : this.groups.entrySet()) {
+            count.put(entry.getKey(), entry.getValue().length);
+        }
+
+        return count;
+    }
+
+    public static class Builder {
+        private final Map<Integer, IdBuffer> groups = new TreeMap<>();
+
+        public void add(int indexingGroupId, int recordId) {
+            this.groups.computeIfAbsent(0, k -> new IdBuffer()).add(recordId);
+
+            if (indexingGroupId != 0) {
+                this.groups.computeIfAbsent(indexingGroupId, k -> new IdBuffer()).add(recordId);
+            }
+        }
+
+        public boolean isEmpty() {
+            return this.groups.isEmpty();
+        }
+
+        public SearchResults build(int searchId) {
+            Map<Integer, int[]> groups = new HashMap<>();
+
+            groups.put(0, new int[0]);
+
+            for (Map.Entry<Integer, IdBuffer> entry : this.groups.entrySet()) {
+                groups.put(entry.getKey(), entry.getValue().toDescendingArray());
+            }
+
+            return new SearchResults(searchId, Collections.unmodifiableMap(groups));
+        }
+    }
+
+    private static final class IdBuffer {
+        private int[] ids = new int[16];
+        private int length;
+
+        private void add(int id) {
+            if (this.length == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.length * 2);
+            }
+
+            this.ids[this.length++] = id;
+        }
+
+        // Sorted from the highest id down, without repetitions
+        private int[] toDescendingArray() {
+            int[] sorted = Arrays.copyOf(this.ids, this.length);
+            Arrays.sort(sorted);
+
+            int[] result = new int[sorted.length];
+            int count = 0;
+
+            for (int i = sorted.length - 1; i >= 0; i--) {
+                if (count == 0 || result[count - 1] != sorted[i]) {
+                    result[count++] = sorted[i];
+                }
+            }
+
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
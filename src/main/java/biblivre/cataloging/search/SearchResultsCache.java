@@ -0,0 +1,132 @@
+package biblivre.cataloging.search;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.StaticBO;
+import biblivre.core.configurations.Configurations;
+import biblivre.core.utils.Constants;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Least recently used cache of search results, per schema. Its size is bounded by the total number
+ * of record ids held, set by the <code>search.result_cache_size</code> configuration (0 disables
+ * it).
+ */
+public class SearchResultsCache extends StaticBO {
+    private static Map<String, SchemaCache> caches;
+
+    private SearchResultsCache() {}
+
+    static {
+        SearchResultsCache.reset();
+    }
+
+    public static void reset() {
+        SearchResultsCache.caches = new ConcurrentHashMap<>();
+    }
+
+    public static boolean isEnabled(String schema) {
+        return SearchResultsCache.getMaxSize(schema) > 0;
+    }
+
+    public static SearchResults get(String schema, RecordType recordType, String key) {
+        return SearchResultsCache.getCache(schema).get(Pair.of(recordType, key));
+    }
+
+    /*
+     * Results must be stored with the generation read before they were searched for, so results
+     * of a search that raced with a record write are dropped instead of cached.
+     */
+    public static long getGeneration(String schema, RecordType recordType) {
+        return SearchResultsCache.getCache(schema).getGeneration(recordType);
+    }
+
+    public static void put(
+            String schema,
+            RecordType recordType,
+            String key,
+            SearchResults results,
+            long generation) {
+
+        SearchResultsCache.getCache(schema)
+                .put(
+                        Pair.of(recordType, key),
+                        results,
+                        generation,
+                        SearchResultsCache.getMaxSize(schema));
+    }
+
+    // Also drops the page cursors of the record type, as its sort keys may have changed
+    public static void invalidate(String schema, RecordType recordType) {
+        SearchResultsCache.getCache(schema).invalidate(recordType);
+        SearchCursors.invalidate(schema, recordType);
+    }
+
+    private static int getMaxSize(String schema) {
+        return Configurations.getInt(schema, Constants.CONFIG_SEARCH_RESULT_CACHE_SIZE, 200000);
+    }
+
+    private static SchemaCache getCache(String schema) {
+        return SearchResultsCache.caches.computeIfAbsent(schema, k -> new SchemaCache());
+    }
+
+    private static final class SchemaCache {
+        private final LinkedHashMap<Pair<RecordType, String>, SearchResults> entries =
+                new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<RecordType, Long> generations = new EnumMap<>(RecordType.class);
+        private long size;
+
+        private synchronized SearchResults get(Pair<RecordType, String> key) {
+            return this.entries.get(key);
+        }
+
+        private synchronized long getGeneration(RecordType recordType) {
+            return this.generations.getOrDefault(recordType, 0L);
+        }
+
+        private synchronized void put(
+                Pair<RecordType, String> key, SearchResults results, long generation, int maxSize) {
+
+            if (maxSize <= 0
+                    || results.size() > maxSize
+                    || generation != this.getGeneration(key.getLeft())) {
+                return;
+            }
+
+            SearchResults old = this.entries.put(key, results);
+
+            if (old != null) {
+                this.size -= old.size();
+            }
+
+            this.size += results.size();
+
+            Iterator<SearchResults> iterator = this.entries.values().iterator();
+
+            while (this.size > maxSize && iterator.hasNext()) {
+                this.size -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+
+        private synchronized void invalidate(RecordType recordType) {
+            this.generations.put(recordType, this.getGeneration(recordType) + 1);
+
+            Iterator<Map.Entry<Pair<RecordType, String>, SearchResults>> iterator =
+                    this.entries.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<Pair<RecordType, String>, SearchResults> entry = iterator.next();
+
+                if (entry.getKey().getLeft() == recordType) {
+                    this.size -= entry.getValue().size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -22,8 +22,11 @@ package biblivre.cataloging.search;
 import biblivre.cataloging.enums.SearchOperator;
 import biblivre.core.AbstractDTO;
 import biblivre.core.utils.TextUtils;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
@@ -103,6 +106,21 @@ public class SearchTermDTO extends AbstractDTO {
         }
     }
 
+    public String getCacheKey() {
+        List<String> terms = new ArrayList<>(this.getTerms());
+        Collections.sort(terms);
+
+        StringBuilder key = new StringBuilder();
+
+        key.append(this.getField()).append(',');
+        key.append(this.getOperator()).append(',');
+        key.append(this.getStartDate() != null ? this.getStartDate().getTime() : "").append(',');
+        key.append(this.getEndDate() != null ? this.getEndDate().getTime() : "").append(',');
+        key.append(StringUtils.join(terms, ' '));
+
+        return key.toString();
+    }
+
     public boolean isAndNot() {
         return this.operator == SearchOperator.AND_NOT;
     }
@@ -19,7 +19,6 @@
  ******************************************************************************/
 package biblivre.cataloging.vocabulary;
 
-import biblivre.administration.indexing.IndexingBO;
 import biblivre.cataloging.RecordBO;
 import biblivre.cataloging.RecordDTO;
 import biblivre.cataloging.enums.RecordType;
@@ -78,9 +77,11 @@ public class VocabularyRecordBO extends RecordBO {
         dto.setDateOfLastTransaction();
         dto.setFixedLengthDataElements();
 
-        if (this.rdao.save(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.VOCABULARY, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.save(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -91,9 +92,11 @@ public class VocabularyRecordBO extends RecordBO {
     public boolean update(RecordDTO dto) {
         dto.setDateOfLastTransaction();
 
-        if (this.rdao.update(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.reindex(RecordType.VOCABULARY, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.update(dto, queued)) {
+            this.reindex(dto, queued);
+            this.invalidateSearchResults();
             return true;
         }
 
@@ -102,9 +105,11 @@ public class VocabularyRecordBO extends RecordBO {
 
     @Override
     public boolean delete(RecordDTO dto) {
-        if (this.rdao.delete(dto)) {
-            IndexingBO indexingBo = IndexingBO.getInstance(this.getSchema());
-            indexingBo.deleteIndexes(RecordType.VOCABULARY, dto);
+        boolean queued = this.isIndexingQueued();
+
+        if (this.rdao.delete(dto, queued)) {
+            this.deleteIndexes(dto, queued);
+            this.invalidateSearchResults();
         }
 
         return true;
@@ -393,6 +393,10 @@ public class LendingBO extends AbstractBO {
         return this.dao.countLentHoldings(recordId);
     }
 
+    public Map<Integer, Integer> countLentHoldings(Set<Integer> recordIds) {
+        return this.dao.countLentHoldings(recordIds);
+    }
+
     public LendingDTO getLatest(int holdingSerial, int userId) {
         return this.dao.getLatest(holdingSerial, userId);
     }
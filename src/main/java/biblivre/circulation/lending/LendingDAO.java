@@ -32,11 +32,9 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.lang3.StringUtils;
 
 public class LendingDAO extends AbstractDAO {
 
@@ -89,35 +87,11 @@ public class LendingDAO extends AbstractDAO {
     }
 
     public Map<Integer, LendingDTO> getCurrentLendingMap(Set<Integer> ids) {
-        Map<Integer, LendingDTO> map = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM lendings WHERE ");
+        sql.append("holding_id = ANY(?) AND return_date IS null ORDER BY id DESC;");
 
-        Connection con = null;
-        try {
-            con = this.getConnection();
-
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT * FROM lendings WHERE ");
-            sql.append("holding_id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(") AND return_date IS null ORDER BY id DESC;");
-
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
-            }
-
-            ResultSet rs = pst.executeQuery();
-            while (rs.next()) {
-                map.put(rs.getInt("holding_id"), this.populateDTO(rs));
-            }
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
-
-        return map;
+        return this.mapByIds(sql.toString(), ids, "holding_id", this::populateDTO);
     }
 
     public List<LendingDTO> listHistory(HoldingDTO holding) {
@@ -498,6 +472,18 @@ public class LendingDAO extends AbstractDAO {
         return null;
     }
 
+    // Lent holding count of each of the given records, missing when zero
+    public Map<Integer, Integer> countLentHoldings(Set<Integer> recordIds) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT H.record_id, COUNT(*) as total FROM lendings L ");
+        sql.append("INNER JOIN biblio_holdings H ON L.holding_id = H.id ");
+        sql.append("WHERE H.record_id = ANY(?) ");
+        sql.append("AND H.availability = 'available' AND L.return_date is NULL ");
+        sql.append("GROUP BY H.record_id;");
+
+        return this.mapByIds(sql.toString(), recordIds, "record_id", rs -> rs.getInt("total"));
+    }
+
     public LendingDTO getLatest(int holdingSerial, int userId) {
         LendingDTO dto = null;
         Connection con = null;
@@ -77,6 +77,10 @@ public class ReservationBO extends AbstractBO {
         return this.dao.count(user, null);
     }
 
+    public Map<Integer, Integer> countReserved(Set<Integer> recordIds) {
+        return this.dao.count(recordIds);
+    }
+
     public List<Integer> listReservedRecordIds(UserDTO user) {
         List<Integer> reservedRecords = new ArrayList<>();
         List<ReservationDTO> list = this.dao.list(user, null);
@@ -37,7 +37,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.lang3.StringUtils;
 
 public class ReservationDAO extends AbstractDAO {
 
@@ -90,7 +89,7 @@ public class ReservationDAO extends AbstractDAO {
                 sql.append("AND R.record_id = ? ");
             }
 
-            sql.append("ORDER BY S.phrase ASC;");
+            sql.append("ORDER BY S.sort_key ASC;");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
 
@@ -167,6 +166,15 @@ public class ReservationDAO extends AbstractDAO {
         return 0;
     }
 
+    // Reservation count of each of the given records, missing when zero
+    public Map<Integer, Integer> count(Set<Integer> recordIds) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT record_id, count(*) as total FROM reservations ");
+        sql.append("WHERE expires > localtimestamp AND record_id = ANY(?) GROUP BY record_id;");
+
+        return this.mapByIds(sql.toString(), recordIds, "record_id", rs -> rs.getInt("total"));
+    }
+
     public boolean deleteExpired() {
         Connection con = null;
         try {
@@ -313,36 +321,13 @@ public class ReservationDAO extends AbstractDAO {
     public Map<Integer, List<ReservationDTO>> getReservationsMap(Set<Integer> recordIds) {
         Map<Integer, List<ReservationDTO>> map = new LinkedHashMap<>();
 
-        Connection con = null;
-        try {
-            con = this.getConnection();
-
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT * FROM reservations WHERE ");
-            sql.append("record_id in (");
-            sql.append(StringUtils.repeat("?", ", ", recordIds.size()));
-            sql.append(") AND expires > localtimestamp ORDER BY created ASC;");
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM reservations WHERE ");
+        sql.append("record_id = ANY(?) AND expires > localtimestamp ORDER BY created ASC;");
 
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : recordIds) {
-                pst.setInt(index++, id);
-            }
-
-            ResultSet rs = pst.executeQuery();
-            while (rs.next()) {
-                Integer recordId = rs.getInt("record_id");
-                List<ReservationDTO> reservations = map.get(recordId);
-                if (reservations == null) {
-                    reservations = new ArrayList<>();
-                    map.put(recordId, reservations);
-                }
-                reservations.add(this.populateDTO(rs));
-            }
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
+        for (ReservationDTO reservation :
+                this.listByIds(sql.toString(), recordIds, this::populateDTO)) {
+            map.computeIfAbsent(reservation.getRecordId(), k -> new ArrayList<>()).add(reservation);
         }
 
         return map;
@@ -34,7 +34,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,40 +47,14 @@ public class UserDAO extends AbstractDAO {
     }
 
     public Map<Integer, UserDTO> map(Set<Integer> ids) {
-        Map<Integer, UserDTO> map = new HashMap<>();
-
-        Connection con = null;
-        try {
-            con = this.getConnection();
-
-            StringBuilder sql = new StringBuilder();
-            sql.append(
-                    "SELECT U.id, U.name, U.type, U.photo_id, U.status, U.login_id, U.created, U.created_by, U.modified, U.modified_by, U.user_card_printed, array_agg(V.key) as keys, array_agg(V.value) as values ");
-            sql.append("FROM users U LEFT JOIN users_values V on V.user_id = U.id ");
-            sql.append("WHERE U.id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(
-                    ") GROUP BY U.id, U.name, U.type, U.photo_id, U.status, U.login_id, U.created, U.created_by, U.modified, U.modified_by, U.user_card_printed;");
-
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
-            }
-
-            ResultSet rs = pst.executeQuery();
-
-            while (rs.next()) {
-                UserDTO user = this.populateDTO(rs);
-                map.put(user.getId(), user);
-            }
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
-
-        return map;
+        StringBuilder sql = new StringBuilder();
+        sql.append(
+                "SELECT U.id, U.name, U.type, U.photo_id, U.status, U.login_id, U.created, U.created_by, U.modified, U.modified_by, U.user_card_printed, array_agg(V.key) as keys, array_agg(V.value) as values ");
+        sql.append("FROM users U LEFT JOIN users_values V on V.user_id = U.id ");
+        sql.append(
+                "WHERE U.id = ANY(?) GROUP BY U.id, U.name, U.type, U.photo_id, U.status, U.login_id, U.created, U.created_by, U.modified, U.modified_by, U.user_card_printed;");
+
+        return this.mapByIds(sql.toString(), ids, "id", this::populateDTO);
     }
 
     public DTOCollection<UserDTO> search(UserSearchDTO dto, int limit, int offset) {
@@ -479,29 +452,7 @@ public class UserDAO extends AbstractDAO {
     }
 
     public void markAsPrinted(Set<Integer> ids) {
-        Connection con = null;
-
-        try {
-            con = this.getConnection();
-
-            StringBuilder sql = new StringBuilder();
-            sql.append("UPDATE users SET user_card_printed = true ");
-            sql.append("WHERE id in (");
-            sql.append(StringUtils.repeat("?", ", ", ids.size()));
-            sql.append(");");
-
-            PreparedStatement pst = con.prepareStatement(sql.toString());
-            int index = 1;
-            for (Integer id : ids) {
-                pst.setInt(index++, id);
-            }
-
-            pst.executeUpdate();
-        } catch (Exception e) {
-            throw new DAOException(e);
-        } finally {
-            this.closeConnection(con);
-        }
+        this.updateByIds("UPDATE users SET user_card_printed = true WHERE id = ANY(?);", ids);
     }
 
     public boolean updateUserStatus(Integer userId, UserStatus status) {
@@ -31,9 +31,14 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.sql.DataSource;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.postgresql.PGConnection;
 import org.slf4j.Logger;
@@ -215,6 +220,92 @@ public abstract class AbstractDAO {
         }
     }
 
+    /**
+     * Binds the ids as a single integer array, to be used as <code>id = ANY(?)</code>. The query
+     * text doesn't depend on the number of ids, so the driver and PostgreSQL reuse the same
+     * prepared statement and plan, and there's no limit on the number of ids.
+     */
+    protected final void setIdArray(PreparedStatement pst, int index, Collection<Integer> ids)
+            throws SQLException {
+        pst.setArray(index, pst.getConnection().createArrayOf("integer", ids.toArray()));
+    }
+
+    protected final void setIdArray(PreparedStatement pst, int index, int[] ids)
+            throws SQLException {
+        pst.setArray(index, pst.getConnection().createArrayOf("integer", ArrayUtils.toObject(ids)));
+    }
+
+    /**
+     * Runs a query whose only parameter is an <code>= ANY(?)</code> over the ids. Returns an empty
+     * list without querying when there are no ids.
+     */
+    protected final <T> List<T> listByIds(
+            String sql, Collection<Integer> ids, RowMapper<T> mapper) {
+        List<T> list = new ArrayList<>();
+
+        this.queryByIds(sql, ids, rs -> list.add(mapper.map(rs)));
+
+        return list;
+    }
+
+    /** Same as {@link #listByIds}, keyed by the integer column <code>keyColumn</code>. */
+    protected final <T> Map<Integer, T> mapByIds(
+            String sql, Collection<Integer> ids, String keyColumn, RowMapper<T> mapper) {
+
+        Map<Integer, T> map = new LinkedHashMap<>();
+
+        this.queryByIds(sql, ids, rs -> map.put(rs.getInt(keyColumn), mapper.map(rs)));
+
+        return map;
+    }
+
+    private void queryByIds(String sql, Collection<Integer> ids, RowMapper<?> handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            this.setIdArray(pst, 1, ids);
+
+            ResultSet rs = pst.executeQuery();
+
+            while (rs.next()) {
+                handler.map(rs);
+            }
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
+    /** Runs an update whose only parameter is an <code>= ANY(?)</code> over the ids. */
+    protected final int updateByIds(String sql, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        Connection con = null;
+
+        try {
+            con = this.getConnection();
+
+            PreparedStatement pst = con.prepareStatement(sql);
+            this.setIdArray(pst, 1, ids);
+
+            return pst.executeUpdate();
+        } catch (Exception e) {
+            throw new DAOException(e);
+        } finally {
+            this.closeConnection(con);
+        }
+    }
+
     public final Integer getNextSerial(String sequence) {
         Integer serial = 0;
         Connection con = null;
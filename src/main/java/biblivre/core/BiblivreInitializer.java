@@ -19,6 +19,7 @@
  ******************************************************************************/
 package biblivre.core;
 
+import biblivre.administration.indexing.IndexingQueue;
 import biblivre.z3950.server.Z3950ServerBO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,8 @@ public class BiblivreInitializer {
                 BiblivreInitializer.Z3950server = new Z3950ServerBO();
                 BiblivreInitializer.Z3950server.startServer();
 
+                IndexingQueue.start();
+
                 BiblivreInitializer.initialized = true;
             } catch (Exception e) {
                 _logger.error(e.getMessage(), e);
@@ -48,6 +51,8 @@ public class BiblivreInitializer {
     }
 
     public static synchronized void destroy() {
+        IndexingQueue.shutdown();
+
         if (BiblivreInitializer.Z3950server != null) {
             BiblivreInitializer.Z3950server.stopServer();
         }
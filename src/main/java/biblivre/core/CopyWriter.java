@@ -0,0 +1,127 @@
+package biblivre.core;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Streams rows to a PostgreSQL <code>COPY ... FROM STDIN</code> command in text format, flushing
+ * the encoded rows to the server whenever the internal buffer fills up.
+ */
+public class CopyWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyIn copyIn;
+    private final StringBuilder buffer = new StringBuilder(CopyWriter.BUFFER_SIZE);
+    private boolean firstColumn = true;
+
+    public CopyWriter(PGConnection con, String sql) throws SQLException {
+        this.copyIn = con.getCopyAPI().copyIn(sql);
+    }
+
+    public CopyWriter column(String value) {
+        this.separate();
+
+        if (value == null) {
+            this.buffer.append("\\N");
+            return this;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '\\':
+                    this.buffer.append("\\\\");
+                    break;
+                case '\t':
+                    this.buffer.append("\\t");
+                    break;
+                case '\n':
+                    this.buffer.append("\\n");
+                    break;
+                case '\r':
+                    this.buffer.append("\\r");
+                    break;
+                default:
+                    this.buffer.append(c);
+            }
+        }
+
+        return this;
+    }
+
+    public CopyWriter column(Integer value) {
+        if (value == null) {
+            return this.column((String) null);
+        }
+
+        this.separate();
+        this.buffer.append(value.intValue());
+
+        return this;
+    }
+
+    // As an integer[] literal
+    public CopyWriter column(int[] values) {
+        if (values == null) {
+            return this.column((String) null);
+        }
+
+        this.separate();
+        this.buffer.append('{');
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                this.buffer.append(',');
+            }
+
+            this.buffer.append(values[i]);
+        }
+
+        this.buffer.append('}');
+
+        return this;
+    }
+
+    public void endRow() throws SQLException {
+        this.buffer.append('\n');
+        this.firstColumn = true;
+
+        if (this.buffer.length() >= CopyWriter.BUFFER_SIZE) {
+            this.flush();
+        }
+    }
+
+    public long finish() throws SQLException {
+        this.flush();
+
+        return this.copyIn.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (this.copyIn.isActive()) {
+            this.copyIn.cancelCopy();
+        }
+    }
+
+    private void separate() {
+        if (this.firstColumn) {
+            this.firstColumn = false;
+        } else {
+            this.buffer.append('\t');
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (this.buffer.length() == 0) {
+            return;
+        }
+
+        byte[] bytes = this.buffer.toString().getBytes(StandardCharsets.UTF_8);
+        this.copyIn.writeToCopy(bytes, 0, bytes.length);
+        this.buffer.setLength(0);
+    }
+}
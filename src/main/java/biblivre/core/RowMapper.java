@@ -0,0 +1,8 @@
+package biblivre.core;
+
+import java.sql.ResultSet;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws Exception;
+}
@@ -21,6 +21,11 @@ package biblivre.core;
 
 import biblivre.administration.indexing.IndexingGroups;
 import biblivre.cataloging.Fields;
+import biblivre.cataloging.ParsedRecordCache;
+import biblivre.cataloging.search.AutocompleteIndexes;
+import biblivre.cataloging.search.InvertedIndexes;
+import biblivre.cataloging.search.SearchCursors;
+import biblivre.cataloging.search.SearchResultsCache;
 import biblivre.circulation.user.UserFields;
 import biblivre.core.configurations.Configurations;
 import biblivre.core.schemas.Schemas;
@@ -29,11 +34,16 @@ import biblivre.core.translations.Translations;
 
 public abstract class StaticBO {
     public static void resetCache() {
+        AutocompleteIndexes.reset();
         Configurations.reset();
         Fields.reset();
         IndexingGroups.reset();
+        InvertedIndexes.reset();
         Languages.reset();
+        ParsedRecordCache.reset();
         Schemas.reset();
+        SearchCursors.reset();
+        SearchResultsCache.reset();
         Translations.reset();
         UserFields.reset();
     }
@@ -334,6 +334,24 @@ public class AuthorizationPoints implements Serializable {
                 AuthorizationPointTypes.CATALOGING_BIBLIOGRAPHIC_SAVE,
                 AuthorizationPointTypes.CATALOGING_AUTHORITIES_SAVE,
                 AuthorizationPointTypes.CATALOGING_VOCABULARY_SAVE);
+        this.addAuthPoint(
+                "cataloging",
+                "import_job_prepare",
+                AuthorizationPointTypes.CATALOGING_BIBLIOGRAPHIC_SAVE,
+                AuthorizationPointTypes.CATALOGING_AUTHORITIES_SAVE,
+                AuthorizationPointTypes.CATALOGING_VOCABULARY_SAVE);
+        this.addAuthPoint(
+                "cataloging",
+                "import_job_run",
+                AuthorizationPointTypes.CATALOGING_BIBLIOGRAPHIC_SAVE,
+                AuthorizationPointTypes.CATALOGING_AUTHORITIES_SAVE,
+                AuthorizationPointTypes.CATALOGING_VOCABULARY_SAVE);
+        this.addAuthPoint(
+                "cataloging",
+                "import_job_progress",
+                AuthorizationPointTypes.CATALOGING_BIBLIOGRAPHIC_SAVE,
+                AuthorizationPointTypes.CATALOGING_AUTHORITIES_SAVE,
+                AuthorizationPointTypes.CATALOGING_VOCABULARY_SAVE);
         this.addAuthPoint(
                 "cataloging",
                 "parse_marc",
@@ -631,10 +649,22 @@ public class AuthorizationPoints implements Serializable {
                 "administration.indexing",
                 "reindex",
                 AuthorizationPointTypes.ADMINISTRATION_INDEXING);
+        this.addAuthPoint(
+                "administration.indexing",
+                "delta_reindex",
+                AuthorizationPointTypes.ADMINISTRATION_INDEXING);
         this.addAuthPoint(
                 "administration.indexing",
                 "progress",
                 AuthorizationPointTypes.ADMINISTRATION_INDEXING);
+        this.addAuthPoint(
+                "administration.indexing",
+                "queue_status",
+                AuthorizationPointTypes.ADMINISTRATION_INDEXING);
+        this.addAuthPoint(
+                "administration.indexing",
+                "record_cache_status",
+                AuthorizationPointTypes.ADMINISTRATION_INDEXING);
 
         this.addAuthPoint(
                 "administration.translations",
@@ -73,6 +73,20 @@ public class Constants {
 
     public static final String CONFIG_SEARCH_RESULTS_PER_PAGE = "search.results_per_page";
     public static final String CONFIG_SEARCH_RESULT_LIMIT = "search.result_limit";
+    public static final String CONFIG_SEARCH_BACKEND = "search.backend";
+    public static final String CONFIG_SEARCH_RESULT_CACHE_SIZE = "search.result_cache_size";
+
+    public static final String CONFIG_REINDEX_WORKERS = "administration.reindex.workers";
+    public static final String CONFIG_REINDEX_PAGE_SIZE = "administration.reindex.page_size";
+    public static final String CONFIG_REINDEX_ONLINE = "administration.reindex.online";
+
+    public static final String CONFIG_INDEXING_QUEUE = "cataloging.indexing_queue.enabled";
+    public static final String CONFIG_INDEXING_QUEUE_WORKERS = "cataloging.indexing_queue.workers";
+    public static final String CONFIG_INDEXING_QUEUE_WAIT = "cataloging.indexing_queue.wait";
+
+    public static final String CONFIG_RECORD_CACHE_SIZE = "cataloging.record_cache_size";
+    public static final String CONFIG_AUTOCOMPLETE_INDEX_SIZE =
+            "cataloging.autocomplete_index_size";
 
     public static final String CONFIG_Z3950_RESULT_LIMIT = "search.distributed_search_limit";
     public static final String CONFIG_Z3950_SERVER_ACTIVE = "administration.z3950.server.active";
@@ -0,0 +1,303 @@
+package biblivre.core.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Single pass implementation of the text preparation done by {@link TextUtils}, driven by a table
+ * with the folded (and lowercased) form of every BMP char. Chars whose folding depends on their
+ * neighbours (non diacritical combining marks, Hangul syllables, surrogates, the Greek capital
+ * sigma) are marked as complex in the table, and strings containing them are handed to the regex
+ * based implementation, so the output is always the same as that implementation's.
+ *
+ * <p>Instances reuse their buffers and are not thread safe; see {@link TextUtils}.
+ */
+public class TextNormalizer {
+    private static final char COMPLEX = '\uFFFF';
+    private static final char REMOVED = '\uFFFE';
+
+    private static final Locale LOCALE = Locale.getDefault();
+
+    // Diacritics folded, for removeDiacriticals
+    private static final char[] FOLDED = new char[Character.MAX_VALUE + 1];
+
+    // Diacritics folded and lowercased, for preparePhrase
+    private static final char[] PREPARED = new char[Character.MAX_VALUE + 1];
+
+    // Lowercasing is context sensitive in these languages
+    private static final boolean ENABLED =
+            !StringUtils.equalsAny(TextNormalizer.LOCALE.getLanguage(), "tr", "az", "lt");
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String folded = TextNormalizer.fold((char) c);
+
+            TextNormalizer.FOLDED[c] = TextNormalizer.toTableEntry(folded);
+
+            // Lowercased as final or non final sigma depending on the next char
+            if (folded == null || c == '\u03A3') {
+                TextNormalizer.PREPARED[c] = TextNormalizer.COMPLEX;
+            } else {
+                String lowercase = folded.toLowerCase(TextNormalizer.LOCALE);
+                TextNormalizer.PREPARED[c] = TextNormalizer.toTableEntry(lowercase);
+            }
+        }
+    }
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+    private final List<String> words = new ArrayList<>();
+
+    public String removeDiacriticals(String input) {
+        if (input == null) {
+            return "";
+        }
+
+        StringBuilder buffer = this.buffer;
+        buffer.setLength(0);
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = TextNormalizer.FOLDED[input.charAt(i)];
+
+            if (c == TextNormalizer.COMPLEX) {
+                return TextNormalizer.legacyRemoveDiacriticals(input);
+            }
+
+            if (c != TextNormalizer.REMOVED) {
+                buffer.append(c);
+            }
+        }
+
+        return buffer.toString();
+    }
+
+    // Trimmed, with whitespace runs collapsed, diacritics folded and lowercased
+    public String preparePhrase(String input) {
+        if (input == null) {
+            return "";
+        }
+
+        if (!this.isEnabled()) {
+            return TextNormalizer.legacyPreparePhrase(input);
+        }
+
+        int start = 0;
+        int end = input.length();
+
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        StringBuilder buffer = this.buffer;
+        buffer.setLength(0);
+
+        for (int i = start; i < end; i++) {
+            char original = input.charAt(i);
+
+            if (TextNormalizer.isSpace(original)) {
+                int run = i + 1;
+
+                while (run < end && TextNormalizer.isSpace(input.charAt(run))) {
+                    run++;
+                }
+
+                buffer.append(run - i > 1 ? ' ' : original);
+                i = run - 1;
+                continue;
+            }
+
+            char c = TextNormalizer.PREPARED[original];
+
+            if (c == TextNormalizer.COMPLEX) {
+                return TextNormalizer.legacyPreparePhrase(input);
+            }
+
+            if (c != TextNormalizer.REMOVED) {
+                buffer.append(c);
+            }
+        }
+
+        return buffer.toString();
+    }
+
+    // Words made of letters, digits and wildcards, as split from removeNonLettersOrDigits(" ")
+    public String[] prepareWords(String phrase) {
+        if (phrase == null) {
+            return new String[0];
+        }
+
+        List<String> words = this.words;
+        StringBuilder word = this.word;
+
+        words.clear();
+        word.setLength(0);
+
+        for (int i = 0; i < phrase.length(); ) {
+            int codePoint = phrase.codePointAt(i);
+
+            if (TextNormalizer.isWordCodePoint(codePoint)) {
+                word.appendCodePoint(codePoint);
+            } else if (word.length() > 0) {
+                words.add(TextNormalizer.removeWildcards(word, this.buffer));
+                word.setLength(0);
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        if (word.length() > 0) {
+            words.add(TextNormalizer.removeWildcards(word, this.buffer));
+        }
+
+        return words.toArray(new String[words.size()]);
+    }
+
+    public String removeNonLettersOrDigits(String input, String replace) {
+        if (input == null) {
+            return "";
+        }
+
+        // Replacements are regex replacement strings in the original implementation
+        if (StringUtils.containsAny(replace, '$', '\\')) {
+            return TextNormalizer.legacyRemoveNonLettersOrDigits(input, replace);
+        }
+
+        StringBuilder word = this.word;
+        word.setLength(0);
+
+        for (int i = 0; i < input.length(); ) {
+            int codePoint = input.codePointAt(i);
+
+            if (TextNormalizer.isWordCodePoint(codePoint)) {
+                word.appendCodePoint(codePoint);
+            } else {
+                word.append(replace);
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        return TextNormalizer.removeWildcards(word, this.buffer);
+    }
+
+    private boolean isEnabled() {
+        return TextNormalizer.ENABLED && TextNormalizer.LOCALE.equals(Locale.getDefault());
+    }
+
+    /*
+     * Drops every "*" followed by anything but whitespace, consuming the following code point,
+     * like replaceAll("\\*([^\\s])", "$1") does.
+     */
+    private static String removeWildcards(CharSequence input, StringBuilder buffer) {
+        buffer.setLength(0);
+
+        int length = input.length();
+
+        for (int i = 0; i < length; ) {
+            char c = input.charAt(i);
+
+            if (c == '*' && i + 1 < length && !TextNormalizer.isSpace(input.charAt(i + 1))) {
+                int next = Character.codePointAt(input, i + 1);
+
+                buffer.appendCodePoint(next);
+                i += 1 + Character.charCount(next);
+            } else {
+                buffer.append(c);
+                i++;
+            }
+        }
+
+        return buffer.toString();
+    }
+
+    // Same as \s in java.util.regex
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    // Same as [\p{L}\p{N}*] in java.util.regex
+    private static boolean isWordCodePoint(int codePoint) {
+        if (codePoint == '*') {
+            return true;
+        }
+
+        switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER:
+            case Character.LOWERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.MODIFIER_LETTER:
+            case Character.OTHER_LETTER:
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String fold(char c) {
+        if (Character.isSurrogate(c)
+                || c == TextNormalizer.COMPLEX
+                || c == TextNormalizer.REMOVED) {
+            return null;
+        }
+
+        return TextNormalizer.legacyRemoveDiacriticals(String.valueOf(c));
+    }
+
+    private static char toTableEntry(String folded) {
+        if (folded == null || folded.length() > 1) {
+            return TextNormalizer.COMPLEX;
+        }
+
+        if (folded.isEmpty()) {
+            return TextNormalizer.REMOVED;
+        }
+
+        return TextNormalizer.isMark(folded.charAt(0)) ? TextNormalizer.COMPLEX : folded.charAt(0);
+    }
+
+    // Marks left after folding could be reordered with their neighbours by the NFD normalization
+    private static boolean isMark(char c) {
+        switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static String legacyRemoveDiacriticals(String input) {
+        String decomposed = Normalizer.normalize(input, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+    }
+
+    static String legacyPreparePhrase(String input) {
+        String trimmed = StringUtils.trimToEmpty(input);
+        String collapsed = trimmed.replaceAll("\\s{2,}", " ");
+
+        return TextNormalizer.legacyRemoveDiacriticals(collapsed).toLowerCase();
+    }
+
+    static String[] legacyPrepareWords(String phrase) {
+        if (phrase == null) {
+            return new String[0];
+        }
+
+        return StringUtils.split(TextNormalizer.legacyRemoveNonLettersOrDigits(phrase, " "));
+    }
+
+    static String legacyRemoveNonLettersOrDigits(String input, String replace) {
+        return input.replaceAll("[^\\p{L}\\p{N}*]", replace).replaceAll("\\*([^\\s])", "$1");
+    }
+}
@@ -21,19 +21,18 @@ package biblivre.core.utils;
 
 import java.io.InputStream;
 import java.security.MessageDigest;
-import java.text.Normalizer;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
-import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.mozilla.universalchardet.UniversalDetector;
 
 public class TextUtils {
+    private static final ThreadLocal<TextNormalizer> NORMALIZER =
+            ThreadLocal.withInitial(TextNormalizer::new);
+
     public static String encodePassword(String password) {
         if (StringUtils.isBlank(password)) {
             throw new IllegalArgumentException("Password is null");
@@ -93,11 +92,11 @@ public class TextUtils {
     }
 
     public static String preparePhrase(String input) {
-        return TextUtils.removeDiacriticals(TextUtils.removeDoubleSpaces(input)).toLowerCase();
+        return TextUtils.NORMALIZER.get().preparePhrase(input);
     }
 
     public static String[] prepareWords(String phrase) {
-        return StringUtils.split(TextUtils.removeNonLettersOrDigits(phrase, " "));
+        return TextUtils.NORMALIZER.get().prepareWords(phrase);
     }
 
     public static String[] prepareAutocomplete(String phrase) {
@@ -108,33 +107,9 @@ public class TextUtils {
         return TextUtils.removeNonLettersOrDigits(word, "");
     }
 
-    public static String[] prepareExactTerms(String phrase) {
-        String[] terms = TextUtils.prepareWords(phrase);
-
-        Arrays.sort(
-                terms,
-                (o1, o2) -> {
-                    if (o1.length() < o2.length()) {
-                        return 1;
-                    } else if (o1.length() > o2.length()) {
-                        return -1;
-                    }
-                    return o1.compareTo(o2);
-                });
-
-        List<String> newList = new ArrayList<>();
-        for (int i = 0; i < terms.length; i++) {
-            String term = terms[i];
-            if (term.length() > 2) {
-                newList.add(term);
-            }
-
-            if (newList.size() > 2) {
-                break;
-            }
-        }
-
-        return newList.toArray(new String[] {});
+    // Quoted lexeme for tsvector and tsquery input, matched as is (no dictionary is applied)
+    public static String prepareLexeme(String word) {
+        return "'" + word.replace("\\", "\\\\").replace("'", "''") + "'";
     }
 
     public static String removeDiacriticals(String input) {
@@ -142,8 +117,7 @@ public class TextUtils {
             return "";
         }
 
-        String decomposed = Normalizer.normalize(input, Normalizer.Form.NFD);
-        return decomposed.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+        return TextUtils.NORMALIZER.get().removeDiacriticals(input);
     }
 
     public static String removeDoubleSpaces(String input) {
@@ -160,7 +134,7 @@ public class TextUtils {
             return "";
         }
 
-        return input.replaceAll("[^\\p{L}\\p{N}*]", replace).replaceAll("\\*([^\\s])", "$1");
+        return TextUtils.NORMALIZER.get().removeNonLettersOrDigits(input, replace);
     }
 
     public static Date parseDate(String date) throws ParseException {
@@ -0,0 +1,181 @@
+package biblivre.marc;
+
+import biblivre.core.utils.Constants;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.marc4j.marc.ControlField;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.MarcFactory;
+
+/**
+ * Read only view of an ISO2709 record that only parses its leader and directory. Fields are decoded
+ * from the original bytes when asked for, so reading a title and an author doesn't build the whole
+ * marc4j record. Not thread safe.
+ */
+public class LazyIso2709Record {
+    private static final int LEADER_LENGTH = 24;
+    private static final int DIRECTORY_ENTRY_LENGTH = 12;
+
+    private static final byte FIELD_TERMINATOR = 0x1E;
+    private static final byte SUBFIELD_DELIMITER = 0x1F;
+
+    private static final MarcFactory factory = MarcFactory.newInstance();
+
+    private final byte[] iso2709;
+    private final String[] tags;
+    private final int[] starts;
+    private final int[] lengths;
+
+    private final Map<String, List<DataField>> dataFields = new HashMap<>();
+
+    private LazyIso2709Record(byte[] iso2709) {
+        this.iso2709 = iso2709;
+
+        int baseAddress = this.readNumber(12, 5);
+        int directoryLength = baseAddress - 1 - LazyIso2709Record.LEADER_LENGTH;
+
+        if (directoryLength < 0
+                || baseAddress > iso2709.length
+                || directoryLength % LazyIso2709Record.DIRECTORY_ENTRY_LENGTH != 0
+                || iso2709[baseAddress - 1] != LazyIso2709Record.FIELD_TERMINATOR) {
+            throw new IllegalArgumentException("Invalid directory");
+        }
+
+        int count = directoryLength / LazyIso2709Record.DIRECTORY_ENTRY_LENGTH;
+
+        this.tags = new String[count];
+        this.starts = new int[count];
+        this.lengths = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            int entry =
+                    LazyIso2709Record.LEADER_LENGTH + i * LazyIso2709Record.DIRECTORY_ENTRY_LENGTH;
+
+            int length = this.readNumber(entry + 3, 4);
+            int start = baseAddress + this.readNumber(entry + 7, 5);
+            int end = start + length - 1;
+
+            if (length < 1
+                    || end >= iso2709.length
+                    || iso2709[end] != LazyIso2709Record.FIELD_TERMINATOR) {
+                throw new IllegalArgumentException("Invalid field length");
+            }
+
+            this.tags[i] = new String(iso2709, entry, 3, Constants.DEFAULT_CHARSET);
+            this.starts[i] = start;
+            // Without the field terminator
+            this.lengths[i] = length - 1;
+        }
+    }
+
+    /** Returns null when the record is malformed and must go through the permissive parser. */
+    public static LazyIso2709Record parse(byte[] iso2709) {
+        if (iso2709 == null || iso2709.length <= LazyIso2709Record.LEADER_LENGTH) {
+            return null;
+        }
+
+        try {
+            return new LazyIso2709Record(iso2709);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public byte[] getIso2709() {
+        return this.iso2709;
+    }
+
+    public ControlField getControlField(String tag) {
+        for (int i = 0; i < this.tags.length; i++) {
+            if (this.tags[i].equals(tag) && LazyIso2709Record.isControlField(tag)) {
+                return LazyIso2709Record.factory.newControlField(
+                        tag, this.decode(this.starts[i], this.lengths[i]));
+            }
+        }
+
+        return null;
+    }
+
+    public List<DataField> getDataFields(String tag) {
+        List<DataField> list = this.dataFields.get(tag);
+
+        if (list == null) {
+            list = new ArrayList<>();
+
+            if (!LazyIso2709Record.isControlField(tag)) {
+                for (int i = 0; i < this.tags.length; i++) {
+                    if (this.tags[i].equals(tag)) {
+                        list.add(this.decodeDataField(i));
+                    }
+                }
+            }
+
+            this.dataFields.put(tag, list);
+        }
+
+        return list;
+    }
+
+    private DataField decodeDataField(int index) {
+        int start = this.starts[index];
+        int end = start + this.lengths[index];
+
+        char indicator1 = (end > start) ? (char) this.iso2709[start] : ' ';
+        char indicator2 = (end > start + 1) ? (char) this.iso2709[start + 1] : ' ';
+
+        DataField field =
+                LazyIso2709Record.factory.newDataField(this.tags[index], indicator1, indicator2);
+
+        int position = start + 2;
+
+        while (position < end) {
+            if (this.iso2709[position] != LazyIso2709Record.SUBFIELD_DELIMITER
+                    || position + 1 >= end) {
+                position++;
+                continue;
+            }
+
+            char code = (char) this.iso2709[position + 1];
+            int dataStart = position + 2;
+            int dataEnd = dataStart;
+
+            while (dataEnd < end && this.iso2709[dataEnd] != LazyIso2709Record.SUBFIELD_DELIMITER) {
+                dataEnd++;
+            }
+
+            field.addSubfield(
+                    LazyIso2709Record.factory.newSubfield(
+                            code, this.decode(dataStart, dataEnd - dataStart)));
+
+            position = dataEnd;
+        }
+
+        return field;
+    }
+
+    private String decode(int start, int length) {
+        return new String(this.iso2709, start, length, Constants.DEFAULT_CHARSET);
+    }
+
+    private int readNumber(int start, int length) {
+        int value = 0;
+
+        for (int i = start; i < start + length; i++) {
+            byte digit = this.iso2709[i];
+
+            if (digit < '0' || digit > '9') {
+                throw new IllegalArgumentException("Invalid number");
+            }
+
+            value = value * 10 + (digit - '0');
+        }
+
+        return value;
+    }
+
+    private static boolean isControlField(String tag) {
+        return tag.startsWith("00");
+    }
+}
@@ -37,6 +37,7 @@ import org.marc4j.marc.Subfield;
 
 public class MarcDataReader {
     private Record record;
+    private LazyIso2709Record lazyRecord;
     private Map<String, List<DataField>> cache;
 
     public MarcDataReader(Record record) {
@@ -44,11 +45,32 @@ public class MarcDataReader {
         this.cache = this.readDataFieldMap();
     }
 
+    /**
+     * Reads the fields straight from the ISO2709 bytes, decoding only the ones asked for. Meant for
+     * list views and reports, which read a few fields of many records.
+     */
+    public MarcDataReader(byte[] iso2709) {
+        this.lazyRecord = LazyIso2709Record.parse(iso2709);
+
+        if (this.lazyRecord == null) {
+            this.record = MarcUtils.iso2709ToRecord(iso2709);
+            this.cache = this.readDataFieldMap();
+        }
+    }
+
     public Record getRecord() {
+        if (this.record == null && this.lazyRecord != null) {
+            this.record = MarcUtils.iso2709ToRecord(this.lazyRecord.getIso2709());
+        }
+
         return this.record;
     }
 
     public Map<String, List<DataField>> getCache() {
+        if (this.cache == null) {
+            this.cache = this.readDataFieldMap();
+        }
+
         return this.cache;
     }
 
@@ -288,6 +310,10 @@ public class MarcDataReader {
     }
 
     public ControlField getControlField(String tag) {
+        if (this.lazyRecord != null) {
+            return StringUtils.isBlank(tag) ? null : this.lazyRecord.getControlField(tag);
+        }
+
         Record record = this.getRecord();
 
         if (record == null || StringUtils.isBlank(tag)) {
@@ -316,6 +342,12 @@ public class MarcDataReader {
     }
 
     public List<DataField> getDataFields(String tag) {
+        if (this.lazyRecord != null) {
+            return StringUtils.isBlank(tag)
+                    ? new ArrayList<>()
+                    : this.lazyRecord.getDataFields(tag);
+        }
+
         Record record = this.getRecord();
 
         if (record == null || StringUtils.isBlank(tag)) {
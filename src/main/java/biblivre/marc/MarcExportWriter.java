@@ -0,0 +1,96 @@
+package biblivre.marc;
+
+import biblivre.cataloging.enums.ExportFormat;
+import biblivre.core.utils.Constants;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.marc4j.MarcJsonWriter;
+import org.marc4j.MarcWriter;
+import org.marc4j.MarcXmlWriter;
+
+/**
+ * Writes exported records one at a time as they are read from the database, so that memory use
+ * doesn't depend on the number of records. ISO2709 records are copied as stored, the other formats
+ * parse one record at a time.
+ */
+public abstract class MarcExportWriter implements Closeable {
+    protected final OutputStream out;
+
+    protected MarcExportWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public static MarcExportWriter create(ExportFormat format, OutputStream out)
+            throws IOException {
+
+        switch (format) {
+            case MARCXML:
+                return new ConvertingWriter(
+                        out, new MarcXmlWriter(out, Constants.DEFAULT_CHARSET_NAME, true), "", "");
+            case JSON:
+                // MARC-in-JSON records, as a JSON array
+                return new ConvertingWriter(
+                        out, new MarcJsonWriter(out, MarcJsonWriter.MARC_IN_JSON), "[", "]");
+            default:
+                return new Iso2709Writer(out);
+        }
+    }
+
+    public abstract void write(byte[] iso2709) throws IOException;
+
+    private static class Iso2709Writer extends MarcExportWriter {
+
+        private Iso2709Writer(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] iso2709) throws IOException {
+            this.out.write(iso2709);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+    }
+
+    private static class ConvertingWriter extends MarcExportWriter {
+        private final MarcWriter writer;
+        private final String suffix;
+        private final boolean separate;
+        private boolean first = true;
+
+        private ConvertingWriter(OutputStream out, MarcWriter writer, String prefix, String suffix)
+                throws IOException {
+
+            super(out);
+
+            this.writer = writer;
+            this.suffix = suffix;
+            this.separate = !prefix.isEmpty();
+
+            this.out.write(prefix.getBytes(Constants.DEFAULT_CHARSET));
+        }
+
+        @Override
+        public void write(byte[] iso2709) throws IOException {
+            if (this.separate && !this.first) {
+                this.out.write(',');
+            }
+
+            this.writer.write(MarcUtils.iso2709ToRecord(iso2709));
+            this.first = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.write(this.suffix.getBytes(Constants.DEFAULT_CHARSET));
+
+            // MarcXmlWriter closes the output stream, but MarcJsonWriter doesn't
+            this.writer.close();
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package biblivre.marc;
+
+import biblivre.cataloging.enums.ImportFormat;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Tells the format of a MARC file from its first bytes, so it's read once by the right reader
+ * instead of being tried with each of them.
+ */
+public class MarcFormatDetector {
+    public static final int PREFIX_LENGTH = 64 * 1024;
+
+    private static final int LEADER_LENGTH = 24;
+
+    // Same leader lines MarcFileReader looks for
+    private static final Pattern LEADER_PATTERN =
+            Pattern.compile(
+                    "^\\s*(000|LDR|LEADER)\\s+", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+
+    private MarcFormatDetector() {}
+
+    // Reads up to PREFIX_LENGTH bytes and rewinds the stream
+    public static byte[] readPrefix(BufferedInputStream input) throws IOException {
+        byte[] prefix = new byte[MarcFormatDetector.PREFIX_LENGTH];
+
+        input.mark(MarcFormatDetector.PREFIX_LENGTH);
+        int length = IOUtils.read(input, prefix);
+        input.reset();
+
+        return Arrays.copyOf(prefix, length);
+    }
+
+    // Null when the prefix doesn't look like any of the formats
+    public static ImportFormat detect(byte[] prefix) {
+        int start = MarcFormatDetector.skipBomAndWhitespace(prefix);
+
+        if (start >= prefix.length) {
+            return null;
+        }
+
+        if (prefix[start] == '<') {
+            return ImportFormat.XML;
+        }
+
+        if (MarcFormatDetector.isIso2709Leader(prefix, start)) {
+            return ImportFormat.ISO2709;
+        }
+
+        String text =
+                new String(prefix, start, prefix.length - start, StandardCharsets.ISO_8859_1);
+
+        if (MarcFormatDetector.LEADER_PATTERN.matcher(text).find()) {
+            return ImportFormat.MARC;
+        }
+
+        return null;
+    }
+
+    // Record length and base address of data are the numeric parts of every leader
+    private static boolean isIso2709Leader(byte[] prefix, int start) {
+        if (prefix.length - start < MarcFormatDetector.LEADER_LENGTH) {
+            return false;
+        }
+
+        return MarcFormatDetector.isDigits(prefix, start, 5)
+                && MarcFormatDetector.isDigits(prefix, start + 12, 5);
+    }
+
+    private static boolean isDigits(byte[] prefix, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (prefix[i] < '0' || prefix[i] > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int skipBomAndWhitespace(byte[] prefix) {
+        int start = 0;
+
+        if (prefix.length >= 3
+                && prefix[0] == (byte) 0xEF
+                && prefix[1] == (byte) 0xBB
+                && prefix[2] == (byte) 0xBF) {
+            start = 3;
+        }
+
+        while (start < prefix.length && Character.isWhitespace(prefix[start])) {
+            start++;
+        }
+
+        return start;
+    }
+}
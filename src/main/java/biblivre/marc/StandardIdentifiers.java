@@ -0,0 +1,110 @@
+package biblivre.marc;
+
+import biblivre.cataloging.enums.IdentifierType;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.Subfield;
+
+/**
+ * Normalized ISBN, ISSN and ISRC of a record, used to find records that are already in the catalog.
+ * Catalogers write the same identifier in many ways ("85-359-0277-5 (broch.)", "9788535902778"), so
+ * hyphens and qualifiers are dropped and ISBN-10 is converted to ISBN-13.
+ */
+public final class StandardIdentifiers {
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s()\\[\\]:;,/]+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^0-9A-Z]");
+
+    private static final Pattern ISBN_10 = Pattern.compile("[0-9]{9}[0-9X]");
+    private static final Pattern ISBN_13 = Pattern.compile("97[89][0-9]{10}");
+    private static final Pattern ISSN = Pattern.compile("[0-9]{7}[0-9X]");
+    private static final Pattern ISRC = Pattern.compile("[A-Z]{2}[0-9A-Z]{3}[0-9]{7}");
+
+    private StandardIdentifiers() {}
+
+    public static Map<IdentifierType, Set<String>> read(MarcDataReader marcDataReader) {
+        Map<IdentifierType, Set<String>> identifiers = new EnumMap<>(IdentifierType.class);
+
+        for (IdentifierType type : IdentifierType.values()) {
+            for (DataField datafield : marcDataReader.getDataFields(type.getDatafield())) {
+                for (Subfield subfield : datafield.getSubfields('a')) {
+                    String identifier = StandardIdentifiers.normalize(type, subfield.getData());
+
+                    if (identifier != null) {
+                        identifiers
+                                .computeIfAbsent(type, k -> new LinkedHashSet<>())
+                                .add(identifier);
+                    }
+                }
+            }
+        }
+
+        return identifiers;
+    }
+
+    /**
+     * The first word of the value that looks like an identifier of the type, without hyphens.
+     * Values with no such word are kept whole, without punctuation, so they still match themselves.
+     *
+     * @return the normalized identifier, or null if the value has no letters or digits
+     */
+    public static String normalize(IdentifierType type, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+
+        String upper = value.toUpperCase();
+
+        for (String word : StandardIdentifiers.SEPARATORS.split(upper)) {
+            String identifier = StandardIdentifiers.matchWord(type, word.replace("-", ""));
+
+            if (identifier != null) {
+                return identifier;
+            }
+        }
+
+        String identifier = StandardIdentifiers.NON_ALPHANUMERIC.matcher(upper).replaceAll("");
+
+        return identifier.isEmpty() ? null : identifier;
+    }
+
+    private static String matchWord(IdentifierType type, String word) {
+        switch (type) {
+            case ISBN:
+                if (StandardIdentifiers.ISBN_13.matcher(word).matches()) {
+                    return word;
+                }
+
+                if (StandardIdentifiers.ISBN_10.matcher(word).matches()) {
+                    return StandardIdentifiers.toIsbn13(word);
+                }
+
+                return null;
+
+            case ISSN:
+                return StandardIdentifiers.ISSN.matcher(word).matches() ? word : null;
+
+            case ISRC:
+                return StandardIdentifiers.ISRC.matcher(word).matches() ? word : null;
+
+            default:
+                return null;
+        }
+    }
+
+    // Prefix 978 and recompute the check digit, which is weighted differently in ISBN-13
+    private static String toIsbn13(String isbn10) {
+        String digits = "978" + isbn10.substring(0, 9);
+        int sum = 0;
+
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * ((i % 2 == 0) ? 1 : 3);
+        }
+
+        return digits + ((10 - sum % 10) % 10);
+    }
+}
@@ -0,0 +1,45 @@
+package biblivre.update.v6_0_0$1_10_0$alpha;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _addPositions(connection, recordType);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_10_0$alpha";
+    }
+
+    /*
+     * Positions can only be filled in by reindexing, so the index is reported as outdated while
+     * rows without them remain. The partial index keeps that check cheap.
+     */
+    private void _addPositions(Connection connection, RecordType recordType) throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_ADD_POSITIONS_SQL, recordType));
+            statement.execute(
+                    String.format(_CREATE_NO_POSITIONS_INDEX_SQL, recordType, recordType));
+        }
+    }
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _ADD_POSITIONS_SQL =
+            "ALTER TABLE %s_idx_fields ADD COLUMN IF NOT EXISTS positions integer[];";
+
+    private static final String _CREATE_NO_POSITIONS_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_idx_fields_no_positions\" "
+                    + "ON %s_idx_fields (record_id) WHERE positions IS NULL;";
+}
@@ -0,0 +1,61 @@
+package biblivre.update.v6_0_0$1_11_0$alpha;
+
+import biblivre.core.utils.Constants;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    public void doUpdate(Connection connection) throws SQLException {
+        _addConfiguration(connection, Constants.CONFIG_INDEXING_QUEUE, "false", "boolean");
+        _addConfiguration(connection, Constants.CONFIG_INDEXING_QUEUE_WORKERS, "2", "integer");
+        _addConfiguration(connection, Constants.CONFIG_INDEXING_QUEUE_WAIT, "5000", "integer");
+    }
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_CREATE_QUEUE_TABLE_SQL);
+            statement.execute("ALTER TABLE indexing_queue OWNER TO biblivre;");
+            statement.execute(_CREATE_QUEUE_INDEX_SQL);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_11_0$alpha";
+    }
+
+    private void _addConfiguration(Connection connection, String key, String value, String type)
+            throws SQLException {
+
+        try (PreparedStatement statement = connection.prepareStatement(_INSERT_CONFIG_SQL)) {
+            statement.setString(1, key);
+            statement.setString(2, value);
+            statement.setString(3, type);
+            statement.setString(4, key);
+
+            statement.execute();
+        }
+    }
+
+    private static final String _INSERT_CONFIG_SQL =
+            "INSERT INTO configurations (key, value, type, required, modified, modified_by) "
+                    + "SELECT ?, ?, ?, false, now(), 1 "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM configurations WHERE key = ?);";
+
+    private static final String _CREATE_QUEUE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS indexing_queue ("
+                    + "id serial NOT NULL, "
+                    + "record_type character varying NOT NULL, "
+                    + "record_id integer NOT NULL, "
+                    + "created timestamp without time zone NOT NULL DEFAULT now(), "
+                    + "CONSTRAINT \"PK_indexing_queue\" PRIMARY KEY (id));";
+
+    private static final String _CREATE_QUEUE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_indexing_queue_record\" "
+                    + "ON indexing_queue USING btree (record_type, record_id);";
+}
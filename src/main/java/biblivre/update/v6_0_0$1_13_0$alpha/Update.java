@@ -0,0 +1,80 @@
+package biblivre.update.v6_0_0$1_13_0$alpha;
+
+import biblivre.marc.MarcDataReader;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.apache.commons.lang3.StringUtils;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        _addBriefColumns(connection);
+        _populateBriefColumns(connection);
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_13_0$alpha";
+    }
+
+    private void _addBriefColumns(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String column : _BRIEF_COLUMNS) {
+                statement.execute(String.format(_ADD_BRIEF_COLUMN_SQL, column));
+            }
+        }
+    }
+
+    // Same as BiblioRecordDAO.getBriefValues()
+    private void _populateBriefColumns(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(_SELECT_RECORDS_SQL);
+                PreparedStatement update = connection.prepareStatement(_UPDATE_BRIEF_SQL)) {
+
+            select.setFetchSize(_BATCH_SIZE);
+
+            try (ResultSet rs = select.executeQuery()) {
+                int count = 0;
+
+                while (rs.next()) {
+                    MarcDataReader marcDataReader = new MarcDataReader(rs.getBytes("iso2709"));
+
+                    update.setString(1, StringUtils.defaultString(marcDataReader.getTitle(false)));
+                    update.setString(2, StringUtils.defaultString(marcDataReader.getAuthor(true)));
+                    update.setString(
+                            3, StringUtils.defaultString(marcDataReader.getPublicationYear()));
+                    update.setString(
+                            4, StringUtils.defaultString(marcDataReader.getShelfLocation()));
+                    update.setInt(5, rs.getInt("id"));
+                    update.addBatch();
+
+                    if (++count % _BATCH_SIZE == 0) {
+                        update.executeBatch();
+                    }
+                }
+
+                update.executeBatch();
+            }
+        }
+    }
+
+    private static final int _BATCH_SIZE = 500;
+
+    private static final String[] _BRIEF_COLUMNS =
+            new String[] {"title", "author", "publication_year", "shelf_location"};
+
+    private static final String _ADD_BRIEF_COLUMN_SQL =
+            "ALTER TABLE biblio_records ADD COLUMN IF NOT EXISTS %s character varying;";
+
+    private static final String _SELECT_RECORDS_SQL =
+            "SELECT id, iso2709 FROM biblio_records WHERE title IS NULL;";
+
+    private static final String _UPDATE_BRIEF_SQL =
+            "UPDATE biblio_records "
+                    + "SET title = ?, author = ?, publication_year = ?, shelf_location = ? "
+                    + "WHERE id = ?;";
+}
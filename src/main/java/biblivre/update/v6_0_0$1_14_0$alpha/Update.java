@@ -0,0 +1,116 @@
+package biblivre.update.v6_0_0$1_14_0$alpha;
+
+import biblivre.core.translations.Translations;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Update implements UpdateService {
+
+    public void doUpdate(Connection connection) throws SQLException {
+        _addTranslations();
+    }
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_CREATE_IMPORT_JOBS_TABLE_SQL);
+            statement.execute("ALTER TABLE import_jobs OWNER TO biblivre;");
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_14_0$alpha";
+    }
+
+    private void _addTranslations() throws SQLException {
+        for (Map.Entry<String, Map<String, String>> entry : _TRANSLATIONS.entrySet()) {
+            for (Map.Entry<String, String> entry2 : entry.getValue().entrySet()) {
+                String key = entry.getKey();
+
+                String language = entry2.getKey();
+
+                String translation = entry2.getValue();
+
+                Translations.addSingleTranslation(language, key, translation);
+            }
+        }
+    }
+
+    private static final String _CREATE_IMPORT_JOBS_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS import_jobs ("
+                    + "id serial NOT NULL, "
+                    + "file_name character varying, "
+                    + "path character varying NOT NULL, "
+                    + "format character varying NOT NULL, "
+                    + "encoding character varying NOT NULL, "
+                    + "status character varying NOT NULL, "
+                    + "size bigint NOT NULL DEFAULT 0, "
+                    + "position integer NOT NULL DEFAULT 0, "
+                    + "bytes_read bigint NOT NULL DEFAULT 0, "
+                    + "imported integer NOT NULL DEFAULT 0, "
+                    + "failed integer NOT NULL DEFAULT 0, "
+                    + "created timestamp without time zone NOT NULL DEFAULT now(), "
+                    + "created_by integer, "
+                    + "modified timestamp without time zone NOT NULL DEFAULT now(), "
+                    + "CONSTRAINT \"PK_import_jobs\" PRIMARY KEY (id));";
+
+    @SuppressWarnings({"unchecked", "rawtypes", "serial"})
+    private static final Map<String, Map<String, String>> _TRANSLATIONS =
+            new HashMap() {
+                {
+                    put(
+                            "cataloging.import.bulk_upload_button",
+                            new HashMap() {
+                                {
+                                    put("pt-BR", "Importar o arquivo inteiro");
+                                    put("es", "Importar el archivo completo");
+                                    put("en-US", "Import the whole file");
+                                }
+                            });
+                    put(
+                            "cataloging.import.import_popup.resume",
+                            new HashMap() {
+                                {
+                                    put("pt-BR", "Retomar");
+                                    put("es", "Reanudar");
+                                    put("en-US", "Resume");
+                                }
+                            });
+                    put(
+                            "cataloging.import.job.success",
+                            new HashMap() {
+                                {
+                                    put(
+                                            "pt-BR",
+                                            "{0} registros importados para a base de trabalho, {1} não puderam ser lidos");
+                                    put(
+                                            "es",
+                                            "{0} registros importados a la base de trabajo, {1} no pudieron ser leídos");
+                                    put(
+                                            "en-US",
+                                            "{0} records imported into the work database, {1} could not be read");
+                                }
+                            });
+                    put(
+                            "cataloging.import.job.failed",
+                            new HashMap() {
+                                {
+                                    put(
+                                            "pt-BR",
+                                            "A importação parou antes do fim do arquivo. Os registros já importados foram mantidos; clique em Retomar para continuar de onde ela parou.");
+                                    put(
+                                            "es",
+                                            "La importación se detuvo antes del final del archivo. Los registros ya importados se mantuvieron; haga clic en Reanudar para continuar desde donde se detuvo.");
+                                    put(
+                                            "en-US",
+                                            "The import stopped before the end of the file. The records already imported were kept; click Resume to continue from where it stopped.");
+                                }
+                            });
+                }
+            };
+}
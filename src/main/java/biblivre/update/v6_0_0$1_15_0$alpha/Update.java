@@ -0,0 +1,180 @@
+package biblivre.update.v6_0_0$1_15_0$alpha;
+
+import biblivre.cataloging.enums.IdentifierType;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.core.translations.Translations;
+import biblivre.marc.MarcDataReader;
+import biblivre.marc.StandardIdentifiers;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class Update implements UpdateService {
+
+    public void doUpdate(Connection connection) throws SQLException {
+        _addTranslations();
+    }
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _createIdentifiersTable(connection, recordType);
+        }
+
+        _populateIdentifiersTable(connection);
+        _replaceClearRecordFunction(connection);
+        _addImportJobDuplicatesColumn(connection);
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_15_0$alpha";
+    }
+
+    private void _createIdentifiersTable(Connection connection, RecordType recordType)
+            throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_CREATE_IDENTIFIERS_TABLE_SQL, recordType, recordType));
+            statement.execute(String.format(_CREATE_IDENTIFIERS_INDEX_SQL, recordType, recordType));
+            statement.execute(
+                    String.format("ALTER TABLE %s_idx_identifiers OWNER TO biblivre;", recordType));
+        }
+    }
+
+    // Identifiers of the bibliographic records, so duplicates are found without a full reindex
+    private void _populateIdentifiersTable(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(_SELECT_RECORDS_SQL);
+                PreparedStatement insert = connection.prepareStatement(_INSERT_IDENTIFIER_SQL)) {
+
+            select.setFetchSize(_BATCH_SIZE);
+
+            try (ResultSet rs = select.executeQuery()) {
+                int count = 0;
+
+                while (rs.next()) {
+                    MarcDataReader marcDataReader = new MarcDataReader(rs.getBytes("iso2709"));
+
+                    for (Map.Entry<IdentifierType, Set<String>> entry :
+                            StandardIdentifiers.read(marcDataReader).entrySet()) {
+
+                        for (String identifier : entry.getValue()) {
+                            insert.setInt(1, rs.getInt("id"));
+                            insert.setString(2, entry.getKey().toString());
+                            insert.setString(3, identifier);
+                            insert.addBatch();
+
+                            if (++count % _BATCH_SIZE == 0) {
+                                insert.executeBatch();
+                            }
+                        }
+                    }
+                }
+
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private void _replaceClearRecordFunction(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_CLEAR_RECORD_FUNCTION_SQL);
+        }
+    }
+
+    private void _addImportJobDuplicatesColumn(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_ADD_IMPORT_JOB_DUPLICATES_COLUMN_SQL);
+        }
+    }
+
+    private void _addTranslations() throws SQLException {
+        for (Map.Entry<String, Map<String, String>> entry : _TRANSLATIONS.entrySet()) {
+            for (Map.Entry<String, String> entry2 : entry.getValue().entrySet()) {
+                String key = entry.getKey();
+
+                String language = entry2.getKey();
+
+                String translation = entry2.getValue();
+
+                Translations.addSingleTranslation(language, key, translation);
+            }
+        }
+    }
+
+    private static final int _BATCH_SIZE = 500;
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _CREATE_IDENTIFIERS_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS %s_idx_identifiers ("
+                    + "record_id integer NOT NULL, "
+                    + "identifier_type character varying NOT NULL, "
+                    + "identifier character varying NOT NULL, "
+                    + "CONSTRAINT \"PK_%s_idx_identifiers\" "
+                    + "PRIMARY KEY (record_id, identifier_type, identifier));";
+
+    // Identifiers are only ever looked up by equality
+    private static final String _CREATE_IDENTIFIERS_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_idx_identifiers_identifier\" "
+                    + "ON %s_idx_identifiers USING hash (identifier);";
+
+    private static final String _SELECT_RECORDS_SQL =
+            "SELECT R.id, R.iso2709 FROM biblio_records R WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM biblio_idx_identifiers I WHERE I.record_id = R.id);";
+
+    private static final String _INSERT_IDENTIFIER_SQL =
+            "INSERT INTO biblio_idx_identifiers (record_id, identifier_type, identifier) "
+                    + "VALUES (?, ?, ?) ON CONFLICT DO NOTHING;";
+
+    private static final String _CLEAR_RECORD_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION clear_record() RETURNS trigger "
+                    + "LANGUAGE plpgsql AS $$\n"
+                    + "BEGIN\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_fields WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_sort WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_fts WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_identifiers WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_search_results WHERE record_id = ' || OLD.id;\n"
+                    + "\n"
+                    + "\tRETURN NULL;\n"
+                    + "END;\n"
+                    + "$$;";
+
+    private static final String _ADD_IMPORT_JOB_DUPLICATES_COLUMN_SQL =
+            "ALTER TABLE import_jobs ADD COLUMN IF NOT EXISTS duplicates integer NOT NULL DEFAULT 0;";
+
+    @SuppressWarnings({"unchecked", "rawtypes", "serial"})
+    private static final Map<String, Map<String, String>> _TRANSLATIONS =
+            new HashMap() {
+                {
+                    put(
+                            "cataloging.import.job.success",
+                            new HashMap() {
+                                {
+                                    put(
+                                            "pt-BR",
+                                            "{0} registros importados para a base de trabalho, {1} já existentes no catálogo foram ignorados e {2} não puderam ser lidos");
+                                    put(
+                                            "es",
+                                            "{0} registros importados a la base de trabajo, {1} ya existentes en el catálogo fueron ignorados y {2} no pudieron ser leídos");
+                                    put(
+                                            "en-US",
+                                            "{0} records imported into the work database, {1} already in the catalog were skipped and {2} could not be read");
+                                }
+                            });
+                }
+            };
+}
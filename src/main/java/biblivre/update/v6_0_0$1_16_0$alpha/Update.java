@@ -0,0 +1,37 @@
+package biblivre.update.v6_0_0$1_16_0$alpha;
+
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_ADD_ATTEMPTS_COLUMN_SQL);
+            statement.execute(_CREATE_FAILED_TABLE_SQL);
+            statement.execute("ALTER TABLE indexing_queue_failed OWNER TO biblivre;");
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_16_0$alpha";
+    }
+
+    private static final String _ADD_ATTEMPTS_COLUMN_SQL =
+            "ALTER TABLE indexing_queue "
+                    + "ADD COLUMN IF NOT EXISTS attempts integer NOT NULL DEFAULT 0;";
+
+    private static final String _CREATE_FAILED_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS indexing_queue_failed ("
+                    + "id serial NOT NULL, "
+                    + "record_type character varying NOT NULL, "
+                    + "record_id integer NOT NULL, "
+                    + "attempts integer NOT NULL, "
+                    + "created timestamp without time zone NOT NULL, "
+                    + "failed timestamp without time zone NOT NULL DEFAULT now(), "
+                    + "CONSTRAINT \"PK_indexing_queue_failed\" PRIMARY KEY (id));";
+}
@@ -0,0 +1,53 @@
+package biblivre.update.v6_0_0$1_4_0$alpha;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        _createWatermarksTable(connection);
+
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _createModifiedIndex(connection, recordType);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_4_0$alpha";
+    }
+
+    private void _createWatermarksTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_CREATE_WATERMARKS_TABLE_SQL);
+            statement.execute("ALTER TABLE indexing_watermarks OWNER TO biblivre;");
+        }
+    }
+
+    private void _createModifiedIndex(Connection connection, RecordType recordType)
+            throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_CREATE_MODIFIED_INDEX_SQL, recordType, recordType));
+        }
+    }
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _CREATE_WATERMARKS_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS indexing_watermarks ("
+                    + "record_type character varying NOT NULL, "
+                    + "watermark timestamp without time zone NOT NULL, "
+                    + "modified timestamp without time zone NOT NULL DEFAULT now(), "
+                    + "CONSTRAINT \"PK_indexing_watermarks\" PRIMARY KEY (record_type));";
+
+    private static final String _CREATE_MODIFIED_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_records_modified\" "
+                    + "ON %s_records USING btree (modified);";
+}
@@ -0,0 +1,35 @@
+package biblivre.update.v6_0_0$1_5_0$alpha;
+
+import biblivre.cataloging.enums.SearchBackend;
+import biblivre.core.utils.Constants;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public class Update implements UpdateService {
+
+    public void doUpdate(Connection connection) throws SQLException {
+        _addConfiguration(connection);
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_5_0$alpha";
+    }
+
+    private void _addConfiguration(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(_INSERT_CONFIG_SQL)) {
+            statement.setString(1, Constants.CONFIG_SEARCH_BACKEND);
+            statement.setString(2, SearchBackend.DATABASE.toString());
+            statement.setString(3, Constants.CONFIG_SEARCH_BACKEND);
+
+            statement.execute();
+        }
+    }
+
+    private static final String _INSERT_CONFIG_SQL =
+            "INSERT INTO configurations (key, value, type, required, modified, modified_by) "
+                    + "SELECT ?, ?, 'string', false, now(), 1 "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM configurations WHERE key = ?);";
+}
@@ -0,0 +1,92 @@
+package biblivre.update.v6_0_0$1_6_0$alpha;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _createFullTextTable(connection, recordType);
+            _populateFullTextTable(connection, recordType);
+        }
+
+        _replaceClearRecordFunction(connection);
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_6_0$alpha";
+    }
+
+    private void _createFullTextTable(Connection connection, RecordType recordType)
+            throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_CREATE_FULLTEXT_TABLE_SQL, recordType, recordType));
+            statement.execute(String.format(_CREATE_FULLTEXT_INDEX_SQL, recordType, recordType));
+            statement.execute(
+                    String.format("ALTER TABLE %s_idx_fts OWNER TO biblivre;", recordType));
+        }
+    }
+
+    // Documents of already indexed records, so searches work without a full reindex
+    private void _populateFullTextTable(Connection connection, RecordType recordType)
+            throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_POPULATE_FULLTEXT_TABLE_SQL, recordType, recordType));
+        }
+    }
+
+    private void _replaceClearRecordFunction(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(_CLEAR_RECORD_FUNCTION_SQL);
+        }
+    }
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _CREATE_FULLTEXT_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS %s_idx_fts ("
+                    + "record_id integer NOT NULL, "
+                    + "indexing_group_id integer NOT NULL, "
+                    + "document tsvector NOT NULL, "
+                    + "CONSTRAINT \"PK_%s_idx_fts\" PRIMARY KEY (record_id, indexing_group_id));";
+
+    private static final String _CREATE_FULLTEXT_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_idx_fts_document\" "
+                    + "ON %s_idx_fts USING gin (document);";
+
+    // Same lexeme quoting and positions as IndexingDTO.getDocument()
+    private static final String _POPULATE_FULLTEXT_TABLE_SQL =
+            "INSERT INTO %s_idx_fts (record_id, indexing_group_id, document) "
+                    + "SELECT record_id, indexing_group_id, string_agg("
+                    + "'''' || replace(replace(word, E'\\\\', E'\\\\\\\\'), '''', '''''') || ''':' "
+                    + "|| least(datafield + 1, 16383), ' ')::tsvector "
+                    + "FROM %s_idx_fields WHERE octet_length(word) <= 2046 "
+                    + "GROUP BY record_id, indexing_group_id "
+                    + "ON CONFLICT DO NOTHING;";
+
+    private static final String _CLEAR_RECORD_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION clear_record() RETURNS trigger "
+                    + "LANGUAGE plpgsql AS $$\n"
+                    + "BEGIN\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_fields WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_sort WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_idx_fts WHERE record_id = ' || OLD.id;\n"
+                    + "\tEXECUTE 'DELETE FROM \"' || TG_TABLE_SCHEMA || '\".' || TG_ARGV[0] || "
+                    + "'_search_results WHERE record_id = ' || OLD.id;\n"
+                    + "\n"
+                    + "\tRETURN NULL;\n"
+                    + "END;\n"
+                    + "$$;";
+}
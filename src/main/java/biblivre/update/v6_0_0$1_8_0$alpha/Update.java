@@ -0,0 +1,46 @@
+package biblivre.update.v6_0_0$1_8_0$alpha;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _addSortKey(connection, recordType);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_8_0$alpha";
+    }
+
+    private void _addSortKey(Connection connection, RecordType recordType) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_ADD_SORT_KEY_SQL, recordType));
+            statement.execute(String.format(_POPULATE_SORT_KEY_SQL, recordType));
+            statement.execute(String.format(_CREATE_SORT_KEY_INDEX_SQL, recordType, recordType));
+        }
+    }
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _ADD_SORT_KEY_SQL =
+            "ALTER TABLE %s_idx_sort ADD COLUMN IF NOT EXISTS sort_key character varying;";
+
+    // Same as IndexingDTO.getSortKey()
+    private static final String _POPULATE_SORT_KEY_SQL =
+            "UPDATE %s_idx_sort SET sort_key = "
+                    + "left(trim(substr(phrase, ignore_chars_count + 1)), 256) "
+                    + "WHERE sort_key IS NULL AND phrase IS NOT NULL;";
+
+    private static final String _CREATE_SORT_KEY_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_idx_sort_key\" "
+                    + "ON %s_idx_sort (indexing_group_id, sort_key, record_id);";
+}
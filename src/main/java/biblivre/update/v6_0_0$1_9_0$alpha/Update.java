@@ -0,0 +1,53 @@
+package biblivre.update.v6_0_0$1_9_0$alpha;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.update.UpdateService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Update implements UpdateService {
+
+    @Override
+    public void doUpdateScopedBySchema(Connection connection) throws SQLException {
+        for (RecordType recordType : _INDEXED_RECORD_TYPES) {
+            _addSortLetter(connection, recordType);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "v6_0_0$1_9_0$alpha";
+    }
+
+    private void _addSortLetter(Connection connection, RecordType recordType) throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(_ADD_SORT_LETTER_SQL, recordType));
+            statement.execute(String.format(_TRUNCATE_SORT_KEY_SQL, recordType));
+            statement.execute(String.format(_POPULATE_SORT_LETTER_SQL, recordType));
+            statement.execute(String.format(_CREATE_SORT_LETTER_INDEX_SQL, recordType, recordType));
+        }
+    }
+
+    private static final RecordType[] _INDEXED_RECORD_TYPES =
+            new RecordType[] {RecordType.BIBLIO, RecordType.AUTHORITIES, RecordType.VOCABULARY};
+
+    private static final String _ADD_SORT_LETTER_SQL =
+            "ALTER TABLE %s_idx_sort ADD COLUMN IF NOT EXISTS sort_letter character(1);";
+
+    // Same length as IndexingDTO.SORT_KEY_LENGTH
+    private static final String _TRUNCATE_SORT_KEY_SQL =
+            "UPDATE %s_idx_sort SET sort_key = left(sort_key, 256) WHERE length(sort_key) > 256;";
+
+    // Same as IndexingDTO.getSortLetter()
+    private static final String _POPULATE_SORT_LETTER_SQL =
+            "UPDATE %s_idx_sort SET sort_letter = CASE "
+                    + "WHEN sort_key ~ '^[a-zA-Z]' THEN lower(left(sort_key, 1)) "
+                    + "WHEN sort_key <> '' THEN '#' END "
+                    + "WHERE sort_letter IS NULL AND sort_key IS NOT NULL;";
+
+    private static final String _CREATE_SORT_LETTER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS \"IX_%s_idx_sort_letter\" "
+                    + "ON %s_idx_sort (indexing_group_id, sort_letter, sort_key, record_id);";
+}
@@ -123,22 +123,18 @@ public class Z3950DAO extends AbstractDAO {
             StringBuilder sql = new StringBuilder();
             sql.append("SELECT * FROM z3950_addresses ");
 
-            if (ids != null && ids.size() > 0) {
-                sql.append("WHERE id in (");
-                sql.append(StringUtils.repeat("?", ", ", ids.size()));
-                sql.append(") ");
+            boolean filter = ids != null && ids.size() > 0;
+
+            if (filter) {
+                sql.append("WHERE id = ANY(?) ");
             }
 
             sql.append("ORDER BY name ASC;");
 
             PreparedStatement pst = con.prepareStatement(sql.toString());
 
-            if (ids != null) {
-                int index = 1;
-
-                for (Integer id : ids) {
-                    pst.setInt(index++, id);
-                }
+            if (filter) {
+                this.setIdArray(pst, 1, ids);
             }
 
             ResultSet rs = pst.executeQuery();
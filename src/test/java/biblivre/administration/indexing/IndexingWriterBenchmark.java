@@ -0,0 +1,166 @@
+package biblivre.administration.indexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import biblivre.AbstractContainerDatabaseTest;
+import biblivre.cataloging.AutocompleteDTO;
+import biblivre.cataloging.enums.RecordType;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Compares the batched INSERT path of {@link IndexingDAO} with the COPY based bulk writer. Not part
+ * of the regular test run; execute with <code>mvn test -Dtest=IndexingWriterBenchmark</code>.
+ */
+@Testcontainers
+public class IndexingWriterBenchmark extends AbstractContainerDatabaseTest {
+    private static final Logger logger = LoggerFactory.getLogger(IndexingWriterBenchmark.class);
+
+    private static final int RECORDS = 5000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ROUNDS = 3;
+
+    private IndexingDAO dao = getInstance(IndexingDAO.class);
+
+    @Test
+    public void compareInsertAndCopy() throws SQLException {
+        List<IndexingBatch> batches = IndexingWriterBenchmark.createBatches();
+
+        // Warm up both paths before measuring
+        this.insert(batches);
+        this.copy(batches);
+
+        long insertTime = 0;
+        long copyTime = 0;
+
+        for (int round = 0; round < IndexingWriterBenchmark.ROUNDS; round++) {
+            insertTime += this.insert(batches);
+            int inserted = this.countRows();
+
+            copyTime += this.copy(batches);
+            int copied = this.countRows();
+
+            assertEquals(inserted, copied);
+        }
+
+        IndexingWriterBenchmark.logger.info(
+                "Indexing {} records: batched INSERT {} ms, COPY {} ms (average of {} rounds)",
+                IndexingWriterBenchmark.RECORDS,
+                insertTime / IndexingWriterBenchmark.ROUNDS,
+                copyTime / IndexingWriterBenchmark.ROUNDS,
+                IndexingWriterBenchmark.ROUNDS);
+    }
+
+    private long insert(List<IndexingBatch> batches) {
+        this.dao.clearIndexes(RecordType.BIBLIO);
+
+        long start = System.currentTimeMillis();
+
+        for (IndexingBatch batch : batches) {
+            this.dao.insertIndexes(RecordType.BIBLIO, batch.getIndexes());
+            this.dao.insertSortIndexes(RecordType.BIBLIO, batch.getSortIndexes());
+            this.dao.insertAutocompleteIndexes(RecordType.BIBLIO, batch.getAutocompleteIndexes());
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    private long copy(List<IndexingBatch> batches) {
+        this.dao.clearIndexes(RecordType.BIBLIO);
+
+        long start = System.currentTimeMillis();
+
+        for (IndexingBatch batch : batches) {
+            this.dao.copyIndexes(RecordType.BIBLIO, batch);
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection con = getDataSource(container).getConnection();
+                Statement st = con.createStatement()) {
+
+            int total = 0;
+
+            for (String table : new String[] {"_idx_fields", "_idx_sort", "_idx_autocomplete"}) {
+                try (ResultSet rs = st.executeQuery("SELECT count(*) FROM single.biblio" + table)) {
+                    rs.next();
+                    total += rs.getInt(1);
+                }
+            }
+
+            return total;
+        }
+    }
+
+    private static List<IndexingBatch> createBatches() {
+        Random random = new Random(42);
+        List<IndexingBatch> batches = new ArrayList<>();
+        IndexingBatch batch = null;
+
+        for (int recordId = 1; recordId <= IndexingWriterBenchmark.RECORDS; recordId++) {
+            if (batch == null
+                    || batch.getRecordIds().size() >= IndexingWriterBenchmark.BATCH_SIZE) {
+                batch = new IndexingBatch();
+                batches.add(batch);
+            }
+
+            batch.getRecordIds().add(recordId);
+
+            for (int group = 1; group <= 5; group++) {
+                IndexingDTO index = new IndexingDTO();
+                index.setRecordId(recordId);
+                index.setIndexingGroupId(group);
+
+                StringBuilder phrase = new StringBuilder();
+
+                for (int word = 0; word < 8; word++) {
+                    String value = IndexingWriterBenchmark.randomWord(random);
+                    index.addWord(value, 1 + word / 4);
+                    phrase.append(value).append(' ');
+                }
+
+                batch.getIndexes().add(index);
+
+                IndexingDTO sortIndex = new IndexingDTO();
+                sortIndex.setRecordId(recordId);
+                sortIndex.setIndexingGroupId(group);
+                sortIndex.appendToPhrase(phrase.toString());
+                batch.getSortIndexes().add(sortIndex);
+            }
+
+            AutocompleteDTO autocomplete = new AutocompleteDTO();
+            autocomplete.setRecordId(recordId);
+            autocomplete.setDatafield("100");
+            autocomplete.setSubfield("a");
+            autocomplete.setPhrase(
+                    IndexingWriterBenchmark.randomWord(random)
+                            + ", "
+                            + IndexingWriterBenchmark.randomWord(random));
+            batch.getAutocompleteIndexes().add(autocomplete);
+        }
+
+        return batches;
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(8);
+        StringBuilder word = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+
+        return word.toString();
+    }
+}
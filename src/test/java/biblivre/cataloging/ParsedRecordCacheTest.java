@@ -0,0 +1,64 @@
+package biblivre.cataloging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import biblivre.cataloging.enums.RecordType;
+import biblivre.marc.MarcTestRecords;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.MarcFactory;
+import org.marc4j.marc.Record;
+
+class ParsedRecordCacheTest {
+    private static final String SCHEMA = "test";
+    private static final int MAX_SIZE = 10;
+
+    @AfterEach
+    void reset() {
+        ParsedRecordCache.reset();
+    }
+
+    @Test
+    void testEditingRecordReturnedOnMiss() {
+        byte[] iso2709 = _createIso2709();
+        Date modified = new Date();
+
+        Record missed = _getRecord(iso2709, modified);
+        String original = missed.toString();
+
+        DataField field = MarcFactory.newInstance().newDataField("856", '4', '0');
+        field.addSubfield(MarcFactory.newInstance().newSubfield('u', "http://localhost/file.pdf"));
+        missed.addVariableField(field);
+
+        DataField title = (DataField) missed.getVariableField("245");
+        title.getSubfield('a').setData("Edited title");
+
+        Record hit = _getRecord(iso2709, modified);
+
+        assertNotSame(missed, hit);
+        assertEquals(original, hit.toString());
+
+        // Records returned on a hit are copies too
+        hit.removeVariableField(hit.getVariableField("245"));
+
+        assertEquals(original, _getRecord(iso2709, modified).toString());
+    }
+
+    private static Record _getRecord(byte[] iso2709, Date modified) {
+        return ParsedRecordCache.getRecord(
+                ParsedRecordCacheTest.SCHEMA,
+                RecordType.BIBLIO,
+                1,
+                modified,
+                iso2709,
+                true,
+                ParsedRecordCacheTest.MAX_SIZE);
+    }
+
+    private static byte[] _createIso2709() {
+        return MarcTestRecords.toIso2709(MarcTestRecords.createRecord("1"));
+    }
+}
@@ -0,0 +1,179 @@
+package biblivre.cataloging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import biblivre.AbstractContainerDatabaseTest;
+import biblivre.administration.indexing.IndexingDAO;
+import biblivre.cataloging.bibliographic.BiblioRecordDAO;
+import biblivre.cataloging.enums.RecordType;
+import biblivre.cataloging.search.AutocompleteIndex;
+import biblivre.core.utils.TextUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers
+public class RecordDAOAutocompleteTest extends AbstractContainerDatabaseTest {
+    private static final String DATAFIELD = "999";
+    private static final String SUBFIELD = "a";
+
+    private static final List<String> PHRASES =
+            Arrays.asList(
+                    "Ótimo",
+                    "otimo",
+                    "Otimo",
+                    "OTIMO",
+                    "Ótica",
+                    "Ostra",
+                    "O tempo",
+                    "Ovo",
+                    "Água",
+                    "agua",
+                    "Aguas",
+                    "Águia",
+                    "árvore",
+                    "Arvore",
+                    "ABC",
+                    "abade",
+                    "Ábaco",
+                    "Éramos seis",
+                    "era uma vez",
+                    "Machado de Assis",
+                    "machado",
+                    "Machado, José",
+                    "MACHADO",
+                    "Assis, Machado de",
+                    "Zé",
+                    "zebra");
+
+    private static final List<String[]> TERMS =
+            Arrays.asList(
+                    new String[] {"o"},
+                    new String[] {"ot"},
+                    new String[] {"a"},
+                    new String[] {"ag"},
+                    new String[] {"e"},
+                    new String[] {"mach"},
+                    new String[] {"assis", "mach"},
+                    new String[] {"z"});
+
+    private RecordDAO dao;
+
+    @BeforeEach
+    public void createPhrases() throws SQLException {
+        this.dao = getInstance(BiblioRecordDAO.class);
+        this.dao.recordType = RecordType.BIBLIO;
+
+        try (Connection con = getDataSource(container).getConnection()) {
+            try (Statement st = con.createStatement()) {
+                st.execute(
+                        "DELETE FROM single.biblio_idx_autocomplete WHERE datafield = '"
+                                + DATAFIELD
+                                + "';");
+            }
+
+            String sql =
+                    "INSERT INTO single.biblio_idx_autocomplete "
+                            + "(datafield, subfield, word, phrase, record_id) "
+                            + "VALUES (?, ?, ?, ?, ?);";
+
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                this.insertPhrases(pst);
+            }
+        }
+    }
+
+    private void insertPhrases(PreparedStatement pst) throws SQLException {
+        int recordId = 1;
+
+        for (String phrase : PHRASES) {
+            // Every phrase belongs to two records, and every other one to a fixed table
+            for (Integer id : Arrays.asList(recordId, recordId + 1, null)) {
+                if (id == null && recordId % 4 == 1) {
+                    continue;
+                }
+
+                for (String word : TextUtils.prepareAutocomplete(phrase)) {
+                    pst.setString(1, DATAFIELD);
+                    pst.setString(2, SUBFIELD);
+                    pst.setString(3, word);
+                    pst.setString(4, phrase);
+
+                    if (id == null) {
+                        pst.setNull(5, Types.INTEGER);
+                    } else {
+                        pst.setInt(5, id);
+                    }
+
+                    pst.addBatch();
+                }
+            }
+
+            recordId += 2;
+        }
+
+        pst.executeBatch();
+    }
+
+    @Test
+    public void testPhraseAutocomplete() {
+        AutocompleteIndex index = _loadIndex();
+
+        for (String[] terms : TERMS) {
+            for (int[] limits : new int[][] {{10, 5}, {3, 2}}) {
+                assertEquals(
+                        this.dao.phraseAutocomplete(
+                                DATAFIELD, SUBFIELD, terms, limits[0], limits[1]),
+                        index.phrases(terms, limits[0], limits[1]),
+                        Arrays.toString(terms));
+            }
+        }
+    }
+
+    @Test
+    public void testRecordAutocomplete() {
+        AutocompleteIndex index = _loadIndex();
+
+        for (String[] terms : TERMS) {
+            for (int[] limits : new int[][] {{10, 5}, {3, 2}}) {
+                assertEquals(
+                        _toString(
+                                this.dao.recordAutocomplete(
+                                        DATAFIELD, SUBFIELD, terms, limits[0], limits[1])),
+                        _toString(index.records(terms, limits[0], limits[1])),
+                        Arrays.toString(terms));
+            }
+        }
+    }
+
+    private static AutocompleteIndex _loadIndex() {
+        AutocompleteIndex index =
+                getInstance(IndexingDAO.class)
+                        .loadAutocompleteIndex(RecordType.BIBLIO, DATAFIELD, SUBFIELD, 1000);
+
+        if (index == null) {
+            fail("Autocomplete index not loaded");
+        }
+
+        return index;
+    }
+
+    private static List<String> _toString(List<AutocompleteDTO> autocompletes) {
+        List<String> list = new ArrayList<>();
+
+        for (AutocompleteDTO dto : autocompletes) {
+            list.add(dto.getRecordId() + ":" + dto.getPhrase());
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,166 @@
+package biblivre.cataloging.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import biblivre.cataloging.AutocompleteDTO;
+import biblivre.core.utils.TextUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AutocompleteIndexTest {
+
+    @Test
+    void testPhrases() {
+        AutocompleteIndex index = _createIndex();
+
+        assertEquals(
+                Arrays.asList("Machado de Assis", "Assis, Machado de"),
+                index.phrases(new String[] {"mach"}, 10, 5));
+
+        assertEquals(
+                Arrays.asList("Assis, Machado de", "Machado de Assis"),
+                index.phrases(new String[] {"assis", "mach"}, 10, 5));
+
+        assertEquals(
+                Collections.singletonList("Machado de Assis"),
+                index.phrases(new String[] {"mach"}, 1, 0));
+
+        assertEquals(0, index.phrases(new String[] {"mach", "quincas"}, 10, 5).size());
+    }
+
+    @Test
+    void testRecords() {
+        AutocompleteIndex index = _createIndex();
+
+        assertEquals(
+                Arrays.asList("1:Machado de Assis", "3:Machado de Assis", "2:Assis, Machado de"),
+                _records(index, "mach"));
+
+        // Rows of fixed tables only show up as phrases
+        assertEquals(Collections.emptyList(), _records(index, "lima"));
+        assertEquals(
+                Collections.singletonList("Lima Barreto"),
+                index.phrases(new String[] {"lima"}, 10, 5));
+    }
+
+    @Test
+    void testRecordsLimit() {
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+
+        // Fixed table rows coming first in phrase order don't take the places of records
+        builder.add(null, "Machado", "machado");
+        builder.add(null, "Machado de Assis", "machado");
+        builder.add(1, "Machado de Assis", "machado");
+        builder.add(2, "Machado de Assis", "machado");
+
+        AutocompleteIndex index = builder.build();
+
+        assertEquals(Arrays.asList(1, 2), _recordIds(index.records(new String[] {"mach"}, 2, 0)));
+    }
+
+    @Test
+    void testOrder() {
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+
+        for (String phrase :
+                Arrays.asList(
+                        "Ótimo", "otimo", "Ovo", "Otimo", "Ótica", "Ostra", "OTIMO", "O tempo")) {
+
+            for (String word : TextUtils.prepareAutocomplete(phrase)) {
+                builder.add(null, phrase, word);
+            }
+        }
+
+        AutocompleteIndex index = builder.build();
+
+        // Case and accents only break ties, and phrases starting with the term come first
+        assertEquals(
+                Arrays.asList(
+                        "O tempo", "Ostra", "OTIMO", "Otimo", "otimo", "Ovo", "Ótica", "Ótimo"),
+                index.phrases(new String[] {"o"}, 10, 5));
+
+        assertEquals(
+                Arrays.asList("O tempo", "Ostra", "OTIMO", "Ótica", "Ótimo"),
+                index.phrases(new String[] {"o"}, 3, 5));
+    }
+
+    @Test
+    void testComparePhrases() {
+        assertTrue(AutocompleteIndex.comparePhrases("Água", "agua") > 0);
+        assertTrue(AutocompleteIndex.comparePhrases("agua", "Aguas") < 0);
+        assertTrue(AutocompleteIndex.comparePhrases("Ça va", "casa") < 0);
+        assertTrue(AutocompleteIndex.comparePhrases("Zebra", "árvore") > 0);
+        assertEquals(0, AutocompleteIndex.comparePhrases("Ótimo", "Ótimo"));
+    }
+
+    @Test
+    void testUpdate() {
+        AutocompleteIndex index = _createIndex();
+
+        index.update(
+                Arrays.asList(1, 4),
+                Arrays.asList(_autocomplete(1, "Quincas Borba"), _autocomplete(4, "Ótimo")));
+
+        assertEquals(
+                Arrays.asList("3:Machado de Assis", "2:Assis, Machado de"),
+                _records(index, "mach"));
+        assertEquals(Collections.singletonList("1:Quincas Borba"), _records(index, "borb"));
+        assertEquals(Collections.singletonList("4:Ótimo"), _records(index, "otim"));
+
+        index.update(Collections.singletonList(4), Collections.emptyList());
+
+        assertEquals(Collections.emptyList(), _records(index, "otim"));
+    }
+
+    private static List<String> _records(AutocompleteIndex index, String term) {
+        List<String> list = new ArrayList<>();
+
+        for (AutocompleteDTO dto : index.records(new String[] {term}, 10, 5)) {
+            list.add(dto.getRecordId() + ":" + dto.getPhrase());
+        }
+
+        return list;
+    }
+
+    private static List<Integer> _recordIds(List<AutocompleteDTO> autocompletes) {
+        List<Integer> list = new ArrayList<>();
+
+        for (AutocompleteDTO dto : autocompletes) {
+            list.add(dto.getRecordId());
+        }
+
+        return list;
+    }
+
+    private static AutocompleteDTO _autocomplete(int recordId, String phrase) {
+        AutocompleteDTO dto = new AutocompleteDTO();
+
+        dto.setRecordId(recordId);
+        dto.setDatafield("100");
+        dto.setSubfield("a");
+        dto.setPhrase(phrase);
+
+        return dto;
+    }
+
+    private static AutocompleteIndex _createIndex() {
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+
+        builder.add(1, "Machado de Assis", "machado");
+        builder.add(1, "Machado de Assis", "de");
+        builder.add(1, "Machado de Assis", "assis");
+        builder.add(2, "Assis, Machado de", "assis");
+        builder.add(2, "Assis, Machado de", "machado");
+        builder.add(2, "Assis, Machado de", "de");
+        builder.add(3, "Machado de Assis", "machado");
+        builder.add(3, "Machado de Assis", "assis");
+        builder.add(null, "Lima Barreto", "lima");
+        builder.add(null, "Lima Barreto", "barreto");
+
+        return builder.build();
+    }
+}
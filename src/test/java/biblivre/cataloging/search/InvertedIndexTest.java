@@ -0,0 +1,107 @@
+package biblivre.cataloging.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import biblivre.administration.indexing.IndexingDTO;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+class InvertedIndexTest {
+
+    @Test
+    void testPostingListRoundTrip() {
+        long[] entries =
+                new long[] {
+                    PostingList.entry(300000, 2),
+                    PostingList.entry(7, 1),
+                    PostingList.entry(7, 1),
+                    PostingList.entry(7, 3),
+                    PostingList.entry(128, 1)
+                };
+
+        PostingList list = PostingList.of(entries, entries.length);
+
+        assertEquals(4, list.size());
+        assertArrayEquals(new int[] {7, 128, 300000}, list.getRecordIds());
+        assertArrayEquals(
+                new long[] {
+                    PostingList.entry(7, 1),
+                    PostingList.entry(7, 3),
+                    PostingList.entry(128, 1),
+                    PostingList.entry(300000, 2)
+                },
+                list.getEntries());
+    }
+
+    @Test
+    void testSimpleSearch() {
+        InvertedIndex index = _createIndex();
+
+        InvertedIndex.Hits hits = index.search(Arrays.asList("machado", "assis"));
+
+        assertArrayEquals(new int[] {1, 1, 2}, hits.getIndexingGroupIds());
+        assertArrayEquals(new int[] {1, 3, 3}, hits.getRecordIds());
+
+        hits = index.search(Collections.singleton("mach*"));
+
+        assertArrayEquals(new int[] {1, 2, 3}, hits.getRecordIds());
+
+        hits = index.search(Arrays.asList("machado", "quincas"));
+
+        assertEquals(0, hits.size());
+    }
+
+    @Test
+    void testSearchSameDatafield() {
+        InvertedIndex index = _createIndex();
+
+        assertArrayEquals(
+                new int[] {1}, index.searchSameDatafield(Arrays.asList("machado", "assis"), 1));
+        assertArrayEquals(
+                new int[] {1, 3}, index.searchSameDatafield(Arrays.asList("machado", "assis"), 0));
+    }
+
+    @Test
+    void testUpdate() {
+        InvertedIndex index = _createIndex();
+
+        IndexingDTO dto = new IndexingDTO();
+        dto.setRecordId(1);
+        dto.setIndexingGroupId(1);
+        dto.addWord("quincas", 1);
+        dto.addWord("borba", 1);
+
+        index.update(
+                Collections.singleton(1),
+                new HashSet<>(Arrays.asList("machado", "assis")),
+                Collections.singletonList(dto));
+
+        assertArrayEquals(
+                new int[] {3, 3}, index.search(Arrays.asList("machado", "assis")).getRecordIds());
+        assertArrayEquals(
+                new int[] {1}, index.search(Arrays.asList("quincas", "borba")).getRecordIds());
+
+        index.update(
+                Collections.singleton(2),
+                Collections.singleton("machine"),
+                Collections.emptyList());
+
+        assertEquals(0, index.search(Collections.singleton("machine")).size());
+        assertEquals(4, index.getWordCount());
+    }
+
+    private static InvertedIndex _createIndex() {
+        InvertedIndex.Builder builder = new InvertedIndex.Builder();
+
+        builder.add("machado", 1, 1, 1);
+        builder.add("assis", 1, 1, 1);
+        builder.add("machine", 1, 2, 1);
+        builder.add("machado", 1, 3, 1);
+        builder.add("assis", 2, 3, 1);
+
+        return builder.build();
+    }
+}
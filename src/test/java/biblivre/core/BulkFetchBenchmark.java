@@ -0,0 +1,176 @@
+package biblivre.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import biblivre.AbstractContainerDatabaseTest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Compares fetching rows by a list of ids with one <code>IN (?, ?, ...)</code> parameter per id
+ * against the single array parameter bound by {@link AbstractDAO#setIdArray}. Every list size gives
+ * the IN query a different text, so the driver keeps preparing new statements, while the array
+ * query is prepared once and its plan reused. Not part of the regular test run; execute with <code>
+ * mvn test -Dtest=BulkFetchBenchmark</code>.
+ */
+@Testcontainers
+public class BulkFetchBenchmark extends AbstractContainerDatabaseTest {
+    private static final Logger logger = LoggerFactory.getLogger(BulkFetchBenchmark.class);
+
+    private static final int ROWS = 100000;
+    private static final int LOOKUPS = 2000;
+    private static final int MAX_IDS = 200;
+
+    @Test
+    public void compareInListAndArray() throws SQLException {
+        List<List<Integer>> lookups = BulkFetchBenchmark.createLookups();
+
+        try (Connection con = getDataSource(container).getConnection()) {
+            BulkFetchBenchmark.createTable(con);
+
+            // Warm up both paths before measuring
+            BulkFetchBenchmark.fetchWithInList(con, lookups);
+            BulkFetchBenchmark.fetchWithArray(con, lookups);
+
+            BulkFetchBenchmark.deallocate(con);
+            long start = System.currentTimeMillis();
+            long inListRows = BulkFetchBenchmark.fetchWithInList(con, lookups);
+            long inListTime = System.currentTimeMillis() - start;
+            int inListStatements = BulkFetchBenchmark.countPreparedStatements(con);
+
+            BulkFetchBenchmark.deallocate(con);
+            start = System.currentTimeMillis();
+            long arrayRows = BulkFetchBenchmark.fetchWithArray(con, lookups);
+            long arrayTime = System.currentTimeMillis() - start;
+            int arrayStatements = BulkFetchBenchmark.countPreparedStatements(con);
+
+            assertEquals(inListRows, arrayRows);
+            assertTrue(arrayStatements <= 1);
+
+            BulkFetchBenchmark.logger.info(
+                    "{} lookups of up to {} ids: IN list {} ms and {} server prepared statements, "
+                            + "= ANY(?) {} ms and {} server prepared statements",
+                    BulkFetchBenchmark.LOOKUPS,
+                    BulkFetchBenchmark.MAX_IDS,
+                    inListTime,
+                    inListStatements,
+                    arrayTime,
+                    arrayStatements);
+        }
+    }
+
+    private static long fetchWithInList(Connection con, List<List<Integer>> lookups)
+            throws SQLException {
+
+        long rows = 0;
+
+        for (List<Integer> ids : lookups) {
+            String sql =
+                    "SELECT id, value FROM bulk_fetch WHERE id IN ("
+                            + StringUtils.repeat("?", ", ", ids.size())
+                            + ");";
+
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                int index = 1;
+
+                for (Integer id : ids) {
+                    pst.setInt(index++, id);
+                }
+
+                rows += BulkFetchBenchmark.countRows(pst);
+            }
+        }
+
+        return rows;
+    }
+
+    private static long fetchWithArray(Connection con, List<List<Integer>> lookups)
+            throws SQLException {
+
+        long rows = 0;
+
+        for (List<Integer> ids : lookups) {
+            String sql = "SELECT id, value FROM bulk_fetch WHERE id = ANY(?);";
+
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setArray(1, con.createArrayOf("integer", ids.toArray()));
+
+                rows += BulkFetchBenchmark.countRows(pst);
+            }
+        }
+
+        return rows;
+    }
+
+    private static long countRows(PreparedStatement pst) throws SQLException {
+        long rows = 0;
+
+        try (ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+
+        return rows;
+    }
+
+    private static void createTable(Connection con) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(
+                    "CREATE TEMPORARY TABLE bulk_fetch AS SELECT id, md5(id::text) as value "
+                            + "FROM generate_series(1, "
+                            + BulkFetchBenchmark.ROWS
+                            + ") id;");
+            st.execute("ALTER TABLE bulk_fetch ADD PRIMARY KEY (id);");
+            st.execute("ANALYZE bulk_fetch;");
+        }
+    }
+
+    private static void deallocate(Connection con) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("DEALLOCATE ALL;");
+        }
+    }
+
+    // Named statements the driver prepared on the server for this session
+    private static int countPreparedStatements(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+                ResultSet rs =
+                        st.executeQuery(
+                                "SELECT count(*) FROM pg_prepared_statements "
+                                        + "WHERE statement LIKE '%bulk_fetch%';")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static List<List<Integer>> createLookups() {
+        Random random = new Random(42);
+        List<List<Integer>> lookups = new ArrayList<>();
+
+        for (int i = 0; i < BulkFetchBenchmark.LOOKUPS; i++) {
+            int size = 1 + random.nextInt(BulkFetchBenchmark.MAX_IDS);
+            List<Integer> ids = new ArrayList<>(size);
+
+            for (int j = 0; j < size; j++) {
+                ids.add(1 + random.nextInt(BulkFetchBenchmark.ROWS));
+            }
+
+            lookups.add(ids);
+        }
+
+        return lookups;
+    }
+}
@@ -0,0 +1,134 @@
+package biblivre.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the regex based text preparation with {@link TextNormalizer} on catalog like subfields.
+ * Not part of the regular test run; execute with <code>mvn test -Dtest=TextNormalizerBenchmark
+ * </code>.
+ */
+public class TextNormalizerBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(TextNormalizerBenchmark.class);
+
+    private static final int SUBFIELDS = 200000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] WORDS = {
+        "Introdução",
+        "à",
+        "programação",
+        "orientada",
+        "a",
+        "objetos",
+        "São",
+        "Paulo:",
+        "Editora",
+        "Ática,",
+        "2015.",
+        "xii,",
+        "345",
+        "p.",
+        "il.;",
+        "23",
+        "cm.",
+        "História",
+        "do",
+        "Brasil",
+        "--",
+        "Período",
+        "colonial,",
+        "1500-1822",
+        "Machado",
+        "de",
+        "Assis,",
+        "Joaquim",
+        "Maria,",
+        "1839-1908.",
+        "Memórias",
+        "póstumas",
+        "de",
+        "Brás",
+        "Cubas",
+    };
+
+    @Test
+    public void compareLegacyAndNormalizer() {
+        List<String> subfields = TextNormalizerBenchmark.createSubfields();
+        TextNormalizer normalizer = new TextNormalizer();
+
+        // Warm up both paths before measuring
+        this.legacy(subfields);
+        this.normalizer(normalizer, subfields);
+
+        long legacyTime = 0;
+        long normalizerTime = 0;
+
+        for (int round = 0; round < TextNormalizerBenchmark.ROUNDS; round++) {
+            long start = System.nanoTime();
+            int legacyLength = this.legacy(subfields);
+            legacyTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int normalizerLength = this.normalizer(normalizer, subfields);
+            normalizerTime += System.nanoTime() - start;
+
+            assertEquals(legacyLength, normalizerLength);
+        }
+
+        TextNormalizerBenchmark.logger.info(
+                "Preparing {} subfields: regex {} ms, normalizer {} ms (average of {} rounds)",
+                TextNormalizerBenchmark.SUBFIELDS,
+                legacyTime / TextNormalizerBenchmark.ROUNDS / 1000000,
+                normalizerTime / TextNormalizerBenchmark.ROUNDS / 1000000,
+                TextNormalizerBenchmark.ROUNDS);
+    }
+
+    // Same work as IndexingBO does for each subfield: the phrase and then its words
+    private int legacy(List<String> subfields) {
+        int length = 0;
+
+        for (String subfield : subfields) {
+            String phrase = TextNormalizer.legacyPreparePhrase(subfield);
+            length += phrase.length() + TextNormalizer.legacyPrepareWords(phrase).length;
+        }
+
+        return length;
+    }
+
+    private int normalizer(TextNormalizer normalizer, List<String> subfields) {
+        int length = 0;
+
+        for (String subfield : subfields) {
+            String phrase = normalizer.preparePhrase(subfield);
+            length += phrase.length() + normalizer.prepareWords(phrase).length;
+        }
+
+        return length;
+    }
+
+    private static List<String> createSubfields() {
+        Random random = new Random(42);
+        List<String> subfields = new ArrayList<>();
+
+        for (int i = 0; i < TextNormalizerBenchmark.SUBFIELDS; i++) {
+            StringBuilder subfield = new StringBuilder();
+            int words = 1 + random.nextInt(8);
+
+            for (int j = 0; j < words; j++) {
+                String word = TextNormalizerBenchmark.WORDS[random.nextInt(WORDS.length)];
+                subfield.append(word).append(random.nextInt(10) == 0 ? "  " : " ");
+            }
+
+            subfields.add(subfield.toString());
+        }
+
+        return subfields;
+    }
+}
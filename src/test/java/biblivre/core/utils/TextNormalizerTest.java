@@ -0,0 +1,99 @@
+package biblivre.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTest {
+    private static final String[] SAMPLES = {
+        "",
+        "   ",
+        "Introdução à Programação",
+        "  Árvore   de\tdecisão  ",
+        "a\tb\n\nc   d",
+        "a ́ b",
+        "ȩ́ ̧́",
+        "**a *b c* * d*",
+        "*é *𝐀 *\t",
+        "ΟΔΟΣ Σ ΣΑ",
+        "İstanbul ǅ ß ﬁ Ⅻ ½ ²",
+        "한국어 텍스트",
+        "𝐀𝐁 \uD800 x\uDC00",
+        "x⃝ yः z᷀",
+        "don't-stop, 1.5 (ed.) [s.n.]",
+        "￾￿",
+    };
+
+    private final TextNormalizer normalizer = new TextNormalizer();
+
+    @Test
+    void sameAsLegacyOnSamples() {
+        for (String sample : TextNormalizerTest.SAMPLES) {
+            this.assertSameAsLegacy(sample);
+        }
+    }
+
+    @Test
+    void sameAsLegacyOnRandomText() {
+        Random random = new Random(42);
+
+        char[] common = " \t\n*-.,Ééçãaoz19ΣσİıßǼ̧⃝한".toCharArray();
+
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(12);
+
+            for (int j = 0; j < length; j++) {
+                if (random.nextInt(4) == 0) {
+                    text.append((char) random.nextInt(Character.MAX_VALUE + 1));
+                } else {
+                    text.append(common[random.nextInt(common.length)]);
+                }
+            }
+
+            this.assertSameAsLegacy(text.toString());
+        }
+    }
+
+    @Test
+    void keepsRegexReplacements() {
+        assertEquals(
+                TextNormalizer.legacyRemoveNonLettersOrDigits("a.b", "\\$"),
+                this.normalizer.removeNonLettersOrDigits("a.b", "\\$"));
+    }
+
+    @Test
+    void nullInput() {
+        assertEquals("", this.normalizer.preparePhrase(null));
+        assertEquals("", this.normalizer.removeDiacriticals(null));
+        assertEquals("", this.normalizer.removeNonLettersOrDigits(null, " "));
+        assertArrayEquals(new String[0], this.normalizer.prepareWords(null));
+    }
+
+    private void assertSameAsLegacy(String text) {
+        assertEquals(
+                TextNormalizer.legacyPreparePhrase(text),
+                this.normalizer.preparePhrase(text),
+                text);
+
+        assertEquals(
+                TextNormalizer.legacyRemoveDiacriticals(text),
+                this.normalizer.removeDiacriticals(text),
+                text);
+
+        assertArrayEquals(
+                TextNormalizer.legacyPrepareWords(text), this.normalizer.prepareWords(text), text);
+
+        assertEquals(
+                TextNormalizer.legacyRemoveNonLettersOrDigits(text, ""),
+                this.normalizer.removeNonLettersOrDigits(text, ""),
+                text);
+
+        assertEquals(
+                TextNormalizer.legacyRemoveNonLettersOrDigits(text, "-"),
+                this.normalizer.removeNonLettersOrDigits(text, "-"),
+                text);
+    }
+}
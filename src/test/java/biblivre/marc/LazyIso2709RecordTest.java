@@ -0,0 +1,84 @@
+package biblivre.marc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.Record;
+
+class LazyIso2709RecordTest {
+
+    @Test
+    void testFields() {
+        byte[] iso2709 = _createIso2709();
+        Record record = MarcUtils.iso2709ToRecord(iso2709);
+        LazyIso2709Record lazy = LazyIso2709Record.parse(iso2709);
+
+        assertEquals(
+                record.getControlNumberField().toString(), lazy.getControlField("001").toString());
+
+        for (String tag : Arrays.asList("100", "245", "650")) {
+            List<DataField> fields = lazy.getDataFields(tag);
+
+            assertEquals(record.getVariableFields(tag).size(), fields.size());
+
+            for (int i = 0; i < fields.size(); i++) {
+                assertEquals(
+                        record.getVariableFields(tag).get(i).toString(), fields.get(i).toString());
+            }
+        }
+
+        assertEquals(0, lazy.getDataFields("260").size());
+        assertNull(lazy.getControlField("005"));
+    }
+
+    @Test
+    void testDataReader() {
+        byte[] iso2709 = _createIso2709();
+
+        MarcDataReader full = new MarcDataReader(MarcUtils.iso2709ToRecord(iso2709));
+        MarcDataReader lazy = new MarcDataReader(iso2709);
+
+        assertEquals(full.getTitle(false), lazy.getTitle(false));
+        assertEquals(full.getAuthor(true), lazy.getAuthor(true));
+        assertEquals(full.getSubject(true), lazy.getSubject(true));
+        assertEquals(full.getRecord().toString(), lazy.getRecord().toString());
+    }
+
+    @Test
+    void testMalformed() {
+        byte[] iso2709 = _createIso2709();
+
+        // Base address pointing past the directory
+        byte[] malformed = iso2709.clone();
+        malformed[16]++;
+
+        assertNull(LazyIso2709Record.parse(malformed));
+        assertNull(LazyIso2709Record.parse(Arrays.copyOf(iso2709, 20)));
+
+        // Still read, through the permissive parser
+        assertEquals(
+                new MarcDataReader(MarcUtils.iso2709ToRecord(malformed)).getTitle(false),
+                new MarcDataReader(malformed).getTitle(false));
+    }
+
+    private static byte[] _createIso2709() {
+        Record record = MarcTestRecords.createRecord("0000042");
+
+        DataField title = (DataField) record.getVariableField("245");
+        MarcTestRecords.addSubfield(title, 'b', "romance");
+
+        DataField author =
+                MarcTestRecords.addDataField(record, "100", '1', ' ', 'a', "Assis, Machado de");
+        MarcTestRecords.addSubfield(author, 'd', "1839-1908");
+
+        for (String subject : Arrays.asList("Ficção brasileira", "Realismo")) {
+            MarcTestRecords.addDataField(record, "650", ' ', '4', 'a', subject);
+        }
+
+        return MarcTestRecords.toIso2709(record);
+    }
+}
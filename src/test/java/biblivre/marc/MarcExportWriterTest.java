@@ -0,0 +1,108 @@
+package biblivre.marc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import biblivre.cataloging.enums.ExportFormat;
+import biblivre.core.utils.Constants;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.marc4j.MarcReader;
+import org.marc4j.MarcStreamReader;
+import org.marc4j.MarcXmlReader;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.Record;
+
+class MarcExportWriterTest {
+
+    @Test
+    void testIso2709() throws IOException {
+        List<Record> records = _createRecords();
+        byte[] output = _export(ExportFormat.ISO2709, records);
+
+        _assertRecords(
+                records,
+                new MarcStreamReader(
+                        new ByteArrayInputStream(output), Constants.DEFAULT_CHARSET_NAME));
+    }
+
+    @Test
+    void testMarcXml() throws IOException {
+        List<Record> records = _createRecords();
+        byte[] output = _export(ExportFormat.MARCXML, records);
+
+        _assertRecords(records, new MarcXmlReader(new ByteArrayInputStream(output)));
+    }
+
+    @Test
+    void testJson() throws IOException {
+        List<Record> records = _createRecords();
+        byte[] output = _export(ExportFormat.JSON, records);
+
+        JSONArray array = new JSONArray(new String(output, Constants.DEFAULT_CHARSET));
+
+        assertEquals(records.size(), array.length());
+
+        for (int i = 0; i < array.length(); i++) {
+            Record record = records.get(i);
+            JSONObject json = array.getJSONObject(i);
+            JSONArray fields = json.getJSONArray("fields");
+
+            assertEquals(record.getLeader().marshal(), json.getString("leader"));
+            assertEquals(record.getControlNumber(), fields.getJSONObject(0).getString("001"));
+
+            DataField datafield = record.getDataFields().get(0);
+            JSONObject subfield =
+                    fields.getJSONObject(1)
+                            .getJSONObject(datafield.getTag())
+                            .getJSONArray("subfields")
+                            .getJSONObject(0);
+
+            assertEquals(datafield.getSubfield('a').getData(), subfield.getString("a"));
+        }
+
+        assertEquals(
+                0,
+                new JSONArray(new String(_export(ExportFormat.JSON), Constants.DEFAULT_CHARSET))
+                        .length());
+    }
+
+    private static void _assertRecords(List<Record> records, MarcReader reader) {
+        for (Record record : records) {
+            assertEquals(record.toString(), reader.next().toString());
+        }
+
+        assertFalse(reader.hasNext());
+    }
+
+    private static byte[] _export(ExportFormat format, List<Record> records) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (MarcExportWriter writer = MarcExportWriter.create(format, os)) {
+            for (Record record : records) {
+                writer.write(MarcTestRecords.toIso2709(record));
+            }
+        }
+
+        return os.toByteArray();
+    }
+
+    private static byte[] _export(ExportFormat format) throws IOException {
+        return _export(format, Arrays.asList());
+    }
+
+    private static List<Record> _createRecords() {
+        Record first = MarcTestRecords.createRecord("0000001");
+
+        Record second = MarcTestRecords.createRecord("0000002");
+        MarcTestRecords.addDataField(second, "100", '1', ' ', 'a', "Barreto, Lima \"Afonso\"");
+
+        return Arrays.asList(first, second);
+    }
+}
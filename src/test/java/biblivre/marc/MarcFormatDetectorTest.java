@@ -0,0 +1,84 @@
+package biblivre.marc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import biblivre.cataloging.enums.ImportFormat;
+import biblivre.core.utils.Constants;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.marc4j.MarcWriter;
+import org.marc4j.MarcXmlWriter;
+
+class MarcFormatDetectorTest {
+
+    @Test
+    void testIso2709() {
+        byte[] iso2709 = MarcTestRecords.toIso2709(MarcTestRecords.createRecord());
+
+        assertEquals(ImportFormat.ISO2709, MarcFormatDetector.detect(iso2709));
+    }
+
+    @Test
+    void testXml() {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        MarcWriter writer = new MarcXmlWriter(os, Constants.DEFAULT_CHARSET_NAME);
+
+        writer.write(MarcTestRecords.createRecord());
+        writer.close();
+
+        assertEquals(ImportFormat.XML, MarcFormatDetector.detect(os.toByteArray()));
+    }
+
+    @Test
+    void testMarc() {
+        String marc = "\n000 00000nam a2200000 a 4500\n245 10 |a" + MarcTestRecords.TITLE + "\n";
+
+        assertEquals(
+                ImportFormat.MARC,
+                MarcFormatDetector.detect(marc.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(
+                ImportFormat.MARC,
+                MarcFormatDetector.detect(
+                        "LDR 00000nam a2200000 a 4500".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testBom() {
+        byte[] xml = "\uFEFF  <collection/>".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(ImportFormat.XML, MarcFormatDetector.detect(xml));
+    }
+
+    @Test
+    void testUnknown() {
+        assertNull(MarcFormatDetector.detect(new byte[0]));
+        assertNull(MarcFormatDetector.detect("   ".getBytes(StandardCharsets.UTF_8)));
+        assertNull(MarcFormatDetector.detect("00123".getBytes(StandardCharsets.UTF_8)));
+        assertNull(
+                MarcFormatDetector.detect(
+                        "Not a MARC file at all, only some text".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testReadPrefix() throws Exception {
+        byte[] content = new byte[MarcFormatDetector.PREFIX_LENGTH * 2];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(content));
+
+        assertEquals(MarcFormatDetector.PREFIX_LENGTH, MarcFormatDetector.readPrefix(is).length);
+
+        // The stream is rewound
+        assertArrayEquals(content, IOUtils.toByteArray(is));
+    }
+}
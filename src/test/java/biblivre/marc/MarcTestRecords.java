@@ -0,0 +1,60 @@
+package biblivre.marc;
+
+import biblivre.core.utils.Constants;
+import java.io.ByteArrayOutputStream;
+import org.marc4j.MarcStreamWriter;
+import org.marc4j.MarcWriter;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.MarcFactory;
+import org.marc4j.marc.Record;
+
+/** Bibliographic records shared by the MARC tests, which add the fields each one needs. */
+public final class MarcTestRecords {
+    public static final String TITLE = "Memórias póstumas de Brás Cubas";
+
+    private static final MarcFactory FACTORY = MarcFactory.newInstance();
+
+    private MarcTestRecords() {}
+
+    // Record holding only the title, in 245$a
+    public static Record createRecord() {
+        Record record = FACTORY.newRecord("00000nam a2200000 a 4500");
+
+        MarcTestRecords.addDataField(record, "245", '1', '0', 'a', MarcTestRecords.TITLE);
+
+        return record;
+    }
+
+    public static Record createRecord(String controlNumber) {
+        Record record = MarcTestRecords.createRecord();
+
+        record.addVariableField(FACTORY.newControlField("001", controlNumber));
+
+        return record;
+    }
+
+    // Returns the field, to which more subfields can be added
+    public static DataField addDataField(
+            Record record, String tag, char ind1, char ind2, char code, String data) {
+
+        DataField field = FACTORY.newDataField(tag, ind1, ind2);
+        field.addSubfield(FACTORY.newSubfield(code, data));
+        record.addVariableField(field);
+
+        return field;
+    }
+
+    public static void addSubfield(DataField field, char code, String data) {
+        field.addSubfield(FACTORY.newSubfield(code, data));
+    }
+
+    public static byte[] toIso2709(Record record) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        MarcWriter writer = new MarcStreamWriter(os, Constants.DEFAULT_CHARSET_NAME);
+
+        writer.write(record);
+        writer.close();
+
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+package biblivre.marc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import biblivre.cataloging.enums.IdentifierType;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.marc4j.marc.DataField;
+import org.marc4j.marc.MarcFactory;
+import org.marc4j.marc.Record;
+
+class StandardIdentifiersTest {
+
+    @Test
+    void testIsbn() {
+        String isbn = "9788535902778";
+
+        assertEquals(isbn, StandardIdentifiers.normalize(IdentifierType.ISBN, isbn));
+        assertEquals(isbn, StandardIdentifiers.normalize(IdentifierType.ISBN, "978-85-359-0277-8"));
+        assertEquals(isbn, StandardIdentifiers.normalize(IdentifierType.ISBN, "8535902775"));
+        assertEquals(
+                isbn, StandardIdentifiers.normalize(IdentifierType.ISBN, "85-359-0277-5 (broch.)"));
+        assertEquals(
+                isbn, StandardIdentifiers.normalize(IdentifierType.ISBN, "Broch. : 85-359-0277-5"));
+
+        assertEquals(
+                "9780306406157",
+                StandardIdentifiers.normalize(IdentifierType.ISBN, "0-306-40615-2"));
+        assertEquals(
+                "9780804429573", StandardIdentifiers.normalize(IdentifierType.ISBN, "080442957x"));
+    }
+
+    @Test
+    void testIssnAndIsrc() {
+        assertEquals("0317847X", StandardIdentifiers.normalize(IdentifierType.ISSN, "0317-847x"));
+        assertEquals(
+                "01002929",
+                StandardIdentifiers.normalize(IdentifierType.ISSN, "0100-2929 (impr.)"));
+
+        assertEquals(
+                "BRABC1200001",
+                StandardIdentifiers.normalize(IdentifierType.ISRC, "BR-ABC-12-00001"));
+    }
+
+    @Test
+    void testUnrecognized() {
+        assertEquals("123ABC", StandardIdentifiers.normalize(IdentifierType.ISBN, "123-abc"));
+
+        assertNull(StandardIdentifiers.normalize(IdentifierType.ISBN, null));
+        assertNull(StandardIdentifiers.normalize(IdentifierType.ISBN, "  "));
+        assertNull(StandardIdentifiers.normalize(IdentifierType.ISSN, "(--)"));
+    }
+
+    @Test
+    void testRead() {
+        MarcFactory factory = MarcFactory.newInstance();
+        Record record = factory.newRecord("00000nam a2200000 a 4500");
+
+        for (String isbn : Arrays.asList("8535902775", "978-85-359-0277-8", "0-306-40615-2")) {
+            DataField field = factory.newDataField("020", ' ', ' ');
+            field.addSubfield(factory.newSubfield('a', isbn));
+            record.addVariableField(field);
+        }
+
+        DataField issn = factory.newDataField("022", ' ', ' ');
+        issn.addSubfield(factory.newSubfield('a', "0317-847X"));
+        record.addVariableField(issn);
+
+        Map<IdentifierType, Set<String>> identifiers =
+                StandardIdentifiers.read(new MarcDataReader(record));
+
+        assertEquals(
+                new LinkedHashSet<>(Arrays.asList("9788535902778", "9780306406157")),
+                identifiers.get(IdentifierType.ISBN));
+        assertEquals(
+                new LinkedHashSet<>(Arrays.asList("0317847X")),
+                identifiers.get(IdentifierType.ISSN));
+        assertNull(identifiers.get(IdentifierType.ISRC));
+    }
+}